@@ -1,6 +1,8 @@
 package cn.edu.buaa.act.tgraph.api.tgraphdb;
 
-import cn.edu.buaa.act.tgraph.common.Pair;
+import cn.edu.buaa.act.tgraph.property.TemporalAggregation;
+import cn.edu.buaa.act.tgraph.property.TemporalFill;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyIterator;
 
 import java.util.List;
 import java.util.Map;
@@ -184,12 +186,47 @@ public interface Entity {
      * @param key   the property key
      * @param start the start timestamp
      * @param end   the end timestamp
-     * @return a list of property values associated with timestamp
+     * @return a lazy iterator of (timestamp, value) in timestamp order, the first one is the value effective at start,
+     *         close it if not exhausted.
      * @throws IllegalArgumentException           if <code>start</code> is bigger than or equal to <code>end</code>
      * @throws TemporalPropertyNotExistsException if property not exists
      * @throws TransactionAbortException if internal errors(deadlock etc.) occur
      */
-    List<Pair<Timestamp, Object>> getTemporalPropertyValue(String key, Timestamp start, Timestamp end) throws TransactionAbortException;
+    TemporalPropertyIterator getTemporalPropertyValue(String key, Timestamp start, Timestamp end) throws TransactionAbortException;
+
+    /**
+     * Aggregates specified existing temporal property values in time range [start, end) without materializing them,
+     * e.g. the average speed of a road in a day.
+     *
+     * @param key         the property key
+     * @param start       the start timestamp
+     * @param end         the end timestamp
+     * @param aggregation the aggregation, refer TemporalAggregation for the result of every aggregation
+     * @return the aggregated value, null if there is no value to aggregate
+     * @throws IllegalArgumentException           if <code>start</code> is bigger than or equal to <code>end</code>
+     * @throws TemporalPropertyNotExistsException if property not exists
+     * @throws TransactionAbortException if internal errors(deadlock etc.) occur
+     */
+    Object aggregateTemporalPropertyValue(String key, Timestamp start, Timestamp end, TemporalAggregation aggregation) throws TransactionAbortException;
+
+    /**
+     * Resamples specified existing temporal property values in time range [start, end) into fixed buckets,
+     * e.g. the speed of a road every 5 minutes of the last week, in one scan.
+     * Bucket i is [start + i * step, start + (i + 1) * step), the last one is cut by <code>end</code>.
+     *
+     * @param key         the property key
+     * @param start       the start timestamp
+     * @param end         the end timestamp
+     * @param step        the bucket length, time unit: milliseconds
+     * @param fill        the value of a bucket without points, refer TemporalFill
+     * @param aggregation the value of a bucket with points, refer TemporalAggregation
+     * @return one value per bucket
+     * @throws IllegalArgumentException           if <code>start</code> is bigger than or equal to <code>end</code>,
+     *                                            <code>step</code> is not positive or there are too many buckets
+     * @throws TemporalPropertyNotExistsException if property not exists
+     * @throws TransactionAbortException if internal errors(deadlock etc.) occur
+     */
+    List<Object> resampleTemporalPropertyValue(String key, Timestamp start, Timestamp end, long step, TemporalFill fill, TemporalAggregation aggregation) throws TransactionAbortException;
 
     /**
      * Sets the property value for the given key associated with timestamp
@@ -213,6 +250,11 @@ public interface Entity {
      * to <code>value</code>. The property value must be one of the valid
      * property types.
      * <p>
+     * The value is stored once as an interval record, values set in [start, end) before are overwritten.
+     * The value is not valid since <code>end</code>, i.e. reads at <code>end</code> or later return
+     * <code>null</code> until a later value is set.
+     * Range reads return the interval once at <code>start</code>.
+     * <p>
      * This means that <code>null</code> is not an accepted property value.
      *
      * @param key   the key with which the new property value will be associated
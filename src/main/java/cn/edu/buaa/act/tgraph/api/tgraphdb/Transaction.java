@@ -1,8 +1,13 @@
 package cn.edu.buaa.act.tgraph.api.tgraphdb;
 
+import cn.edu.buaa.act.tgraph.common.Pair;
+import cn.edu.buaa.act.tgraph.txn.TransactionAbortException;
 import org.neo4j.graphdb.*;
 
+import java.sql.Timestamp;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * A programmatically handled transaction.
@@ -490,6 +495,48 @@ public interface Transaction extends AutoCloseable {
      */
     ResourceIterable<Relationship> getAllRelationships();
 
+    /**
+     * Returns the value of a temporal property at a time point for every node with a specific label,
+     * the same value as Node#getTemporalPropertyValue(key, timestamp) of each node.
+     * <p>
+     * Values are resolved in bulk: node ids are sorted and read by one batch point get, swept in parallel by the store,
+     * instead of one random seek per node.
+     *
+     * @param label     consider nodes with this label
+     * @param key       the temporal property key
+     * @param timestamp the time point
+     * @return (node id, value) in ascending node id order, the value is null if the node has no value at timestamp.
+     * @throws TransactionAbortException if a temporal property lock can not be acquired.
+     */
+    Stream<Pair<Long, Object>> getTemporalPropertySnapshot(Label label, String key, Timestamp timestamp) throws TransactionAbortException;
+
+    /**
+     * Returns the value of a temporal property at a time point for every node of nodeIds,
+     * refer getTemporalPropertySnapshot(Label, String, Timestamp).
+     *
+     * @param nodeIds   ids of the nodes
+     * @param key       the temporal property key
+     * @param timestamp the time point
+     * @return (node id, value) in ascending node id order, the value is null if the node has no value at timestamp.
+     * @throws TransactionAbortException if a temporal property lock can not be acquired.
+     */
+    Stream<Pair<Long, Object>> getTemporalPropertySnapshot(long[] nodeIds, String key, Timestamp timestamp) throws TransactionAbortException;
+
+    /**
+     * Returns the values of many temporal properties of many nodes and relationships at a time point,
+     * the same values as Entity#getTemporalPropertyValue(key, timestamp) of each (entity, key).
+     * <p>
+     * Temporal properties of an entity are checked at once, locks are acquired in one sorted pass,
+     * and values are resolved by one batch read per store, instead of one call per (entity, key).
+     *
+     * @param keys      (entity, temporal property key) pairs, an entity is a Node or a Relationship of this transaction
+     * @param timestamp the time point
+     * @return values in the order of keys, a value is null if its entity has no value at timestamp.
+     * @throws TemporalPropertyNotExistsException if an entity does not have its temporal property.
+     * @throws TransactionAbortException if a temporal property lock can not be acquired.
+     */
+    Object[] getTemporalPropertyValues(List<Pair<Entity, String>> keys, Timestamp timestamp) throws TransactionAbortException;
+
     /**
      * Commit and close current transaction.
      * <p>
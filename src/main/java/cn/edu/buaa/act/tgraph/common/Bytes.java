@@ -1,6 +1,7 @@
 package cn.edu.buaa.act.tgraph.common;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class Bytes {
     public static boolean startsWith(byte[] key, byte[] prefix) {
@@ -31,4 +32,17 @@ public class Bytes {
         }
         return 0;
     }
+
+    // The smallest key greater than all keys starting with prefix in bytewise order,
+    // null if there is no such key(empty prefix or prefix of all 0xff).
+    public static byte[] successor(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; --i) {
+            if (prefix[i] != (byte) 0xff) {
+                byte[] ret = Arrays.copyOf(prefix, i + 1);
+                ++ret[i];
+                return ret;
+            }
+        }
+        return null;
+    }
 }
@@ -6,6 +6,7 @@ import org.nustaq.serialization.FSTConfiguration;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 // https://github.com/RuedigerMoeller/fast-serialization/wiki/Serialization
 // Make sure you read the link before you change this implementation.
@@ -17,14 +18,16 @@ import java.nio.charset.Charset;
 // FST will try his best to compress object, thus will probably not maintain the consistency of the prefix.
 // For example: k0: "crusher-k0" k1: "crusher-k1"
 // k0 and k1 may not have the same byte array prefix.
-// Basically, we use encode/decodeValue to encode/decode entity temporal property value.
+// Basically, we use encode/decodeValue to encode/decode redo logs and meta,
+// entity temporal property values are encoded by ValueCodec(type-tagged, FST only as a fallback).
 // And we know Neo4j entity property key should always be String object.
 // For temporal property key, we distinguish it by vertex and edge.
 // For vertex:
 //      key: NodeId(long) + String + timestamp(long)
 // For edge:
 //      key: StartNodeId(long) + EndNodeId(long) + String + timestamp(long)
-// For vertex/edge temporal property key, you should custom your own prefix/range consistency Codec.
+// For vertex/edge temporal property key, you should custom your own prefix/range consistency Codec,
+// see the order-preserving codec(putOrderedLong, encodeOrderedString) below.
 public class Codec {
     // We aim to be compatible with Neo4j, thus we only preregister the class that Neo4j supports.
     // https://neo4j.com/docs/java-reference/4.4/javadocs/org/neo4j/graphdb/Entity.html
@@ -64,6 +67,82 @@ public class Codec {
         return ByteBuffer.wrap(bytes).getLong();
     }
 
+    public static byte[] intToBytes(final int num) {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.putInt(num);
+        return buffer.array();
+    }
+
+    public static int bytesToInt(final byte[] bytes) {
+        return ByteBuffer.wrap(bytes).getInt();
+    }
 
+    // Order-preserving codec, used by vertex/edge temporal property key.
+    // Bytes produced here sort the same way as the original values under rocksdb's
+    // native bytewise comparator, thus temporal property stores need no custom comparator.
 
+    // Flip the sign bit, then negative numbers sort before positive numbers in big-endian.
+    public static void putOrderedLong(ByteBuffer buffer, long num) {
+        buffer.putLong(num ^ Long.MIN_VALUE);
+    }
+
+    public static long getOrderedLong(ByteBuffer buffer) {
+        return buffer.getLong() ^ Long.MIN_VALUE;
+    }
+
+    // String is encoded as UTF-8 bytes with 0x00 escaped as 0x00 0xff and terminated by 0x00 0x01.
+    // The terminator makes the encoding prefix free: "ab" can never be a prefix of "abc",
+    // and "ab" still sorts before "abc" because 0x01 is less than any escaped byte.
+    private static final byte ORDERED_ESCAPE = 0x00;
+    private static final byte ORDERED_ESCAPED_ZERO = (byte) 0xff;
+    private static final byte ORDERED_TERMINATOR = 0x01;
+
+    public static byte[] encodeOrderedString(String str) {
+        byte[] raw = str.getBytes(StandardCharsets.UTF_8);
+        int zeros = 0;
+        for (byte b : raw) {
+            if (b == ORDERED_ESCAPE) {
+                ++zeros;
+            }
+        }
+        byte[] ret = new byte[raw.length + zeros + 2];
+        int pos = 0;
+        for (byte b : raw) {
+            ret[pos++] = b;
+            if (b == ORDERED_ESCAPE) {
+                ret[pos++] = ORDERED_ESCAPED_ZERO;
+            }
+        }
+        ret[pos++] = ORDERED_ESCAPE;
+        ret[pos] = ORDERED_TERMINATOR;
+        return ret;
+    }
+
+    // Return the length of the ordered string starts from offset, terminator included.
+    public static int orderedStringLength(byte[] bytes, int offset) {
+        for (int pos = offset; pos + 1 < bytes.length; ++pos) {
+            if (bytes[pos] == ORDERED_ESCAPE) {
+                if (bytes[pos + 1] == ORDERED_TERMINATOR) {
+                    return pos + 2 - offset;
+                }
+                // skip escaped zero
+                ++pos;
+            }
+        }
+        throw new IllegalArgumentException("ordered string is not terminated.");
+    }
+
+    public static String decodeOrderedString(byte[] bytes, int offset) {
+        int length = orderedStringLength(bytes, offset) - 2;
+        byte[] raw = new byte[length];
+        int n = 0;
+        for (int pos = offset; pos < offset + length; ++pos) {
+            raw[n++] = bytes[pos];
+            if (bytes[pos] == ORDERED_ESCAPE) {
+                // skip escaped zero
+                ++pos;
+            }
+        }
+        return new String(raw, 0, n, StandardCharsets.UTF_8);
+    }
 }
\ No newline at end of file
@@ -6,6 +6,8 @@ import java.nio.ByteBuffer;
 
 import static cn.edu.buaa.act.tgraph.common.Bytes.memcmp;
 
+// NOTE!: only used by the legacy temporal property key comparators, new keys are compared bytewise by rocksdb.
+// Preconditions messages are templates, thus nothing is formatted unless a check fails.
 public class ComparatorUtil {
     public static int longCompare(ByteBuffer lhs, ByteBuffer rhs) {
         long lL = lhs.getLong();
@@ -63,8 +65,8 @@ public class ComparatorUtil {
         Preconditions.checkNotNull(lhs, "lhs should not be null.");
         Preconditions.checkNotNull(rhs, "rhs should not be null.");
         // VertexTemporalKeyPrefix also will be compared, 12: node id + propertyLength + propertyName(should not be empty)
-        Preconditions.checkState(lhs.remaining() > 12, String.format("VertexTemporalPropertyKey should be at least 12 bytes, the real is %d.", lhs.remaining()));
-        Preconditions.checkState(rhs.remaining() > 12, String.format("VertexTemporalPropertyKey should be at least 12 bytes, the real is %d.", rhs.remaining()));
+        Preconditions.checkState(lhs.remaining() > 12, "VertexTemporalPropertyKey should be at least 12 bytes, the real is %s.", lhs.remaining());
+        Preconditions.checkState(rhs.remaining() > 12, "VertexTemporalPropertyKey should be at least 12 bytes, the real is %s.", rhs.remaining());
         return doVertexTemporalPropertyKeyCompare(lhs, rhs, 12);
     }
 
@@ -72,8 +74,8 @@ public class ComparatorUtil {
         Preconditions.checkNotNull(lhs, "lhs should not be null.");
         Preconditions.checkNotNull(rhs, "rhs should not be null.");
         // VertexTemporalKeyPrefix also will be compared, 16: start node id + end node id + propertyLength + propertyName(should not be empty)
-        Preconditions.checkState(lhs.remaining() > 20, String.format("EdgeTemporalPropertyKey should be at least 20 bytes, the real is %d.", lhs.remaining()));
-        Preconditions.checkState(rhs.remaining() > 20, String.format("EdgeTemporalPropertyKey should be at least 20 bytes, the real is %d.", rhs.remaining()));
+        Preconditions.checkState(lhs.remaining() > 20, "EdgeTemporalPropertyKey should be at least 20 bytes, the real is %s.", lhs.remaining());
+        Preconditions.checkState(rhs.remaining() > 20, "EdgeTemporalPropertyKey should be at least 20 bytes, the real is %s.", rhs.remaining());
         // compare start id.
         int sId = longCompare(lhs, rhs);
         return sId == 0 ? doVertexTemporalPropertyKeyCompare(lhs, rhs, 20) : sId;
@@ -0,0 +1,572 @@
+package cn.edu.buaa.act.tgraph.common;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+// ValueCodec encodes temporal property values, i.e. values of Vertex/EdgeTemporalPropertyStore.
+// Codec.encodeValue(FST) writes class headers for every value, a boxed Double costs tens of bytes
+// and every call allocates streams, while temporal properties are mostly numbers sampled again and again.
+
+// Layout: tag(1 byte) + payload, the payload of every tag is listed below.
+//      boolean: no payload, true and false have their own tags.
+//      byte/float/double/char: fixed width, big-endian.
+//      short/int/long: zigzag varint.
+//      String: utf-8 bytes till the end.
+//      primitive arrays: varint length + elements encoded as above.
+//      String[]: varint length + (varint byte length + utf-8 bytes) of every element.
+//      LocalDate: zigzag varint epoch day.
+//      LocalTime: varint nano of day.
+//      LocalDateTime: LocalDate + LocalTime.
+//      OffsetTime: LocalTime + zigzag varint offset seconds.
+//      ZonedDateTime: zigzag varint epoch second + varint nano + zone id string(varint length + utf-8).
+//      OffsetDateTime is converted to ZonedDateTime as neo4j does(see Entity).
+//      Duration: zigzag varint seconds + varint nano.
+//      Period: zigzag varint years, months, days.
+//      Anything else: FST bytes(Codec.encodeValue) till the end.
+// Interval records(value valid in [timestamp of the key, end), see TemporalInterval) are
+//      tag + end(8 bytes, big-endian) + the value encoded as above.
+// Refer test/common/ValueCodecTest.java for more usage example.
+
+// NOTE!: tags are persisted, never change or reuse a tag, append new tags instead.
+// NOTE!: stores written before format version 4(see StoreUpgrader) keep FST values without tag,
+// use Codec.decodeValue for them.
+public class ValueCodec {
+
+    static final byte FALSE = 0x01;
+    static final byte TRUE = 0x02;
+    static final byte BYTE = 0x03;
+    static final byte SHORT = 0x04;
+    static final byte INT = 0x05;
+    static final byte LONG = 0x06;
+    static final byte FLOAT = 0x07;
+    static final byte DOUBLE = 0x08;
+    static final byte CHAR = 0x09;
+    static final byte STRING = 0x0a;
+
+    static final byte BOOLEAN_ARRAY = 0x10;
+    static final byte BYTE_ARRAY = 0x11;
+    static final byte SHORT_ARRAY = 0x12;
+    static final byte INT_ARRAY = 0x13;
+    static final byte LONG_ARRAY = 0x14;
+    static final byte FLOAT_ARRAY = 0x15;
+    static final byte DOUBLE_ARRAY = 0x16;
+    static final byte CHAR_ARRAY = 0x17;
+    static final byte STRING_ARRAY = 0x18;
+
+    static final byte LOCAL_DATE = 0x20;
+    static final byte LOCAL_TIME = 0x21;
+    static final byte LOCAL_DATE_TIME = 0x22;
+    static final byte OFFSET_TIME = 0x23;
+    static final byte ZONED_DATE_TIME = 0x24;
+    static final byte DURATION = 0x25;
+    static final byte PERIOD = 0x26;
+
+    static final byte INTERVAL = 0x30;
+
+    static final byte FST = 0x7f;
+
+    public static byte[] encode(Object value) {
+        Preconditions.checkNotNull(value, "temporal property value should not be null.");
+        // scalars have fixed size, fill them without the growable writer.
+        if (value instanceof Double) {
+            byte[] ret = new byte[1 + Double.BYTES];
+            ret[0] = DOUBLE;
+            putLong(ret, 1, Double.doubleToRawLongBits((Double) value));
+            return ret;
+        }
+        if (value instanceof Float) {
+            byte[] ret = new byte[1 + Float.BYTES];
+            ret[0] = FLOAT;
+            putInt(ret, 1, Float.floatToRawIntBits((Float) value));
+            return ret;
+        }
+        if (value instanceof Boolean) {
+            return new byte[]{(Boolean) value ? TRUE : FALSE};
+        }
+        if (value instanceof Byte) {
+            return new byte[]{BYTE, (Byte) value};
+        }
+        if (value instanceof Character) {
+            char c = (Character) value;
+            return new byte[]{CHAR, (byte) (c >>> 8), (byte) c};
+        }
+        if (value instanceof String) {
+            byte[] raw = ((String) value).getBytes(StandardCharsets.UTF_8);
+            byte[] ret = new byte[1 + raw.length];
+            ret[0] = STRING;
+            System.arraycopy(raw, 0, ret, 1, raw.length);
+            return ret;
+        }
+        var w = new Writer();
+        if (value instanceof Long) {
+            w.tag(LONG).zigzag((Long) value);
+        } else if (value instanceof Integer) {
+            w.tag(INT).zigzag((Integer) value);
+        } else if (value instanceof Short) {
+            w.tag(SHORT).zigzag((Short) value);
+        } else if (value instanceof boolean[]) {
+            var a = (boolean[]) value;
+            w.tag(BOOLEAN_ARRAY).varint(a.length);
+            for (boolean v : a) {
+                w.put(v ? (byte) 1 : (byte) 0);
+            }
+        } else if (value instanceof byte[]) {
+            var a = (byte[]) value;
+            w.tag(BYTE_ARRAY).varint(a.length).put(a);
+        } else if (value instanceof short[]) {
+            var a = (short[]) value;
+            w.tag(SHORT_ARRAY).varint(a.length);
+            for (short v : a) {
+                w.zigzag(v);
+            }
+        } else if (value instanceof int[]) {
+            var a = (int[]) value;
+            w.tag(INT_ARRAY).varint(a.length);
+            for (int v : a) {
+                w.zigzag(v);
+            }
+        } else if (value instanceof long[]) {
+            var a = (long[]) value;
+            w.tag(LONG_ARRAY).varint(a.length);
+            for (long v : a) {
+                w.zigzag(v);
+            }
+        } else if (value instanceof float[]) {
+            var a = (float[]) value;
+            w.tag(FLOAT_ARRAY).varint(a.length);
+            for (float v : a) {
+                w.fixed32(Float.floatToRawIntBits(v));
+            }
+        } else if (value instanceof double[]) {
+            var a = (double[]) value;
+            w.tag(DOUBLE_ARRAY).varint(a.length);
+            for (double v : a) {
+                w.fixed64(Double.doubleToRawLongBits(v));
+            }
+        } else if (value instanceof char[]) {
+            var a = (char[]) value;
+            w.tag(CHAR_ARRAY).varint(a.length);
+            for (char v : a) {
+                w.put((byte) (v >>> 8)).put((byte) v);
+            }
+        } else if (value instanceof String[]) {
+            var a = (String[]) value;
+            w.tag(STRING_ARRAY).varint(a.length);
+            for (String v : a) {
+                w.string(v);
+            }
+        } else if (value instanceof LocalDate) {
+            w.tag(LOCAL_DATE).zigzag(((LocalDate) value).toEpochDay());
+        } else if (value instanceof LocalTime) {
+            w.tag(LOCAL_TIME).varint(((LocalTime) value).toNanoOfDay());
+        } else if (value instanceof LocalDateTime) {
+            var v = (LocalDateTime) value;
+            w.tag(LOCAL_DATE_TIME).zigzag(v.toLocalDate().toEpochDay()).varint(v.toLocalTime().toNanoOfDay());
+        } else if (value instanceof OffsetTime) {
+            var v = (OffsetTime) value;
+            w.tag(OFFSET_TIME).varint(v.toLocalTime().toNanoOfDay()).zigzag(v.getOffset().getTotalSeconds());
+        } else if (value instanceof ZonedDateTime || value instanceof OffsetDateTime) {
+            var v = value instanceof ZonedDateTime ? (ZonedDateTime) value : ((OffsetDateTime) value).toZonedDateTime();
+            w.tag(ZONED_DATE_TIME).zigzag(v.toEpochSecond()).varint(v.getNano()).string(v.getZone().getId());
+        } else if (value instanceof Duration) {
+            var v = (Duration) value;
+            w.tag(DURATION).zigzag(v.getSeconds()).varint(v.getNano());
+        } else if (value instanceof Period) {
+            var v = (Period) value;
+            w.tag(PERIOD).zigzag(v.getYears()).zigzag(v.getMonths()).zigzag(v.getDays());
+        } else {
+            w.tag(FST).put(Codec.encodeValue(value));
+        }
+        return w.toBytes();
+    }
+
+    public static byte[] encodeInterval(long end, Object value) {
+        byte[] v = encode(value);
+        byte[] ret = new byte[1 + Long.BYTES + v.length];
+        ret[0] = INTERVAL;
+        putLong(ret, 1, end);
+        System.arraycopy(v, 0, ret, 1 + Long.BYTES, v.length);
+        return ret;
+    }
+
+    public static boolean isInterval(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == INTERVAL;
+    }
+
+    // exclusive end of an interval record.
+    public static long intervalEnd(byte[] bytes) {
+        Preconditions.checkArgument(isInterval(bytes), "not an interval record.");
+        return getLong(bytes, 1);
+    }
+
+    // NOTE!: an interval record is decoded as its value, use isInterval and intervalEnd for its validity.
+    public static Object decode(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        Preconditions.checkArgument(bytes.length > 0, "empty temporal property value.");
+        switch (bytes[0]) {
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case CHAR:
+                return decodeScalar(bytes);
+            case STRING:
+                return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+            case INTERVAL:
+                return decode(Arrays.copyOfRange(bytes, 1 + Long.BYTES, bytes.length));
+            case FST:
+                return Codec.decodeValue(Arrays.copyOfRange(bytes, 1, bytes.length));
+            default:
+                return decodeComplex(bytes);
+        }
+    }
+
+    private static Object decodeScalar(byte[] bytes) {
+        switch (bytes[0]) {
+            case BYTE:
+                return bytes[1];
+            case SHORT:
+                return (short) getLong(bytes);
+            case INT:
+                return (int) getLong(bytes);
+            case LONG:
+                return getLong(bytes);
+            case FLOAT:
+                return Float.intBitsToFloat(getInt(bytes, 1));
+            case DOUBLE:
+                return Double.longBitsToDouble(getLong(bytes, 1));
+            default:
+                return (char) (((bytes[1] & 0xff) << 8) | (bytes[2] & 0xff));
+        }
+    }
+
+    private static Object decodeComplex(byte[] bytes) {
+        var r = new Reader(bytes);
+        byte tag = r.get();
+        switch (tag) {
+            case BOOLEAN_ARRAY: {
+                var a = new boolean[r.length()];
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] = r.get() != 0;
+                }
+                return a;
+            }
+            case BYTE_ARRAY: {
+                int n = r.length();
+                return Arrays.copyOfRange(bytes, r.pos, r.pos + n);
+            }
+            case SHORT_ARRAY: {
+                var a = new short[r.length()];
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] = (short) r.zigzag();
+                }
+                return a;
+            }
+            case INT_ARRAY: {
+                var a = new int[r.length()];
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] = (int) r.zigzag();
+                }
+                return a;
+            }
+            case LONG_ARRAY: {
+                var a = new long[r.length()];
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] = r.zigzag();
+                }
+                return a;
+            }
+            case FLOAT_ARRAY: {
+                var a = new float[r.length()];
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] = Float.intBitsToFloat(r.fixed32());
+                }
+                return a;
+            }
+            case DOUBLE_ARRAY: {
+                var a = new double[r.length()];
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] = Double.longBitsToDouble(r.fixed64());
+                }
+                return a;
+            }
+            case CHAR_ARRAY: {
+                var a = new char[r.length()];
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] = (char) (((r.get() & 0xff) << 8) | (r.get() & 0xff));
+                }
+                return a;
+            }
+            case STRING_ARRAY: {
+                var a = new String[r.length()];
+                for (int i = 0; i < a.length; ++i) {
+                    a[i] = r.string();
+                }
+                return a;
+            }
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(r.zigzag());
+            case LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(r.varint());
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.of(LocalDate.ofEpochDay(r.zigzag()), LocalTime.ofNanoOfDay(r.varint()));
+            case OFFSET_TIME:
+                return OffsetTime.of(LocalTime.ofNanoOfDay(r.varint()), ZoneOffset.ofTotalSeconds((int) r.zigzag()));
+            case ZONED_DATE_TIME: {
+                long second = r.zigzag();
+                long nano = r.varint();
+                return ZonedDateTime.ofInstant(Instant.ofEpochSecond(second, nano), ZoneId.of(r.string()));
+            }
+            case DURATION: {
+                long second = r.zigzag();
+                return Duration.ofSeconds(second, r.varint());
+            }
+            case PERIOD:
+                return Period.of((int) r.zigzag(), (int) r.zigzag(), (int) r.zigzag());
+            default:
+                throw new IllegalArgumentException(String.format("unknown temporal property value tag 0x%02x.", tag));
+        }
+    }
+
+    // Allocation free accessors for numeric values, used by scans which only need numbers.
+
+    // byte/short/int/long, read them by getLong exactly.
+    public static boolean isIntegral(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return false;
+        }
+        switch (bytes[0]) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static boolean isNumeric(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return false;
+        }
+        switch (bytes[0]) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // integral values as they are, floating values are truncated.
+    public static long getLong(byte[] bytes) {
+        switch (bytes[0]) {
+            case BYTE:
+                return bytes[1];
+            case SHORT:
+            case INT:
+            case LONG: {
+                long raw = 0;
+                for (int i = 1, shift = 0; ; ++i, shift += 7) {
+                    byte b = bytes[i];
+                    raw |= (long) (b & 0x7f) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                return (raw >>> 1) ^ -(raw & 1);
+            }
+            case FLOAT:
+            case DOUBLE:
+                return (long) getDouble(bytes);
+            default:
+                throw new IllegalArgumentException(String.format("temporal property value tag 0x%02x is not numeric.", bytes[0]));
+        }
+    }
+
+    public static double getDouble(byte[] bytes) {
+        switch (bytes[0]) {
+            case FLOAT:
+                return Float.intBitsToFloat(getInt(bytes, 1));
+            case DOUBLE:
+                return Double.longBitsToDouble(getLong(bytes, 1));
+            default:
+                return getLong(bytes);
+        }
+    }
+
+    private static void putInt(byte[] bytes, int offset, int v) {
+        for (int i = 3; i >= 0; --i) {
+            bytes[offset + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    private static void putLong(byte[] bytes, int offset, long v) {
+        for (int i = 7; i >= 0; --i) {
+            bytes[offset + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        int v = 0;
+        for (int i = 0; i < 4; ++i) {
+            v = (v << 8) | (bytes[offset + i] & 0xff);
+        }
+        return v;
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long v = 0;
+        for (int i = 0; i < 8; ++i) {
+            v = (v << 8) | (bytes[offset + i] & 0xff);
+        }
+        return v;
+    }
+
+    private static final class Writer {
+        private byte[] buf = new byte[16];
+        private int pos = 0;
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+
+        Writer tag(byte tag) {
+            return put(tag);
+        }
+
+        Writer put(byte b) {
+            ensure(1);
+            buf[pos++] = b;
+            return this;
+        }
+
+        Writer put(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+            return this;
+        }
+
+        Writer varint(long v) {
+            ensure(10);
+            while ((v & ~0x7fL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+            return this;
+        }
+
+        Writer zigzag(long v) {
+            return varint((v << 1) ^ (v >> 63));
+        }
+
+        Writer fixed32(int v) {
+            ensure(4);
+            putInt(buf, pos, v);
+            pos += 4;
+            return this;
+        }
+
+        Writer fixed64(long v) {
+            ensure(8);
+            putLong(buf, pos, v);
+            pos += 8;
+            return this;
+        }
+
+        Writer string(String s) {
+            byte[] raw = s.getBytes(StandardCharsets.UTF_8);
+            return varint(raw.length).put(raw);
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos = 0;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        byte get() {
+            return buf[pos++];
+        }
+
+        long varint() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buf[pos++];
+                v |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return v;
+                }
+            }
+        }
+
+        long zigzag() {
+            long raw = varint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        int length() {
+            long n = varint();
+            Preconditions.checkState(n <= buf.length - pos, "temporal property value data corruption.");
+            return (int) n;
+        }
+
+        int fixed32() {
+            int v = getInt(buf, pos);
+            pos += 4;
+            return v;
+        }
+
+        long fixed64() {
+            long v = getLong(buf, pos);
+            pos += 8;
+            return v;
+        }
+
+        String string() {
+            int n = length();
+            var s = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+    }
+}
@@ -6,11 +6,14 @@ import cn.edu.buaa.act.tgraph.api.tgraphdb.TemporalPropertyExistsException;
 import cn.edu.buaa.act.tgraph.api.tgraphdb.TemporalPropertyNotExistsException;
 import com.google.common.base.Preconditions;
 import cn.edu.buaa.act.tgraph.common.EntityUtil;
-import cn.edu.buaa.act.tgraph.common.Pair;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.neo4j.graphdb.Lock;
 import org.neo4j.graphdb.RelationshipType;
+import cn.edu.buaa.act.tgraph.property.TemporalAggregation;
+import cn.edu.buaa.act.tgraph.property.TemporalFill;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyIterator;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyTokenStore;
 import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKey;
 import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKeyPrefix;
 import cn.edu.buaa.act.tgraph.txn.EntityExecutorContext;
@@ -70,7 +73,7 @@ public class Edge implements Relationship {
         return exeCtx.getGraphTxn().acquireWriteLock(neoEdge);
     }
 
-    private void doAcquireSX(String tp, boolean share) throws TransactionAbortException {
+    private void doAcquireSX(int tp, boolean share) throws TransactionAbortException {
         var lm = exeCtx.getTxnManager().getLockManager();
         var txn = exeCtx.getTxnManager().getTransaction(exeCtx.getTxnID());
         Preconditions.checkNotNull(txn, "All operations must be surrounded by transaction.");
@@ -93,11 +96,23 @@ public class Edge implements Relationship {
         }
     }
 
-    private void acquireS(String tp) throws TransactionAbortException {
+    // temporal property name -> token of writes, created if missing, refer TemporalPropertyTokenStore.
+    // NOTE!: resolve the token once per operation, locks and keys all use it.
+    private int token(String key) {
+        return exeCtx.getTxnManager().getTokenStore().getOrCreateId(key);
+    }
+
+    // NO_TOKEN if the temporal property has never been written, i.e. it has no value,
+    // thus reads never create a token(a synced write).
+    private int readToken(String key) {
+        return exeCtx.getTxnManager().getTokenStore().getId(key);
+    }
+
+    private void acquireS(int tp) throws TransactionAbortException {
         doAcquireSX(tp, true);
     }
 
-    private void acquireX(String tp) throws TransactionAbortException {
+    private void acquireX(int tp) throws TransactionAbortException {
         doAcquireSX(tp, false);
     }
 
@@ -161,6 +176,8 @@ public class Edge implements Relationship {
                 throw new TemporalPropertyExistsException();
             }
             neoEdge.setProperty(EntityUtil.temporalPropertyWrapper(key), TGraphConfig.TEMPORAL_PROPERTY_VALUE_PLACEHOLDER);
+            // allocate the token eagerly, thus later operations only look it up.
+            token(key);
         }
     }
 
@@ -173,8 +190,9 @@ public class Edge implements Relationship {
             }
             neoEdge.removeProperty(EntityUtil.temporalPropertyWrapper(key));
             // we should remove all temporal value for consistency, thus x-lock is needed.
-            acquireX(key);
-            var prefix = EdgeTemporalPropertyKeyPrefix.of(startId, endId, key);
+            int tp = token(key);
+            acquireX(tp);
+            var prefix = EdgeTemporalPropertyKeyPrefix.of(startId, endId, tp);
             exeCtx.getLogWb().append(LogEntry.removeEdgePrefix(prefix));
             exeCtx.getEdgeWb().removePrefix(prefix);
         } catch (TransactionAbortException e) {
@@ -198,8 +216,34 @@ public class Edge implements Relationship {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireS(key);
-            return exeCtx.getEdge().get(EdgeTemporalPropertyKey.of(startId, endId, key, timestamp.getTime()));
+            int tp = readToken(key);
+            if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+                return null;
+            }
+            acquireS(tp);
+            return exeCtx.getEdge().get(EdgeTemporalPropertyKey.of(startId, endId, tp, timestamp.getTime()));
+        } catch (TransactionAbortException e) {
+            log.info(e.getInfo());
+            throw e;
+        }
+    }
+
+    @Override
+    public TemporalPropertyIterator getTemporalPropertyValue(String key, Timestamp start, Timestamp end) throws TransactionAbortException {
+        if (start.compareTo(end) >= 0) {
+            throw new IllegalArgumentException();
+        }
+        try (Lock ignored = acquireIS()) {
+            if (!tpExist(key)) {
+                log.warn(String.format("temporal property %s does not exist.", key));
+                throw new TemporalPropertyNotExistsException();
+            }
+            int tp = readToken(key);
+            if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+                return TemporalPropertyIterator.empty();
+            }
+            acquireS(tp);
+            return exeCtx.getEdge().rangeGet(EdgeTemporalPropertyKey.of(startId, endId, tp, start.getTime()), EdgeTemporalPropertyKey.of(startId, endId, tp, end.getTime()));
         } catch (TransactionAbortException e) {
             log.info(e.getInfo());
             throw e;
@@ -207,7 +251,7 @@ public class Edge implements Relationship {
     }
 
     @Override
-    public List<Pair<Timestamp, Object>> getTemporalPropertyValue(String key, Timestamp start, Timestamp end) throws TransactionAbortException {
+    public Object aggregateTemporalPropertyValue(String key, Timestamp start, Timestamp end, TemporalAggregation aggregation) throws TransactionAbortException {
         if (start.compareTo(end) >= 0) {
             throw new IllegalArgumentException();
         }
@@ -216,8 +260,34 @@ public class Edge implements Relationship {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireS(key);
-            return exeCtx.getEdge().rangeGet(EdgeTemporalPropertyKey.of(startId, endId, key, start.getTime()), EdgeTemporalPropertyKey.of(startId, endId, key, end.getTime()));
+            int tp = readToken(key);
+            if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+                return aggregation.emptyAggregate();
+            }
+            acquireS(tp);
+            return exeCtx.getEdge().aggregate(EdgeTemporalPropertyKey.of(startId, endId, tp, start.getTime()), EdgeTemporalPropertyKey.of(startId, endId, tp, end.getTime()), aggregation);
+        } catch (TransactionAbortException e) {
+            log.info(e.getInfo());
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Object> resampleTemporalPropertyValue(String key, Timestamp start, Timestamp end, long step, TemporalFill fill, TemporalAggregation aggregation) throws TransactionAbortException {
+        if (start.compareTo(end) >= 0 || step <= 0) {
+            throw new IllegalArgumentException();
+        }
+        try (Lock ignored = acquireIS()) {
+            if (!tpExist(key)) {
+                log.warn(String.format("temporal property %s does not exist.", key));
+                throw new TemporalPropertyNotExistsException();
+            }
+            int tp = readToken(key);
+            if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+                return aggregation.emptyResample(start.getTime(), end.getTime(), step, fill);
+            }
+            acquireS(tp);
+            return exeCtx.getEdge().resample(EdgeTemporalPropertyKey.of(startId, endId, tp, start.getTime()), EdgeTemporalPropertyKey.of(startId, endId, tp, end.getTime()), step, fill, aggregation);
         } catch (TransactionAbortException e) {
             log.info(e.getInfo());
             throw e;
@@ -226,13 +296,14 @@ public class Edge implements Relationship {
 
     @Override
     public void setTemporalPropertyValue(String key, Timestamp timestamp, Object value) throws TransactionAbortException {
-        var k = EdgeTemporalPropertyKey.of(startId, endId, key, timestamp.getTime());
         try (Lock ignored = acquireIS()) {
             if (!tpExist(key)) {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
+            int tp = token(key);
+            acquireX(tp);
+            var k = EdgeTemporalPropertyKey.of(startId, endId, tp, timestamp.getTime());
             exeCtx.getLogWb().append(LogEntry.putEdge(k, value));
             exeCtx.getEdgeWb().put(k, value);
         } catch (TransactionAbortException e) {
@@ -246,18 +317,16 @@ public class Edge implements Relationship {
         if (start.compareTo(end) >= 0) {
             throw new IllegalArgumentException();
         }
-        var st = EdgeTemporalPropertyKey.of(startId, endId, key, start.getTime());
-        var en = EdgeTemporalPropertyKey.of(startId, endId, key, end.getTime() - 1);
         try (Lock ignored = acquireIS()) {
             if (!tpExist(key)) {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
-            exeCtx.getLogWb().append(LogEntry.putEdge(st, value));
-            exeCtx.getLogWb().append(LogEntry.putEdge(en, value));
-            exeCtx.getEdgeWb().put(st, value);
-            exeCtx.getEdgeWb().put(en, value);
+            int tp = token(key);
+            acquireX(tp);
+            var st = EdgeTemporalPropertyKey.of(startId, endId, tp, start.getTime());
+            exeCtx.getLogWb().append(LogEntry.putEdgeInterval(st, end.getTime(), value));
+            exeCtx.getEdgeWb().putInterval(st, end.getTime(), value);
         } catch (TransactionAbortException e) {
             log.info(e.getInfo());
             throw e;
@@ -267,13 +336,14 @@ public class Edge implements Relationship {
 
     @Override
     public void removeTemporalPropertyValue(String key, Timestamp timestamp) throws TransactionAbortException {
-        var k = EdgeTemporalPropertyKey.of(startId, endId, key, timestamp.getTime());
         try (Lock ignored = acquireIS()) {
             if (!tpExist(key)) {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
+            int tp = token(key);
+            acquireX(tp);
+            var k = EdgeTemporalPropertyKey.of(startId, endId, tp, timestamp.getTime());
             exeCtx.getLogWb().append(LogEntry.removeEdge(k));
             exeCtx.getEdgeWb().remove(k);
         } catch (TransactionAbortException e) {
@@ -287,14 +357,15 @@ public class Edge implements Relationship {
         if (start.compareTo(end) >= 0) {
             throw new IllegalArgumentException();
         }
-        var st = EdgeTemporalPropertyKey.of(startId, endId, key, start.getTime());
-        var en = EdgeTemporalPropertyKey.of(startId, endId, key, end.getTime());
         try (Lock ignored = acquireIS()) {
             if (!tpExist(key)) {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
+            int tp = token(key);
+            acquireX(tp);
+            var st = EdgeTemporalPropertyKey.of(startId, endId, tp, start.getTime());
+            var en = EdgeTemporalPropertyKey.of(startId, endId, tp, end.getTime());
             exeCtx.getLogWb().append(LogEntry.removeEdgeRange(st, en));
             exeCtx.getEdgeWb().removeRange(st, en);
         } catch (TransactionAbortException e) {
@@ -310,8 +381,9 @@ public class Edge implements Relationship {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
-            var prefix = EdgeTemporalPropertyKeyPrefix.of(startId, endId, key);
+            int tp = token(key);
+            acquireX(tp);
+            var prefix = EdgeTemporalPropertyKeyPrefix.of(startId, endId, tp);
             exeCtx.getLogWb().append(LogEntry.removeEdgePrefix(prefix));
             exeCtx.getEdgeWb().removePrefix(prefix);
         } catch (TransactionAbortException e) {
@@ -331,7 +403,8 @@ public class Edge implements Relationship {
     public void delete() throws TransactionAbortException {
         try (Lock ignored = acquireIX()) {
             var tps = EntityUtil.temporalPropertyKesFilter(neoEdge.getPropertyKeys());
-            for (var tp : tps) {
+            for (var key : tps) {
+                int tp = token(key);
                 acquireX(tp);
                 var prefix = EdgeTemporalPropertyKeyPrefix.of(startId, endId, tp);
                 exeCtx.getLogWb().append(LogEntry.removeEdgePrefix(prefix));
@@ -343,6 +416,16 @@ public class Edge implements Relationship {
         }
     }
 
+    @Override
+    public long getStartNodeId() {
+        return startId;
+    }
+
+    @Override
+    public long getEndNodeId() {
+        return endId;
+    }
+
     @Override
     public Node getStartNode() {
         var neoStartNode = neoEdge.getStartNode();
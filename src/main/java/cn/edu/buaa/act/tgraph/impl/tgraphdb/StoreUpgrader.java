@@ -0,0 +1,429 @@
+package cn.edu.buaa.act.tgraph.impl.tgraphdb;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.common.Pair;
+import cn.edu.buaa.act.tgraph.common.ValueCodec;
+import cn.edu.buaa.act.tgraph.kvstore.Comparator;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
+import cn.edu.buaa.act.tgraph.kvstore.RocksInstance;
+import cn.edu.buaa.act.tgraph.kvstore.StoreOptions;
+import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKey;
+import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKeyComparator;
+import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKeyPrefix;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyTokenStore;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKey;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKeyComparator;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKeyPrefix;
+import cn.edu.buaa.act.tgraph.txn.LogWriteBatch;
+import com.google.common.base.Preconditions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rocksdb.ComparatorOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// StoreUpgrader rewrites the temporal property stores written by an older TGraph into the current format.
+// It runs after the RocksInstance of this graph is opened and before any store of this graph is opened(see TGraphDatabase).
+
+// The format version(and chunk interval of temporal property stores, levels of rollup stores, whether change indexes are enabled)
+// of every store is recorded in FORMAT_FILE under the database path,
+// a store directory without recorded version is written by the legacy key format.
+// Format versions:
+//      0: legacy key format, sorted by Vertex/EdgeTemporalPropertyKeyComparator(JNI upcall for every comparison).
+//      1: order-preserving key format, sorted by rocksdb native bytewise comparator.
+//      2: property names in keys are replaced by tokens of TemporalPropertyTokenStore.
+//      3: all stores are column families of one database(DATA_STORE), named by the store.
+//      4: values of temporal property stores are encoded by ValueCodec instead of FST.
+
+// Before format 3, every store is a standalone database in the directory named by the store.
+// Such a store is copied into its column family, then its version is recorded, then the directory is deleted,
+// the original data is never touched until the copy is complete, thus an interrupted upgrade is simply redone.
+// From format 3, values are rewritten in place, the last rewritten key is committed with every batch into UPGRADE_STORE,
+// thus an interrupted upgrade resumes after it instead of decoding rewritten values as FST again.
+public class StoreUpgrader {
+
+    private static final Log log = LogFactory.getLog(StoreUpgrader.class);
+
+    public static final int FORMAT_VERSION = 4;
+
+    static final String FORMAT_FILE = "tgraph-format";
+    static final String CHUNK_INTERVAL_SUFFIX = ".chunk-interval";
+    static final String TIMESTAMP_ORDER_SUFFIX = ".timestamp-order";
+    static final String ROLLUP_LEVELS_SUFFIX = ".levels";
+    static final String CHANGE_INDEX_SUFFIX = ".enabled";
+
+    // directory of the RocksInstance shared by all stores below.
+    public static final String DATA_STORE = "tp-data";
+
+    // column families, each one was a standalone database in the directory with the same name before format 3.
+    public static final String VERTEX_STORE = "vertex-tp-data";
+    public static final String EDGE_STORE = "edge-tp-data";
+    // redo logs keep temporal property keys too.
+    public static final String LOG_STORE = "tp-redo-logs";
+    // not versioned, created by format 2.
+    public static final String TOKEN_STORE = "tp-tokens";
+    // not versioned, no key format inside.
+    public static final String ACTIVE_TXN_STORE = "active-txn-table";
+    // not versioned, summaries of temporal property stores(derived data), dropped instead of upgraded.
+    public static final String VERTEX_ROLLUP_STORE = "vertex-tp-rollup";
+    public static final String EDGE_ROLLUP_STORE = "edge-tp-rollup";
+    // not versioned, change indexes of temporal property stores(derived data), rebuilt instead of upgraded.
+    public static final String VERTEX_CHANGE_STORE = "vertex-tp-change";
+    public static final String EDGE_CHANGE_STORE = "edge-tp-change";
+    // not versioned, latest points of temporal property stores(derived data), rebuilt instead of upgraded.
+    public static final String VERTEX_LATEST_STORE = "vertex-tp-latest";
+    public static final String EDGE_LATEST_STORE = "edge-tp-latest";
+    // progress of in-place upgrades, store name -> last rewritten key.
+    public static final String UPGRADE_STORE = "tp-upgrade";
+
+    // column family -> length of its fixed length prefix extractor, temporal stores are read by (entity, property) prefix.
+    public static final Map<String, Integer> COLUMN_FAMILIES = new LinkedHashMap<>() {
+        {
+            put(VERTEX_STORE, VertexTemporalPropertyKeyPrefix.LENGTH);
+            put(EDGE_STORE, EdgeTemporalPropertyKeyPrefix.LENGTH);
+            put(LOG_STORE, 0);
+            put(TOKEN_STORE, 0);
+            put(ACTIVE_TXN_STORE, 0);
+            put(VERTEX_ROLLUP_STORE, VertexTemporalPropertyKeyPrefix.LENGTH);
+            put(EDGE_ROLLUP_STORE, EdgeTemporalPropertyKeyPrefix.LENGTH);
+            // entries are read by time range, not by prefix.
+            put(VERTEX_CHANGE_STORE, 0);
+            put(EDGE_CHANGE_STORE, 0);
+            // records are read by exact key, thus by whole key filters.
+            put(VERTEX_LATEST_STORE, 0);
+            put(EDGE_LATEST_STORE, 0);
+            put(UPGRADE_STORE, 0);
+        }
+    };
+
+    static final int UPGRADE_BATCH_SIZE = 10_000;
+
+    public static void upgrade(GraphSpaceID graph, RocksInstance instance) {
+        Path root = Paths.get(graph.getDatabasePath());
+        // unversioned stores are just moved, tokens must be moved before they are used below.
+        for (var store : List.of(ACTIVE_TXN_STORE, TOKEN_STORE)) {
+            var dir = root.resolve(store);
+            if (Files.exists(dir.resolve("CURRENT"))) {
+                log.info(String.format("Move %s of graph %s into column family.", store, graph.getGraphName()));
+                rewrite(graph, dir, null, UnaryOperator.identity(), new RocksEngine(instance, store));
+            }
+            deleteIfExists(dir);
+        }
+        Properties versions = loadVersions(root);
+        TemporalPropertyTokenStore tokens = null;
+        var progress = new RocksEngine(instance, UPGRADE_STORE);
+        for (var store : List.of(VERTEX_STORE, EDGE_STORE, LOG_STORE)) {
+            int version = storeVersion(root, store, versions);
+            Preconditions.checkState(version <= FORMAT_VERSION, "store %s is written by a newer TGraph, format version %s.", store, version);
+            if (version < FORMAT_VERSION) {
+                log.info(String.format("Upgrade %s of graph %s from format version %d to %d.", store, graph.getGraphName(), version, FORMAT_VERSION));
+                if (tokens == null) {
+                    // tokens created by an interrupted upgrade are kept, the same name always gets the same token.
+                    tokens = new TemporalPropertyTokenStore(graph, new RocksEngine(instance, TOKEN_STORE));
+                }
+                upgradeStore(graph, root.resolve(store), store, version, tokens, new RocksEngine(instance, store), progress);
+            }
+            versions.setProperty(store, String.valueOf(FORMAT_VERSION));
+            saveVersions(root, versions);
+            // progress is useless once the version is recorded.
+            progress.remove(store.getBytes(StandardCharsets.UTF_8));
+            // the standalone database is useless once the version is recorded.
+            deleteIfExists(root.resolve(store));
+        }
+    }
+
+    // The chunk interval of a temporal property store(0 means point mode), recorded in FORMAT_FILE.
+    // An empty store takes the requested interval, a store with data but without recorded interval is in point mode.
+    // NOTE!: the interval of a store never changes, a different request is ignored.
+    public static long chunkInterval(GraphSpaceID graph, String store, KVEngine engine, long requested) {
+        Path root = Paths.get(graph.getDatabasePath());
+        Properties versions = loadVersions(root);
+        var property = store + CHUNK_INTERVAL_SUFFIX;
+        var recorded = versions.getProperty(property);
+        if (recorded == null) {
+            boolean empty;
+            try (var iter = engine.prefix(new byte[0], null)) {
+                empty = !iter.valid();
+            }
+            recorded = String.valueOf(empty ? requested : 0);
+            versions.setProperty(property, recorded);
+            saveVersions(root, versions);
+        }
+        long interval = Long.parseLong(recorded);
+        if (interval != requested) {
+            log.warn(String.format("%s of graph %s keeps chunk interval %d, requested %d is ignored.", store, graph.getGraphName(), interval, requested));
+        }
+        return interval;
+    }
+
+    // The timestamp order of keys of a temporal property store(see TemporalDescendingStore), recorded in FORMAT_FILE.
+    // An empty store takes the requested order, a store with data but without recorded order is ascending.
+    // NOTE!: the order of a store never changes, a different request is ignored.
+    public static boolean descendingTimestamps(GraphSpaceID graph, String store, KVEngine engine, boolean requested) {
+        Path root = Paths.get(graph.getDatabasePath());
+        Properties versions = loadVersions(root);
+        var property = store + TIMESTAMP_ORDER_SUFFIX;
+        var recorded = versions.getProperty(property);
+        if (recorded == null) {
+            boolean empty;
+            try (var iter = engine.prefix(new byte[0], null)) {
+                empty = !iter.valid();
+            }
+            recorded = empty && requested ? "descending" : "ascending";
+            versions.setProperty(property, recorded);
+            saveVersions(root, versions);
+        }
+        boolean descending = recorded.equals("descending");
+        if (descending != requested) {
+            log.warn(String.format("%s of graph %s keeps %s timestamps, requested order is ignored.", store, graph.getGraphName(), recorded));
+        }
+        return descending;
+    }
+
+    // The rollup levels of a rollup store, recorded in FORMAT_FILE.
+    // Summaries are derived data, thus requested levels are always taken, all summaries are dropped if they change.
+    public static long[] rollupLevels(GraphSpaceID graph, String store, KVEngine engine, long[] requested) {
+        Path root = Paths.get(graph.getDatabasePath());
+        Properties versions = loadVersions(root);
+        var property = store + ROLLUP_LEVELS_SUFFIX;
+        var recorded = versions.getProperty(property, "");
+        var levels = Arrays.stream(requested).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        if (!recorded.equals(levels)) {
+            log.info(String.format("Rollup levels of %s of graph %s change from [%s] to [%s], drop all summaries.", store, graph.getGraphName(), recorded, levels));
+            // record keys are prefix + level + bucket, all of them are before this one.
+            var end = new byte[COLUMN_FAMILIES.get(store) + 2 + Long.BYTES];
+            Arrays.fill(end, (byte) 0xff);
+            Preconditions.checkState(engine.removeRange(new byte[0], end), "drop summaries of %s failed.", store);
+            versions.setProperty(property, levels);
+            saveVersions(root, versions);
+        }
+        return requested;
+    }
+
+    // Whether the change index of a temporal property store is enabled, recorded in FORMAT_FILE.
+    // Entries are derived data, they are dropped when it changes, and rebuilt from the data by build if it is enabled.
+    // The record is saved after build, thus an interrupted build is simply redone.
+    public static void changeIndex(GraphSpaceID graph, String store, KVEngine engine, boolean requested, Runnable build) {
+        // entry keys are timestamp + (entity, property) prefix.
+        derivedStore(graph, store, engine, requested, build, "Change index", Long.BYTES + EdgeTemporalPropertyKeyPrefix.LENGTH);
+    }
+
+    // Whether latest records(see TemporalLatestStore) of a temporal property store are enabled, the same as changeIndex,
+    // records of a disabled store are not maintained, thus they are dropped and rebuilt once enabled again.
+    public static void latestRecords(GraphSpaceID graph, String store, KVEngine engine, boolean requested, Runnable build) {
+        // record keys are (entity, property) prefixes.
+        derivedStore(graph, store, engine, requested, build, "Latest records", EdgeTemporalPropertyKeyPrefix.LENGTH);
+    }
+
+    // keys of the derived store are at most keyLength bytes.
+    private static void derivedStore(GraphSpaceID graph, String store, KVEngine engine, boolean requested, Runnable build, String name, int keyLength) {
+        Path root = Paths.get(graph.getDatabasePath());
+        Properties versions = loadVersions(root);
+        var property = store + CHANGE_INDEX_SUFFIX;
+        boolean recorded = Boolean.parseBoolean(versions.getProperty(property, "false"));
+        if (recorded == requested) {
+            return;
+        }
+        log.info(String.format("%s of %s of graph %s is %s.", name, store, graph.getGraphName(), requested ? "enabled, rebuild it" : "disabled, drop it"));
+        // all keys are before this one.
+        var end = new byte[keyLength + 1];
+        Arrays.fill(end, (byte) 0xff);
+        Preconditions.checkState(engine.removeRange(new byte[0], end), "drop %s of %s failed.", name, store);
+        if (requested) {
+            build.run();
+        }
+        versions.setProperty(property, String.valueOf(requested));
+        saveVersions(root, versions);
+    }
+
+    private static int storeVersion(Path root, String store, Properties versions) {
+        var version = versions.getProperty(store);
+        if (version != null) {
+            return Integer.parseInt(version);
+        }
+        // a store without recorded version but with data is written by the legacy key format.
+        return Files.exists(root.resolve(store).resolve("CURRENT")) ? 0 : FORMAT_VERSION;
+    }
+
+    private static void upgradeStore(GraphSpaceID graph, Path dir, String store, int version, TemporalPropertyTokenStore tokens, KVEngine to, KVEngine progress) {
+        // store of format 3 is already in its column family, only values of temporal property stores change.
+        if (version == 3) {
+            if (!store.equals(LOG_STORE)) {
+                upgradeValues(graph, store, to, progress);
+            }
+            return;
+        }
+        // only format 0 is sorted by a custom comparator, keys of format 2 are already current.
+        switch (store) {
+            case VERTEX_STORE: {
+                var comparator = version == 0 ? new Comparator(new VertexTemporalPropertyKeyComparator(new ComparatorOptions())) : null;
+                rewrite(graph, dir, comparator, pr -> Pair.of(version == 2 ? pr.first() : VertexTemporalPropertyKey.fromLegacyBytes(pr.first(), version, tokens::getOrCreateId).toBytes(), upgradeValue(pr.second())), to);
+                break;
+            }
+            case EDGE_STORE: {
+                var comparator = version == 0 ? new Comparator(new EdgeTemporalPropertyKeyComparator(new ComparatorOptions())) : null;
+                rewrite(graph, dir, comparator, pr -> Pair.of(version == 2 ? pr.first() : EdgeTemporalPropertyKey.fromLegacyBytes(pr.first(), version, tokens::getOrCreateId).toBytes(), upgradeValue(pr.second())), to);
+                break;
+            }
+            default: {
+                // values inside redo logs are still FST, they are re-encoded when logs are applied.
+                if (version == 2) {
+                    rewrite(graph, dir, null, UnaryOperator.identity(), to);
+                    break;
+                }
+                // log store itself is bytewise, only keys inside redo logs should be re-encoded.
+                rewrite(graph, dir, null, pr -> {
+                    var legacy = (LogWriteBatch) Codec.decodeValue(pr.second());
+                    var batch = new LogWriteBatch();
+                    for (var entry : legacy.getLogs()) {
+                        batch.append(entry.upgradeLegacyKeys(version, tokens::getOrCreateId));
+                    }
+                    return Pair.of(pr.first(), Codec.encodeValue(batch));
+                }, to);
+            }
+        }
+    }
+
+    private static byte[] upgradeValue(byte[] legacy) {
+        return ValueCodec.encode(Codec.decodeValue(legacy));
+    }
+
+    // rewrite values of the column family store in place, resume from the progress of an interrupted upgrade.
+    static void upgradeValues(GraphSpaceID graph, String store, KVEngine engine, KVEngine progress) {
+        byte[] marker = store.getBytes(StandardCharsets.UTF_8);
+        byte[] last = progress.get(marker, null);
+        long count = 0;
+        try (var iter = engine.prefix(new byte[0], null)) {
+            if (last != null) {
+                log.info(String.format("Resume upgrade of %s, belongs to graph %s.", store, graph.getGraphName()));
+                iter.seek(last);
+                if (iter.valid() && Arrays.equals(iter.key(), last)) {
+                    iter.next();
+                }
+            }
+            List<Pair<byte[], byte[]>> batch = new ArrayList<>(UPGRADE_BATCH_SIZE);
+            while (iter.valid()) {
+                batch.add(Pair.of(iter.key(), upgradeValue(iter.value())));
+                if (batch.size() == UPGRADE_BATCH_SIZE) {
+                    count += commit(engine, batch, progress, marker);
+                }
+                iter.next();
+            }
+            count += commit(engine, batch, progress, marker);
+        }
+        Preconditions.checkState(engine.flush(), "flush upgraded store %s failed.", store);
+        log.info(String.format("Rewrite %d value(s) of %s succeed, belongs to graph %s.", count, store, graph.getGraphName()));
+    }
+
+    // copy the standalone database in dir into to, keys/values are rewritten by rewriter.
+    // NOTE!: writes are idempotent, copy again is fine.
+    private static void rewrite(GraphSpaceID graph, Path dir, Comparator legacyComparator, UnaryOperator<Pair<byte[], byte[]>> rewriter, KVEngine to) {
+        var from = new RocksEngine(StoreOptions.of(graph, dir.toString(), true, legacyComparator));
+        long count = 0;
+        try (var iter = from.prefix(new byte[0], null)) {
+            List<Pair<byte[], byte[]>> batch = new ArrayList<>(UPGRADE_BATCH_SIZE);
+            while (iter.valid()) {
+                batch.add(rewriter.apply(Pair.of(iter.key(), iter.value())));
+                if (batch.size() == UPGRADE_BATCH_SIZE) {
+                    count += commit(to, batch);
+                }
+                iter.next();
+            }
+            count += commit(to, batch);
+        }
+        Preconditions.checkState(to.flush(), "flush upgraded store %s failed.", to.getRoot());
+        from.stop();
+        log.info(String.format("Rewrite %d key(s) of %s into %s succeed, belongs to graph %s.", count, dir, to.getRoot(), graph.getGraphName()));
+    }
+
+    private static int commit(KVEngine to, List<Pair<byte[], byte[]>> batch) {
+        return commit(to, batch, null, null);
+    }
+
+    // progress(if any) records the last key of batch in the same commit.
+    private static int commit(KVEngine to, List<Pair<byte[], byte[]>> batch, KVEngine progress, byte[] marker) {
+        int size = batch.size();
+        if (size == 0) {
+            return 0;
+        }
+        try (var wb = to.startBatchWrite()) {
+            for (var pr : batch) {
+                wb.put(pr.first(), pr.second());
+            }
+            if (progress != null) {
+                try (var pwb = progress.startBatchWrite(wb)) {
+                    Preconditions.checkState(pwb.sharedWith(wb), "upgrade progress should be committed with the store.");
+                    pwb.put(marker, batch.get(size - 1).first());
+                }
+            }
+            Preconditions.checkState(to.commitBatchWrite(wb, false, true, true), "write upgraded store failed.");
+        }
+        batch.clear();
+        return size;
+    }
+
+    private static Properties loadVersions(Path root) {
+        Properties versions = new Properties();
+        var file = root.resolve(FORMAT_FILE);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                versions.load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return versions;
+    }
+
+    private static void saveVersions(Path root, Properties versions) {
+        try {
+            Files.createDirectories(root);
+            // write then rename, the format file is always complete.
+            var tmp = root.resolve(FORMAT_FILE + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                versions.store(out, "TGraph store format versions, do not edit.");
+            }
+            Files.move(tmp, root.resolve(FORMAT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteIfExists(Path dir) {
+        if (Files.exists(dir)) {
+            deleteDirectory(dir);
+        }
+    }
+
+    private static void deleteDirectory(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(java.util.Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -22,4 +22,41 @@ public class TGraphConfig {
     // temporal property
     public static String TEMPORAL_PROPERTY_PREFIX = "t_";
     public static byte TEMPORAL_PROPERTY_VALUE_PLACEHOLDER = (byte) 0xff;
+    // chunk mode of temporal property stores, points of a temporal property in one interval are packed into one key,
+    // e.g. 3_600_000 packs one hour, 0 means one key per point.
+    // time unit: milliseconds
+    // NOTE!: only used when the store is created, an existing store keeps its own interval(see StoreUpgrader.chunkInterval).
+    public static long TEMPORAL_PROPERTY_CHUNK_INTERVAL = 0;
+    // keys of temporal property stores are stored with descending timestamps, thus the latest point is the first key of
+    // its temporal property and point reads seek forward(see TemporalDescendingStore), only in point mode.
+    // NOTE!: only used when the store is created, an existing store keeps its own order(see StoreUpgrader.descendingTimestamps).
+    public static boolean TEMPORAL_PROPERTY_DESCENDING_TIMESTAMP = false;
+    // summaries(count, sum, min, max) of temporal properties in multi-resolution buckets, thus long range aggregates
+    // read a few summaries instead of every point, e.g. {60_000, 3_600_000, 86_400_000} keeps minute, hour and day ones.
+    // Each level should be a multiple of the previous one, empty means no summary.
+    // time unit: milliseconds
+    // NOTE!: summaries are rebuilt when levels change(see StoreUpgrader.rollupLevels).
+    public static long[] TEMPORAL_PROPERTY_ROLLUP_LEVELS = {};
+    // index points of temporal properties by time, thus points written in a time range of the whole graph are found
+    // without a scan of every entity(see Vertex/EdgeTemporalPropertyStore.changes), and so are points removed until they are
+    // purged(see removals and purgeRemovals), it costs one more key per point.
+    // NOTE!: the index is rebuilt from the data when it is enabled, and dropped when it is disabled(see StoreUpgrader.changeIndex).
+    public static boolean TEMPORAL_PROPERTY_CHANGE_INDEX = false;
+    // record the latest point of every temporal property under an exact key, thus reads of the current value are plain
+    // gets served by bloom filters and the row cache, even after a restart(see TemporalLatestStore), it costs one more
+    // key per temporal property and a read before the first write of a temporal property in a batch.
+    // NOTE!: records are rebuilt from the data when they are enabled, and dropped when they are disabled(see StoreUpgrader.latestRecords).
+    public static boolean TEMPORAL_PROPERTY_LATEST_RECORDS = false;
+    // the latest point of at most so many temporal properties(per vertex/edge store) are kept in memory,
+    // thus reads of the current value skip the store(see TemporalLatestCache), 0 means no cache.
+    // Size it by TGraphDatabase.getLatestCacheStats.
+    public static long TEMPORAL_PROPERTY_LATEST_CACHE_SIZE = 0;
+    // recent points of hot temporal properties are kept off-heap in at most so many bytes(per vertex/edge store),
+    // thus range reads of a recent window skip the store(see TemporalSeriesCache), 0 means no cache.
+    // Size it by TGraphDatabase.getSeriesCacheStats.
+    public static long TEMPORAL_PROPERTY_SERIES_CACHE_MEMORY = 0;
+
+    // Only range reads starting at most so many milliseconds before the latest point of a temporal property are cached,
+    // older starts read the store. Long.MAX_VALUE means no limit.
+    public static long TEMPORAL_PROPERTY_SERIES_CACHE_HORIZON = 60 * 60 * 1000;
 }
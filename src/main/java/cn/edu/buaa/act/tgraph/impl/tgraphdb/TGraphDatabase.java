@@ -2,17 +2,29 @@ package cn.edu.buaa.act.tgraph.impl.tgraphdb;
 
 import cn.edu.buaa.act.tgraph.api.tgraphdb.TGraphDatabaseService;
 import cn.edu.buaa.act.tgraph.api.tgraphdb.Transaction;
+import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
+import cn.edu.buaa.act.tgraph.kvstore.RocksInstance;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.neo4j.exceptions.KernelException;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.api.procedure.GlobalProcedures;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyStore;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyTokenStore;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyStoreOptions;
 import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyStore;
+import cn.edu.buaa.act.tgraph.txn.ActiveTransactionTable;
+import cn.edu.buaa.act.tgraph.txn.LogStore;
 import cn.edu.buaa.act.tgraph.txn.TransactionManager;
+import com.google.common.cache.CacheStats;
 
 
 // TGraphDatabase:
-//      Store: hold GraphStore(Neo4j), VertexTemporalPropertyStore, EdgeTemporalPropertyStore
+//      Store: hold GraphStore(Neo4j), VertexTemporalPropertyStore, EdgeTemporalPropertyStore, TemporalPropertyTokenStore
 //      Transaction: TransactionManager
+// All temporal stores, redo logs and active transaction table are column families of one RocksInstance,
+// thus a transaction touching both vertices and edges is written atomically with a single fsync.
 
 // Note!: You should get TGraphDatabase through DatabaseManager not call Constructor directly.
 
@@ -25,9 +37,13 @@ public class TGraphDatabase implements TGraphDatabaseService {
     // graph store
     private final GraphDatabaseService graph;
 
+    // rocksdb shared by all stores below
+    private final RocksInstance instance;
     // entity temporal store
     private final VertexTemporalPropertyStore vertex;
     private final EdgeTemporalPropertyStore edge;
+    // temporal property name -> token
+    private final TemporalPropertyTokenStore tokens;
 
     // transaction
     private final TransactionManager txnManager;
@@ -39,13 +55,102 @@ public class TGraphDatabase implements TGraphDatabaseService {
 
         // graph identifier.
         this.graph = graph;
-        this.vertex = new VertexTemporalPropertyStore(graphSpaceID, graphSpaceID.getDatabasePath() + "/vertex-tp-data", false);
-        this.edge = new EdgeTemporalPropertyStore(graphSpaceID, graphSpaceID.getDatabasePath() + "/edge-tp-data", false);
-        this.txnManager = new TransactionManager(graphSpaceID, graph, this.vertex, this.edge);
+        this.instance = new RocksInstance(graphSpaceID, graphSpaceID.getDatabasePath() + "/" + StoreUpgrader.DATA_STORE, StoreUpgrader.COLUMN_FAMILIES);
+        // stores written by an older TGraph should be upgraded before we open them.
+        StoreUpgrader.upgrade(graphSpaceID, instance);
+        this.tokens = new TemporalPropertyTokenStore(graphSpaceID, new RocksEngine(instance, StoreUpgrader.TOKEN_STORE));
+        var vertexEngine = new RocksEngine(instance, StoreUpgrader.VERTEX_STORE);
+        var edgeEngine = new RocksEngine(instance, StoreUpgrader.EDGE_STORE);
+        // summaries share batches with their temporal property store, thus they are removed atomically with the data.
+        var vertexRollupEngine = new RocksEngine(instance, StoreUpgrader.VERTEX_ROLLUP_STORE);
+        var edgeRollupEngine = new RocksEngine(instance, StoreUpgrader.EDGE_ROLLUP_STORE);
+        // so do change indexes, they are opened even if disabled, thus entries are dropped.
+        var vertexChangeEngine = new RocksEngine(instance, StoreUpgrader.VERTEX_CHANGE_STORE);
+        var edgeChangeEngine = new RocksEngine(instance, StoreUpgrader.EDGE_CHANGE_STORE);
+        boolean changeIndex = TGraphConfig.TEMPORAL_PROPERTY_CHANGE_INDEX;
+        // so do latest records.
+        var vertexLatestEngine = new RocksEngine(instance, StoreUpgrader.VERTEX_LATEST_STORE);
+        var edgeLatestEngine = new RocksEngine(instance, StoreUpgrader.EDGE_LATEST_STORE);
+        boolean latestRecords = TGraphConfig.TEMPORAL_PROPERTY_LATEST_RECORDS;
+        // descending timestamps are only supported in point mode, thus a new store in chunk mode stays ascending.
+        long vertexChunkInterval = StoreUpgrader.chunkInterval(graphSpaceID, StoreUpgrader.VERTEX_STORE, vertexEngine, TGraphConfig.TEMPORAL_PROPERTY_CHUNK_INTERVAL);
+        long edgeChunkInterval = StoreUpgrader.chunkInterval(graphSpaceID, StoreUpgrader.EDGE_STORE, edgeEngine, TGraphConfig.TEMPORAL_PROPERTY_CHUNK_INTERVAL);
+        boolean vertexDescending = StoreUpgrader.descendingTimestamps(graphSpaceID, StoreUpgrader.VERTEX_STORE, vertexEngine,
+                TGraphConfig.TEMPORAL_PROPERTY_DESCENDING_TIMESTAMP && vertexChunkInterval == 0);
+        boolean edgeDescending = StoreUpgrader.descendingTimestamps(graphSpaceID, StoreUpgrader.EDGE_STORE, edgeEngine,
+                TGraphConfig.TEMPORAL_PROPERTY_DESCENDING_TIMESTAMP && edgeChunkInterval == 0);
+        var vertexOptions = TemporalPropertyStoreOptions.of()
+                .setChunkInterval(vertexChunkInterval)
+                .setRollups(vertexRollupEngine, StoreUpgrader.rollupLevels(graphSpaceID, StoreUpgrader.VERTEX_ROLLUP_STORE, vertexRollupEngine, TGraphConfig.TEMPORAL_PROPERTY_ROLLUP_LEVELS))
+                .setChangeStore(changeIndex ? vertexChangeEngine : null)
+                .setLatestCacheSize(TGraphConfig.TEMPORAL_PROPERTY_LATEST_CACHE_SIZE)
+                .setSeriesCacheMemory(TGraphConfig.TEMPORAL_PROPERTY_SERIES_CACHE_MEMORY)
+                .setSeriesCacheHorizon(TGraphConfig.TEMPORAL_PROPERTY_SERIES_CACHE_HORIZON)
+                .setDescendingTimestamps(vertexDescending)
+                .setLatestStore(latestRecords ? vertexLatestEngine : null);
+        var edgeOptions = TemporalPropertyStoreOptions.of()
+                .setChunkInterval(edgeChunkInterval)
+                .setRollups(edgeRollupEngine, StoreUpgrader.rollupLevels(graphSpaceID, StoreUpgrader.EDGE_ROLLUP_STORE, edgeRollupEngine, TGraphConfig.TEMPORAL_PROPERTY_ROLLUP_LEVELS))
+                .setChangeStore(changeIndex ? edgeChangeEngine : null)
+                .setLatestCacheSize(TGraphConfig.TEMPORAL_PROPERTY_LATEST_CACHE_SIZE)
+                .setSeriesCacheMemory(TGraphConfig.TEMPORAL_PROPERTY_SERIES_CACHE_MEMORY)
+                .setSeriesCacheHorizon(TGraphConfig.TEMPORAL_PROPERTY_SERIES_CACHE_HORIZON)
+                .setDescendingTimestamps(edgeDescending)
+                .setLatestStore(latestRecords ? edgeLatestEngine : null);
+        this.vertex = new VertexTemporalPropertyStore(graphSpaceID, vertexEngine, vertexOptions);
+        this.edge = new EdgeTemporalPropertyStore(graphSpaceID, edgeEngine, edgeOptions);
+        // before recovery, redo logs replayed by it are indexed by their batches.
+        StoreUpgrader.changeIndex(graphSpaceID, StoreUpgrader.VERTEX_CHANGE_STORE, vertexChangeEngine, changeIndex, this.vertex::rebuildChangeIndex);
+        StoreUpgrader.changeIndex(graphSpaceID, StoreUpgrader.EDGE_CHANGE_STORE, edgeChangeEngine, changeIndex, this.edge::rebuildChangeIndex);
+        StoreUpgrader.latestRecords(graphSpaceID, StoreUpgrader.VERTEX_LATEST_STORE, vertexLatestEngine, latestRecords, this.vertex::rebuildLatestRecords);
+        StoreUpgrader.latestRecords(graphSpaceID, StoreUpgrader.EDGE_LATEST_STORE, edgeLatestEngine, latestRecords, this.edge::rebuildLatestRecords);
+        var logStore = new LogStore(graphSpaceID, new RocksEngine(instance, StoreUpgrader.LOG_STORE));
+        var activeTxnTable = new ActiveTransactionTable(new RocksEngine(instance, StoreUpgrader.ACTIVE_TXN_STORE));
+        this.txnManager = new TransactionManager(graph, this.vertex, this.edge, this.tokens, logStore, activeTxnTable);
         // start recovery
         this.txnManager.recover();
         // after recovery, start txn manager background task and purge task
         this.txnManager.start();
+        registerFunctions();
+    }
+
+    // register TemporalFunctions into neo4j dbms of this graph, thus Cypher users can aggregate temporal properties.
+    private void registerFunctions() {
+        if (!(graph instanceof GraphDatabaseAPI)) {
+            log.warn(String.format("graph %s does not support functions, temporal functions are not registered.", id.getGraphName()));
+            return;
+        }
+        var procedures = ((GraphDatabaseAPI) graph).getDependencyResolver().resolveDependency(GlobalProcedures.class);
+        // every TGraphDatabase has its own neo4j dbms, thus the component is this graph.
+        procedures.registerComponent(TGraphDatabase.class, ctx -> this, true);
+        try {
+            procedures.registerFunction(TemporalFunctions.class);
+        } catch (KernelException e) {
+            e.printStackTrace();
+            log.error(String.format("register temporal functions of %s failed.", id.getGraphName()));
+        }
+    }
+
+    VertexTemporalPropertyStore getVertexStore() {
+        return vertex;
+    }
+
+    EdgeTemporalPropertyStore getEdgeStore() {
+        return edge;
+    }
+
+    TemporalPropertyTokenStore getTokenStore() {
+        return tokens;
+    }
+
+    // hits, misses and evictions of the latest value caches of both vertex and edge stores.
+    public CacheStats getLatestCacheStats() {
+        return vertex.getLatestCacheStats().plus(edge.getLatestCacheStats());
+    }
+
+    // hits, misses and evictions of range reads served by the series caches of both vertex and edge stores.
+    public CacheStats getSeriesCacheStats() {
+        return vertex.getSeriesCacheStats().plus(edge.getSeriesCacheStats());
     }
 
     @Override
@@ -67,8 +172,20 @@ public class TGraphDatabase implements TGraphDatabaseService {
     public void shutdown() {
         try {
             txnManager.close();
+            var stats = getLatestCacheStats();
+            if (stats.requestCount() > 0) {
+                log.info(String.format("Latest value cache of graph %s: %s.", id.getGraphName(), stats));
+            }
+            var seriesStats = getSeriesCacheStats();
+            if (seriesStats.requestCount() > 0) {
+                log.info(String.format("Series cache of graph %s: %s, %d bytes held.", id.getGraphName(), seriesStats,
+                        vertex.getSeriesCacheMemory() + edge.getSeriesCacheMemory()));
+            }
             vertex.stop();
             edge.stop();
+            tokens.stop();
+            // column families are closed with the instance.
+            instance.stop();
         } catch (InterruptedException e) {
             log.error("tg close failed.");
             e.printStackTrace();
@@ -80,5 +197,7 @@ public class TGraphDatabase implements TGraphDatabaseService {
         txnManager.drop();
         vertex.drop();
         edge.drop();
+        tokens.drop();
+        instance.drop();
     }
 }
@@ -0,0 +1,60 @@
+package cn.edu.buaa.act.tgraph.impl.tgraphdb;
+
+import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKey;
+import cn.edu.buaa.act.tgraph.property.TemporalAggregation;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyTokenStore;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKey;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.UserFunction;
+
+// TemporalFunctions exposes temporal aggregation to Cypher, e.g.
+//      MATCH (r:Road {name: 'r1'}) RETURN tgraph.nodeAggregate(r, 'speed', 0, 86400000, 'AVG')
+// Functions are registered into the neo4j dbms of every TGraphDatabase, see TGraphDatabase.registerFunctions.
+// Time unit: milliseconds, aggregation: name of TemporalAggregation.
+
+// NOTE!: functions read committed temporal property values without TGraph locks,
+// thus writes of running TGraph transactions are not seen.
+public class TemporalFunctions {
+
+    @Context
+    public TGraphDatabase tgraph;
+
+    @UserFunction("tgraph.nodeAggregate")
+    @Description("Aggregates temporal property values of a node in time range [start, end).")
+    public Object nodeAggregate(@Name("node") Node node, @Name("key") String key, @Name("start") long start,
+                                @Name("end") long end, @Name("aggregation") String aggregation) {
+        int tp = token(key, start, end);
+        if (node == null || tp == TemporalPropertyTokenStore.NO_TOKEN) {
+            return null;
+        }
+        long id = node.getId();
+        return tgraph.getVertexStore().aggregate(VertexTemporalPropertyKey.of(id, tp, start),
+                VertexTemporalPropertyKey.of(id, tp, end), TemporalAggregation.valueOf(aggregation));
+    }
+
+    @UserFunction("tgraph.relationshipAggregate")
+    @Description("Aggregates temporal property values of a relationship in time range [start, end).")
+    public Object relationshipAggregate(@Name("relationship") Relationship relationship, @Name("key") String key,
+                                        @Name("start") long start, @Name("end") long end, @Name("aggregation") String aggregation) {
+        int tp = token(key, start, end);
+        if (relationship == null || tp == TemporalPropertyTokenStore.NO_TOKEN) {
+            return null;
+        }
+        long startId = relationship.getStartNodeId();
+        long endId = relationship.getEndNodeId();
+        return tgraph.getEdgeStore().aggregate(EdgeTemporalPropertyKey.of(startId, endId, tp, start),
+                EdgeTemporalPropertyKey.of(startId, endId, tp, end), TemporalAggregation.valueOf(aggregation));
+    }
+
+    // NO_TOKEN if the temporal property has never been written, thus there is nothing to aggregate.
+    private int token(String key, long start, long end) {
+        if (start >= end) {
+            throw new IllegalArgumentException("start should be smaller than end.");
+        }
+        return tgraph.getTokenStore().getId(key);
+    }
+}
@@ -6,13 +6,16 @@ import cn.edu.buaa.act.tgraph.api.tgraphdb.TemporalPropertyExistsException;
 import cn.edu.buaa.act.tgraph.api.tgraphdb.TemporalPropertyNotExistsException;
 import com.google.common.base.Preconditions;
 import cn.edu.buaa.act.tgraph.common.EntityUtil;
-import cn.edu.buaa.act.tgraph.common.Pair;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Lock;
 import org.neo4j.graphdb.RelationshipType;
+import cn.edu.buaa.act.tgraph.property.TemporalAggregation;
+import cn.edu.buaa.act.tgraph.property.TemporalFill;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyIterator;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyTokenStore;
 import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKey;
 import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKeyPrefix;
 import cn.edu.buaa.act.tgraph.txn.EntityExecutorContext;
@@ -67,7 +70,7 @@ public class Vertex implements Node {
         return exeCtx.getGraphTxn().acquireWriteLock(neoVertex);
     }
 
-    private void doAcquireSX(String tp, boolean share) throws TransactionAbortException {
+    private void doAcquireSX(int tp, boolean share) throws TransactionAbortException {
         var lm = exeCtx.getTxnManager().getLockManager();
         var txn = exeCtx.getTxnManager().getTransaction(exeCtx.getTxnID());
         Preconditions.checkNotNull(txn, "All operations must be surrounded by transaction.");
@@ -90,11 +93,23 @@ public class Vertex implements Node {
         }
     }
 
-    private void acquireS(String tp) throws TransactionAbortException {
+    // temporal property name -> token of writes, created if missing, refer TemporalPropertyTokenStore.
+    // NOTE!: resolve the token once per operation, locks and keys all use it.
+    private int token(String key) {
+        return exeCtx.getTxnManager().getTokenStore().getOrCreateId(key);
+    }
+
+    // NO_TOKEN if the temporal property has never been written, i.e. it has no value,
+    // thus reads never create a token(a synced write).
+    private int readToken(String key) {
+        return exeCtx.getTxnManager().getTokenStore().getId(key);
+    }
+
+    private void acquireS(int tp) throws TransactionAbortException {
         doAcquireSX(tp, true);
     }
 
-    private void acquireX(String tp) throws TransactionAbortException {
+    private void acquireX(int tp) throws TransactionAbortException {
         doAcquireSX(tp, false);
     }
 
@@ -157,6 +172,8 @@ public class Vertex implements Node {
                 throw new TemporalPropertyExistsException();
             }
             neoVertex.setProperty(EntityUtil.temporalPropertyWrapper(key), TGraphConfig.TEMPORAL_PROPERTY_VALUE_PLACEHOLDER);
+            // allocate the token eagerly, thus later operations only look it up.
+            token(key);
         }
     }
 
@@ -169,8 +186,9 @@ public class Vertex implements Node {
             }
             neoVertex.removeProperty(EntityUtil.temporalPropertyWrapper(key));
             // we should remove all temporal value for consistency, thus x-lock is needed.
-            acquireX(key);
-            var prefix = VertexTemporalPropertyKeyPrefix.of(id, key);
+            int tp = token(key);
+            acquireX(tp);
+            var prefix = VertexTemporalPropertyKeyPrefix.of(id, tp);
             exeCtx.getLogWb().append(LogEntry.removeVertexPrefix(prefix));
             exeCtx.getVertexWb().removePrefix(prefix);
         } catch (TransactionAbortException e) {
@@ -194,8 +212,12 @@ public class Vertex implements Node {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireS(key);
-            return exeCtx.getVertex().get(VertexTemporalPropertyKey.of(id, key, timestamp.getTime()));
+            int tp = readToken(key);
+            if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+                return null;
+            }
+            acquireS(tp);
+            return exeCtx.getVertex().get(VertexTemporalPropertyKey.of(id, tp, timestamp.getTime()));
         } catch (TransactionAbortException e) {
             log.info(e.getInfo());
             throw e;
@@ -203,7 +225,7 @@ public class Vertex implements Node {
     }
 
     @Override
-    public List<Pair<Timestamp, Object>> getTemporalPropertyValue(String key, Timestamp start, Timestamp end) throws TransactionAbortException {
+    public TemporalPropertyIterator getTemporalPropertyValue(String key, Timestamp start, Timestamp end) throws TransactionAbortException {
         if (start.compareTo(end) >= 0) {
             throw new IllegalArgumentException();
         }
@@ -212,8 +234,56 @@ public class Vertex implements Node {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireS(key);
-            return exeCtx.getVertex().rangeGet(VertexTemporalPropertyKey.of(id, key, start.getTime()), VertexTemporalPropertyKey.of(id, key, end.getTime()));
+            int tp = readToken(key);
+            if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+                return TemporalPropertyIterator.empty();
+            }
+            acquireS(tp);
+            return exeCtx.getVertex().rangeGet(VertexTemporalPropertyKey.of(id, tp, start.getTime()), VertexTemporalPropertyKey.of(id, tp, end.getTime()));
+        } catch (TransactionAbortException e) {
+            log.info(e.getInfo());
+            throw e;
+        }
+    }
+
+    @Override
+    public Object aggregateTemporalPropertyValue(String key, Timestamp start, Timestamp end, TemporalAggregation aggregation) throws TransactionAbortException {
+        if (start.compareTo(end) >= 0) {
+            throw new IllegalArgumentException();
+        }
+        try (Lock ignored = acquireIS()) {
+            if (!tpExist(key)) {
+                log.warn(String.format("temporal property %s does not exist.", key));
+                throw new TemporalPropertyNotExistsException();
+            }
+            int tp = readToken(key);
+            if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+                return aggregation.emptyAggregate();
+            }
+            acquireS(tp);
+            return exeCtx.getVertex().aggregate(VertexTemporalPropertyKey.of(id, tp, start.getTime()), VertexTemporalPropertyKey.of(id, tp, end.getTime()), aggregation);
+        } catch (TransactionAbortException e) {
+            log.info(e.getInfo());
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Object> resampleTemporalPropertyValue(String key, Timestamp start, Timestamp end, long step, TemporalFill fill, TemporalAggregation aggregation) throws TransactionAbortException {
+        if (start.compareTo(end) >= 0 || step <= 0) {
+            throw new IllegalArgumentException();
+        }
+        try (Lock ignored = acquireIS()) {
+            if (!tpExist(key)) {
+                log.warn(String.format("temporal property %s does not exist.", key));
+                throw new TemporalPropertyNotExistsException();
+            }
+            int tp = readToken(key);
+            if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+                return aggregation.emptyResample(start.getTime(), end.getTime(), step, fill);
+            }
+            acquireS(tp);
+            return exeCtx.getVertex().resample(VertexTemporalPropertyKey.of(id, tp, start.getTime()), VertexTemporalPropertyKey.of(id, tp, end.getTime()), step, fill, aggregation);
         } catch (TransactionAbortException e) {
             log.info(e.getInfo());
             throw e;
@@ -222,13 +292,14 @@ public class Vertex implements Node {
 
     @Override
     public void setTemporalPropertyValue(String key, Timestamp timestamp, Object value) throws TransactionAbortException {
-        var k = VertexTemporalPropertyKey.of(id, key, timestamp.getTime());
         try (Lock ignored = acquireIS()) {
             if (!tpExist(key)) {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
+            int tp = token(key);
+            acquireX(tp);
+            var k = VertexTemporalPropertyKey.of(id, tp, timestamp.getTime());
             exeCtx.getLogWb().append(LogEntry.putVertex(k, value));
             exeCtx.getVertexWb().put(k, value);
         } catch (TransactionAbortException e) {
@@ -242,18 +313,16 @@ public class Vertex implements Node {
         if (start.compareTo(end) >= 0) {
             throw new IllegalArgumentException();
         }
-        var st = VertexTemporalPropertyKey.of(id, key, start.getTime());
-        var en = VertexTemporalPropertyKey.of(id, key, end.getTime() - 1);
         try (Lock ignored = acquireIS()) {
             if (!tpExist(key)) {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
-            exeCtx.getLogWb().append(LogEntry.putVertex(st, value));
-            exeCtx.getLogWb().append(LogEntry.putVertex(en, value));
-            exeCtx.getVertexWb().put(st, value);
-            exeCtx.getVertexWb().put(en, value);
+            int tp = token(key);
+            acquireX(tp);
+            var st = VertexTemporalPropertyKey.of(id, tp, start.getTime());
+            exeCtx.getLogWb().append(LogEntry.putVertexInterval(st, end.getTime(), value));
+            exeCtx.getVertexWb().putInterval(st, end.getTime(), value);
         } catch (TransactionAbortException e) {
             log.info(e.getInfo());
             throw e;
@@ -263,13 +332,14 @@ public class Vertex implements Node {
 
     @Override
     public void removeTemporalPropertyValue(String key, Timestamp timestamp) throws TransactionAbortException {
-        var k = VertexTemporalPropertyKey.of(id, key, timestamp.getTime());
         try (Lock ignored = acquireIS()) {
             if (!tpExist(key)) {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
+            int tp = token(key);
+            acquireX(tp);
+            var k = VertexTemporalPropertyKey.of(id, tp, timestamp.getTime());
             exeCtx.getLogWb().append(LogEntry.removeVertex(k));
             exeCtx.getVertexWb().remove(k);
         } catch (TransactionAbortException e) {
@@ -283,14 +353,15 @@ public class Vertex implements Node {
         if (start.compareTo(end) >= 0) {
             throw new IllegalArgumentException();
         }
-        var st = VertexTemporalPropertyKey.of(id, key, start.getTime());
-        var en = VertexTemporalPropertyKey.of(id, key, end.getTime());
         try (Lock ignored = acquireIS()) {
             if (!tpExist(key)) {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
+            int tp = token(key);
+            acquireX(tp);
+            var st = VertexTemporalPropertyKey.of(id, tp, start.getTime());
+            var en = VertexTemporalPropertyKey.of(id, tp, end.getTime());
             exeCtx.getLogWb().append(LogEntry.removeVertexRange(st, en));
             exeCtx.getVertexWb().removeRange(st, en);
         } catch (TransactionAbortException e) {
@@ -306,8 +377,9 @@ public class Vertex implements Node {
                 log.warn(String.format("temporal property %s does not exist.", key));
                 throw new TemporalPropertyNotExistsException();
             }
-            acquireX(key);
-            var prefix = VertexTemporalPropertyKeyPrefix.of(id, key);
+            int tp = token(key);
+            acquireX(tp);
+            var prefix = VertexTemporalPropertyKeyPrefix.of(id, tp);
             exeCtx.getLogWb().append(LogEntry.removeVertexPrefix(prefix));
             exeCtx.getVertexWb().removePrefix(prefix);
         } catch (TransactionAbortException e) {
@@ -327,7 +399,8 @@ public class Vertex implements Node {
     public void delete() throws TransactionAbortException {
         try (Lock ignored = acquireIX()) {
             var tps = EntityUtil.temporalPropertyKesFilter(neoVertex.getPropertyKeys());
-            for (var tp : tps) {
+            for (var key : tps) {
+                int tp = token(key);
                 acquireX(tp);
                 var prefix = VertexTemporalPropertyKeyPrefix.of(id, tp);
                 exeCtx.getLogWb().append(LogEntry.removeVertexPrefix(prefix));
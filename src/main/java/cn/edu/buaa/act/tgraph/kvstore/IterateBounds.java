@@ -0,0 +1,58 @@
+package cn.edu.buaa.act.tgraph.kvstore;
+
+import org.rocksdb.ReadOptions;
+import org.rocksdb.Slice;
+import org.rocksdb.Snapshot;
+
+// ReadOptions with iterate bounds of one iterator, rocksdb stops at the bounds natively,
+// thus it never reads keys out of the range, range tombstones and SST files beyond the bounds are skipped too.
+
+// With a prefix extractor, an iterator inside one prefix uses prefix bloom filters to skip SST files,
+// an iterator across prefixes must be in total order mode, or it may miss keys.
+
+// NOTE!: bounds are referred by the native iterator, close it after the iterator.
+final class IterateBounds implements AutoCloseable {
+    private final ReadOptions readOptions = new ReadOptions();
+    private final Slice lower;
+    private final Slice upper;
+
+    // lower is inclusive, upper is exclusive, null means unbounded.
+    // withinPrefix: all keys to visit share the prefix of the prefix extractor.
+    IterateBounds(Object snapshot, byte[] lower, byte[] upper, boolean withinPrefix) {
+        if (snapshot != null) {
+            readOptions.setSnapshot((Snapshot) snapshot);
+        }
+        if (withinPrefix) {
+            readOptions.setPrefixSameAsStart(true);
+        } else {
+            readOptions.setTotalOrderSeek(true);
+        }
+        this.lower = lower == null ? null : new Slice(lower);
+        this.upper = upper == null ? null : new Slice(upper);
+        if (this.lower != null) {
+            readOptions.setIterateLowerBound(this.lower);
+        }
+        if (this.upper != null) {
+            readOptions.setIterateUpperBound(this.upper);
+        }
+    }
+
+    ReadOptions getReadOptions() {
+        return readOptions;
+    }
+
+    boolean hasUpperBound() {
+        return upper != null;
+    }
+
+    @Override
+    public void close() {
+        readOptions.close();
+        if (lower != null) {
+            lower.close();
+        }
+        if (upper != null) {
+            upper.close();
+        }
+    }
+}
@@ -23,6 +23,15 @@ public interface KVEngine {
      */
     WriteBatch startBatchWrite();
 
+    /**
+     * Start a WriteBatch sharing the underlying batch of parent if both engines are backed by
+     * the same database, thus writes to several stores are committed atomically by one commit.
+     * Otherwise, an independent WriteBatch is returned(check it by WriteBatch.sharedWith).
+     * @param parent WriteBatch started by another engine.
+     * @return a WriteBatch object to do batch operation.
+     */
+    WriteBatch startBatchWrite(WriteBatch parent);
+
 
     /**
      *
@@ -62,11 +71,34 @@ public interface KVEngine {
      * We need this because when we want to know the value in 9:00 am,
      * the effect is caused by operations less or equal 9:00 am.
      * @param key Key
+     * NOTE!: with a prefix extractor, the result is only defined if it shares the prefix with key, caller should check it.
      * @param snapshot read from this snapshot
      * @return Pair: first is prev_key, second is prev_value
      */
     Pair<byte[], byte[]> getForPrev(byte[] key, Object snapshot);
 
+    /**
+     * Get the value of the previous key less or equal key, which shares the first prefixLength bytes with key.
+     * Keys are compared in place, only the value is copied out.
+     * @param key Key
+     * @param prefixLength Length of the prefix should be matched.
+     * @param snapshot read from this snapshot
+     * @return prev_value, null if not found or the prefix does not match.
+     */
+    byte[] getForPrev(byte[] key, int prefixLength, Object snapshot);
+
+    /**
+     * Get the value of the next key greater or equal key, which shares the first prefixLength bytes with key.
+     * The same as getForPrev(key, prefixLength, snapshot) by a forward seek, e.g. for keys with descending timestamps.
+     * @param key Key
+     * @param prefixLength Length of the prefix should be matched.
+     * @param snapshot read from this snapshot
+     * @return next_value, null if not found or the prefix does not match.
+     */
+    byte[] getForNext(byte[] key, int prefixLength, Object snapshot);
+
+    // NOTE!: same as getForPrev, caller should check the prefix of every returned key.
+    // IllegalStateException is thrown if a read fails or the caller is interrupted(its interrupt flag is kept), never null.
     List<Pair<byte[], byte[]>> multiGetForPrev(List<byte[]> keys);
 
     /**
@@ -89,7 +121,7 @@ public interface KVEngine {
 
     /**
      * Get all results with 'prefix' as prefix.
-     * @param prefix The prefix of keys to iterate.
+     * @param prefix The prefix of keys to iterate, empty prefix iterates the whole store.
      * @param snapshot Snapshot from kv engine, null means no snapshot.
      * @return Iterator of keys starts with 'prefix'.
      */
@@ -154,6 +186,12 @@ public interface KVEngine {
      */
     boolean flush();
 
+    /**
+     * Memory owned by this store, caches shared with other stores are not included(see RocksResources).
+     * @return Approximate bytes of memtables and table readers(index/filter outside of block cache).
+     */
+    long getMemoryUsage();
+
     // NOTE!: only used in meta db.
     List<Pair<byte[], byte[]>> scan();
 
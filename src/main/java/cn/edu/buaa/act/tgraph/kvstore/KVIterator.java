@@ -17,6 +17,18 @@ public interface KVIterator extends AutoCloseable {
      */
     void prev();
 
+    /**
+     * Re-position this iterator at the first key greater or equal target, bounds are kept.
+     * @param target Target key
+     */
+    void seek(byte[] target);
+
+    /**
+     * Re-position this iterator at the last key less or equal target, bounds are kept.
+     * @param target Target key
+     */
+    void seekForPrev(byte[] target);
+
     /**
      *
      * @return Key
@@ -0,0 +1,198 @@
+package cn.edu.buaa.act.tgraph.kvstore;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.CompactRangeOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// RangeCompactor compacts key ranges removed by range tombstones(WriteBatch.removeRange, KVEngine.removeRange) of one database in background.
+// Range scans over a bulk deleted range(e.g. a removed temporal property) keep skipping its tombstones
+// until compaction drops them, and universal compaction of a cold store may not get there for hours.
+
+// Ranges of committed batches are merged per column family, then all of them are compacted in one run
+// rocksdb_range_compaction_delay seconds after the last run, thus a burst of deletes is compacted once.
+// Pending ranges of a column family are bounded, beyond MAX_PENDING_RANGES they collapse into their covering range.
+// Compaction I/O is throttled by the rate limiter of the database(see RocksEngineConfig.rocksdb_rate_limit).
+// NOTE!: ranges are merged in bytewise order, thus a database sorted by a custom comparator has no RangeCompactor.
+// NOTE!: close it before the database is closed, close waits for the running compaction.
+final class RangeCompactor implements AutoCloseable {
+
+    private static final Log log = LogFactory.getLog(RangeCompactor.class);
+
+    // shared by all databases of this process, compactions are run one by one.
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var t = new Thread(r, "rocks-range-compaction");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // a range [start, end) of a column family removed by a committed batch.
+    static final class Range {
+        private final ColumnFamilyHandle cf;
+        private final byte[] start;
+        private final byte[] end;
+
+        Range(ColumnFamilyHandle cf, byte[] start, byte[] end) {
+            this.cf = cf;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    // disjoint ranges kept per column family, more ranges collapse into one covering range.
+    static final int MAX_PENDING_RANGES = 64;
+
+    private final RocksDB db;
+    private final String name;
+    private final long delay;
+
+    // column family -> start -> end, ranges are disjoint.
+    private final Map<ColumnFamilyHandle, TreeMap<byte[], byte[]>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduled = null;
+    private boolean closed = false;
+
+    // held while compacting, thus close waits for the running compaction.
+    private final Object running = new Object();
+
+    // delay: seconds.
+    RangeCompactor(RocksDB db, String name, long delay) {
+        Preconditions.checkArgument(delay > 0, "range compaction delay should be positive.");
+        this.db = db;
+        this.name = name;
+        this.delay = delay;
+    }
+
+    static RangeCompactor of(RocksDB db, String name) {
+        return RocksEngineConfig.rocksdb_range_compaction_delay > 0 ? new RangeCompactor(db, name, RocksEngineConfig.rocksdb_range_compaction_delay) : null;
+    }
+
+    synchronized void add(List<Range> ranges) {
+        if (closed || ranges.isEmpty()) {
+            return;
+        }
+        for (var range : ranges) {
+            var merged = pending.computeIfAbsent(range.cf, k -> new TreeMap<>(Arrays::compareUnsigned));
+            merge(merged, range.start, range.end);
+            if (merged.size() > MAX_PENDING_RANGES) {
+                collapse(merged);
+            }
+        }
+        schedule();
+    }
+
+    // merge [start, end) with overlapping or adjacent ranges.
+    static void merge(TreeMap<byte[], byte[]> ranges, byte[] start, byte[] end) {
+        var floor = ranges.floorEntry(start);
+        if (floor != null && Arrays.compareUnsigned(floor.getValue(), start) >= 0) {
+            start = floor.getKey();
+            end = max(end, floor.getValue());
+        }
+        var next = ranges.ceilingEntry(start);
+        while (next != null && Arrays.compareUnsigned(next.getKey(), end) <= 0) {
+            end = max(end, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.higherEntry(start);
+        }
+        ranges.put(start, end);
+    }
+
+    // replace ranges by the one covering them, keys between them are compacted too.
+    static void collapse(TreeMap<byte[], byte[]> ranges) {
+        byte[] start = ranges.firstKey();
+        byte[] end = ranges.lastEntry().getValue();
+        ranges.clear();
+        ranges.put(start, end);
+    }
+
+    private static byte[] max(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b) >= 0 ? a : b;
+    }
+
+    private void schedule() {
+        if (scheduled == null && !closed && !pending.isEmpty()) {
+            scheduled = executor.schedule(this::compactPending, delay, TimeUnit.SECONDS);
+        }
+    }
+
+    // run by the executor, or by tests instead of waiting for the delay.
+    void compactPending() {
+        synchronized (running) {
+            Map<ColumnFamilyHandle, TreeMap<byte[], byte[]>> ranges;
+            synchronized (this) {
+                scheduled = null;
+                if (closed || pending.isEmpty()) {
+                    return;
+                }
+                ranges = new LinkedHashMap<>(pending);
+                pending.clear();
+            }
+            // writers are not blocked while compacting.
+            // NOTE!: non-exclusive, thus automatic compactions go on.
+            try (var opt = new CompactRangeOptions()) {
+                opt.setExclusiveManualCompaction(false);
+                for (var entry : ranges.entrySet()) {
+                    for (var range : entry.getValue().entrySet()) {
+                        if (isClosed()) {
+                            return;
+                        }
+                        compact(opt, entry.getKey(), range.getKey(), range.getValue());
+                    }
+                }
+            }
+        }
+        synchronized (this) {
+            schedule();
+        }
+    }
+
+    synchronized boolean isScheduled() {
+        return scheduled != null;
+    }
+
+    // pending ranges of cf, start -> end.
+    synchronized TreeMap<byte[], byte[]> pending(ColumnFamilyHandle cf) {
+        var ranges = pending.get(cf);
+        return ranges != null ? new TreeMap<>(ranges) : new TreeMap<>(Arrays::compareUnsigned);
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void compact(CompactRangeOptions opt, ColumnFamilyHandle cf, byte[] start, byte[] end) {
+        try {
+            db.compactRange(cf, start, end, opt);
+        } catch (RocksDBException e) {
+            e.printStackTrace();
+            log.error(String.format("compact removed range of %s failed.", name));
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            pending.clear();
+            if (scheduled != null) {
+                scheduled.cancel(false);
+                scheduled = null;
+            }
+        }
+        synchronized (running) {
+            log.info(String.format("Range compaction of %s stopped.", name));
+        }
+    }
+}
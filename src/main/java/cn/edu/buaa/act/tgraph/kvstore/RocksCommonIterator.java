@@ -22,6 +22,16 @@ public class RocksCommonIterator implements KVIterator {
         iter.prev();
     }
 
+    @Override
+    public void seek(byte[] target) {
+        iter.seek(target);
+    }
+
+    @Override
+    public void seekForPrev(byte[] target) {
+        iter.seekForPrev(target);
+    }
+
     @Override
     public byte[] key() {
         return iter.key();
@@ -1,6 +1,8 @@
 package cn.edu.buaa.act.tgraph.kvstore;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+import cn.edu.buaa.act.tgraph.common.Bytes;
 import cn.edu.buaa.act.tgraph.common.Pair;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
 import org.apache.commons.logging.Log;
@@ -8,11 +10,25 @@ import org.apache.commons.logging.LogFactory;
 import org.rocksdb.*;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class RocksEngine implements KVEngine {
 
@@ -22,6 +38,29 @@ public class RocksEngine implements KVEngine {
 
     private static final Log log = LogFactory.getLog(RocksEngine.class);
 
+    // shared by all engines, shards of large multiGetForPrev are swept on it.
+    // NOTE!: the caller sweeps the shard itself if the queue is full.
+    private static final ThreadPoolExecutor multiGetExecutor = newMultiGetExecutor();
+
+    private static ThreadPoolExecutor newMultiGetExecutor() {
+        int threads = Math.max(RocksEngineConfig.rocksdb_multiget_threads, 1);
+        var counter = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(threads * 4), r -> {
+            var t = new Thread(r, "rocks-multiget-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // shared by all engines, closes iterators kept by idle read contexts.
+    private static final ScheduledExecutorService iteratorReleaser = Executors.newSingleThreadScheduledExecutor(r -> {
+        var t = new Thread(r, "rocks-iterator-release");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final GraphSpaceID graph;
 
     private final String dataPath;
@@ -32,6 +71,159 @@ public class RocksEngine implements KVEngine {
 
     private final Comparator comparator;
 
+    // null if this engine attaches to a RocksInstance.
+    private final RocksResources resources;
+
+    // null if this engine owns its database.
+    private final RocksInstance instance;
+
+    // column family of this engine, the default column family if this engine owns its database.
+    private final ColumnFamilyHandle cf;
+
+    // length of the fixed length prefix extractor, 0 if none.
+    private final int prefixLength;
+
+    // compacts ranges removed by committed batches and removeRange, owned by the RocksInstance if attached,
+    // null if disabled, readonly or sorted by a custom comparator(ranges are merged in bytewise order).
+    private final RangeCompactor compactor;
+
+    // Native objects and direct buffers reused by point reads of one thread, thus point reads allocate nothing but the value.
+    // NOTE!: only touched by its own thread, except the iterator, which is also closed by releaseIdleIterators and stop.
+    private static final class ReadContext {
+        private static final int INIT_KEY_BUFFER_SIZE = 64;
+        private static final int INIT_VALUE_BUFFER_SIZE = 256;
+
+        private final ReadOptions readOptions = new ReadOptions();
+        // options of sweeps across prefixes, refer multiGetForPrev.
+        private final ReadOptions totalOrderOptions = new ReadOptions().setTotalOrderSeek(true);
+        private ByteBuffer key = ByteBuffer.allocateDirect(INIT_KEY_BUFFER_SIZE);
+        // key found by iterator.
+        private ByteBuffer found = ByteBuffer.allocateDirect(INIT_KEY_BUFFER_SIZE);
+        private ByteBuffer value = ByteBuffer.allocateDirect(INIT_VALUE_BUFFER_SIZE);
+
+        // iterator reused by reads without snapshot, it sees the database as of sequence.
+        // held by its own thread while reading, guards iter and sequence.
+        private final ReentrantLock lock = new ReentrantLock();
+        private RocksIterator iter = null;
+        private long sequence = -1;
+        // System.nanoTime() of the end of the last read with iter.
+        private volatile long lastUse = 0;
+
+        // NOTE!: reset it by readOptions(null) after read, the snapshot may be released.
+        ReadOptions readOptions(Object snapshot) {
+            return readOptions.setSnapshot((Snapshot) snapshot);
+        }
+
+        // NOTE!: reset it by totalOrderOptions(null) after read, the snapshot may be released.
+        ReadOptions totalOrderOptions(Object snapshot) {
+            return totalOrderOptions.setSnapshot((Snapshot) snapshot);
+        }
+
+        // Creating an iterator pins a SuperVersion and costs much more than a seek,
+        // thus the iterator is kept and only recreated after new writes.
+        // NOTE!: call release after read.
+        RocksIterator iterator(RocksDB db, ColumnFamilyHandle cf) {
+            lock.lock();
+            long latest = db.getLatestSequenceNumber();
+            if (iter == null || latest != sequence) {
+                closeIterator();
+                // sequence is read before the iterator is created, thus the iterator sees at least all writes before it.
+                iter = db.newIterator(cf, readOptions);
+                sequence = latest;
+            }
+            return iter;
+        }
+
+        void release() {
+            if (RocksEngineConfig.rocksdb_iterator_idle_time <= 0) {
+                closeIterator();
+            }
+            lastUse = System.nanoTime();
+            lock.unlock();
+        }
+
+        // The kept iterator pins its SuperVersion, i.e. memtables and sst files already dropped by flush and compaction,
+        // until the next read of its thread, which may never come, thus it is closed once it is idle for a while.
+        // NOTE!: a reading thread is never waited for, its iterator is just used.
+        void releaseIfIdle(long idleSince) {
+            if (lastUse - idleSince > 0 || !lock.tryLock()) {
+                return;
+            }
+            try {
+                closeIterator();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void closeIterator() {
+            if (iter != null) {
+                iter.close();
+                iter = null;
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closeIterator();
+            } finally {
+                lock.unlock();
+            }
+            readOptions.close();
+            totalOrderOptions.close();
+        }
+
+        ByteBuffer key(byte[] k) {
+            if (key.capacity() < k.length) {
+                key = ByteBuffer.allocateDirect(Integer.highestOneBit(k.length) << 1);
+            }
+            key.clear();
+            key.put(k).flip();
+            return key;
+        }
+
+        ByteBuffer found(int size) {
+            if (found.capacity() < size) {
+                found = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+            }
+            found.clear();
+            return found;
+        }
+
+        ByteBuffer value(int size) {
+            if (value.capacity() < size) {
+                value = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+            }
+            value.clear();
+            return value;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<ReadContext> readContexts = new ConcurrentLinkedQueue<>();
+
+    // null if iterators are not kept.
+    private final ScheduledFuture<?> releaser = scheduleReleaser();
+
+    private ScheduledFuture<?> scheduleReleaser() {
+        long idle = RocksEngineConfig.rocksdb_iterator_idle_time;
+        return idle > 0 ? iteratorReleaser.scheduleWithFixedDelay(this::releaseIdleIterators, idle, idle, TimeUnit.SECONDS) : null;
+    }
+
+    // NOTE!: contexts of dead threads are released here too.
+    private void releaseIdleIterators() {
+        long idleSince = System.nanoTime() - TimeUnit.SECONDS.toNanos(RocksEngineConfig.rocksdb_iterator_idle_time);
+        for (var ctx : readContexts) {
+            ctx.releaseIfIdle(idleSince);
+        }
+    }
+
+    private final ThreadLocal<ReadContext> readContext = ThreadLocal.withInitial(() -> {
+        var ctx = new ReadContext();
+        readContexts.add(ctx);
+        return ctx;
+    });
+
 
     public RocksEngine(StoreOptions storeOptions) {
         Preconditions.checkNotNull(storeOptions.getGraph());
@@ -56,7 +248,9 @@ public class RocksEngine implements KVEngine {
         }
         this.graph = storeOptions.getGraph();
         this.dataPath = storeOptions.getDataPath();
-        this.opt = RocksEngineConfig.InitRocksdbOptions();
+        this.resources = Preconditions.checkNotNull(storeOptions.getResources());
+        this.prefixLength = storeOptions.getPrefixLength();
+        this.opt = RocksEngineConfig.InitRocksdbOptions(resources, prefixLength);
         if (opt == null) {
             log.error("Init Rocksdb Options Failed.");
             System.exit(-1);
@@ -83,12 +277,49 @@ public class RocksEngine implements KVEngine {
             }
         }
         Preconditions.checkNotNull(db);
+        resources.register(db);
+        this.instance = null;
+        this.cf = db.getDefaultColumnFamily();
+        this.compactor = storeOptions.isReadonly() || comparator != null ? null : RangeCompactor.of(db, graph.getGraphName());
         log.info(String.format("Construct RocksEngine succeed, belongs to graph %s.", graph.getGraphName()));
     }
 
+    // Attach to a column family of a shared database.
+    // NOTE!: column families of a RocksInstance use rocksdb native bytewise comparator.
+    public RocksEngine(RocksInstance instance, String columnFamily) {
+        Preconditions.checkNotNull(instance);
+        this.graph = instance.getGraph();
+        this.dataPath = instance.getRoot() + "/" + columnFamily;
+        this.opt = null;
+        this.comparator = null;
+        this.resources = null;
+        this.instance = instance;
+        this.db = instance.getDb();
+        this.cf = instance.getColumnFamily(columnFamily);
+        this.prefixLength = instance.getPrefixLength(columnFamily);
+        this.compactor = instance.getCompactor();
+        log.info(String.format("Construct RocksEngine on column family %s succeed, belongs to graph %s.", columnFamily, graph.getGraphName()));
+    }
+
     @Override
     public void stop() {
+        if (releaser != null) {
+            releaser.cancel(false);
+        }
+        for (var ctx : readContexts) {
+            ctx.close();
+        }
+        readContexts.clear();
+        // the shared database is stopped by its RocksInstance.
+        if (instance != null) {
+            log.info(String.format("Stop RocksEngine on %s succeed, belongs to graph %s.", dataPath, graph.getGraphName()));
+            return;
+        }
+        if (compactor != null) {
+            compactor.close();
+        }
         if (db != null) {
+            resources.unregister(db);
             db.cancelAllBackgroundWork(true);
             db.close();
         }
@@ -105,7 +336,15 @@ public class RocksEngine implements KVEngine {
 
     @Override
     public WriteBatch startBatchWrite() {
-        return new RocksWriteBatch();
+        return new RocksWriteBatch(cf, instance);
+    }
+
+    @Override
+    public WriteBatch startBatchWrite(WriteBatch parent) {
+        if (instance != null && parent instanceof RocksWriteBatch && ((RocksWriteBatch) parent).getInstance() == instance) {
+            return new RocksWriteBatch((RocksWriteBatch) parent, cf);
+        }
+        return startBatchWrite();
     }
 
     @Override
@@ -117,6 +356,11 @@ public class RocksEngine implements KVEngine {
             try {
                 RocksWriteBatch wb = (RocksWriteBatch) batch;
                 db.write(writeOpt, wb.getWb());
+                // ranges removed by batches sharing wb are committed too.
+                if (compactor != null) {
+                    compactor.add(wb.getRemovedRanges());
+                }
+                wb.getRemovedRanges().clear();
             } catch (RocksDBException e) {
                 e.printStackTrace();
                 log.error("Commit WriteBatch Failed.");
@@ -138,16 +382,33 @@ public class RocksEngine implements KVEngine {
 
     @Override
     public byte[] get(byte[] key, Object snapshot) {
-        Snapshot snap = (Snapshot) snapshot;
-        try (ReadOptions readOptions = new ReadOptions()) {
-            if (snap != null) {
-                readOptions.setSnapshot(snap);
+        var ctx = readContext.get();
+        var readOptions = ctx.readOptions(snapshot);
+        try {
+            var k = ctx.key(key);
+            var v = ctx.value(0);
+            int size = db.get(cf, readOptions, k, v);
+            if (size == RocksDB.NOT_FOUND) {
+                return null;
             }
-            return db.get(readOptions, key);
+            // value buffer is too small, read again with a larger one.
+            if (size > v.capacity()) {
+                k.rewind();
+                v = ctx.value(size);
+                size = db.get(cf, readOptions, k, v);
+                if (size == RocksDB.NOT_FOUND) {
+                    return null;
+                }
+            }
+            byte[] value = new byte[size];
+            v.get(value);
+            return value;
         } catch (RocksDBException e) {
             e.printStackTrace();
             log.error(String.format("Get key %s failed.", Arrays.toString(key)));
             System.exit(-1);
+        } finally {
+            ctx.readOptions(null);
         }
         return null;
     }
@@ -159,8 +420,9 @@ public class RocksEngine implements KVEngine {
             log.info("you passed a empty key list to RocksEngine.multiGet");
             return new ArrayList<>();
         }
-        try (ReadOptions readOptions = new ReadOptions()) {
-            return db.multiGetAsList(readOptions, keys);
+        var ctx = readContext.get();
+        try {
+            return db.multiGetAsList(ctx.readOptions(null), Collections.nCopies(keys.size(), cf), keys);
         } catch (RocksDBException e) {
             e.printStackTrace();
             log.error("MultiGet failed.");
@@ -170,89 +432,269 @@ public class RocksEngine implements KVEngine {
 
     @Override
     public Pair<byte[], byte[]> getForPrev(byte[] key, Object snapshot) {
-        Snapshot snap = (Snapshot) snapshot;
-        try (ReadOptions readOptions = new ReadOptions()) {
-            if (snap != null) {
-                readOptions.setSnapshot(snap);
-            }
-            try (var iter = db.newIterator(readOptions)) {
-                if (iter != null) {
-                    iter.seekForPrev(key);
-                    if (iter.isValid()) {
-                        return Pair.of(iter.key(), iter.value());
-                    }
-                }
+        var ctx = readContext.get();
+        if (snapshot == null) {
+            var iter = ctx.iterator(db, cf);
+            try {
+                iter.seekForPrev(ctx.key(key));
+                return iter.isValid() ? Pair.of(iter.key(), iter.value()) : null;
+            } finally {
+                ctx.release();
+            }
+        }
+        try (var iter = db.newIterator(cf, ctx.readOptions(snapshot))) {
+            iter.seekForPrev(ctx.key(key));
+            if (iter.isValid()) {
+                return Pair.of(iter.key(), iter.value());
             }
+        } finally {
+            ctx.readOptions(null);
         }
         return null;
     }
 
+    @Override
+    public byte[] getForPrev(byte[] key, int prefixLength, Object snapshot) {
+        Preconditions.checkArgument(prefixLength <= key.length, "prefix length %s exceeds key length %s.", prefixLength, key.length);
+        var ctx = readContext.get();
+        if (snapshot == null) {
+            var iter = ctx.iterator(db, cf);
+            try {
+                return seekForPrevValue(ctx, iter, key, prefixLength);
+            } finally {
+                ctx.release();
+            }
+        }
+        try (var iter = db.newIterator(cf, ctx.readOptions(snapshot))) {
+            return seekForPrevValue(ctx, iter, key, prefixLength);
+        } finally {
+            ctx.readOptions(null);
+        }
+    }
+
+    private static byte[] seekForPrevValue(ReadContext ctx, RocksIterator iter, byte[] key, int prefixLength) {
+        iter.seekForPrev(ctx.key(key));
+        return foundValue(ctx, iter, key, prefixLength);
+    }
+
+    @Override
+    public byte[] getForNext(byte[] key, int prefixLength, Object snapshot) {
+        Preconditions.checkArgument(prefixLength <= key.length, "prefix length %s exceeds key length %s.", prefixLength, key.length);
+        var ctx = readContext.get();
+        if (snapshot == null) {
+            var iter = ctx.iterator(db, cf);
+            try {
+                return seekValue(ctx, iter, key, prefixLength);
+            } finally {
+                ctx.release();
+            }
+        }
+        try (var iter = db.newIterator(cf, ctx.readOptions(snapshot))) {
+            return seekValue(ctx, iter, key, prefixLength);
+        } finally {
+            ctx.readOptions(null);
+        }
+    }
+
+    private static byte[] seekValue(ReadContext ctx, RocksIterator iter, byte[] key, int prefixLength) {
+        iter.seek(ctx.key(key));
+        return foundValue(ctx, iter, key, prefixLength);
+    }
+
+    // the value of the key iter is positioned at, null if it does not share the prefix with key.
+    private static byte[] foundValue(ReadContext ctx, RocksIterator iter, byte[] key, int prefixLength) {
+        if (!iter.isValid()) {
+            return null;
+        }
+        // compare the prefix in the direct buffer, no key is copied to heap.
+        var found = ctx.found(prefixLength);
+        if (iter.key(found) < prefixLength) {
+            return null;
+        }
+        for (int i = 0; i < prefixLength; ++i) {
+            if (found.get(i) != key[i]) {
+                return null;
+            }
+        }
+        var v = ctx.value(0);
+        int size = iter.value(v);
+        if (size > v.capacity()) {
+            v = ctx.value(size);
+            iter.value(v);
+        }
+        byte[] value = new byte[size];
+        v.get(value);
+        return value;
+    }
+
+    // Keys are sorted and served by one forward sweep, a close key is reached by a few next() instead of a seek.
+    // Large batches are split into key range shards, which are swept in parallel on one snapshot.
     @Override
     public List<Pair<byte[], byte[]>> multiGetForPrev(List<byte[]> keys) {
-        try (var iter = db.newIterator()) {
-            ArrayList<Pair<byte[], byte[]>> values = new ArrayList<>();
-            for (var key : keys) {
-                iter.seekForPrev(key);
-                values.add(iter.isValid() ? Pair.of(iter.key(), iter.value()) : null);
+        int n = keys.size();
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> compareKeys(keys.get(x), keys.get(y)));
+        @SuppressWarnings("unchecked")
+        Pair<byte[], byte[]>[] values = new Pair[n];
+        int shardSize = Math.max(RocksEngineConfig.rocksdb_multiget_shard_size, 1);
+        if (n <= shardSize) {
+            sweepForPrev(keys, order, 0, n, null, values);
+            return Arrays.asList(values);
+        }
+        // all shards read the same version of the store.
+        var snapshot = db.getSnapshot();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int from = shardSize; from < n; from += shardSize) {
+                int begin = from, end = Math.min(from + shardSize, n);
+                futures.add(multiGetExecutor.submit(() -> sweepForPrev(keys, order, begin, end, snapshot, values)));
             }
-            return values;
+            // the caller sweeps the first shard itself.
+            sweepForPrev(keys, order, 0, shardSize, snapshot, values);
+            for (var future : futures) {
+                future.get();
+            }
+            futures.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("multiGetForPrev is interrupted.", e);
+        } catch (ExecutionException e) {
+            log.error("MultiGetForPrev failed.");
+            throw new IllegalStateException("multiGetForPrev failed.", e.getCause());
+        } finally {
+            // shards still queued or running read the snapshot, wait for them before releasing it.
+            for (var future : futures) {
+                future.cancel(false);
+                try {
+                    Uninterruptibles.getUninterruptibly(future);
+                } catch (ExecutionException | CancellationException ignored) {
+                    // already reported by the failed shard.
+                }
+            }
+            db.releaseSnapshot(snapshot);
         }
+        return Arrays.asList(values);
+    }
+
+    // serve keys order[begin, end), which are sorted, values are put in caller order.
+    private void sweepForPrev(List<byte[]> keys, Integer[] order, int begin, int end, Snapshot snapshot, Pair<byte[], byte[]>[] values) {
+        // the sweep goes across prefixes, thus the iterator must be in total order mode.
+        // shards run on executor threads, each sweeps with the options of its own thread.
+        var ctx = readContext.get();
+        try (var iter = db.newIterator(cf, ctx.totalOrderOptions(snapshot))) {
+            // cur: the last key <= the previous target, iter is always at the first key > the previous target.
+            Pair<byte[], byte[]> cur = null;
+            boolean positioned = false;
+            for (int i = begin; i < end; ++i) {
+                byte[] target = keys.get(order[i]);
+                int steps = 0;
+                while (positioned && iter.isValid() && steps < RocksEngineConfig.rocksdb_multiget_sweep_steps) {
+                    byte[] key = iter.key();
+                    if (compareKeys(key, target) > 0) {
+                        break;
+                    }
+                    cur = Pair.of(key, iter.value());
+                    iter.next();
+                    ++steps;
+                }
+                // too far away from the previous target, a seek is cheaper.
+                if (!positioned || (steps == RocksEngineConfig.rocksdb_multiget_sweep_steps && iter.isValid() && compareKeys(iter.key(), target) <= 0)) {
+                    iter.seekForPrev(target);
+                    if (iter.isValid()) {
+                        cur = Pair.of(iter.key(), iter.value());
+                        iter.next();
+                    } else {
+                        cur = null;
+                        iter.seek(target);
+                    }
+                    positioned = true;
+                }
+                values[order[i]] = cur;
+            }
+        } finally {
+            ctx.totalOrderOptions(null);
+        }
+    }
+
+    private int compareKeys(byte[] x, byte[] y) {
+        return comparator != null ? comparator.compare(x, y) : Arrays.compareUnsigned(x, y);
     }
 
     @Override
     public KVIterator range(byte[] start, byte[] end) {
-        var iter = db.newIterator();
+        var bounds = new IterateBounds(null, start, end, withinPrefix(start, end));
+        var iter = db.newIterator(cf, bounds.getReadOptions());
         if (iter != null) {
             iter.seek(start);
-            return new RocksRangeIterator(end, iter, comparator);
         }
-        return null;
+        return new RocksRangeIterator(iter, bounds);
     }
 
     @Override
     public KVIterator rangePrev(byte[] start, byte[] end) {
-        var iter = db.newIterator();
+        // the first key may be less than start, thus only the upper bound is pushed down.
+        var bounds = new IterateBounds(null, null, end, withinPrefix(start, end));
+        var iter = db.newIterator(cf, bounds.getReadOptions());
         if (iter != null) {
             iter.seekForPrev(start);
-            return new RocksRangeIterator(end, iter, comparator);
         }
-        return null;
+        return new RocksRangeIterator(iter, bounds);
+    }
+
+    // whether keys between start and end share one prefix of the prefix extractor,
+    // otherwise the iterator must be in total order mode.
+    private boolean withinPrefix(byte[] start, byte[] end) {
+        if (prefixLength == 0 || start.length < prefixLength || end.length < prefixLength) {
+            return false;
+        }
+        return Arrays.equals(start, 0, prefixLength, end, 0, prefixLength);
+    }
+
+    // prefix bounds are computed in bytewise order, keys sorted by a custom comparator are checked one by one.
+    private IterateBounds prefixBounds(Object snapshot, byte[] prefix) {
+        boolean withinPrefix = prefixLength > 0 && prefix.length >= prefixLength;
+        if (comparator != null || prefix.length == 0) {
+            return new IterateBounds(snapshot, null, null, withinPrefix);
+        }
+        return new IterateBounds(snapshot, prefix, Bytes.successor(prefix), withinPrefix);
     }
 
     @Override
     public KVIterator prefix(byte[] prefix, Object snapshot) {
-        try (ReadOptions readOptions = new ReadOptions()) {
-            if (snapshot != null) {
-                readOptions.setSnapshot((Snapshot) snapshot);
-            }
-            var iter = db.newIterator(readOptions);
-            if (iter != null) {
+        var bounds = prefixBounds(snapshot, prefix);
+        var iter = db.newIterator(cf, bounds.getReadOptions());
+        if (iter != null) {
+            // empty prefix means the whole store, seekToFirst never passes the empty key to a custom comparator.
+            if (prefix.length == 0) {
+                iter.seekToFirst();
+            } else {
                 iter.seek(prefix);
             }
-            return new RocksPrefixIterator(prefix, iter);
         }
+        return new RocksPrefixIterator(prefix, iter, bounds);
     }
 
     @Override
     public KVIterator rangeWithPrefix(byte[] start, byte[] prefix) {
-        try (ReadOptions readOptions = new ReadOptions()) {
-            var iter = db.newIterator(readOptions);
-            if (iter != null) {
-                iter.seek(start);
-            }
-            return new RocksPrefixIterator(prefix, iter);
+        var bounds = prefixBounds(null, prefix);
+        var iter = db.newIterator(cf, bounds.getReadOptions());
+        if (iter != null) {
+            iter.seek(start);
         }
+        return new RocksPrefixIterator(prefix, iter, bounds);
     }
 
     @Override
     public KVIterator rangePrevWithPrefix(byte[] start, byte[] prefix) {
-        try (ReadOptions readOptions = new ReadOptions()) {
-            var iter = db.newIterator(readOptions);
-            if (iter != null) {
-                iter.seekForPrev(start);
-            }
-            return new RocksPrefixIterator(prefix, iter);
+        var bounds = prefixBounds(null, prefix);
+        var iter = db.newIterator(cf, bounds.getReadOptions());
+        if (iter != null) {
+            iter.seekForPrev(start);
         }
+        return new RocksPrefixIterator(prefix, iter, bounds);
     }
 
     @Override
@@ -260,7 +702,7 @@ public class RocksEngine implements KVEngine {
         try (WriteOptions writeOptions = new WriteOptions()) {
             writeOptions.setDisableWAL(RocksEngineConfig.rocksdb_disable_wal);
             try {
-                db.put(writeOptions, key, value);
+                db.put(cf, writeOptions, key, value);
                 return true;
             } catch (RocksDBException e) {
                 e.printStackTrace();
@@ -275,7 +717,7 @@ public class RocksEngine implements KVEngine {
         try (org.rocksdb.WriteBatch wb = new org.rocksdb.WriteBatch(RocksEngineConfig.rocksdb_batch_size)) {
             for (var pr : keyValues) {
                 try {
-                    wb.put(pr.first(), pr.second());
+                    wb.put(cf, pr.first(), pr.second());
                 } catch (RocksDBException e) {
                     e.printStackTrace();
                     log.error(String.format("MultiPut failed in position key %s.", Arrays.toString(pr.first())));
@@ -301,7 +743,7 @@ public class RocksEngine implements KVEngine {
         try (WriteOptions writeOptions = new WriteOptions()) {
             writeOptions.setDisableWAL(RocksEngineConfig.rocksdb_disable_wal);
             try {
-                db.delete(writeOptions, key);
+                db.delete(cf, writeOptions, key);
                 return true;
             } catch (RocksDBException e) {
                 e.printStackTrace();
@@ -316,7 +758,7 @@ public class RocksEngine implements KVEngine {
         try (org.rocksdb.WriteBatch wb = new org.rocksdb.WriteBatch(RocksEngineConfig.rocksdb_batch_size)) {
             for (var key : keys) {
                 try {
-                    wb.delete(key);
+                    wb.delete(cf, key);
                 } catch (RocksDBException e) {
                     e.printStackTrace();
                     log.error(String.format("MultiRemove failed in position key %s.", Arrays.toString(key)));
@@ -342,7 +784,10 @@ public class RocksEngine implements KVEngine {
         try (WriteOptions writeOptions = new WriteOptions()) {
             writeOptions.setDisableWAL(RocksEngineConfig.rocksdb_disable_wal);
             try {
-                db.deleteRange(writeOptions, start, end);
+                db.deleteRange(cf, writeOptions, start, end);
+                if (compactor != null) {
+                    compactor.add(List.of(new RangeCompactor.Range(cf, start, end)));
+                }
                 return true;
             } catch (RocksDBException e) {
                 e.printStackTrace();
@@ -355,7 +800,7 @@ public class RocksEngine implements KVEngine {
     @Override
     public boolean flush() {
         try (FlushOptions flushOptions = new FlushOptions()) {
-            db.flush(flushOptions);
+            db.flush(flushOptions, cf);
             return true;
         } catch (RocksDBException e) {
             e.printStackTrace();
@@ -364,10 +809,21 @@ public class RocksEngine implements KVEngine {
         return false;
     }
 
+    @Override
+    public long getMemoryUsage() {
+        try {
+            return db.getLongProperty(cf, "rocksdb.cur-size-all-mem-tables") + db.getLongProperty(cf, "rocksdb.estimate-table-readers-mem");
+        } catch (RocksDBException e) {
+            e.printStackTrace();
+            log.error("get memory usage failed.");
+        }
+        return 0;
+    }
+
     @Override
     public List<Pair<byte[], byte[]>> scan() {
         List<Pair<byte[], byte[]>> ret = new ArrayList<>();
-        try (var iter = db.newIterator()) {
+        try (var bounds = new IterateBounds(null, null, null, false); var iter = db.newIterator(cf, bounds.getReadOptions())) {
             iter.seekToFirst();
             while (iter.isValid()) {
                 ret.add(Pair.of(iter.key(), iter.value()));
@@ -379,6 +835,10 @@ public class RocksEngine implements KVEngine {
 
     @Override
     public void drop() {
+        // NOTE!: column families are dropped together with the RocksInstance.
+        if (instance != null) {
+            return;
+        }
         try {
             RocksDB.destroyDB(dataPath, new Options());
         } catch (RocksDBException e) {
@@ -26,14 +26,35 @@ public class RocksEngineConfig {
 
     //NOTE!: we only use BlockBasedTable format in rocksdb.
 
-    // The default block cache size used in BlockBasedTable. The unit is MB
+    // The block cache size used in BlockBasedTable, shared by all stores of this process(see RocksResources). The unit is MB
     public static long rocksdb_block_cache = 1024;
 
+    // Total memtable size of all stores of this process, charged to the block cache. The unit is MB. 0 means unlimited
+    public static long rocksdb_write_buffer_manager = 256;
+
+    // Memtable prefix bloom size as a ratio of write_buffer_size, only for stores with a prefix extractor. 0 means disabled
+    public static double rocksdb_memtable_prefix_bloom_ratio = 0.1;
+
+    // Keys of one multiGetForPrev shard, larger batches are split into shards swept in parallel
+    public static int rocksdb_multiget_shard_size = 1024;
+
+    // Threads sweeping multiGetForPrev shards, shared by all stores of this process
+    public static int rocksdb_multiget_threads = Runtime.getRuntime().availableProcessors();
+
+    // Max next() from the previous key of a multiGetForPrev sweep before a seek is used instead
+    public static int rocksdb_multiget_sweep_steps = 8;
+
+    // Seconds a read iterator kept by an idle thread lives, it pins memtables and sst files dropped since it is created. 0 means not kept
+    public static long rocksdb_iterator_idle_time = 1;
+
+    // Seconds to wait before compacting ranges removed by range tombstones, and between two such compactions. 0 means disabled
+    public static long rocksdb_range_compaction_delay = 60;
+
     // Disable page cache to better control memory used by rocksdb
     public static boolean disable_page_cache = false;
 
-    // Total keys inside the cache
-    public static int rocksdb_row_cache_num = 16 * 1000 * 1000;
+    // The row cache size shared by all stores of this process. The unit is MB. 0 means disabled
+    public static long rocksdb_row_cache = 16;
 
     // Compression algorithm used by rocksdb
     // options: no, snappy, lz4, lz4hc, zstd, zlib, bzip2, xpress
@@ -72,7 +93,51 @@ public class RocksEngineConfig {
 
     // NOTE!: caller should guarantee to close it.
     // We don't set custom comparator here, leave it to upper layer.
-    static Options InitRocksdbOptions() {
+    static Options InitRocksdbOptions(RocksResources resources, int prefixLength) {
+        var dbOpt = InitRocksdbDBOptions(resources);
+        var cfOpt = InitRocksdbColumnFamilyOptions(resources, prefixLength);
+        if (dbOpt == null || cfOpt == null) {
+            return null;
+        }
+        return new Options(dbOpt, cfOpt);
+    }
+
+    // db wide options, shared by all column families of a RocksInstance.
+    // NOTE!: caller should guarantee to close it.
+    static DBOptions InitRocksdbDBOptions(RocksResources resources) {
+        final DBOptions opt = new DBOptions();
+        opt.setCreateIfMissing(true);
+
+        if (disable_page_cache) {
+            opt.setUseDirectReads(true);
+        }
+
+        if (rocksdb_rate_limit > 0) {
+            opt.setRateLimiter(new RateLimiter(rocksdb_rate_limit * 1024 * 1024));
+        }
+
+        if (resources.getRowCache() != null) {
+            opt.setRowCache(resources.getRowCache());
+        }
+
+        if (resources.getWriteBufferManager() != null) {
+            opt.setWriteBufferManager(resources.getWriteBufferManager());
+        }
+
+        if (enable_rocksdb_statistics) {
+            opt.setStatistics(new Statistics());
+        } else {
+            opt.setStatsDumpPeriodSec(0);
+        }
+
+        return opt;
+    }
+
+    // per column family options.
+    // prefixLength: length of the fixed length prefix extractor, 0 means none.
+    // NOTE!: caller should guarantee to close it.
+    // We don't set custom comparator here, leave it to upper layer.
+    static ColumnFamilyOptions InitRocksdbColumnFamilyOptions(RocksResources resources, int prefixLength) {
 
         // set the general compression algorithm
         var compress = compressionTypeHashMap.get(rocksdb_compression);
@@ -80,8 +145,7 @@ public class RocksEngineConfig {
             log.error("Unsupported compression type: " + rocksdb_compression);
             return null;
         }
-        final Options opt = new Options();
-        opt.setCreateIfMissing(true);
+        final ColumnFamilyOptions opt = new ColumnFamilyOptions();
 
         opt.setCompressionType(compress);
 
@@ -91,49 +155,41 @@ public class RocksEngineConfig {
             opt.setMinBlobSize(rocksdb_kv_separation_threshold);
         }
 
-        if (disable_page_cache) {
-            opt.setUseDirectReads(true);
-        }
-
         if (num_compaction_threads > 0) {
             var tasks = new ConcurrentTaskLimiterImpl("COMPACTION_THREAD", num_compaction_threads);
             opt.setCompactionThreadLimiter(tasks);
         }
 
-        if (rocksdb_rate_limit > 0) {
-            opt.setRateLimiter(new RateLimiter(rocksdb_rate_limit * 1024 * 1024));
-        }
-
         BlockBasedTableConfig block_opt = new BlockBasedTableConfig();
 
 
-        if (rocksdb_block_cache <= 0) {
+        if (resources.getBlockCache() == null) {
             block_opt.setNoBlockCache(true);
         } else {
-            var cache = new LRUCache(rocksdb_block_cache * 1024 * 1024);
-            block_opt.setBlockCache(cache);
+            block_opt.setBlockCache(resources.getBlockCache());
         }
 
         block_opt.setFilterPolicy(new BloomFilter(10, false));
 
-        opt.setTableFormatConfig(block_opt);
-
-        if (rocksdb_row_cache_num > 0) {
-            opt.setRowCache(new LRUCache(rocksdb_row_cache_num));
+        // temporal stores are only read by seekForPrev and prefix scans, whole key filters are never consulted,
+        // thus filters are built on the (entity, property) prefix instead.
+        // Column families without prefix(e.g. latest records, see TemporalLatestStore) keep whole key filters for their gets.
+        if (prefixLength > 0) {
+            opt.useFixedLengthPrefixExtractor(prefixLength);
+            block_opt.setWholeKeyFiltering(false);
+            if (rocksdb_memtable_prefix_bloom_ratio > 0) {
+                opt.setMemtablePrefixBloomSizeRatio(rocksdb_memtable_prefix_bloom_ratio);
+            }
         }
 
+        opt.setTableFormatConfig(block_opt);
+
         opt.setCompactionStyle(CompactionStyle.UNIVERSAL);
 
         opt.setWriteBufferSize(write_buffer_size);
 
         opt.setMaxWriteBufferNumber(write_buffer_num);
 
-        if (enable_rocksdb_statistics) {
-            opt.setStatistics(new Statistics());
-        } else {
-            opt.setStatsDumpPeriodSec(0);
-        }
-
         return opt;
     }
 
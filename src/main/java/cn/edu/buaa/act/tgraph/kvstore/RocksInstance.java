@@ -0,0 +1,185 @@
+package cn.edu.buaa.act.tgraph.kvstore;
+
+import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import com.google.common.base.Preconditions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rocksdb.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// RocksInstance is one rocksdb database shared by several stores of a graph,
+// every store owns a column family(see RocksEngine(RocksInstance, String)).
+// All column families share one WAL, thus a WriteBatch across column families
+// is committed atomically with a single fsync.
+
+// NOTE!: column families are created if missing, stop the instance after all engines on it are stopped.
+public class RocksInstance {
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private static final Log log = LogFactory.getLog(RocksInstance.class);
+
+    private final GraphSpaceID graph;
+
+    private final String dataPath;
+
+    private RocksDB db = null;
+
+    private final RocksResources resources;
+
+    private final DBOptions dbOpt;
+
+    private final List<ColumnFamilyOptions> cfOpts = new ArrayList<>();
+
+    private final HashMap<String, ColumnFamilyHandle> columnFamilies = new HashMap<>();
+
+    private final HashMap<String, Integer> prefixLengths = new HashMap<>();
+
+    private final List<ColumnFamilyHandle> handles = new ArrayList<>();
+
+    // compacts ranges removed by committed batches, null if disabled.
+    private RangeCompactor compactor = null;
+
+    public RocksInstance(GraphSpaceID graph, String dataPath, List<String> columnFamilyNames) {
+        this(graph, dataPath, withoutPrefix(columnFamilyNames), RocksResources.shared());
+    }
+
+    public RocksInstance(GraphSpaceID graph, String dataPath, Map<String, Integer> columnFamilies) {
+        this(graph, dataPath, columnFamilies, RocksResources.shared());
+    }
+
+    // columnFamilies: column family name -> length of its fixed length prefix extractor, 0 means none.
+    public RocksInstance(GraphSpaceID graph, String dataPath, Map<String, Integer> columnFamilies, RocksResources resources) {
+        Preconditions.checkNotNull(graph);
+        Preconditions.checkNotNull(dataPath);
+        try {
+            Files.createDirectories(Paths.get(dataPath));
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Create data path failed.");
+            System.exit(-1);
+        }
+        this.graph = graph;
+        this.dataPath = dataPath;
+        this.resources = Preconditions.checkNotNull(resources);
+        this.dbOpt = RocksEngineConfig.InitRocksdbDBOptions(resources);
+        List<String> columnFamilyNames = new ArrayList<>(columnFamilies.keySet());
+        // default column family must be opened, it is left unused.
+        cfOpts.add(RocksEngineConfig.InitRocksdbColumnFamilyOptions(resources, 0));
+        for (var name : columnFamilyNames) {
+            prefixLengths.put(name, columnFamilies.get(name));
+            cfOpts.add(RocksEngineConfig.InitRocksdbColumnFamilyOptions(resources, columnFamilies.get(name)));
+        }
+        if (dbOpt == null || cfOpts.contains(null)) {
+            log.error("Init Rocksdb Options Failed.");
+            System.exit(-1);
+        }
+        dbOpt.setCreateMissingColumnFamilies(true);
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, cfOpts.get(0)));
+        for (int i = 0; i < columnFamilyNames.size(); ++i) {
+            descriptors.add(new ColumnFamilyDescriptor(columnFamilyNames.get(i).getBytes(StandardCharsets.UTF_8), cfOpts.get(i + 1)));
+        }
+        try {
+            db = RocksDB.open(dbOpt, dataPath, descriptors, handles);
+        } catch (RocksDBException e) {
+            e.printStackTrace();
+            log.error(String.format("open %s failed.", graph.getGraphName()));
+            System.exit(-1);
+        }
+        Preconditions.checkNotNull(db);
+        resources.register(db);
+        compactor = RangeCompactor.of(db, graph.getGraphName());
+        for (int i = 0; i < columnFamilyNames.size(); ++i) {
+            this.columnFamilies.put(columnFamilyNames.get(i), handles.get(i + 1));
+        }
+        log.info(String.format("Construct RocksInstance succeed with column families %s, belongs to graph %s.", columnFamilyNames, graph.getGraphName()));
+    }
+
+    private static Map<String, Integer> withoutPrefix(List<String> columnFamilyNames) {
+        Map<String, Integer> columnFamilies = new LinkedHashMap<>();
+        for (var name : columnFamilyNames) {
+            columnFamilies.put(name, 0);
+        }
+        return columnFamilies;
+    }
+
+    public GraphSpaceID getGraph() {
+        return graph;
+    }
+
+    public String getRoot() {
+        return dataPath;
+    }
+
+    RocksDB getDb() {
+        return db;
+    }
+
+    ColumnFamilyHandle getColumnFamily(String name) {
+        var cf = columnFamilies.get(name);
+        Preconditions.checkArgument(cf != null, "column family %s is not opened.", name);
+        return cf;
+    }
+
+    RangeCompactor getCompactor() {
+        return compactor;
+    }
+
+    int getPrefixLength(String name) {
+        return prefixLengths.get(name);
+    }
+
+    // flush all column families together.
+    public boolean flush() {
+        try (FlushOptions flushOptions = new FlushOptions()) {
+            db.flush(flushOptions, handles);
+            return true;
+        } catch (RocksDBException e) {
+            e.printStackTrace();
+            log.error("flush failed.");
+        }
+        return false;
+    }
+
+    public void stop() {
+        if (compactor != null) {
+            compactor.close();
+        }
+        if (db != null) {
+            resources.unregister(db);
+            db.cancelAllBackgroundWork(true);
+            // column family handles should be closed before db.
+            for (var handle : handles) {
+                handle.close();
+            }
+            db.close();
+        }
+        dbOpt.close();
+        for (var cfOpt : cfOpts) {
+            cfOpt.close();
+        }
+        log.info(String.format("Stop RocksInstance succeed, belongs to graph %s.", graph.getGraphName()));
+    }
+
+    // NOTE!: drop all column families, call it after stop.
+    public void drop() {
+        try (var opt = new Options()) {
+            RocksDB.destroyDB(dataPath, opt);
+        } catch (RocksDBException e) {
+            log.error(String.format("drop db %s fail, data path: %s.", graph.getGraphName(), dataPath));
+            e.printStackTrace();
+        }
+    }
+}
@@ -3,19 +3,22 @@ package cn.edu.buaa.act.tgraph.kvstore;
 import cn.edu.buaa.act.tgraph.common.Bytes;
 import org.rocksdb.RocksIterator;
 
+// iterate keys with prefix, the prefix is pushed into rocksdb as iterate bounds if possible(see IterateBounds),
+// otherwise every key is checked here.
 public class RocksPrefixIterator implements KVIterator {
     private final byte[] prefix;
     private final RocksIterator iter;
+    private final IterateBounds bounds;
 
-
-    public RocksPrefixIterator(byte[] prefix, RocksIterator iter) {
+    RocksPrefixIterator(byte[] prefix, RocksIterator iter, IterateBounds bounds) {
         this.prefix = prefix;
         this.iter = iter;
+        this.bounds = bounds;
     }
 
     @Override
     public boolean valid() {
-        return iter != null && iter.isValid() && Bytes.startsWith(iter.key(), prefix);
+        return iter != null && iter.isValid() && (bounds.hasUpperBound() || Bytes.startsWith(iter.key(), prefix));
     }
 
     @Override
@@ -28,6 +31,16 @@ public class RocksPrefixIterator implements KVIterator {
         iter.prev();
     }
 
+    @Override
+    public void seek(byte[] target) {
+        iter.seek(target);
+    }
+
+    @Override
+    public void seekForPrev(byte[] target) {
+        iter.seekForPrev(target);
+    }
+
     @Override
     public byte[] key() {
         return iter.key();
@@ -40,6 +53,9 @@ public class RocksPrefixIterator implements KVIterator {
 
     @Override
     public void close() {
-        iter.close();
+        if (iter != null) {
+            iter.close();
+        }
+        bounds.close();
     }
 }
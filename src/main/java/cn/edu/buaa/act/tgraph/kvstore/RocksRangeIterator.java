@@ -2,41 +2,19 @@ package cn.edu.buaa.act.tgraph.kvstore;
 
 import org.rocksdb.RocksIterator;
 
-import java.nio.ByteBuffer;
-
-import static cn.edu.buaa.act.tgraph.common.Bytes.memcmp;
-
+// iterate until end, end is pushed into rocksdb as iterate upper bound(see IterateBounds).
 public class RocksRangeIterator implements KVIterator {
-    private final byte[] end;
     private final RocksIterator iter;
-    private final Comparator comparator;
+    private final IterateBounds bounds;
 
-    public RocksRangeIterator(byte[] end, RocksIterator iter, Comparator comparator) {
-        this.end = end;
+    RocksRangeIterator(RocksIterator iter, IterateBounds bounds) {
         this.iter = iter;
-        this.comparator = comparator;
-    }
-
-    private int compare(byte[] start, byte[] end) {
-        if (comparator != null) {
-            return comparator.compare(start, end);
-        }
-        // if comparator is null, we use bytewise comparator
-        int minLen = Math.min(start.length, end.length);
-        int r = memcmp(ByteBuffer.wrap(start), ByteBuffer.wrap(end), 0, minLen);
-        if (r == 0) {
-            if (start.length < end.length) {
-                r = -1;
-            } else if (start.length > end.length) {
-                r = 1;
-            }
-        }
-        return r;
+        this.bounds = bounds;
     }
 
     @Override
     public boolean valid() {
-        return iter != null && iter.isValid() && compare(iter.key(), end) < 0;
+        return iter != null && iter.isValid();
     }
 
     @Override
@@ -49,6 +27,16 @@ public class RocksRangeIterator implements KVIterator {
         iter.prev();
     }
 
+    @Override
+    public void seek(byte[] target) {
+        iter.seek(target);
+    }
+
+    @Override
+    public void seekForPrev(byte[] target) {
+        iter.seekForPrev(target);
+    }
+
     @Override
     public byte[] key() {
         return iter.key();
@@ -61,6 +49,9 @@ public class RocksRangeIterator implements KVIterator {
 
     @Override
     public void close() {
-        iter.close();
+        if (iter != null) {
+            iter.close();
+        }
+        bounds.close();
     }
 }
@@ -0,0 +1,114 @@
+package cn.edu.buaa.act.tgraph.kvstore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rocksdb.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// RocksResources holds the memory shared by all rocksdb databases of this process:
+//      block cache: data/index/filter blocks of all stores.
+//      row cache: hot key-values of all stores.
+//      write buffer manager: bounds memtables of all stores, memtable memory is charged to the block cache.
+// Thus memory used by rocksdb is about rocksdb_block_cache + rocksdb_row_cache no matter how many graphs are opened.
+
+// Every store gets the process wide one(shared()) through StoreOptions or RocksInstance by default.
+// NOTE!: All methods are thread safe.
+public class RocksResources implements AutoCloseable {
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private static final Log log = LogFactory.getLog(RocksResources.class);
+
+    private static RocksResources shared = null;
+
+    private final Cache blockCache;
+
+    private final Cache rowCache;
+
+    private final WriteBufferManager writeBufferManager;
+
+    // databases opened with these resources, used for memory accounting.
+    private final Set<RocksDB> dbs = ConcurrentHashMap.newKeySet();
+
+    // The unit is MB, 0 means disabled(unlimited for write buffer manager).
+    public RocksResources(long blockCacheSize, long rowCacheSize, long writeBufferManagerSize) {
+        this.blockCache = blockCacheSize > 0 ? new LRUCache(blockCacheSize * 1024 * 1024) : null;
+        this.rowCache = rowCacheSize > 0 ? new LRUCache(rowCacheSize * 1024 * 1024) : null;
+        if (writeBufferManagerSize > 0 && blockCache == null) {
+            log.warn("Write buffer manager is disabled since block cache is disabled.");
+        }
+        // memtables take space of the block cache instead of adding to it.
+        this.writeBufferManager = writeBufferManagerSize > 0 && blockCache != null ? new WriteBufferManager(writeBufferManagerSize * 1024 * 1024, blockCache) : null;
+        log.info(String.format("Construct RocksResources succeed, block cache: %dMB, row cache: %dMB, write buffer manager: %dMB.",
+                blockCacheSize, rowCacheSize, writeBufferManagerSize));
+    }
+
+    // process wide resources configured by RocksEngineConfig, never closed.
+    public static synchronized RocksResources shared() {
+        if (shared == null) {
+            shared = new RocksResources(RocksEngineConfig.rocksdb_block_cache, RocksEngineConfig.rocksdb_row_cache, RocksEngineConfig.rocksdb_write_buffer_manager);
+        }
+        return shared;
+    }
+
+    // null if disabled.
+    public Cache getBlockCache() {
+        return blockCache;
+    }
+
+    // null if disabled.
+    public Cache getRowCache() {
+        return rowCache;
+    }
+
+    // null if unlimited.
+    public WriteBufferManager getWriteBufferManager() {
+        return writeBufferManager;
+    }
+
+    void register(RocksDB db) {
+        dbs.add(db);
+    }
+
+    void unregister(RocksDB db) {
+        dbs.remove(db);
+    }
+
+    /**
+     * @return Approximate memory used by all databases opened with these resources:
+     *         memtables, table readers(outside of block cache) and caches.
+     */
+    public Map<MemoryUsageType, Long> getMemoryUsage() {
+        List<RocksDB> opened = new ArrayList<>(dbs);
+        Set<Cache> caches = new HashSet<>();
+        if (blockCache != null) {
+            caches.add(blockCache);
+        }
+        if (rowCache != null) {
+            caches.add(rowCache);
+        }
+        return MemoryUtil.getApproximateMemoryUsageByType(opened, caches);
+    }
+
+    // NOTE!: close it after all databases using it are stopped.
+    @Override
+    public void close() {
+        if (writeBufferManager != null) {
+            writeBufferManager.close();
+        }
+        if (blockCache != null) {
+            blockCache.close();
+        }
+        if (rowCache != null) {
+            rowCache.close();
+        }
+    }
+}
@@ -1,17 +1,48 @@
 package cn.edu.buaa.act.tgraph.kvstore;
 
+import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
 
+import java.util.ArrayList;
+import java.util.List;
+
+// A RocksWriteBatch writes into one column family, several RocksWriteBatch of the same
+// RocksInstance can share one native batch(see KVEngine.startBatchWrite(WriteBatch)),
+// then committing any of them commits all writes atomically.
 public class RocksWriteBatch implements WriteBatch {
     private final org.rocksdb.WriteBatch wb;
+    private final ColumnFamilyHandle cf;
+    // database this batch belongs to, null if not shared.
+    private final RocksInstance instance;
+    // only the owner closes the native batch.
+    private final boolean owner;
+    // ranges removed by this batch and batches sharing it, compacted after commit(see RangeCompactor).
+    private final List<RangeCompactor.Range> removedRanges;
 
-    public RocksWriteBatch() {
+    public RocksWriteBatch(ColumnFamilyHandle cf, RocksInstance instance) {
         this.wb = new org.rocksdb.WriteBatch(RocksEngineConfig.rocksdb_batch_size);
+        this.cf = cf;
+        this.instance = instance;
+        this.owner = true;
+        this.removedRanges = new ArrayList<>();
+    }
+
+    RocksWriteBatch(RocksWriteBatch parent, ColumnFamilyHandle cf) {
+        this.wb = parent.wb;
+        this.cf = cf;
+        this.instance = parent.instance;
+        this.owner = false;
+        this.removedRanges = parent.removedRanges;
     }
+
+    RocksInstance getInstance() {
+        return instance;
+    }
+
     @Override
     public boolean put(byte[] key, byte[] value) {
         try {
-            wb.put(key, value);
+            wb.put(cf, key, value);
         } catch (RocksDBException e) {
             return false;
         }
@@ -21,7 +52,7 @@ public class RocksWriteBatch implements WriteBatch {
     @Override
     public boolean remove(byte[] key) {
         try {
-            wb.delete(key);
+            wb.delete(cf, key);
         } catch (RocksDBException e) {
             return false;
         }
@@ -31,16 +62,29 @@ public class RocksWriteBatch implements WriteBatch {
     @Override
     public boolean removeRange(byte[] start, byte[] end) {
         try {
-            wb.deleteRange(start, end);
+            wb.deleteRange(cf, start, end);
         } catch (RocksDBException e) {
             return false;
         }
+        removedRanges.add(new RangeCompactor.Range(cf, start, end));
         return true;
     }
 
+    @Override
+    public boolean sharedWith(WriteBatch other) {
+        return other instanceof RocksWriteBatch && ((RocksWriteBatch) other).wb == wb;
+    }
+
     @Override
     public void close() {
-        wb.close();
+        if (owner) {
+            wb.close();
+        }
+    }
+
+    // ranges removed so far, cleared once they are handed to RangeCompactor.
+    List<RangeCompactor.Range> getRemovedRanges() {
+        return removedRanges;
     }
 
     // NOTE!: caller should guarantee call this before close
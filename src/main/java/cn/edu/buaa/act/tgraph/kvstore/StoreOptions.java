@@ -7,24 +7,33 @@ public class StoreOptions {
     private String dataPath = null;
     private boolean readonly = false;
     private Comparator comparator = null;
+    // caches and write buffer manager shared with other stores.
+    private RocksResources resources = null;
+    // length of the fixed length prefix extractor, 0 means no prefix extractor.
+    private int prefixLength = 0;
 
-    private StoreOptions(GraphSpaceID graph, String dataPath, boolean readonly, Comparator comparator) {
+    private StoreOptions(GraphSpaceID graph, String dataPath, boolean readonly, Comparator comparator, RocksResources resources) {
         this.graph = graph;
         this.dataPath = dataPath;
         this.readonly = readonly;
         this.comparator = comparator;
+        this.resources = resources;
+    }
+
+    public static StoreOptions of(GraphSpaceID graph, String dataPath, boolean readonly, Comparator comparator, RocksResources resources) {
+        return new StoreOptions(graph, dataPath, readonly, comparator, resources);
     }
 
     public static StoreOptions of(GraphSpaceID graph, String dataPath, boolean readonly, Comparator comparator) {
-        return new StoreOptions(graph, dataPath, readonly, comparator);
+        return new StoreOptions(graph, dataPath, readonly, comparator, RocksResources.shared());
     }
 
     public static StoreOptions of(GraphSpaceID graph, String dataPath, boolean readonly) {
-        return new StoreOptions(graph, dataPath, readonly, null);
+        return new StoreOptions(graph, dataPath, readonly, null, RocksResources.shared());
     }
 
     public static StoreOptions of(GraphSpaceID graph, String dataPath) {
-        return new StoreOptions(graph, dataPath, false, null);
+        return new StoreOptions(graph, dataPath, false, null, RocksResources.shared());
     }
 
 
@@ -59,4 +68,20 @@ public class StoreOptions {
     public void setComparator(Comparator comparator) {
         this.comparator = comparator;
     }
+
+    public RocksResources getResources() {
+        return resources;
+    }
+
+    public void setResources(RocksResources resources) {
+        this.resources = resources;
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    public void setPrefixLength(int prefixLength) {
+        this.prefixLength = prefixLength;
+    }
 }
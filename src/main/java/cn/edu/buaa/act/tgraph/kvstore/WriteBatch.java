@@ -25,6 +25,12 @@ public interface WriteBatch extends AutoCloseable {
      */
     boolean removeRange(byte[] start, byte[] end);
 
+    /**
+     * @param other Another WriteBatch
+     * @return Whether this and other share the same underlying batch, committing either one commits both.
+     */
+    boolean sharedWith(WriteBatch other);
+
     @Override
     void close();
 }
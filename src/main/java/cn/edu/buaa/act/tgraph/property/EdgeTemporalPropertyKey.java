@@ -1,42 +1,60 @@
 package cn.edu.buaa.act.tgraph.property;
 
+import cn.edu.buaa.act.tgraph.common.Codec;
 import com.google.common.base.Preconditions;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 import java.util.Objects;
+import java.util.function.ToIntFunction;
 
 // For graph structure locality, we identify an edge by start node id + end node id.
 // In this way, all edges start from the same node will be stored in the same block.
+// Key layout, sorted by rocksdb native bytewise comparator:
+//      startNodeId(ordered long, 8 bytes) + endNodeId(ordered long, 8 bytes)
+//      + propertyId(int, 4 bytes) + timestamp(ordered long, 8 bytes)
+// propertyId is the token of the temporal property name, refer TemporalPropertyTokenStore.
+// Refer Codec for the order-preserving encoding.
 public class EdgeTemporalPropertyKey {
+    public static final int LENGTH = EdgeTemporalPropertyKeyPrefix.LENGTH + 8;
+
     private final long startNodeId;
     private final long endNodeId;
-    private final int propertyLength;
-    private final String propertyName;
+    private final int propertyId;
     private final long timestamp;
 
-    public EdgeTemporalPropertyKey(long startNodeId, long endNodeId, String propertyName, long timestamp) {
+    public EdgeTemporalPropertyKey(long startNodeId, long endNodeId, int propertyId, long timestamp) {
         this.startNodeId = startNodeId;
         this.endNodeId = endNodeId;
-        this.propertyName = propertyName;
-        this.propertyLength = propertyName.getBytes(Charset.defaultCharset()).length;
+        this.propertyId = propertyId;
         this.timestamp = timestamp;
     }
 
     public EdgeTemporalPropertyKey(EdgeTemporalPropertyKeyPrefix prefix, long timestamp) {
-        this(prefix.getStartNodeId(), prefix.getEndNodeId(), prefix.getPropertyName(), timestamp);
+        this(prefix.getStartNodeId(), prefix.getEndNodeId(), prefix.getPropertyId(), timestamp);
     }
 
-    public static EdgeTemporalPropertyKey of(long startNodeId, long endNodeId, String propertyName, long timestamp) {
-        return new EdgeTemporalPropertyKey(startNodeId, endNodeId, propertyName, timestamp);
+    public static EdgeTemporalPropertyKey of(long startNodeId, long endNodeId, int propertyId, long timestamp) {
+        return new EdgeTemporalPropertyKey(startNodeId, endNodeId, propertyId, timestamp);
     }
 
     public static EdgeTemporalPropertyKey fromBytes(byte[] bytes) {
-        Preconditions.checkState(bytes.length > 28);
-        var prefix = EdgeTemporalPropertyKeyPrefix.fromBytes(bytes);
-        // timestamp
-        ByteBuffer buffer = ByteBuffer.wrap(bytes, bytes.length - 8, 8);
-        long time = buffer.getLong();
+        Preconditions.checkState(bytes.length >= LENGTH);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, LENGTH);
+        long sId = Codec.getOrderedLong(buffer);
+        long eId = Codec.getOrderedLong(buffer);
+        int property = buffer.getInt();
+        long time = Codec.getOrderedLong(buffer);
+        return new EdgeTemporalPropertyKey(sId, eId, property, time);
+    }
+
+    // NOTE!: only used to upgrade stores written by older key formats, refer StoreUpgrader.
+    // format 0 layout: startNodeId(long) + endNodeId(long) + propertyLength(int) + propertyName + timestamp(long)
+    // format 1 layout: startNodeId(ordered long) + endNodeId(ordered long) + propertyName(ordered string) + timestamp(ordered long)
+    public static EdgeTemporalPropertyKey fromLegacyBytes(byte[] bytes, int format, ToIntFunction<String> tokens) {
+        Preconditions.checkState(bytes.length >= 26);
+        var prefix = EdgeTemporalPropertyKeyPrefix.fromLegacyBytes(bytes, format, tokens);
+        var buffer = ByteBuffer.wrap(bytes, bytes.length - 8, 8);
+        long time = format == 0 ? buffer.getLong() : Codec.getOrderedLong(buffer);
         return new EdgeTemporalPropertyKey(prefix, time);
     }
 
@@ -48,8 +66,8 @@ public class EdgeTemporalPropertyKey {
         return endNodeId;
     }
 
-    public String getPropertyName() {
-        return propertyName;
+    public int getPropertyId() {
+        return propertyId;
     }
 
     public long getTimestamp() {
@@ -57,7 +75,7 @@ public class EdgeTemporalPropertyKey {
     }
 
     public EdgeTemporalPropertyKeyPrefix getPrefix() {
-        return new EdgeTemporalPropertyKeyPrefix(this.startNodeId, this.endNodeId, this.propertyName);
+        return new EdgeTemporalPropertyKeyPrefix(this.startNodeId, this.endNodeId, this.propertyId);
     }
 
 
@@ -66,22 +84,20 @@ public class EdgeTemporalPropertyKey {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         EdgeTemporalPropertyKey that = (EdgeTemporalPropertyKey) o;
-        return startNodeId == that.startNodeId && endNodeId == that.endNodeId && timestamp == that.timestamp && Objects.equals(propertyName, that.propertyName);
+        return startNodeId == that.startNodeId && endNodeId == that.endNodeId && propertyId == that.propertyId && timestamp == that.timestamp;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(startNodeId, endNodeId, propertyName, timestamp);
+        return Objects.hash(startNodeId, endNodeId, propertyId, timestamp);
     }
 
     public byte[] toBytes() {
-        byte[] p = propertyName.getBytes(Charset.defaultCharset());
-        ByteBuffer buffer = ByteBuffer.allocate(28 + p.length);
-        buffer.putLong(startNodeId);
-        buffer.putLong(endNodeId);
-        buffer.putInt(propertyLength);
-        buffer.put(p);
-        buffer.putLong(timestamp);
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        Codec.putOrderedLong(buffer, startNodeId);
+        Codec.putOrderedLong(buffer, endNodeId);
+        buffer.putInt(propertyId);
+        Codec.putOrderedLong(buffer, timestamp);
         return buffer.array();
     }
 
@@ -91,7 +107,7 @@ public class EdgeTemporalPropertyKey {
         return "EdgeTemporalPropertyKey{" +
                 "startNodeId=" + startNodeId +
                 ", endNodeId=" + endNodeId +
-                ", propertyName='" + propertyName + '\'' +
+                ", propertyId=" + propertyId +
                 ", timestamp=" + timestamp +
                 '}';
     }
@@ -9,6 +9,8 @@ import java.nio.ByteBuffer;
 // This comparator assumes keys are EdgeTemporalPropertyKey
 // startNodeId(long, 64-bit) - endNodeId(long, 64-bit) - propertyName(String) - timestamp(long, 64-bit)
 // Caller must guarantee that in accessing other APIs in combination with this comparator.
+// NOTE!: legacy, temporal property keys are order-preserving now and sorted by rocksdb bytewise comparator,
+// this comparator is only used to open stores written by the legacy key format(see StoreUpgrader).
 public final class EdgeTemporalPropertyKeyComparator extends AbstractComparator {
     public EdgeTemporalPropertyKeyComparator(ComparatorOptions comparatorOptions) {
         super(comparatorOptions);
@@ -1,47 +1,65 @@
 package cn.edu.buaa.act.tgraph.property;
 
+import cn.edu.buaa.act.tgraph.common.Codec;
 import com.google.common.base.Preconditions;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Objects;
+import java.util.function.ToIntFunction;
 
+// Key layout, sorted by rocksdb native bytewise comparator:
+//      startNodeId(ordered long, 8 bytes) + endNodeId(ordered long, 8 bytes) + propertyId(int, 4 bytes)
+// propertyId is the token of the temporal property name, refer TemporalPropertyTokenStore.
+// Refer Codec for the order-preserving encoding.
 public class EdgeTemporalPropertyKeyPrefix {
+    public static final int LENGTH = 20;
+
     private final long startNodeId;
     private final long endNodeId;
-    private final int propertyLength;
-    private final String propertyName;
+    private final int propertyId;
 
-    public EdgeTemporalPropertyKeyPrefix(long startNodeId, long endNodeId, String propertyName) {
+    public EdgeTemporalPropertyKeyPrefix(long startNodeId, long endNodeId, int propertyId) {
         this.startNodeId = startNodeId;
         this.endNodeId = endNodeId;
-        this.propertyName = propertyName;
-        this.propertyLength = propertyName.getBytes(Charset.defaultCharset()).length;
+        this.propertyId = propertyId;
     }
 
-    public static EdgeTemporalPropertyKeyPrefix of(long startNodeId, long endNodeId, String propertyName) {
-        return new EdgeTemporalPropertyKeyPrefix(startNodeId, endNodeId, propertyName);
+    public static EdgeTemporalPropertyKeyPrefix of(long startNodeId, long endNodeId, int propertyId) {
+        return new EdgeTemporalPropertyKeyPrefix(startNodeId, endNodeId, propertyId);
     }
 
     public static EdgeTemporalPropertyKeyPrefix fromBytes(byte[] bytes) {
-        Preconditions.checkState(bytes.length > 20);
-        // sid
-        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, 8);
-        long sId = buffer.getLong();
-        // eid
-        buffer = ByteBuffer.wrap(bytes, 8, 8);
-        long eId = buffer.getLong();
-        // property length
-        buffer = ByteBuffer.wrap(bytes, 16, 4);
-        int length = buffer.getInt();
-        // property name
-        buffer = ByteBuffer.wrap(bytes, 20, length);
-        byte[] pBytes = new byte[length];
-        buffer.get(pBytes);
-        String property = new String(pBytes);
+        Preconditions.checkState(bytes.length >= LENGTH);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, LENGTH);
+        long sId = Codec.getOrderedLong(buffer);
+        long eId = Codec.getOrderedLong(buffer);
+        int property = buffer.getInt();
         return new EdgeTemporalPropertyKeyPrefix(sId, eId, property);
     }
 
+    // NOTE!: only used to upgrade stores written by older key formats, refer StoreUpgrader.
+    // format 0 layout: startNodeId(long) + endNodeId(long) + propertyLength(int) + propertyName
+    // format 1 layout: startNodeId(ordered long) + endNodeId(ordered long) + propertyName(ordered string)
+    public static EdgeTemporalPropertyKeyPrefix fromLegacyBytes(byte[] bytes, int format, ToIntFunction<String> tokens) {
+        Preconditions.checkState(bytes.length >= 18);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long sId;
+        long eId;
+        String property;
+        if (format == 0) {
+            sId = buffer.getLong();
+            eId = buffer.getLong();
+            int length = buffer.getInt();
+            property = new String(bytes, 20, length, Charset.defaultCharset());
+        } else {
+            sId = Codec.getOrderedLong(buffer);
+            eId = Codec.getOrderedLong(buffer);
+            property = Codec.decodeOrderedString(bytes, 16);
+        }
+        return new EdgeTemporalPropertyKeyPrefix(sId, eId, tokens.applyAsInt(property));
+    }
+
     public long getStartNodeId() {
         return startNodeId;
     }
@@ -50,17 +68,15 @@ public class EdgeTemporalPropertyKeyPrefix {
         return endNodeId;
     }
 
-    public String getPropertyName() {
-        return propertyName;
+    public int getPropertyId() {
+        return propertyId;
     }
 
     public byte[] toBytes() {
-        byte[] p = propertyName.getBytes(Charset.defaultCharset());
-        ByteBuffer buffer = ByteBuffer.allocate(20 + p.length);
-        buffer.putLong(startNodeId);
-        buffer.putLong(endNodeId);
-        buffer.putInt(propertyLength);
-        buffer.put(p);
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        Codec.putOrderedLong(buffer, startNodeId);
+        Codec.putOrderedLong(buffer, endNodeId);
+        buffer.putInt(propertyId);
         return buffer.array();
     }
 
@@ -69,12 +85,12 @@ public class EdgeTemporalPropertyKeyPrefix {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         EdgeTemporalPropertyKeyPrefix that = (EdgeTemporalPropertyKeyPrefix) o;
-        return startNodeId == that.startNodeId && endNodeId == that.endNodeId && Objects.equals(propertyName, that.propertyName);
+        return startNodeId == that.startNodeId && endNodeId == that.endNodeId && propertyId == that.propertyId;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(startNodeId, endNodeId, propertyName);
+        return Objects.hash(startNodeId, endNodeId, propertyId);
     }
 
     // for debug
@@ -83,7 +99,7 @@ public class EdgeTemporalPropertyKeyPrefix {
         return "EdgeTemporalPropertyKeyPrefix{" +
                 "startNodeId=" + startNodeId +
                 ", endNodeId=" + endNodeId +
-                ", propertyName='" + propertyName + '\'' +
+                ", propertyId=" + propertyId +
                 '}';
     }
 }
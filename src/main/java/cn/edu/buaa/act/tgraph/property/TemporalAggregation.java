@@ -0,0 +1,25 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import java.util.List;
+
+// Aggregations over the points of a temporal property in [start, end), refer Entity.aggregateTemporalPropertyValue.
+// Points are folded by the store while scanning, values are never materialized but the returned one.
+//      COUNT: number of points, Long.
+//      MIN/MAX/SUM: over numeric values(byte/short/int/long/float/double), Long if all of them are integral
+//                   and their sum fits in a long, otherwise Double, null if none.
+//      AVG: over numeric values, Double, null if none.
+//      FIRST/LAST: value of the first/last point, null if none.
+// The value effective at start(a point before start) is not counted, an interval record is counted once at its start.
+public enum TemporalAggregation {
+    MIN, MAX, SUM, AVG, COUNT, FIRST, LAST;
+
+    // result over no points, e.g. of a temporal property never written.
+    public Object emptyAggregate() {
+        return new TemporalAggregator(this).result();
+    }
+
+    // resample over no points, every bucket is empty whatever the fill is.
+    public List<Object> emptyResample(long start, long end, long step, TemporalFill fill) {
+        return new TemporalResampler(start, end, step, fill, this).result();
+    }
+}
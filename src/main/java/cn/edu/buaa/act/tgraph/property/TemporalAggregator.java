@@ -0,0 +1,232 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.ValueCodec;
+
+import java.nio.ByteBuffer;
+
+// TemporalAggregator folds points of one temporal property in one pass, refer TemporalAggregation.
+// Numeric values are read from raw bytes(ValueCodec.getLong/getDouble) or chunk bits without boxing,
+// FIRST/LAST only decode the value returned.
+// Integral values are folded as long, thus sums of large longs are exact, until a floating value(or an overflow)
+// comes, then everything folded so far is converted to double.
+// NOTE!: not thread safe.
+final class TemporalAggregator {
+
+    private final TemporalAggregation aggregation;
+
+    private long count = 0;
+    private long numeric = 0;
+    // all numeric values are integral, folded into longSum/longMin/longMax, otherwise sum/min/max.
+    private boolean integral = true;
+    private long longSum = 0;
+    private long longMin = Long.MAX_VALUE;
+    private long longMax = Long.MIN_VALUE;
+    private double sum = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private byte[] firstBytes = null;
+    private byte[] lastBytes = null;
+    private Object first = null;
+    private Object last = null;
+    // a point of the current chunk is marked as the last one.
+    private boolean marked = false;
+
+    TemporalAggregator(TemporalAggregation aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    private boolean numericOnly() {
+        return aggregation != TemporalAggregation.COUNT && aggregation != TemporalAggregation.FIRST && aggregation != TemporalAggregation.LAST;
+    }
+
+    private void addLong(long v) {
+        if (!integral) {
+            addDouble(v);
+            return;
+        }
+        ++numeric;
+        longMin = Math.min(longMin, v);
+        longMax = Math.max(longMax, v);
+        long s = longSum + v;
+        // overflow.
+        if (((longSum ^ s) & (v ^ s)) < 0) {
+            toDouble();
+            sum += v;
+        } else {
+            longSum = s;
+        }
+    }
+
+    private void toDouble() {
+        integral = false;
+        sum = longSum;
+        if (numeric > 0) {
+            min = longMin;
+            max = longMax;
+        }
+    }
+
+    private void addDouble(double v) {
+        if (integral) {
+            toDouble();
+        }
+        ++numeric;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+    }
+
+    private void addObject(Object value) {
+        if (value instanceof TemporalInterval) {
+            value = ((TemporalInterval) value).getValue();
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            addLong(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            addDouble(((Number) value).doubleValue());
+        }
+    }
+
+    // a point of point mode, bytes is the stored value.
+    void add(byte[] bytes) {
+        ++count;
+        switch (aggregation) {
+            case COUNT:
+                return;
+            case FIRST:
+                if (firstBytes == null) {
+                    firstBytes = bytes;
+                }
+                return;
+            case LAST:
+                lastBytes = bytes;
+                return;
+            default:
+                if (ValueCodec.isIntegral(bytes)) {
+                    addLong(ValueCodec.getLong(bytes));
+                } else if (ValueCodec.isNumeric(bytes)) {
+                    addDouble(ValueCodec.getDouble(bytes));
+                } else if (ValueCodec.isInterval(bytes)) {
+                    addObject(ValueCodec.decode(bytes));
+                }
+        }
+    }
+
+    // the current point of cursor, chunk mode.
+    void add(TemporalChunk.Cursor cursor) {
+        ++count;
+        switch (aggregation) {
+            case COUNT:
+                return;
+            case FIRST:
+                if (count == 1) {
+                    first = cursor.value();
+                }
+                return;
+            case LAST:
+                cursor.mark();
+                marked = true;
+                return;
+            default:
+                if (cursor.isIntegral()) {
+                    addLong(cursor.longValue());
+                } else if (cursor.isNumeric()) {
+                    addDouble(cursor.doubleValue());
+                } else {
+                    addObject(cursor.value());
+                }
+        }
+    }
+
+    // points of cursor in range are added, materialize the point marked in its chunk.
+    void finishChunk(TemporalChunk.Cursor cursor) {
+        if (marked) {
+            last = cursor.markedValue();
+            marked = false;
+        }
+    }
+
+    // summary of the points added(see TemporalRollupStore): count, numeric count, integral(1 byte), sum, min, max.
+    // sum/min/max are longs if integral, otherwise doubles.
+    // NOTE!: an aggregator of COUNT/FIRST/LAST does not fold numeric values, use a numeric one.
+    static final int SUMMARY_LENGTH = 2 * Long.BYTES + 1 + 3 * Long.BYTES;
+    // summaries written before integral values are folded as long: sum, min and max are always doubles.
+    private static final int LEGACY_SUMMARY_LENGTH = 2 * Long.BYTES + 3 * Double.BYTES;
+
+    byte[] summary() {
+        var buffer = ByteBuffer.allocate(SUMMARY_LENGTH).putLong(count).putLong(numeric).put((byte) (integral ? 1 : 0));
+        if (integral) {
+            buffer.putLong(longSum).putLong(longMin).putLong(longMax);
+        } else {
+            buffer.putDouble(sum).putDouble(min).putDouble(max);
+        }
+        return buffer.array();
+    }
+
+    // fold points of a summary, only for MIN/MAX/SUM/AVG/COUNT.
+    void addSummary(byte[] summary) {
+        var buffer = ByteBuffer.wrap(summary);
+        count += buffer.getLong();
+        long n = buffer.getLong();
+        boolean integralSummary = summary.length != LEGACY_SUMMARY_LENGTH && buffer.get() == 1;
+        if (n == 0) {
+            return;
+        }
+        if (integralSummary && integral) {
+            long s = buffer.getLong();
+            long lo = buffer.getLong();
+            long hi = buffer.getLong();
+            numeric += n;
+            longMin = Math.min(longMin, lo);
+            longMax = Math.max(longMax, hi);
+            long total = longSum + s;
+            if (((longSum ^ total) & (s ^ total)) < 0) {
+                toDouble();
+                sum += s;
+            } else {
+                longSum = total;
+            }
+            return;
+        }
+        if (integral) {
+            toDouble();
+        }
+        numeric += n;
+        if (integralSummary) {
+            sum += buffer.getLong();
+            min = Math.min(min, buffer.getLong());
+            max = Math.max(max, buffer.getLong());
+        } else {
+            sum += buffer.getDouble();
+            min = Math.min(min, buffer.getDouble());
+            max = Math.max(max, buffer.getDouble());
+        }
+    }
+
+    Object result() {
+        if (numericOnly() && numeric == 0) {
+            return null;
+        }
+        switch (aggregation) {
+            case COUNT:
+                return count;
+            case FIRST:
+                return unwrap(firstBytes != null ? ValueCodec.decode(firstBytes) : first);
+            case LAST:
+                return unwrap(lastBytes != null ? ValueCodec.decode(lastBytes) : last);
+            case MIN:
+                return integral ? (Object) longMin : (Object) min;
+            case MAX:
+                return integral ? (Object) longMax : (Object) max;
+            case SUM:
+                return integral ? (Object) longSum : (Object) sum;
+            default:
+                return (integral ? (double) longSum : sum) / numeric;
+        }
+    }
+
+    private static Object unwrap(Object value) {
+        return value instanceof TemporalInterval ? ((TemporalInterval) value).getValue() : value;
+    }
+}
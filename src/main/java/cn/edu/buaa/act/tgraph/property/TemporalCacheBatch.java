@@ -0,0 +1,79 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// TemporalCacheBatch records writes of a write batch in order, they are applied to the in-memory caches of
+// temporal properties(see TemporalLatestCache and TemporalSeriesCache) after the batch is committed.
+final class TemporalCacheBatch {
+
+    // a put of point from or a remove of points in [from, to].
+    static final class Op {
+        final ByteBuffer prefix;
+        final boolean put;
+        final long from;
+        final long to;
+        // the encoded value put, decoded only if a cache needs it, thus it is the same as read back from the store.
+        final byte[] bytes;
+
+        private Op(ByteBuffer prefix, boolean put, long from, long to, byte[] bytes) {
+            this.prefix = prefix;
+            this.put = put;
+            this.from = from;
+            this.to = to;
+            this.bytes = bytes;
+        }
+    }
+
+    private final int prefixLength;
+    private final List<Op> ops = new ArrayList<>();
+
+    TemporalCacheBatch(int prefixLength) {
+        this.prefixLength = prefixLength;
+    }
+
+    // caches are keyed by the (entity, property) prefix.
+    static ByteBuffer prefix(byte[] key, int prefixLength) {
+        return ByteBuffer.wrap(Arrays.copyOf(key, prefixLength));
+    }
+
+    private long timestampOf(byte[] key) {
+        return Codec.getOrderedLong(ByteBuffer.wrap(key, prefixLength, Long.BYTES));
+    }
+
+    // bytes: the value encoded by TemporalInterval.encode.
+    void put(byte[] key, byte[] bytes) {
+        long timestamp = timestampOf(key);
+        ops.add(new Op(prefix(key, prefixLength), true, timestamp, timestamp, bytes));
+    }
+
+    void remove(byte[] key) {
+        long timestamp = timestampOf(key);
+        ops.add(new Op(prefix(key, prefixLength), false, timestamp, timestamp, null));
+    }
+
+    // points in [start, end) are removed, keys share one prefix.
+    void removeRange(byte[] startKey, byte[] endKey) {
+        long start = timestampOf(startKey);
+        long end = timestampOf(endKey);
+        if (start < end) {
+            ops.add(new Op(prefix(startKey, prefixLength), false, start, end - 1, null));
+        }
+    }
+
+    void removePrefix(byte[] prefix) {
+        ops.add(new Op(prefix(prefix, prefixLength), false, Long.MIN_VALUE, Long.MAX_VALUE, null));
+    }
+
+    List<Op> ops() {
+        return ops;
+    }
+
+    void clear() {
+        ops.clear();
+    }
+}
@@ -0,0 +1,202 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.WriteBatch;
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// TemporalChangeIndex is a secondary index of temporal property points ordered by time, in its own column family.
+// Entry key: timestamp(ordered long) + prefix(prefixLength bytes), i.e. the point key with its timestamp moved ahead,
+// the value is empty.
+// Points in [start, end) of the whole store(e.g. for incremental exports and snapshot diffs) are found in time
+// proportional to their number, instead of a scan of every entity.
+
+// Maintenance:
+//      a put and a point remove write the entry of the point, in the same batch as the data.
+//      range and prefix removes(e.g. of a temporal property or an entity) keep the entries of the points they remove,
+//      they are range tombstones of the data and writing entries one by one would read every point removed.
+// Thus an entry is a point written or removed at its timestamp, it is checked against the data when read:
+// changes are the entries whose point exists, removals the ones whose point does not.
+// Entries of removed points are kept until they are purged(e.g. once their removals are exported),
+// thus a scan costs in proportion to its changes and the removals not purged yet.
+// NOTE!: entries are rebuilt from the data when the index is enabled(see StoreUpgrader.changeIndex),
+// removals before it are not recorded.
+final class TemporalChangeIndex {
+
+    // whether the point of a point key is in the data.
+    interface PointExists {
+        boolean exists(byte[] key);
+    }
+
+    // entries per batch of rebuild and purge.
+    private static final int BATCH_SIZE = 10_000;
+
+    private final KVEngine store;
+    private final int prefixLength;
+    private final PointExists data;
+
+    TemporalChangeIndex(KVEngine store, int prefixLength, PointExists data) {
+        this.store = store;
+        this.prefixLength = prefixLength;
+        this.data = data;
+    }
+
+    private byte[] entryKey(byte[] pointKey) {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + prefixLength);
+        buffer.put(pointKey, prefixLength, Long.BYTES);
+        buffer.put(pointKey, 0, prefixLength);
+        return buffer.array();
+    }
+
+    private byte[] pointKey(byte[] entryKey) {
+        ByteBuffer buffer = ByteBuffer.allocate(prefixLength + Long.BYTES);
+        buffer.put(entryKey, Long.BYTES, prefixLength);
+        buffer.put(entryKey, 0, Long.BYTES);
+        return buffer.array();
+    }
+
+    private static byte[] timeKey(long timestamp) {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        Codec.putOrderedLong(buffer, timestamp);
+        return buffer.array();
+    }
+
+    // point keys of points in [start, end), ordered by timestamp and then prefix.
+    // NOTE!: close the stream if it is not exhausted.
+    Stream<byte[]> changes(long start, long end) {
+        return entries(start, end, true);
+    }
+
+    // point keys of points in [start, end) removed and not purged, ordered by timestamp and then prefix.
+    // NOTE!: close the stream if it is not exhausted.
+    Stream<byte[]> removals(long start, long end) {
+        return entries(start, end, false);
+    }
+
+    private Stream<byte[]> entries(long start, long end, boolean exists) {
+        Preconditions.checkArgument(start < end, "start should be smaller than end.");
+        var iter = store.range(timeKey(start), timeKey(end));
+        var points = new Spliterators.AbstractSpliterator<byte[]>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super byte[]> action) {
+                while (iter.valid()) {
+                    var key = pointKey(iter.key());
+                    iter.next();
+                    if (data.exists(key) == exists) {
+                        action.accept(key);
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+        return StreamSupport.stream(points, false).onClose(iter::close);
+    }
+
+    // remove entries of removed points in [start, end), returns their number.
+    // NOTE!: not atomic with writes of the data, a point written between its check and the commit loses its entry,
+    // thus purge a time range no longer written.
+    long purge(long start, long end) {
+        Preconditions.checkArgument(start < end, "start should be smaller than end.");
+        long purged = 0;
+        var wb = store.startBatchWrite();
+        try (var iter = store.range(timeKey(start), timeKey(end))) {
+            int size = 0;
+            while (iter.valid()) {
+                if (!data.exists(pointKey(iter.key()))) {
+                    wb.remove(iter.key());
+                    ++purged;
+                    if (++size == BATCH_SIZE) {
+                        Preconditions.checkState(store.commitBatchWrite(wb, false, true, true), "purge change index failed.");
+                        wb.close();
+                        wb = store.startBatchWrite();
+                        size = 0;
+                    }
+                }
+                iter.next();
+            }
+            Preconditions.checkState(store.commitBatchWrite(wb, false, true, true), "purge change index failed.");
+        } finally {
+            wb.close();
+        }
+        return purged;
+    }
+
+    Builder startBuild() {
+        return new Builder();
+    }
+
+    // Builder writes entries of points already in the data, the index should be empty(see StoreUpgrader.changeIndex).
+    final class Builder implements AutoCloseable {
+        private WriteBatch wb = store.startBatchWrite();
+        private int size = 0;
+
+        void add(byte[] key) {
+            wb.put(entryKey(key), new byte[0]);
+            if (++size == BATCH_SIZE) {
+                finish();
+                wb.close();
+                wb = store.startBatchWrite();
+            }
+        }
+
+        // commit entries added so far.
+        void finish() {
+            Preconditions.checkState(store.commitBatchWrite(wb, false, true, true), "rebuild change index failed.");
+            size = 0;
+        }
+
+        @Override
+        public void close() {
+            wb.close();
+        }
+    }
+
+    void stop() {
+        store.stop();
+    }
+
+    void drop() {
+        store.drop();
+    }
+
+    Batch startBatchWrite(WriteBatch parent) {
+        return new Batch(store.startBatchWrite(parent));
+    }
+
+    // Batch writes entries of points written by the data batch.
+    final class Batch implements AutoCloseable {
+        private final WriteBatch wb;
+
+        private Batch(WriteBatch wb) {
+            this.wb = wb;
+        }
+
+        void put(byte[] key) {
+            wb.put(entryKey(key), new byte[0]);
+        }
+
+        // the entry is kept, the point is removed at its timestamp.
+        void remove(byte[] key) {
+            wb.put(entryKey(key), new byte[0]);
+        }
+
+        // entries are written by the data batch if they share one underlying batch,
+        // otherwise this batch is committed before the data batch, an entry without point is skipped when read.
+        boolean commitBefore(WriteBatch data) {
+            return wb.sharedWith(data) || store.commitBatchWrite(wb, false, true, true);
+        }
+
+        @Override
+        public void close() {
+            wb.close();
+        }
+    }
+}
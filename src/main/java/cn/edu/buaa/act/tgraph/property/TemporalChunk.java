@@ -0,0 +1,412 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+// TemporalChunk packs the points of one temporal property in one time bucket into one value, refer TemporalChunkStore.
+// Points are sorted by timestamp, a timestamp has at most one point.
+
+// Layout(bit stream, most significant bit first), compressed as Gorilla(Facebook, VLDB 2015):
+//      kind(8 bits) + count(32 bits) + first timestamp(64 bits) + first value,
+//      then timestamp delta-of-delta + value of every following point.
+// Timestamp delta-of-delta:
+//      0                : '0'
+//      [-63, 64]        : '10'   + 7 bits
+//      [-255, 256]      : '110'  + 9 bits
+//      [-2047, 2048]    : '1110' + 12 bits
+//      otherwise        : '1111' + 64 bits
+// Values of DOUBLE/LONG/INT chunks are 64 bits, the first one is stored as is, others are XOR-ed with the previous one:
+//      equal            : '0'
+//      inside the previous leading/trailing zeros window: '10' + meaningful bits
+//      otherwise        : '11' + leading zeros(6 bits) + meaningful bits length - 1(6 bits) + meaningful bits
+// Values of GENERIC chunks(any other type, mixed types or interval records) are ValueCodec bytes: length(32 bits) + bytes.
+
+// NOTE!: kinds are persisted, never change or reuse a kind, append new kinds instead.
+// NOTE!: not thread safe.
+final class TemporalChunk {
+
+    static final byte DOUBLE = 0x01;
+    static final byte LONG = 0x02;
+    static final byte INT = 0x03;
+    static final byte GENERIC = 0x04;
+
+    private long[] timestamps;
+    private Object[] values;
+    private int size = 0;
+
+    TemporalChunk() {
+        this.timestamps = new long[8];
+        this.values = new Object[8];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long timestamp(int i) {
+        return timestamps[i];
+    }
+
+    Object value(int i) {
+        return values[i];
+    }
+
+    // index of the last point <= timestamp, -1 if every point is after timestamp.
+    int floor(long timestamp) {
+        int i = Arrays.binarySearch(timestamps, 0, size, timestamp);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    // index of the first point >= timestamp, size if every point is before timestamp.
+    private int ceiling(long timestamp) {
+        int i = Arrays.binarySearch(timestamps, 0, size, timestamp);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    void put(long timestamp, Object value) {
+        Preconditions.checkNotNull(value);
+        int i = Arrays.binarySearch(timestamps, 0, size, timestamp);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        i = -i - 1;
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(timestamps, i, timestamps, i + 1, size - i);
+        System.arraycopy(values, i, values, i + 1, size - i);
+        timestamps[i] = timestamp;
+        values[i] = value;
+        ++size;
+    }
+
+    boolean remove(long timestamp) {
+        int i = Arrays.binarySearch(timestamps, 0, size, timestamp);
+        if (i < 0) {
+            return false;
+        }
+        removeAt(i, i + 1);
+        return true;
+    }
+
+    // remove points in [start, end).
+    void removeRange(long start, long end) {
+        int from = ceiling(start);
+        int to = ceiling(end);
+        if (from < to) {
+            removeAt(from, to);
+        }
+    }
+
+    private void removeAt(int from, int to) {
+        System.arraycopy(timestamps, to, timestamps, from, size - to);
+        System.arraycopy(values, to, values, from, size - to);
+        Arrays.fill(values, size - (to - from), size, null);
+        size -= to - from;
+    }
+
+    static TemporalChunk decode(byte[] bytes) {
+        var chunk = new TemporalChunk();
+        var cursor = new Cursor(bytes);
+        while (cursor.next()) {
+            // points are sorted, append them directly.
+            if (chunk.size == chunk.timestamps.length) {
+                chunk.timestamps = Arrays.copyOf(chunk.timestamps, chunk.size * 2);
+                chunk.values = Arrays.copyOf(chunk.values, chunk.size * 2);
+            }
+            chunk.timestamps[chunk.size] = cursor.timestamp();
+            chunk.values[chunk.size] = cursor.value();
+            ++chunk.size;
+        }
+        return chunk;
+    }
+
+    // value of the last point <= timestamp, null if every point is after timestamp.
+    // Only the value returned is materialized.
+    static Object floorValue(byte[] bytes, long timestamp) {
+        var cursor = new Cursor(bytes);
+        boolean found = false;
+        while (cursor.next() && cursor.timestamp() <= timestamp) {
+            found = true;
+            cursor.mark();
+        }
+        return found ? cursor.markedValue() : null;
+    }
+
+    static Object lastValue(byte[] bytes) {
+        return floorValue(bytes, Long.MAX_VALUE);
+    }
+
+    byte[] encode() {
+        Preconditions.checkState(size > 0, "empty chunk should be removed instead of encoded.");
+        byte kind = kind();
+        var w = new BitWriter();
+        w.write(kind, 8);
+        w.write(size, 32);
+        w.write(timestamps[0], 64);
+        long prevDelta = 0;
+        long prevBits = 0;
+        int prevLeading = -1;
+        int prevTrailing = 0;
+        for (int i = 0; i < size; ++i) {
+            if (i > 0) {
+                long delta = timestamps[i] - timestamps[i - 1];
+                writeDeltaOfDelta(w, delta - prevDelta);
+                prevDelta = delta;
+            }
+            if (kind == GENERIC) {
+                byte[] v = TemporalInterval.encode(values[i]);
+                w.write(v.length, 32);
+                for (byte b : v) {
+                    w.write(b & 0xff, 8);
+                }
+                continue;
+            }
+            long bits = toBits(kind, values[i]);
+            if (i == 0) {
+                w.write(bits, 64);
+            } else {
+                long xor = bits ^ prevBits;
+                if (xor == 0) {
+                    w.write(0, 1);
+                } else {
+                    int leading = Long.numberOfLeadingZeros(xor);
+                    int trailing = Long.numberOfTrailingZeros(xor);
+                    if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                        w.write(0b10, 2);
+                        w.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+                    } else {
+                        int meaningful = 64 - leading - trailing;
+                        w.write(0b11, 2);
+                        w.write(leading, 6);
+                        w.write(meaningful - 1, 6);
+                        w.write(xor >>> trailing, meaningful);
+                        prevLeading = leading;
+                        prevTrailing = trailing;
+                    }
+                }
+            }
+            prevBits = bits;
+        }
+        return w.toBytes();
+    }
+
+    private byte kind() {
+        Class<?> type = values[0].getClass();
+        for (int i = 1; i < size; ++i) {
+            if (values[i].getClass() != type) {
+                return GENERIC;
+            }
+        }
+        if (type == Double.class) {
+            return DOUBLE;
+        }
+        if (type == Long.class) {
+            return LONG;
+        }
+        if (type == Integer.class) {
+            return INT;
+        }
+        return GENERIC;
+    }
+
+    private static long toBits(byte kind, Object value) {
+        switch (kind) {
+            case DOUBLE:
+                return Double.doubleToRawLongBits((Double) value);
+            case LONG:
+                return (Long) value;
+            default:
+                return (Integer) value;
+        }
+    }
+
+    private static Object fromBits(byte kind, long bits) {
+        switch (kind) {
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case LONG:
+                return bits;
+            default:
+                return (int) bits;
+        }
+    }
+
+    private static void writeDeltaOfDelta(BitWriter w, long dod) {
+        if (dod == 0) {
+            w.write(0, 1);
+        } else if (dod >= -63 && dod <= 64) {
+            w.write(0b10, 2);
+            w.write(dod + 63, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            w.write(0b110, 3);
+            w.write(dod + 255, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            w.write(0b1110, 4);
+            w.write(dod + 2047, 12);
+        } else {
+            w.write(0b1111, 4);
+            w.write(dod, 64);
+        }
+    }
+
+    // Cursor decodes points one by one, values are only boxed on demand.
+    static final class Cursor {
+        private final BitReader r;
+        private final byte kind;
+        private final int count;
+        private int read = 0;
+
+        private long timestamp;
+        private long delta = 0;
+        private long bits;
+        private byte[] generic;
+        private int leading = 0;
+        private int trailing = 0;
+
+        private long markedBits;
+        private byte[] markedGeneric;
+
+        Cursor(byte[] bytes) {
+            this.r = new BitReader(bytes);
+            this.kind = (byte) r.read(8);
+            Preconditions.checkState(kind >= DOUBLE && kind <= GENERIC, "unknown temporal chunk kind %s.", kind);
+            this.count = (int) r.read(32);
+        }
+
+        boolean next() {
+            if (read == count) {
+                return false;
+            }
+            if (read == 0) {
+                timestamp = r.read(64);
+            } else {
+                delta += readDeltaOfDelta();
+                timestamp += delta;
+            }
+            if (kind == GENERIC) {
+                generic = new byte[(int) r.read(32)];
+                for (int i = 0; i < generic.length; ++i) {
+                    generic[i] = (byte) r.read(8);
+                }
+            } else if (read == 0) {
+                bits = r.read(64);
+            } else if (r.read(1) == 1) {
+                if (r.read(1) == 1) {
+                    leading = (int) r.read(6);
+                    int meaningful = (int) r.read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                bits ^= r.read(64 - leading - trailing) << trailing;
+            }
+            ++read;
+            return true;
+        }
+
+        private long readDeltaOfDelta() {
+            if (r.read(1) == 0) {
+                return 0;
+            }
+            if (r.read(1) == 0) {
+                return r.read(7) - 63;
+            }
+            if (r.read(1) == 0) {
+                return r.read(9) - 255;
+            }
+            if (r.read(1) == 0) {
+                return r.read(12) - 2047;
+            }
+            return r.read(64);
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+
+        Object value() {
+            return kind == GENERIC ? TemporalInterval.decode(generic) : fromBits(kind, bits);
+        }
+
+        // values of DOUBLE/LONG/INT chunks can be read by doubleValue without boxing.
+        boolean isNumeric() {
+            return kind != GENERIC;
+        }
+
+        double doubleValue() {
+            return kind == DOUBLE ? Double.longBitsToDouble(bits) : bits;
+        }
+
+        // values of LONG/INT chunks can be read by longValue exactly.
+        boolean isIntegral() {
+            return kind == LONG || kind == INT;
+        }
+
+        long longValue() {
+            return bits;
+        }
+
+        // remember the current value, thus scanning forward does not box skipped values.
+        void mark() {
+            markedBits = bits;
+            markedGeneric = generic;
+        }
+
+        Object markedValue() {
+            return kind == GENERIC ? TemporalInterval.decode(markedGeneric) : fromBits(kind, markedBits);
+        }
+    }
+
+    private static final class BitWriter {
+        private byte[] buf = new byte[64];
+        private int pos = 0;
+
+        // write the lowest n bits of v.
+        void write(long v, int n) {
+            if (pos + n > buf.length * 8) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, (pos + n) / 8 + 1));
+            }
+            while (n > 0) {
+                int free = 8 - (pos & 7);
+                int m = Math.min(free, n);
+                int bits = (int) (v >>> (n - m)) & ((1 << m) - 1);
+                buf[pos >>> 3] |= (byte) (bits << (free - m));
+                pos += m;
+                n -= m;
+            }
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(buf, (pos + 7) >>> 3);
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] buf;
+        private int pos = 0;
+
+        BitReader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        long read(int n) {
+            Preconditions.checkState(pos + n <= buf.length * 8, "temporal chunk data corruption.");
+            long v = 0;
+            while (n > 0) {
+                int avail = 8 - (pos & 7);
+                int m = Math.min(avail, n);
+                int bits = ((buf[pos >>> 3] & 0xff) >>> (avail - m)) & ((1 << m) - 1);
+                v = (v << m) | bits;
+                pos += m;
+                n -= m;
+            }
+            return v;
+        }
+    }
+}
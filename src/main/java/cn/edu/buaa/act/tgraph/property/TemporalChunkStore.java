@@ -0,0 +1,355 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Bytes;
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.KVIterator;
+import cn.edu.buaa.act.tgraph.kvstore.WriteBatch;
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+// TemporalChunkStore is the chunk mode of Vertex/EdgeTemporalPropertyStore.
+// Points of one temporal property in one time bucket [bucket, bucket + interval) are packed into one TemporalChunk,
+// keyed by prefix + bucket(ordered long), i.e. the point key whose timestamp is the bucket start.
+// For dense series(e.g. one point per second), this saves the per key overhead and range scans read far fewer bytes.
+
+// Keys passed in are point keys: prefix(prefixLength bytes) + timestamp(ordered long).
+// Semantics of reads and writes are the same as the point mode.
+// NOTE!: the mode and interval of a store is chosen when the store is created, refer StoreUpgrader.chunkInterval.
+final class TemporalChunkStore {
+
+    private final KVEngine store;
+    private final int prefixLength;
+    // time unit: milliseconds.
+    private final long interval;
+
+    TemporalChunkStore(KVEngine store, int prefixLength, long interval) {
+        Preconditions.checkArgument(interval > 0, "chunk interval should be positive.");
+        this.store = store;
+        this.prefixLength = prefixLength;
+        this.interval = interval;
+    }
+
+    long getInterval() {
+        return interval;
+    }
+
+    // buckets are aligned to 0, the first bucket starts from Long.MIN_VALUE.
+    long bucket(long timestamp) {
+        long bucket = timestamp - Math.floorMod(timestamp, interval);
+        return bucket > timestamp ? Long.MIN_VALUE : bucket;
+    }
+
+    // start of the bucket after the bucket of timestamp, overflow of the intermediate result cancels out.
+    private long nextBucket(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, interval) + interval;
+    }
+
+    byte[] chunkKey(byte[] prefix, long bucket) {
+        ByteBuffer buffer = ByteBuffer.allocate(prefixLength + Long.BYTES);
+        buffer.put(prefix, 0, prefixLength);
+        Codec.putOrderedLong(buffer, bucket);
+        return buffer.array();
+    }
+
+    private long timestampOf(byte[] key) {
+        return Codec.getOrderedLong(ByteBuffer.wrap(key, prefixLength, Long.BYTES));
+    }
+
+    // Return the value of the max timestamp which <= timestamp of key.
+    Object get(byte[] key) {
+        long timestamp = timestampOf(key);
+        long bucket = bucket(timestamp);
+        var chunk = store.getForPrev(chunkKey(key, bucket), prefixLength, null);
+        if (chunk == null) {
+            return null;
+        }
+        var value = TemporalChunk.floorValue(chunk, timestamp);
+        return TemporalInterval.valueAt(value != null ? value : lastBefore(key, bucket), timestamp);
+    }
+
+    // every point of the chunk of bucket is after the timestamp, the value is the last point of an earlier chunk.
+    private Object lastBefore(byte[] prefix, long bucket) {
+        if (bucket == Long.MIN_VALUE) {
+            return null;
+        }
+        var chunk = store.getForPrev(chunkKey(prefix, bucket - 1), prefixLength, null);
+        return chunk == null ? null : TemporalChunk.lastValue(chunk);
+    }
+
+    // whether there is a point at the timestamp of key.
+    boolean contains(byte[] key) {
+        long timestamp = timestampOf(key);
+        var chunk = store.get(chunkKey(key, bucket(timestamp)), null);
+        if (chunk == null) {
+            return false;
+        }
+        var cursor = new TemporalChunk.Cursor(chunk);
+        while (cursor.next() && cursor.timestamp() <= timestamp) {
+            if (cursor.timestamp() == timestamp) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // point keys of the points in a chunk.
+    void points(byte[] chunkKey, byte[] chunk, Consumer<byte[]> consumer) {
+        var cursor = new TemporalChunk.Cursor(chunk);
+        while (cursor.next()) {
+            consumer.accept(chunkKey(chunkKey, cursor.timestamp()));
+        }
+    }
+
+    // the latest point of the prefix of key, refer TemporalLatestCache.
+    TemporalLatestCache.Latest latest(byte[] key) {
+        var found = store.getForPrev(chunkKey(key, bucket(Long.MAX_VALUE)), null);
+        if (found == null || !Arrays.equals(found.first(), 0, prefixLength, key, 0, prefixLength)) {
+            return TemporalLatestCache.Latest.NONE;
+        }
+        var cursor = new TemporalChunk.Cursor(found.second());
+        long timestamp = 0;
+        while (cursor.next()) {
+            timestamp = cursor.timestamp();
+            cursor.mark();
+        }
+        return TemporalLatestCache.Latest.of(timestamp, cursor.markedValue());
+    }
+
+    List<Object> multiGet(List<byte[]> keys) {
+        List<byte[]> chunkKeys = new ArrayList<>(keys.size());
+        for (var key : keys) {
+            chunkKeys.add(chunkKey(key, bucket(timestampOf(key))));
+        }
+        var r = store.multiGetForPrev(chunkKeys);
+        Preconditions.checkState(keys.size() == r.size(), "MultiGet keys and return values are not consistent");
+        List<Object> ret = new ArrayList<>(r.size());
+        for (int i = 0; i < r.size(); ++i) {
+            var v = r.get(i);
+            var key = keys.get(i);
+            boolean found = v != null && v.first().length >= prefixLength
+                    && Arrays.equals(v.first(), 0, prefixLength, key, 0, prefixLength);
+            if (!found) {
+                ret.add(null);
+                continue;
+            }
+            long timestamp = timestampOf(key);
+            var value = TemporalChunk.floorValue(v.second(), timestamp);
+            ret.add(TemporalInterval.valueAt(value != null ? value : lastBefore(key, bucket(timestamp)), timestamp));
+        }
+        return ret;
+    }
+
+    // Points in [start, end) of prefix, the first one is the value effective at start.
+    // end == Long.MAX_VALUE means no upper bound.
+    TemporalPropertyIterator range(byte[] prefix, long start, long end) {
+        return new TemporalPropertyIterator(chunks(prefix, start), start, end);
+    }
+
+    // chunks of prefix from the one holding the value effective at start.
+    private KVIterator chunks(byte[] prefix, long start) {
+        long bucket = bucket(start);
+        // start from the chunk before bucket(start), the effective value may be in it.
+        var from = chunkKey(prefix, bucket == Long.MIN_VALUE ? bucket : bucket - 1);
+        var iter = store.rangePrevWithPrefix(from, prefix);
+        if (!iter.valid()) {
+            // no chunk <= from, start from the first chunk of prefix.
+            iter.seek(from);
+        }
+        return iter;
+    }
+
+    // fold points in [start, end) of prefix into aggregator.
+    void aggregate(byte[] prefix, long start, long end, TemporalAggregator aggregator) {
+        // chunks of buckets in [bucket(start), end).
+        try (var iter = store.range(chunkKey(prefix, bucket(start)), chunkKey(prefix, end))) {
+            while (iter.valid()) {
+                var cursor = new TemporalChunk.Cursor(iter.value());
+                while (cursor.next() && cursor.timestamp() < end) {
+                    if (cursor.timestamp() >= start) {
+                        aggregator.add(cursor);
+                    }
+                }
+                aggregator.finishChunk(cursor);
+                iter.next();
+            }
+        }
+    }
+
+    // fold points of prefix from the value effective at start into resampler, until it needs no more points.
+    void resample(byte[] prefix, long start, TemporalResampler resampler) {
+        try (var iter = chunks(prefix, start)) {
+            boolean more = true;
+            while (more && iter.valid()) {
+                var cursor = new TemporalChunk.Cursor(iter.value());
+                while (cursor.next()) {
+                    if (!resampler.add(cursor)) {
+                        more = false;
+                        break;
+                    }
+                }
+                resampler.finishChunk(cursor);
+                iter.next();
+            }
+        }
+    }
+
+    // feed points of the prefix of key from the value effective at its timestamp into appender, refer TemporalSeriesCache.
+    void scan(byte[] key, TemporalSeriesCache.Appender appender) {
+        try (var iter = chunks(Arrays.copyOf(key, prefixLength), timestampOf(key))) {
+            while (iter.valid()) {
+                var cursor = new TemporalChunk.Cursor(iter.value());
+                while (cursor.next()) {
+                    if (!appender.add(cursor.timestamp(), cursor.value())) {
+                        return;
+                    }
+                }
+                iter.next();
+            }
+        }
+    }
+
+    Batch startBatchWrite(WriteBatch wb) {
+        return new Batch(wb);
+    }
+
+    // Batch edits chunks in memory, edited chunks are encoded into wb by flush.
+    // Chunks are read from the store when they are edited for the first time,
+    // thus the temporal property should be locked by the transaction(the same as point mode).
+    final class Batch {
+        private final WriteBatch wb;
+        // chunk key -> chunk seen by this batch.
+        private final TreeMap<byte[], TemporalChunk> chunks = new TreeMap<>(Arrays::compareUnsigned);
+        // chunk keys edited since the last flush.
+        private final TreeSet<byte[]> dirty = new TreeSet<>(Arrays::compareUnsigned);
+        // chunk key ranges [first, second) removed by this batch, null second means no upper bound.
+        private final List<byte[][]> removed = new ArrayList<>();
+
+        private Batch(WriteBatch wb) {
+            this.wb = wb;
+        }
+
+        private TemporalChunk chunk(byte[] key) {
+            var chunk = chunks.get(key);
+            if (chunk == null) {
+                var bytes = isRemoved(key) ? null : store.get(key, null);
+                chunk = bytes == null ? new TemporalChunk() : TemporalChunk.decode(bytes);
+                chunks.put(key, chunk);
+            }
+            return chunk;
+        }
+
+        private boolean isRemoved(byte[] key) {
+            for (var range : removed) {
+                if (Arrays.compareUnsigned(key, range[0]) >= 0 && (range[1] == null || Arrays.compareUnsigned(key, range[1]) < 0)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean put(byte[] key, Object value) {
+            long timestamp = timestampOf(key);
+            var chunkKey = chunkKey(key, bucket(timestamp));
+            chunk(chunkKey).put(timestamp, value);
+            dirty.add(chunkKey);
+            return true;
+        }
+
+        boolean remove(byte[] key) {
+            long timestamp = timestampOf(key);
+            var chunkKey = chunkKey(key, bucket(timestamp));
+            if (chunk(chunkKey).remove(timestamp)) {
+                dirty.add(chunkKey);
+            }
+            return true;
+        }
+
+        // remove points in [start, end), keys share one prefix.
+        boolean removeRange(byte[] startKey, byte[] endKey) {
+            long start = timestampOf(startKey);
+            long end = timestampOf(endKey);
+            if (start >= end) {
+                return true;
+            }
+            // chunks fully inside the range are removed as a whole, the head and tail chunks are edited.
+            long firstFull = bucket(start) == start ? start : nextBucket(start);
+            long lastFull = bucket(end);
+            if (firstFull < lastFull) {
+                removeChunks(chunkKey(startKey, firstFull), chunkKey(startKey, lastFull));
+            }
+            if (start < firstFull) {
+                editRange(startKey, bucket(start), start, Math.min(end, firstFull));
+            }
+            if (lastFull < end && lastFull >= firstFull) {
+                editRange(startKey, lastFull, Math.max(start, lastFull), end);
+            }
+            return true;
+        }
+
+        private void editRange(byte[] prefix, long bucket, long start, long end) {
+            var chunkKey = chunkKey(prefix, bucket);
+            var chunk = chunk(chunkKey);
+            int size = chunk.size();
+            chunk.removeRange(start, end);
+            if (chunk.size() != size) {
+                dirty.add(chunkKey);
+            }
+        }
+
+        // remove all chunks of prefix, by one range tombstone if possible.
+        boolean removePrefix(byte[] prefix) {
+            var from = Arrays.copyOf(prefix, prefixLength);
+            var to = Bytes.successor(from);
+            if (to != null) {
+                removeChunks(from, to);
+                return true;
+            }
+            // prefix of all 0xff has no successor, remove chunks one by one.
+            try (var iter = store.prefix(prefix, null)) {
+                while (iter.valid()) {
+                    wb.remove(iter.key());
+                    iter.next();
+                }
+            }
+            // chunks only written by this batch are removed too.
+            for (var key : chunks.tailMap(from).keySet()) {
+                wb.remove(key);
+            }
+            clear(from, null);
+            return true;
+        }
+
+        private void removeChunks(byte[] from, byte[] to) {
+            wb.removeRange(from, to);
+            clear(from, to);
+        }
+
+        // chunks in [from, to) are removed from the store by wb, they are empty for later edits of this batch.
+        private void clear(byte[] from, byte[] to) {
+            (to == null ? chunks.tailMap(from) : chunks.subMap(from, to)).clear();
+            (to == null ? dirty.tailSet(from) : dirty.subSet(from, to)).clear();
+            removed.add(new byte[][]{from, to});
+        }
+
+        // encode edited chunks into wb, an empty chunk is removed.
+        void flush() {
+            for (var key : dirty) {
+                var chunk = chunks.get(key);
+                if (chunk.isEmpty()) {
+                    wb.remove(key);
+                } else {
+                    wb.put(key, chunk.encode());
+                }
+            }
+            dirty.clear();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.KVIterator;
+import cn.edu.buaa.act.tgraph.kvstore.WriteBatch;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// TemporalDescendingStore keeps points of temporal properties with descending timestamps, in point mode.
+// Stored key: prefix(prefixLength bytes) + ~timestamp(ordered long), i.e. every bit of the timestamp is flipped.
+// The latest point is the first key of its prefix and the value at t(the last point <= t) is found by a forward seek
+// to the key of t, instead of a seekForPrev landing at the far end of the prefix, which suits prefix bloom filters
+// and readahead. Ranges in ascending time are read backward.
+// Callers pass and get keys in the ascending layout(e.g. VertexTemporalPropertyKey.toBytes), only stored keys are flipped.
+// NOTE!: the layout of a store never changes(see StoreUpgrader.descendingTimestamps).
+final class TemporalDescendingStore {
+
+    private final KVEngine store;
+    private final int prefixLength;
+
+    TemporalDescendingStore(KVEngine store, int prefixLength) {
+        this.store = store;
+        this.prefixLength = prefixLength;
+    }
+
+    // ascending key <-> stored key, flip(flip(key)) equals key.
+    // ~t of an ordered long is its bytes flipped, thus the order of timestamps is reversed.
+    byte[] flip(byte[] key) {
+        var ret = key.clone();
+        for (int i = prefixLength; i < prefixLength + Long.BYTES; ++i) {
+            ret[i] = (byte) ~ret[i];
+        }
+        return ret;
+    }
+
+    private byte[] storedKey(byte[] prefix, long timestamp) {
+        ByteBuffer buffer = ByteBuffer.allocate(prefixLength + Long.BYTES);
+        buffer.put(prefix, 0, prefixLength);
+        Codec.putOrderedLong(buffer, ~timestamp);
+        return buffer.array();
+    }
+
+    private long timestampOf(byte[] storedKey) {
+        return ~Codec.getOrderedLong(ByteBuffer.wrap(storedKey, prefixLength, Long.BYTES));
+    }
+
+    private boolean samePrefix(byte[] storedKey, byte[] key) {
+        return Arrays.equals(storedKey, 0, prefixLength, key, 0, prefixLength);
+    }
+
+    private long timestampOfKey(byte[] key) {
+        return Codec.getOrderedLong(ByteBuffer.wrap(key, prefixLength, Long.BYTES));
+    }
+
+    // value at the timestamp of key, the same as getForPrev in the ascending layout.
+    Object get(byte[] key) {
+        var value = store.getForNext(flip(key), prefixLength, null);
+        return TemporalInterval.valueAt(value, timestampOfKey(key));
+    }
+
+    // one forward seek per key.
+    List<Object> multiGet(List<byte[]> keys) {
+        List<Object> ret = new ArrayList<>(keys.size());
+        for (var key : keys) {
+            ret.add(get(key));
+        }
+        return ret;
+    }
+
+    boolean contains(byte[] key) {
+        return store.get(flip(key), null) != null;
+    }
+
+    // the latest point of the prefix of key, the first key of the prefix.
+    TemporalLatestCache.Latest latest(byte[] key) {
+        try (var iter = store.prefix(Arrays.copyOf(key, prefixLength), null)) {
+            if (!iter.valid()) {
+                return TemporalLatestCache.Latest.NONE;
+            }
+            return TemporalLatestCache.Latest.of(timestampOf(iter.key()), TemporalInterval.decode(iter.value()));
+        }
+    }
+
+    // points of prefix in ascending time, from the value effective at start, or the first point after start if there is none.
+    // NOTE!: keys of the returned iterator are in the ascending layout, refer Backward.
+    private KVIterator from(byte[] prefix, long start, long end) {
+        var iter = store.prefix(prefix, null);
+        var key = storedKey(prefix, start);
+        iter.seek(key);
+        if (!iter.valid()) {
+            iter.seekForPrev(key);
+        }
+        return new Backward(iter, end);
+    }
+
+    // Points in [start, end) of prefix, the first one is the value effective at start.
+    // end == Long.MAX_VALUE means no upper bound.
+    TemporalPropertyIterator range(byte[] prefix, long start, long end) {
+        return new TemporalPropertyIterator(from(prefix, start, end), prefixLength, start);
+    }
+
+    // all points of prefix.
+    TemporalPropertyIterator prefix(byte[] prefix) {
+        var iter = store.prefix(prefix, null);
+        iter.seekForPrev(storedKey(prefix, Long.MIN_VALUE));
+        return new TemporalPropertyIterator(new Backward(iter, Long.MAX_VALUE), prefixLength);
+    }
+
+    // fold points in [startKey, endKey) of one prefix.
+    void aggregate(byte[] startKey, byte[] endKey, TemporalAggregator aggregator) {
+        try (var iter = store.prefix(Arrays.copyOf(startKey, prefixLength), null)) {
+            // the first point >= start.
+            iter.seekForPrev(flip(startKey));
+            var points = new Backward(iter, timestampOfKey(endKey));
+            while (points.valid()) {
+                aggregator.add(points.value());
+                points.next();
+            }
+        }
+    }
+
+    // fold points of prefix from the value effective at start into resampler, until it needs no more points.
+    void resample(byte[] prefix, long start, TemporalResampler resampler) {
+        try (var iter = from(prefix, start, Long.MAX_VALUE)) {
+            while (iter.valid() && resampler.add(timestampOfKey(iter.key()), iter.value())) {
+                iter.next();
+            }
+        }
+    }
+
+    // feed points of the prefix of key from the value effective at its timestamp into appender, refer TemporalSeriesCache.
+    void scan(byte[] key, TemporalSeriesCache.Appender appender) {
+        try (var iter = from(Arrays.copyOf(key, prefixLength), timestampOfKey(key), Long.MAX_VALUE)) {
+            while (iter.valid() && appender.add(timestampOfKey(iter.key()), TemporalInterval.decode(iter.value()))) {
+                iter.next();
+            }
+        }
+    }
+
+    // Backward reads a prefix iterator backward, i.e. in ascending time, keys are returned in the ascending layout.
+    private final class Backward implements KVIterator {
+        private final KVIterator iter;
+        // exclusive, Long.MAX_VALUE means no upper bound.
+        private final long end;
+
+        private Backward(KVIterator iter, long end) {
+            this.iter = iter;
+            this.end = end;
+        }
+
+        @Override
+        public boolean valid() {
+            return iter.valid() && (end == Long.MAX_VALUE || timestampOf(iter.key()) < end);
+        }
+
+        @Override
+        public void next() {
+            iter.prev();
+        }
+
+        @Override
+        public void prev() {
+            iter.next();
+        }
+
+        @Override
+        public void seek(byte[] target) {
+            iter.seekForPrev(flip(target));
+        }
+
+        @Override
+        public void seekForPrev(byte[] target) {
+            iter.seek(flip(target));
+        }
+
+        @Override
+        public byte[] key() {
+            return flip(iter.key());
+        }
+
+        @Override
+        public byte[] value() {
+            return iter.value();
+        }
+
+        @Override
+        public void close() {
+            iter.close();
+        }
+    }
+
+    Batch startBatchWrite(WriteBatch wb) {
+        return new Batch(wb);
+    }
+
+    // Batch writes points of the data batch with flipped keys, a prefix remove needs no translation.
+    final class Batch {
+        private final WriteBatch wb;
+
+        private Batch(WriteBatch wb) {
+            this.wb = wb;
+        }
+
+        boolean put(byte[] key, byte[] value) {
+            return wb.put(flip(key), value);
+        }
+
+        boolean remove(byte[] key) {
+            return wb.remove(flip(key));
+        }
+
+        // points in [start, end) are stored in [~(end - 1), ~start], keys share one prefix.
+        boolean removeRange(byte[] startKey, byte[] endKey) {
+            long start = timestampOfKey(startKey);
+            long end = timestampOfKey(endKey);
+            if (start >= end) {
+                return true;
+            }
+            var last = flip(startKey);
+            // ~start + 1 overflows when start is Long.MIN_VALUE, thus the last key is removed by itself.
+            return wb.removeRange(storedKey(startKey, end - 1), last) && wb.remove(last);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package cn.edu.buaa.act.tgraph.property;
+
+// Fills of empty buckets of a resample, refer Entity.resampleTemporalPropertyValue.
+//      NONE: null.
+//      LOCF: last observation carried forward, the value effective at the bucket start(the same as a point get).
+//      LINEAR: linear interpolation at the bucket start between the last point before and the first point after,
+//              Double, null if either of them is missing or not numeric.
+// NOTE!: COUNT of an empty bucket is always 0.
+public enum TemporalFill {
+    NONE, LOCF, LINEAR
+}
@@ -0,0 +1,86 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.ValueCodec;
+
+import java.util.Objects;
+
+// TemporalInterval is an interval record: value is valid in [start, end), start is the timestamp of its key.
+// One record replaces the two boundary points(start and end - 1) written before,
+// a point read at t >= end finds the record expired and returns null, thus the value does not leak out of the interval.
+// Refer ValueCodec for the layout.
+public final class TemporalInterval {
+
+    // exclusive, time unit: milliseconds.
+    private final long end;
+    private final Object value;
+
+    private TemporalInterval(long end, Object value) {
+        this.end = end;
+        this.value = value;
+    }
+
+    public static TemporalInterval of(long end, Object value) {
+        return new TemporalInterval(end, value);
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public byte[] encode() {
+        return ValueCodec.encodeInterval(end, value);
+    }
+
+    // encode a value to store, an interval is encoded as an interval record.
+    static byte[] encode(Object value) {
+        return value instanceof TemporalInterval ? ((TemporalInterval) value).encode() : ValueCodec.encode(value);
+    }
+
+    // decode a stored value, an interval record is decoded as TemporalInterval.
+    static Object decode(byte[] bytes) {
+        var value = ValueCodec.decode(bytes);
+        return ValueCodec.isInterval(bytes) ? of(ValueCodec.intervalEnd(bytes), value) : value;
+    }
+
+    // value at timestamp of a stored value found by getForPrev, null if it is an interval expired before timestamp.
+    static Object valueAt(byte[] bytes, long timestamp) {
+        if (bytes == null || (ValueCodec.isInterval(bytes) && ValueCodec.intervalEnd(bytes) <= timestamp)) {
+            return null;
+        }
+        return ValueCodec.decode(bytes);
+    }
+
+    // the same as valueAt, for values decoded by TemporalChunk.
+    static Object valueAt(Object value, long timestamp) {
+        if (value instanceof TemporalInterval) {
+            var interval = (TemporalInterval) value;
+            return interval.end <= timestamp ? null : interval.value;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TemporalInterval that = (TemporalInterval) o;
+        return end == that.end && Objects.deepEquals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(end, value);
+    }
+
+    @Override
+    public String toString() {
+        return "TemporalInterval{" +
+                "end=" + end +
+                ", value=" + value +
+                '}';
+    }
+}
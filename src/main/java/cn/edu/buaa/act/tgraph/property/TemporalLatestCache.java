@@ -0,0 +1,116 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+// TemporalLatestCache keeps the latest point(timestamp, value) of temporal properties in memory, keyed by the
+// (entity, property) prefix, thus a read at or after the latest point(e.g. the value "now") is served without
+// a seekForPrev and a decode.
+// An entry is loaded by a read which misses, written points update it and removes covering its point invalidate it,
+// refer apply. Entries are bounded by number, the least recently used ones are evicted.
+
+// NOTE!: entries are loaded by reads holding the S-Lock of the temporal property, and updated by writers before
+// they release the X-Lock(see TransactionManager), thus an entry never misses a committed write.
+// NOTE!: values are shared by readers, do not modify a value read.
+final class TemporalLatestCache {
+
+    // the latest point of a prefix, a prefix without point is cached too.
+    static final class Latest {
+        static final Latest NONE = new Latest(false, 0, null);
+
+        private final boolean exists;
+        private final long timestamp;
+        // as decoded by TemporalInterval.decode, i.e. an interval record is a TemporalInterval.
+        private final Object value;
+
+        private Latest(boolean exists, long timestamp, Object value) {
+            this.exists = exists;
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+
+        static Latest of(long timestamp, Object value) {
+            return new Latest(true, timestamp, value);
+        }
+
+        boolean exists() {
+            return exists;
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+
+        Object value() {
+            return value;
+        }
+
+        // whether the value at timestamp is the one of this point.
+        boolean covers(long timestamp) {
+            return !exists || timestamp >= this.timestamp;
+        }
+
+        // the value at timestamp, only if covers(timestamp).
+        Object valueAt(long timestamp) {
+            return exists ? TemporalInterval.valueAt(value, timestamp) : null;
+        }
+    }
+
+    private final Cache<ByteBuffer, Latest> cache;
+    private final int prefixLength;
+
+    TemporalLatestCache(long maximumSize, int prefixLength) {
+        Preconditions.checkArgument(maximumSize > 0, "latest cache size should be positive.");
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+        this.prefixLength = prefixLength;
+    }
+
+    // the point key of the last possible point of the prefix of key.
+    static byte[] lastKey(byte[] key, int prefixLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(prefixLength + Long.BYTES);
+        buffer.put(key, 0, prefixLength);
+        Codec.putOrderedLong(buffer, Long.MAX_VALUE);
+        return buffer.array();
+    }
+
+    // the latest point of the prefix of key, loader loads it if it is missed.
+    // NOTE!: call it under the S-Lock of the temporal property.
+    Latest get(byte[] key, Function<byte[], Latest> loader) {
+        var prefix = TemporalCacheBatch.prefix(key, prefixLength);
+        var latest = cache.getIfPresent(prefix);
+        if (latest == null) {
+            latest = loader.apply(key);
+            cache.put(prefix, latest);
+        }
+        return latest;
+    }
+
+    // apply writes of a committed batch in order.
+    void apply(TemporalCacheBatch batch) {
+        var entries = cache.asMap();
+        for (var op : batch.ops()) {
+            var latest = entries.get(op.prefix);
+            if (latest == null) {
+                continue;
+            }
+            if (op.put) {
+                if (!latest.exists || op.from >= latest.timestamp) {
+                    cache.put(op.prefix, Latest.of(op.from, TemporalInterval.decode(op.bytes)));
+                }
+            } else if (latest.exists && op.from <= latest.timestamp && latest.timestamp <= op.to) {
+                // the latest point is removed, the previous one is unknown.
+                cache.invalidate(op.prefix);
+            }
+        }
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+}
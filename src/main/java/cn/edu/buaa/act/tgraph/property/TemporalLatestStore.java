@@ -0,0 +1,248 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.WriteBatch;
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// TemporalLatestStore keeps one record of the latest point of every temporal property, in its own column family.
+// Record key: prefix(prefixLength bytes), i.e. an exact key, value: timestamp(ordered long) + value(see TemporalInterval.encode).
+// A read at or after the latest point(e.g. the value "now") is a plain get instead of a seekForPrev, thus it is served by
+// the whole key bloom filter and the row cache(see RocksEngineConfig), and unlike TemporalLatestCache it survives restarts.
+
+// Maintenance:
+//      a put at or after the latest point rewrites its record in the same batch as the data.
+//      a remove of the latest point removes its record in the same batch, it is rebuilt from the data after commit,
+//      the writer still holds its exclusive locks(see TransactionManager), thus nobody else writes it meanwhile.
+// A missing record is read through, thus a lost refresh(e.g. crash before it) only costs speed, never correctness.
+// NOTE!: records are rebuilt from the data when they are enabled(see StoreUpgrader.latestRecords).
+final class TemporalLatestStore {
+
+    // the latest point of the prefix of a key in the data.
+    interface LatestPoint {
+        TemporalLatestCache.Latest latest(byte[] key);
+    }
+
+    // records per batch of rebuild.
+    private static final int REBUILD_BATCH_SIZE = 10_000;
+
+    private final KVEngine store;
+    private final int prefixLength;
+    private final LatestPoint data;
+
+    TemporalLatestStore(KVEngine store, int prefixLength, LatestPoint data) {
+        this.store = store;
+        this.prefixLength = prefixLength;
+        this.data = data;
+    }
+
+    private static byte[] record(long timestamp, byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + bytes.length);
+        Codec.putOrderedLong(buffer, timestamp);
+        buffer.put(bytes);
+        return buffer.array();
+    }
+
+    private static TemporalLatestCache.Latest decode(byte[] record) {
+        long timestamp = Codec.getOrderedLong(ByteBuffer.wrap(record, 0, Long.BYTES));
+        return TemporalLatestCache.Latest.of(timestamp, TemporalInterval.decode(Arrays.copyOfRange(record, Long.BYTES, record.length)));
+    }
+
+    // the latest point of the prefix of key, null if its record is missing, read the data then.
+    TemporalLatestCache.Latest get(byte[] key) {
+        var record = store.get(Arrays.copyOf(key, prefixLength), null);
+        return record == null ? null : decode(record);
+    }
+
+    // the record of the prefix of key rebuilt from the data, null if the prefix has no point.
+    private byte[] load(byte[] key) {
+        var latest = data.latest(key);
+        return latest.exists() ? record(latest.timestamp(), TemporalInterval.encode(latest.value())) : null;
+    }
+
+    Builder startBuild() {
+        return new Builder();
+    }
+
+    // Builder writes records of prefixes already in the data, records should be empty(see StoreUpgrader.latestRecords).
+    final class Builder implements AutoCloseable {
+        private WriteBatch wb = store.startBatchWrite();
+        private int size = 0;
+
+        void add(byte[] prefix) {
+            var record = load(prefix);
+            if (record == null) {
+                return;
+            }
+            wb.put(Arrays.copyOf(prefix, prefixLength), record);
+            if (++size == REBUILD_BATCH_SIZE) {
+                finish();
+                wb.close();
+                wb = store.startBatchWrite();
+            }
+        }
+
+        // commit records added so far.
+        void finish() {
+            Preconditions.checkState(store.commitBatchWrite(wb, false, true, true), "rebuild latest records failed.");
+            size = 0;
+        }
+
+        @Override
+        public void close() {
+            wb.close();
+        }
+    }
+
+    // rebuild records of prefixes whose latest point is unknown to batch.
+    void refresh(Batch batch) {
+        if (batch.points.isEmpty()) {
+            return;
+        }
+        try (var wb = store.startBatchWrite()) {
+            for (var entry : batch.points.entrySet()) {
+                var point = entry.getValue();
+                var key = entry.getKey().array();
+                if (point.bytes != null) {
+                    // written by the data batch if it is shared.
+                    if (!batch.shared) {
+                        wb.put(key, record(point.timestamp, point.bytes));
+                    }
+                } else if (point.timestamp != Long.MIN_VALUE) {
+                    var record = load(key);
+                    if (record != null) {
+                        wb.put(key, record);
+                    }
+                }
+            }
+            // records are derived data, the data batch is already synced.
+            store.commitBatchWrite(wb, false, false, true);
+        }
+        batch.points.clear();
+    }
+
+    void stop() {
+        store.stop();
+    }
+
+    void drop() {
+        store.drop();
+    }
+
+    Batch startBatchWrite(WriteBatch parent) {
+        return new Batch(store.startBatchWrite(parent), parent);
+    }
+
+    // the latest point of a prefix as far as a batch knows.
+    private static final class Point {
+        // no point at all.
+        static final Point NONE = new Point(Long.MIN_VALUE, null);
+
+        // bytes == null: the latest point is unknown, every point is before timestamp.
+        final long timestamp;
+        final byte[] bytes;
+
+        Point(long timestamp, byte[] bytes) {
+            this.timestamp = timestamp;
+            this.bytes = bytes;
+        }
+    }
+
+    // Batch rewrites records of prefixes written by the data batch.
+    // If it does not share one underlying batch with the data, records are only removed before the data is committed
+    // and all of them are rebuilt after, thus a record never claims a point which is not committed.
+    final class Batch implements AutoCloseable {
+        private final WriteBatch wb;
+        private final boolean shared;
+        // record key -> the latest point after writes so far.
+        private final Map<ByteBuffer, Point> points = new HashMap<>();
+
+        private Batch(WriteBatch wb, WriteBatch data) {
+            this.wb = wb;
+            this.shared = wb.sharedWith(data);
+        }
+
+        // the latest point of the prefix of key before this batch, the data is not written until commit.
+        private Point point(ByteBuffer prefix, byte[] key) {
+            var point = points.get(prefix);
+            if (point != null) {
+                return point;
+            }
+            var record = store.get(prefix.array(), null);
+            if (record == null) {
+                record = load(key);
+            }
+            if (record == null) {
+                return Point.NONE;
+            }
+            return new Point(Codec.getOrderedLong(ByteBuffer.wrap(record, 0, Long.BYTES)), Arrays.copyOfRange(record, Long.BYTES, record.length));
+        }
+
+        private void update(ByteBuffer prefix, Point point) {
+            points.put(prefix, point);
+            if (shared && point.bytes != null) {
+                wb.put(prefix.array(), record(point.timestamp, point.bytes));
+            } else {
+                wb.remove(prefix.array());
+            }
+        }
+
+        private long timestampOf(byte[] key) {
+            return Codec.getOrderedLong(ByteBuffer.wrap(key, prefixLength, Long.BYTES));
+        }
+
+        // bytes: the value encoded by TemporalInterval.encode.
+        void put(byte[] key, byte[] bytes) {
+            var prefix = TemporalCacheBatch.prefix(key, prefixLength);
+            var point = point(prefix, key);
+            long timestamp = timestampOf(key);
+            // an unknown latest point is before point.timestamp too.
+            if (timestamp >= point.timestamp) {
+                update(prefix, new Point(timestamp, bytes));
+            }
+        }
+
+        void remove(byte[] key) {
+            long timestamp = timestampOf(key);
+            removeRange(key, timestamp, timestamp);
+        }
+
+        // points in [start, end) are removed, keys share one prefix.
+        void removeRange(byte[] startKey, byte[] endKey) {
+            long start = timestampOf(startKey);
+            long end = timestampOf(endKey);
+            if (start < end) {
+                removeRange(startKey, start, end - 1);
+            }
+        }
+
+        // points in [from, to] are removed, the latest point is before from if it is removed.
+        private void removeRange(byte[] key, long from, long to) {
+            var prefix = TemporalCacheBatch.prefix(key, prefixLength);
+            var point = point(prefix, key);
+            if (point.bytes != null && from <= point.timestamp && point.timestamp <= to) {
+                update(prefix, new Point(from, null));
+            }
+        }
+
+        void removePrefix(byte[] prefix) {
+            update(TemporalCacheBatch.prefix(prefix, prefixLength), Point.NONE);
+        }
+
+        // records are written by the data batch if they share one underlying batch,
+        // otherwise this batch only removes records, it is committed before the data batch.
+        boolean commitBefore(WriteBatch data) {
+            return shared || store.commitBatchWrite(wb, false, true, true);
+        }
+
+        @Override
+        public void close() {
+            wb.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.common.Pair;
+import cn.edu.buaa.act.tgraph.common.ValueCodec;
+import cn.edu.buaa.act.tgraph.kvstore.KVIterator;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// TemporalPropertyIterator streams (timestamp, value) of one temporal property in timestamp order,
+// values are decoded on demand, thus memory is constant no matter how long the range is.
+// In chunk mode(see TemporalChunkStore), every key is a chunk and points are decoded chunk by chunk.
+// Points of a cached segment(see TemporalSeriesCache) are already in range, they are returned as is.
+// An interval record(see TemporalInterval) is returned once at its start with its value,
+// the value effective at start is dropped if it is an interval expired before start.
+
+// The underlying store iterator is closed as soon as the iterator is exhausted or closed,
+// NOTE!: close it if you stop early, or the store iterator is held until GC.
+// NOTE!: not thread safe, use it in the thread of its transaction.
+public class TemporalPropertyIterator implements Iterator<Pair<Timestamp, Object>>, AutoCloseable {
+
+    private KVIterator iter;
+
+    // points of a cached segment, null if points are read from iter.
+    private Iterator<Pair<Timestamp, Object>> cached = null;
+
+    // offset of timestamp in keys, i.e. the prefix length.
+    private final int timestampOffset;
+
+    // the first point may be before start, i.e. the value effective at start.
+    // chunk mode: the last point <= start, then points in (start, end).
+    private final boolean chunked;
+    private final long start;
+    private final long end;
+    private TemporalChunk.Cursor cursor = null;
+    // the last point <= start seen so far.
+    private Pair<Timestamp, Object> effective = null;
+
+    // the point returned by next.
+    private Pair<Timestamp, Object> lookahead = null;
+    // the point after the effective one.
+    private Pair<Timestamp, Object> held = null;
+
+    TemporalPropertyIterator(KVIterator iter, int timestampOffset) {
+        this(iter, timestampOffset, Long.MIN_VALUE);
+    }
+
+    TemporalPropertyIterator(KVIterator iter, int timestampOffset, long start) {
+        this.iter = iter;
+        this.timestampOffset = timestampOffset;
+        this.chunked = false;
+        this.start = start;
+        this.end = Long.MAX_VALUE;
+        this.lookahead = advance();
+    }
+
+    // end == Long.MAX_VALUE means no upper bound.
+    TemporalPropertyIterator(KVIterator chunks, long start, long end) {
+        this.iter = chunks;
+        this.timestampOffset = 0;
+        this.chunked = true;
+        this.start = start;
+        this.end = end;
+        this.lookahead = advance();
+    }
+
+    // points already in range, the first one is the value effective at start.
+    TemporalPropertyIterator(Iterator<Pair<Timestamp, Object>> cached) {
+        this.iter = null;
+        this.cached = cached;
+        this.timestampOffset = 0;
+        this.chunked = false;
+        this.start = Long.MIN_VALUE;
+        this.end = Long.MAX_VALUE;
+        this.lookahead = advance();
+    }
+
+    // no points, e.g. of a temporal property never written.
+    public static TemporalPropertyIterator empty() {
+        return new TemporalPropertyIterator(Collections.emptyIterator());
+    }
+
+    @Override
+    public boolean hasNext() {
+        return lookahead != null;
+    }
+
+    @Override
+    public Pair<Timestamp, Object> next() {
+        if (lookahead == null) {
+            throw new NoSuchElementException();
+        }
+        var ret = lookahead;
+        if (held != null) {
+            lookahead = held;
+            held = null;
+        } else {
+            lookahead = advance();
+        }
+        return ret;
+    }
+
+    private Pair<Timestamp, Object> advance() {
+        if (cached != null) {
+            return cached.hasNext() ? cached.next() : null;
+        }
+        return chunked ? advanceChunk() : advancePoint();
+    }
+
+    private Pair<Timestamp, Object> advancePoint() {
+        while (iter != null && iter.valid()) {
+            long timestamp = Codec.getOrderedLong(ByteBuffer.wrap(iter.key(), timestampOffset, Long.BYTES));
+            var bytes = iter.value();
+            iter.next();
+            var value = timestamp < start ? TemporalInterval.valueAt(bytes, start) : ValueCodec.decode(bytes);
+            if (value != null) {
+                return Pair.of(new Timestamp(timestamp), value);
+            }
+        }
+        closeStore();
+        return null;
+    }
+
+    private Pair<Timestamp, Object> advanceChunk() {
+        while (true) {
+            if (cursor == null || !cursor.next()) {
+                if (iter == null || !iter.valid()) {
+                    return finish();
+                }
+                cursor = new TemporalChunk.Cursor(iter.value());
+                iter.next();
+                continue;
+            }
+            long t = cursor.timestamp();
+            if (t <= start) {
+                var value = TemporalInterval.valueAt(cursor.value(), start);
+                effective = value == null ? null : Pair.of(new Timestamp(t), value);
+                continue;
+            }
+            if (end != Long.MAX_VALUE && t >= end) {
+                return finish();
+            }
+            // an interval is valid at its start, thus this unwraps it.
+            var point = Pair.of(new Timestamp(t), TemporalInterval.valueAt(cursor.value(), t));
+            if (effective == null) {
+                return point;
+            }
+            held = point;
+            return takeEffective();
+        }
+    }
+
+    // no more points in range, only the effective one may be left.
+    private Pair<Timestamp, Object> finish() {
+        closeStore();
+        cursor = null;
+        return takeEffective();
+    }
+
+    private Pair<Timestamp, Object> takeEffective() {
+        var ret = effective;
+        effective = null;
+        return ret;
+    }
+
+    // drain the rest into a list, only for short ranges.
+    public List<Pair<Timestamp, Object>> toList() {
+        List<Pair<Timestamp, Object>> ret = new ArrayList<>();
+        while (hasNext()) {
+            ret.add(next());
+        }
+        return ret;
+    }
+
+    private void closeStore() {
+        if (iter != null) {
+            iter.close();
+            iter = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeStore();
+        cached = null;
+        cursor = null;
+        effective = null;
+        lookahead = null;
+        held = null;
+    }
+}
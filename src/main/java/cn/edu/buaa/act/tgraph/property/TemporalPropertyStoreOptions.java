@@ -0,0 +1,112 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+
+// Optional features of Vertex/EdgeTemporalPropertyStore, every one is disabled by default.
+// Setters return this, thus options can be chained, e.g. TemporalPropertyStoreOptions.of().setChunkInterval(100).
+// NOTE!: stores of features keeping their own data(rollups, change index, latest records) should share batches with
+// the temporal property store(e.g. other column families of the same RocksInstance), thus they are written atomically.
+public class TemporalPropertyStoreOptions {
+    // time unit milliseconds, points in one interval are packed into one key, 0 means one key per point.
+    private long chunkInterval = 0;
+    // summaries are kept in rollupStore for rollupLevels(time unit milliseconds, e.g. minute/hour/day),
+    // null or empty rollupLevels means no summary.
+    private KVEngine rollupStore = null;
+    private long[] rollupLevels = new long[0];
+    // points are indexed by time in it(see TemporalChangeIndex), null means no index.
+    private KVEngine changeStore = null;
+    // the latest point of at most so many temporal properties are cached, 0 means no cache.
+    private long latestCacheSize = 0;
+    // recent points of hot temporal properties are cached off-heap in so many bytes, 0 means no cache.
+    private long seriesCacheMemory = 0;
+    // only range reads from at most so many milliseconds before the latest point are cached, Long.MAX_VALUE means no limit.
+    private long seriesCacheHorizon = Long.MAX_VALUE;
+    // keys are stored with descending timestamps(see TemporalDescendingStore), only in point mode.
+    private boolean descendingTimestamps = false;
+    // the latest point of every temporal property is recorded in it(see TemporalLatestStore), null means no record.
+    private KVEngine latestStore = null;
+
+    private TemporalPropertyStoreOptions() {
+    }
+
+    public static TemporalPropertyStoreOptions of() {
+        return new TemporalPropertyStoreOptions();
+    }
+
+    public long getChunkInterval() {
+        return chunkInterval;
+    }
+
+    public TemporalPropertyStoreOptions setChunkInterval(long chunkInterval) {
+        this.chunkInterval = chunkInterval;
+        return this;
+    }
+
+    public KVEngine getRollupStore() {
+        return rollupStore;
+    }
+
+    public long[] getRollupLevels() {
+        return rollupLevels;
+    }
+
+    public TemporalPropertyStoreOptions setRollups(KVEngine rollupStore, long[] rollupLevels) {
+        this.rollupStore = rollupStore;
+        this.rollupLevels = rollupLevels == null ? new long[0] : rollupLevels;
+        return this;
+    }
+
+    public KVEngine getChangeStore() {
+        return changeStore;
+    }
+
+    public TemporalPropertyStoreOptions setChangeStore(KVEngine changeStore) {
+        this.changeStore = changeStore;
+        return this;
+    }
+
+    public long getLatestCacheSize() {
+        return latestCacheSize;
+    }
+
+    public TemporalPropertyStoreOptions setLatestCacheSize(long latestCacheSize) {
+        this.latestCacheSize = latestCacheSize;
+        return this;
+    }
+
+    public long getSeriesCacheMemory() {
+        return seriesCacheMemory;
+    }
+
+    public TemporalPropertyStoreOptions setSeriesCacheMemory(long seriesCacheMemory) {
+        this.seriesCacheMemory = seriesCacheMemory;
+        return this;
+    }
+
+    public long getSeriesCacheHorizon() {
+        return seriesCacheHorizon;
+    }
+
+    public TemporalPropertyStoreOptions setSeriesCacheHorizon(long seriesCacheHorizon) {
+        this.seriesCacheHorizon = seriesCacheHorizon;
+        return this;
+    }
+
+    public boolean isDescendingTimestamps() {
+        return descendingTimestamps;
+    }
+
+    public TemporalPropertyStoreOptions setDescendingTimestamps(boolean descendingTimestamps) {
+        this.descendingTimestamps = descendingTimestamps;
+        return this;
+    }
+
+    public KVEngine getLatestStore() {
+        return latestStore;
+    }
+
+    public TemporalPropertyStoreOptions setLatestStore(KVEngine latestStore) {
+        this.latestStore = latestStore;
+        return this;
+    }
+}
@@ -0,0 +1,106 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
+import cn.edu.buaa.act.tgraph.kvstore.StoreOptions;
+import com.google.common.base.Preconditions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// TemporalPropertyTokenStore maps temporal property names to compact int ids(tokens) per graph,
+// just like neo4j property key tokens. Keys of temporal property stores, TemporalPropertyID
+// and LockManager all use the token instead of the name.
+
+// Tokens are never reused or removed, a name keeps its token even if the temporal property is removed.
+// The whole dictionary is loaded into memory at startup, lookups never touch the disk.
+
+// Layout: propertyName(utf-8) -> propertyId(int, 4 bytes)
+// NOTE!: All methods are thread safe.
+public class TemporalPropertyTokenStore {
+
+    private static final Log log = LogFactory.getLog(TemporalPropertyTokenStore.class);
+
+    public static final int NO_TOKEN = -1;
+
+    private final GraphSpaceID graph;
+    private final KVEngine db;
+
+    private final ConcurrentHashMap<String, Integer> nameToId = new ConcurrentHashMap<>();
+    private final List<String> idToName = new ArrayList<>(); // guarded by this.
+
+    public TemporalPropertyTokenStore(GraphSpaceID graph, String dataPath, boolean readonly) {
+        this.graph = graph;
+        this.db = new RocksEngine(StoreOptions.of(graph, dataPath, readonly));
+        load();
+    }
+
+    // Attach to an opened engine, e.g. a column family of the graph's RocksInstance.
+    public TemporalPropertyTokenStore(GraphSpaceID graph, KVEngine db) {
+        this.graph = graph;
+        this.db = db;
+        load();
+    }
+
+    private synchronized void load() {
+        for (var pr : db.scan()) {
+            var name = new String(pr.first(), StandardCharsets.UTF_8);
+            int id = Codec.bytesToInt(pr.second());
+            nameToId.put(name, id);
+            while (idToName.size() <= id) {
+                idToName.add(null);
+            }
+            idToName.set(id, name);
+        }
+        log.info(String.format("Load %d temporal property token(s) of graph %s.", nameToId.size(), graph.getGraphName()));
+    }
+
+    // return NO_TOKEN if this name has never been written.
+    public int getId(String propertyName) {
+        var id = nameToId.get(propertyName);
+        return id == null ? NO_TOKEN : id;
+    }
+
+    public int getOrCreateId(String propertyName) {
+        var id = nameToId.get(propertyName);
+        if (id != null) {
+            return id;
+        }
+        return createId(propertyName);
+    }
+
+    private synchronized int createId(String propertyName) {
+        var id = nameToId.get(propertyName);
+        if (id != null) {
+            return id;
+        }
+        int newId = idToName.size();
+        // token should be durable before any key refers to it.
+        try (var wb = db.startBatchWrite()) {
+            wb.put(propertyName.getBytes(StandardCharsets.UTF_8), Codec.intToBytes(newId));
+            Preconditions.checkState(db.commitBatchWrite(wb, false, true, true), "create token of temporal property %s failed.", propertyName);
+        }
+        idToName.add(propertyName);
+        nameToId.put(propertyName, newId);
+        return newId;
+    }
+
+    public synchronized String getName(int propertyId) {
+        Preconditions.checkArgument(propertyId >= 0 && propertyId < idToName.size(), "unknown temporal property token %s.", propertyId);
+        return idToName.get(propertyId);
+    }
+
+    public void stop() {
+        db.stop();
+    }
+
+    public void drop() {
+        db.drop();
+    }
+}
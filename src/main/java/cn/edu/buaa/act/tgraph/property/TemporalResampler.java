@@ -0,0 +1,200 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.ValueCodec;
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// TemporalResampler folds points of one temporal property into fixed buckets [start + i * step, start + (i + 1) * step)
+// in one pass, points are added in timestamp order:
+//      the last point before start(the value effective at start), points in [start, end), then the first point >= end.
+// Every bucket is folded by a TemporalAggregator, an empty bucket is filled by TemporalFill.
+// The previous point is kept as raw bytes(point mode) or marked in its chunk(chunk mode),
+// thus it is only decoded if an empty bucket is filled by it.
+// NOTE!: not thread safe.
+final class TemporalResampler {
+
+    // the result is bounded, split a longer resample into several ones.
+    static final int MAX_BUCKETS = 1_000_000;
+
+    private final long start;
+    private final long end;
+    private final long step;
+    private final int buckets;
+    private final TemporalFill fill;
+    private final TemporalAggregation aggregation;
+
+    private final List<Object> ret;
+    // the current bucket, points before it are all added.
+    private int bucket = 0;
+    private TemporalAggregator current;
+    private boolean empty = true;
+    private boolean done = false;
+
+    // the last point added, the previous one of empty buckets.
+    private boolean hasPrev = false;
+    private long prevTimestamp;
+    private byte[] prevBytes = null;
+    private Object prev = null;
+    // chunk mode: the last point is marked in cursor.
+    private TemporalChunk.Cursor cursor = null;
+    private boolean marked = false;
+
+    // time unit: milliseconds.
+    TemporalResampler(long start, long end, long step, TemporalFill fill, TemporalAggregation aggregation) {
+        Preconditions.checkArgument(start < end, "start should be smaller than end.");
+        Preconditions.checkArgument(step > 0, "step should be positive.");
+        long span = Math.subtractExact(end, start);
+        long buckets = span / step + (span % step == 0 ? 0 : 1);
+        Preconditions.checkArgument(buckets <= MAX_BUCKETS, "too many buckets %s, max is %s.", buckets, MAX_BUCKETS);
+        this.start = start;
+        this.end = end;
+        this.step = step;
+        this.buckets = (int) buckets;
+        this.fill = fill;
+        this.aggregation = aggregation;
+        this.ret = new ArrayList<>(this.buckets);
+        this.current = new TemporalAggregator(aggregation);
+    }
+
+    // a point of point mode, bytes is the stored value, return false if no more points are needed.
+    boolean add(long timestamp, byte[] bytes) {
+        if (done) {
+            return false;
+        }
+        if (timestamp >= start) {
+            if (!accept(timestamp, interpolate(timestamp) ? numeric(bytes) : null)) {
+                return false;
+            }
+            current.add(bytes);
+        }
+        hasPrev = true;
+        prevTimestamp = timestamp;
+        prevBytes = bytes;
+        return true;
+    }
+
+    // the current point of cursor, chunk mode.
+    boolean add(TemporalChunk.Cursor cursor) {
+        if (done) {
+            return false;
+        }
+        this.cursor = cursor;
+        long timestamp = cursor.timestamp();
+        if (timestamp >= start) {
+            // the aggregator may mark the point, materialize the marked one of it first.
+            if (index(timestamp) > bucket) {
+                current.finishChunk(cursor);
+            }
+            if (!accept(timestamp, interpolate(timestamp) ? numeric(cursor) : null)) {
+                return false;
+            }
+            current.add(cursor);
+        }
+        hasPrev = true;
+        prevTimestamp = timestamp;
+        cursor.mark();
+        marked = true;
+        return true;
+    }
+
+    // points of cursor are added, materialize the points marked in its chunk.
+    void finishChunk(TemporalChunk.Cursor cursor) {
+        current.finishChunk(cursor);
+        if (marked && fill != TemporalFill.NONE) {
+            prev = cursor.markedValue();
+        }
+        marked = false;
+        this.cursor = null;
+    }
+
+    // close buckets before the bucket of a point >= start, next: its numeric value for LINEAR.
+    // return false if the point is after end, i.e. all buckets are closed.
+    private boolean accept(long timestamp, Double next) {
+        int index = index(timestamp);
+        if (index > bucket) {
+            close(index, timestamp, next);
+        }
+        if (index == buckets) {
+            done = true;
+            return false;
+        }
+        empty = false;
+        return true;
+    }
+
+    // the point is the next one of an empty bucket to interpolate, thus its value is needed.
+    private boolean interpolate(long timestamp) {
+        return fill == TemporalFill.LINEAR && aggregation != TemporalAggregation.COUNT && index(timestamp) > (empty ? bucket : bucket + 1);
+    }
+
+    // bucket of a point >= start, buckets if it is after end.
+    private int index(long timestamp) {
+        return timestamp >= end ? buckets : (int) ((timestamp - start) / step);
+    }
+
+    private void close(int index, long nextTimestamp, Double next) {
+        Object previous = null;
+        boolean decoded = false;
+        for (int i = bucket; i < index; ++i) {
+            if (i == bucket && !empty) {
+                ret.add(current.result());
+                continue;
+            }
+            if (aggregation == TemporalAggregation.COUNT) {
+                ret.add(0L);
+                continue;
+            }
+            if (!decoded && hasPrev && fill != TemporalFill.NONE) {
+                decoded = true;
+                previous = marked ? cursor.markedValue() : prevBytes != null ? TemporalInterval.decode(prevBytes) : prev;
+            }
+            ret.add(fill(start + i * step, previous, nextTimestamp, next));
+        }
+        bucket = index;
+        current = new TemporalAggregator(aggregation);
+        empty = true;
+    }
+
+    private Object fill(long timestamp, Object previous, long nextTimestamp, Double next) {
+        var value = TemporalInterval.valueAt(previous, timestamp);
+        switch (fill) {
+            case LOCF:
+                return value;
+            case LINEAR:
+                if (!(value instanceof Number) || next == null) {
+                    return null;
+                }
+                double v = ((Number) value).doubleValue();
+                return v + (next - v) * (timestamp - prevTimestamp) / (nextTimestamp - prevTimestamp);
+            default:
+                return null;
+        }
+    }
+
+    private static Double numeric(byte[] bytes) {
+        if (ValueCodec.isNumeric(bytes)) {
+            return ValueCodec.getDouble(bytes);
+        }
+        var value = ValueCodec.decode(bytes);
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    private static Double numeric(TemporalChunk.Cursor cursor) {
+        if (cursor.isNumeric()) {
+            return cursor.doubleValue();
+        }
+        var value = TemporalInterval.valueAt(cursor.value(), cursor.timestamp());
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    // one value per bucket, buckets after the last point are filled without the next point.
+    List<Object> result() {
+        if (!done) {
+            close(buckets, Long.MAX_VALUE, null);
+            done = true;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,236 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Bytes;
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.WriteBatch;
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+// TemporalRollupStore keeps summaries(count, sum, min and max, see TemporalAggregator.summary) of temporal properties
+// in multi-resolution time buckets(e.g. minute/hour/day), in its own column family beside the raw series.
+// Record key: prefix(prefixLength bytes) + level(1 byte) + bucket(ordered long), buckets of a level are aligned to 0.
+// A long range aggregate reads records of the coarsest buckets inside the range, finer records only at its two ends,
+// and raw points only in the finest partial buckets and buckets without record.
+
+// Maintenance:
+//      invalidate: writes remove records of the buckets they touch, in the same batch as the data.
+//      refresh: after commit, the finest buckets written are rebuilt from raw points and coarser ones from finer records,
+//               the writer still holds its exclusive locks(see TransactionManager), thus nobody else writes them meanwhile.
+// A missing record is read through, thus a lost refresh(e.g. crash before it) only costs speed, never correctness.
+// NOTE!: levels of a store are recorded, records are dropped when they change(see StoreUpgrader.rollupLevels).
+final class TemporalRollupStore {
+
+    // the raw series: fold points in [startKey, endKey) into aggregator, keys share one prefix.
+    interface RawAggregate {
+        void aggregate(byte[] startKey, byte[] endKey, TemporalAggregator aggregator);
+    }
+
+    private final KVEngine store;
+    private final int prefixLength;
+    // time unit: milliseconds, ascending, each one is a multiple of the previous one.
+    private final long[] levels;
+    private final RawAggregate raw;
+
+    TemporalRollupStore(KVEngine store, int prefixLength, long[] levels, RawAggregate raw) {
+        Preconditions.checkArgument(levels.length > 0 && levels.length < 0xff, "rollup levels should be in [1, 255).");
+        for (int l = 0; l < levels.length; ++l) {
+            Preconditions.checkArgument(levels[l] > 0 && (l == 0 || (levels[l] > levels[l - 1] && levels[l] % levels[l - 1] == 0)),
+                    "rollup levels should be positive, ascending and each one a multiple of the previous one.");
+        }
+        this.store = store;
+        this.prefixLength = prefixLength;
+        this.levels = levels.clone();
+        this.raw = raw;
+    }
+
+    long[] getLevels() {
+        return levels.clone();
+    }
+
+    // the same as TemporalChunkStore.bucket, the first bucket starts from Long.MIN_VALUE.
+    private long bucket(int level, long timestamp) {
+        long bucket = timestamp - Math.floorMod(timestamp, levels[level]);
+        return bucket > timestamp ? Long.MIN_VALUE : bucket;
+    }
+
+    // start of the first whole bucket >= timestamp, Long.MAX_VALUE if there is none.
+    private long ceilBucket(int level, long timestamp) {
+        return bucket(level, timestamp) == timestamp ? timestamp : bucketEnd(level, timestamp);
+    }
+
+    // end of the bucket, overflow of the intermediate result cancels out, Long.MAX_VALUE if the end overflows.
+    private long bucketEnd(int level, long bucket) {
+        long end = bucket - Math.floorMod(bucket, levels[level]) + levels[level];
+        return end < bucket ? Long.MAX_VALUE : end;
+    }
+
+    private byte[] recordKey(byte[] prefix, int level, long bucket) {
+        ByteBuffer buffer = ByteBuffer.allocate(prefixLength + 1 + Long.BYTES);
+        buffer.put(prefix, 0, prefixLength);
+        buffer.put((byte) level);
+        Codec.putOrderedLong(buffer, bucket);
+        return buffer.array();
+    }
+
+    private long bucketOf(byte[] recordKey) {
+        return Codec.getOrderedLong(ByteBuffer.wrap(recordKey, prefixLength + 1, Long.BYTES));
+    }
+
+    private byte[] pointKey(byte[] prefix, long timestamp) {
+        ByteBuffer buffer = ByteBuffer.allocate(prefixLength + Long.BYTES);
+        buffer.put(prefix, 0, prefixLength);
+        Codec.putOrderedLong(buffer, timestamp);
+        return buffer.array();
+    }
+
+    private long timestampOf(byte[] pointKey) {
+        return Codec.getOrderedLong(ByteBuffer.wrap(pointKey, prefixLength, Long.BYTES));
+    }
+
+    // fold points in [start, end) of prefix into aggregator, only for MIN/MAX/SUM/AVG/COUNT.
+    void aggregate(byte[] prefix, long start, long end, TemporalAggregator aggregator) {
+        cover(levels.length - 1, prefix, start, end, aggregator);
+    }
+
+    // [start, end) by whole buckets of level and finer levels at both ends, level -1 is the raw series.
+    private void cover(int level, byte[] prefix, long start, long end, TemporalAggregator aggregator) {
+        if (start >= end) {
+            return;
+        }
+        if (level < 0) {
+            raw.aggregate(pointKey(prefix, start), pointKey(prefix, end), aggregator);
+            return;
+        }
+        long first = ceilBucket(level, start);
+        long last = bucket(level, end);
+        if (first >= last) {
+            cover(level - 1, prefix, start, end, aggregator);
+            return;
+        }
+        cover(level - 1, prefix, start, first, aggregator);
+        // buckets without record are covered by finer levels.
+        long expected = first;
+        try (var iter = store.range(recordKey(prefix, level, first), recordKey(prefix, level, last))) {
+            while (iter.valid()) {
+                long bucket = bucketOf(iter.key());
+                cover(level - 1, prefix, expected, bucket, aggregator);
+                aggregator.addSummary(iter.value());
+                expected = bucketEnd(level, bucket);
+                iter.next();
+            }
+        }
+        cover(level - 1, prefix, expected, last, aggregator);
+        cover(level - 1, prefix, last, end, aggregator);
+    }
+
+    // rebuild records of buckets written by batch, level by level, thus a level is built from the finer records just written.
+    void refresh(Batch batch) {
+        var current = batch.dirty;
+        for (int l = 0; l < levels.length && !current.isEmpty(); ++l) {
+            TreeSet<byte[]> coarser = new TreeSet<>(Arrays::compareUnsigned);
+            try (var wb = store.startBatchWrite()) {
+                for (var key : current) {
+                    long bucket = bucketOf(key);
+                    var aggregator = new TemporalAggregator(TemporalAggregation.SUM);
+                    cover(l - 1, key, bucket, bucketEnd(l, bucket), aggregator);
+                    // an empty bucket is recorded too, thus it is never read through.
+                    wb.put(key, aggregator.summary());
+                    if (l + 1 < levels.length) {
+                        coarser.add(recordKey(key, l + 1, bucket(l + 1, bucket)));
+                    }
+                }
+                // records are derived data, the data batch is already synced.
+                store.commitBatchWrite(wb, false, false, true);
+            }
+            current = coarser;
+        }
+        batch.dirty.clear();
+    }
+
+    void stop() {
+        store.stop();
+    }
+
+    void drop() {
+        store.drop();
+    }
+
+    Batch startBatchWrite(WriteBatch parent) {
+        return new Batch(store.startBatchWrite(parent));
+    }
+
+    // Batch removes records of buckets written by the data batch and remembers the finest ones to refresh.
+    final class Batch implements AutoCloseable {
+        private final WriteBatch wb;
+        // record keys removed by this batch.
+        private final TreeSet<byte[]> removed = new TreeSet<>(Arrays::compareUnsigned);
+        // record keys of the finest buckets to refresh after commit.
+        private final TreeSet<byte[]> dirty = new TreeSet<>(Arrays::compareUnsigned);
+
+        private Batch(WriteBatch wb) {
+            this.wb = wb;
+        }
+
+        // a point is put or removed.
+        void touch(byte[] key) {
+            long timestamp = timestampOf(key);
+            for (int l = 0; l < levels.length; ++l) {
+                var record = recordKey(key, l, bucket(l, timestamp));
+                if (removed.add(record)) {
+                    wb.remove(record);
+                }
+            }
+            dirty.add(recordKey(key, 0, bucket(0, timestamp)));
+        }
+
+        // points in [start, end) are removed, keys share one prefix.
+        void removeRange(byte[] startKey, byte[] endKey) {
+            long start = timestampOf(startKey);
+            long end = timestampOf(endKey);
+            if (start >= end) {
+                return;
+            }
+            for (int l = 0; l < levels.length; ++l) {
+                var last = recordKey(startKey, l, bucket(l, end - 1));
+                wb.removeRange(recordKey(startKey, l, bucket(l, start)), last);
+                wb.remove(last);
+            }
+            // partial buckets at both ends keep points.
+            dirty.add(recordKey(startKey, 0, bucket(0, start)));
+            dirty.add(recordKey(startKey, 0, bucket(0, end - 1)));
+        }
+
+        void removePrefix(byte[] prefix) {
+            var from = Arrays.copyOf(prefix, prefixLength);
+            var to = Bytes.successor(from);
+            if (to != null) {
+                wb.removeRange(from, to);
+                dirty.subSet(from, to).clear();
+                return;
+            }
+            // prefix of all 0xff has no successor, remove records one by one.
+            try (var iter = store.prefix(from, null)) {
+                while (iter.valid()) {
+                    wb.remove(iter.key());
+                    iter.next();
+                }
+            }
+            dirty.tailSet(from).clear();
+        }
+
+        // records are removed by the data batch if they share one underlying batch,
+        // otherwise this batch is committed before the data batch.
+        boolean commitBefore(WriteBatch data) {
+            return wb.sharedWith(data) || store.commitBatchWrite(wb, false, true, true);
+        }
+
+        @Override
+        public void close() {
+            wb.close();
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.common.Pair;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+
+// TemporalSeriesCache keeps recent points of hot temporal properties off-heap, thus a range read of a recent window
+// (e.g. the last hour of a sensor) is served from memory, without a store iterator and a decode of every key or chunk.
+// A segment of a prefix(entity, property) holds its points from the one effective at from, i.e. the last point <= from,
+// to the latest one, a range read from start >= from is served by it.
+// Columns of a segment are direct buffers:
+//      timestamps(long), kinds(byte, the same as TemporalChunk),
+//      bits(long, the value of DOUBLE/LONG/INT or the offset of a GENERIC value in generic),
+//      generic(length(int) + TemporalInterval encoded bytes, of other types and interval records).
+
+// Maintenance:
+//      load: a range read which misses loads the segment from its start, unless it has more than MAX_SEGMENT_POINTS points,
+//            or its start is more than horizon before the latest point of the prefix, a historical read goes to the store,
+//            thus it neither scans twice nor pins old points. Concurrent misses of one prefix load it once.
+//      append: a committed point after the latest one of a segment is appended to it, any other write changing its
+//              points drops it, the next read loads it again(see apply).
+//      trim: a segment grown to MAX_SEGMENT_POINTS points drops its older half.
+// Segments are evicted as a whole, the least recently used one first, once buffers exceed the memory limit.
+
+// NOTE!: segments are loaded by reads holding the S-Lock of the temporal property, and appended by writers before
+// they release the X-Lock(see TransactionManager), the same as TemporalLatestCache.
+// NOTE!: memory is accounted by the buffers held by segments, a dropped buffer is freed by GC once its readers finish.
+final class TemporalSeriesCache {
+
+    // feed the points of the prefix of key, from the last point <= the timestamp of key, in timestamp order into
+    // appender until it returns false. Values are as decoded by TemporalInterval.decode.
+    interface Source {
+        void scan(byte[] key, Appender appender);
+    }
+
+    interface Appender {
+        boolean add(long timestamp, Object value);
+    }
+
+    static final int MAX_SEGMENT_POINTS = 4096;
+
+    private final long capacity;
+    private final int prefixLength;
+    // time unit milliseconds, Long.MAX_VALUE means no limit.
+    private final long horizon;
+    private final TemporalLatestStore.LatestPoint latest;
+    // access ordered, the eldest one is the least recently used.
+    private final LinkedHashMap<ByteBuffer, Segment> segments = new LinkedHashMap<>(16, 0.75f, true);
+    // prefixes being loaded, other misses of them wait for the load.
+    private final HashSet<ByteBuffer> loading = new HashSet<>();
+    // bytes of buffers held by segments.
+    private long used = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long loads = 0;
+    // loads given up for too many points.
+    private long overflows = 0;
+    private long loadNanos = 0;
+    private long evictions = 0;
+
+    // capacity: bytes, horizon: only range reads from at most so many milliseconds before the latest point are cached.
+    // latest: the latest point of a prefix, read on misses only.
+    TemporalSeriesCache(long capacity, int prefixLength, long horizon, TemporalLatestStore.LatestPoint latest) {
+        Preconditions.checkArgument(capacity > 0, "series cache memory should be positive.");
+        Preconditions.checkArgument(horizon >= 0, "series cache horizon should be non-negative.");
+        this.capacity = capacity;
+        this.prefixLength = prefixLength;
+        this.horizon = horizon;
+        this.latest = latest;
+    }
+
+    // Points in [start, end) of the prefix of key as TemporalPropertyIterator returns them, start is the timestamp of key.
+    // end == Long.MAX_VALUE means no upper bound.
+    // null if the prefix has too many points from start to cache or start is out of the horizon, read the store instead.
+    // NOTE!: call it under the S-Lock of the temporal property.
+    TemporalPropertyIterator range(byte[] key, long end, Source source) {
+        var prefix = TemporalCacheBatch.prefix(key, prefixLength);
+        long start = Codec.getOrderedLong(ByteBuffer.wrap(key, prefixLength, Long.BYTES));
+        synchronized (this) {
+            var hit = hit(prefix, start, end);
+            if (hit != null) {
+                return hit;
+            }
+        }
+        if (!recent(key, start)) {
+            synchronized (this) {
+                ++misses;
+            }
+            return null;
+        }
+        synchronized (this) {
+            // re-check, another miss may have loaded it meanwhile.
+            while (loading.contains(prefix)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    ++misses;
+                    return null;
+                }
+            }
+            var hit = hit(prefix, start, end);
+            if (hit != null) {
+                return hit;
+            }
+            ++misses;
+            loading.add(prefix);
+        }
+        // load without the lock, nobody writes the prefix meanwhile.
+        var loaded = new Segment(start);
+        TemporalPropertyIterator ret = null;
+        boolean done = false;
+        long begin = System.nanoTime();
+        try {
+            source.scan(key, loaded::load);
+            done = true;
+        } finally {
+            // installed before waiting misses are woken up, thus they hit it.
+            synchronized (this) {
+                loadNanos += System.nanoTime() - begin;
+                if (done && loaded.overflow) {
+                    ++overflows;
+                } else if (done) {
+                    ++loads;
+                    install(prefix, loaded);
+                    ret = new TemporalPropertyIterator(loaded.range(start, end));
+                }
+                loading.remove(prefix);
+                notifyAll();
+            }
+        }
+        return ret;
+    }
+
+    // the segment of prefix covers start.
+    private TemporalPropertyIterator hit(ByteBuffer prefix, long start, long end) {
+        var segment = segments.get(prefix);
+        if (segment == null || segment.from > start) {
+            return null;
+        }
+        ++hits;
+        return new TemporalPropertyIterator(segment.range(start, end));
+    }
+
+    // start is within the horizon before the latest point of the prefix of key.
+    private boolean recent(byte[] key, long start) {
+        if (horizon == Long.MAX_VALUE) {
+            return true;
+        }
+        var point = latest.latest(key);
+        if (!point.exists()) {
+            return false;
+        }
+        long distance = point.timestamp() - start;
+        // distance overflows only if it is huge.
+        return start >= point.timestamp() || (distance > 0 && distance <= horizon);
+    }
+
+    private void install(ByteBuffer prefix, Segment segment) {
+        var old = segments.put(prefix, segment);
+        if (old != null) {
+            used -= old.bytes();
+        }
+        used += segment.bytes();
+        evict();
+    }
+
+    private void drop(ByteBuffer prefix) {
+        used -= segments.remove(prefix).bytes();
+    }
+
+    private void evict() {
+        var iter = segments.values().iterator();
+        while (used > capacity && iter.hasNext()) {
+            used -= iter.next().bytes();
+            iter.remove();
+            ++evictions;
+        }
+    }
+
+    // apply writes of a committed batch in order.
+    synchronized void apply(TemporalCacheBatch batch) {
+        for (var op : batch.ops()) {
+            var segment = segments.get(op.prefix);
+            if (segment == null) {
+                continue;
+            }
+            if (segment.size == 0) {
+                // no point at all, a put is the only one.
+                if (op.put) {
+                    append(segment, op.from, TemporalInterval.decode(op.bytes));
+                }
+                continue;
+            }
+            long first = segment.timestamp(0);
+            if (op.put && op.from > segment.timestamp(segment.size - 1)) {
+                append(segment, op.from, TemporalInterval.decode(op.bytes));
+            } else if (op.to < first && (!op.put || first <= segment.from)) {
+                // before the first point, which is still the one effective at from, or there is nothing to remove.
+                continue;
+            } else {
+                drop(op.prefix);
+            }
+        }
+        evict();
+    }
+
+    private void append(Segment segment, long timestamp, Object value) {
+        long bytes = segment.bytes();
+        segment.append(timestamp, value);
+        if (segment.size >= MAX_SEGMENT_POINTS) {
+            segment.trim(segment.size / 2);
+        }
+        used += segment.bytes() - bytes;
+    }
+
+    // hits, misses and evictions of range reads, a load given up for too many points is a load exception.
+    synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, loads, overflows, loadNanos, evictions);
+    }
+
+    synchronized long memory() {
+        return used;
+    }
+
+    private static final class Segment {
+        private static final int INITIAL_POINTS = 16;
+
+        private long from;
+        private ByteBuffer timestamps;
+        private ByteBuffer kinds;
+        private ByteBuffer bits;
+        private ByteBuffer generic;
+        private int size = 0;
+        private int genericSize = 0;
+        private boolean overflow = false;
+
+        private Segment(long from) {
+            this.from = from;
+            allocate(INITIAL_POINTS, 0);
+        }
+
+        private void allocate(int points, int genericBytes) {
+            timestamps = ByteBuffer.allocateDirect(points * Long.BYTES);
+            kinds = ByteBuffer.allocateDirect(points);
+            bits = ByteBuffer.allocateDirect(points * Long.BYTES);
+            generic = ByteBuffer.allocateDirect(genericBytes);
+        }
+
+        long bytes() {
+            return timestamps.capacity() + kinds.capacity() + bits.capacity() + generic.capacity();
+        }
+
+        long timestamp(int i) {
+            return timestamps.getLong(i * Long.BYTES);
+        }
+
+        // Appender of a load, points <= from are before the effective one.
+        private boolean load(long timestamp, Object value) {
+            if (timestamp <= from) {
+                size = 0;
+                genericSize = 0;
+            }
+            if (size == MAX_SEGMENT_POINTS) {
+                overflow = true;
+                return false;
+            }
+            append(timestamp, value);
+            return true;
+        }
+
+        void append(long timestamp, Object value) {
+            byte kind = value instanceof Double ? TemporalChunk.DOUBLE
+                    : value instanceof Long ? TemporalChunk.LONG
+                    : value instanceof Integer ? TemporalChunk.INT : TemporalChunk.GENERIC;
+            byte[] encoded = kind == TemporalChunk.GENERIC ? TemporalInterval.encode(value) : null;
+            int genericNeeded = encoded == null ? 0 : Integer.BYTES + encoded.length;
+            boolean full = size == kinds.capacity();
+            boolean genericFull = genericSize + genericNeeded > generic.capacity();
+            if (full || genericFull) {
+                grow(full ? size * 2 : kinds.capacity(), genericFull ? Math.max(generic.capacity() * 2, genericSize + genericNeeded) : generic.capacity());
+            }
+            long v;
+            switch (kind) {
+                case TemporalChunk.DOUBLE:
+                    v = Double.doubleToRawLongBits((Double) value);
+                    break;
+                case TemporalChunk.LONG:
+                    v = (Long) value;
+                    break;
+                case TemporalChunk.INT:
+                    v = (Integer) value;
+                    break;
+                default:
+                    v = genericSize;
+                    generic.putInt(genericSize, encoded.length);
+                    generic.duplicate().position(genericSize + Integer.BYTES).put(encoded);
+                    genericSize += genericNeeded;
+            }
+            timestamps.putLong(size * Long.BYTES, timestamp);
+            kinds.put(size, kind);
+            bits.putLong(size * Long.BYTES, v);
+            ++size;
+        }
+
+        // copy into new buffers, readers keep reading the old ones.
+        private void grow(int points, int genericBytes) {
+            copy(0, points, genericBytes, 0);
+        }
+
+        // drop points before keep, the point kept first becomes the one effective at from.
+        void trim(int keep) {
+            int base = genericSize;
+            for (int i = keep; i < size; ++i) {
+                if (kinds.get(i) == TemporalChunk.GENERIC) {
+                    base = (int) bits.getLong(i * Long.BYTES);
+                    break;
+                }
+            }
+            from = timestamp(keep);
+            copy(keep, Math.max(INITIAL_POINTS, (size - keep) * 2), Math.max(0, (genericSize - base) * 2), base);
+        }
+
+        // points [first, size) and generic bytes [base, genericSize) into new buffers.
+        private void copy(int first, int points, int genericBytes, int base) {
+            var oldTimestamps = timestamps;
+            var oldKinds = kinds;
+            var oldBits = bits;
+            var oldGeneric = generic;
+            allocate(points, genericBytes);
+            for (int i = first; i < size; ++i) {
+                byte kind = oldKinds.get(i);
+                long v = oldBits.getLong(i * Long.BYTES);
+                timestamps.putLong((i - first) * Long.BYTES, oldTimestamps.getLong(i * Long.BYTES));
+                kinds.put(i - first, kind);
+                bits.putLong((i - first) * Long.BYTES, kind == TemporalChunk.GENERIC ? v - base : v);
+            }
+            for (int i = base; i < genericSize; ++i) {
+                generic.put(i - base, oldGeneric.get(i));
+            }
+            size -= first;
+            genericSize -= base;
+        }
+
+        // a snapshot of the points in [start, end), later appends are not seen.
+        Iterator<Pair<Timestamp, Object>> range(long start, long end) {
+            return new Reader(timestamps, kinds, bits, generic, size, start, end);
+        }
+    }
+
+    // Reader returns the value effective at start first, dropped if it is an interval expired before start,
+    // then points in (start, end), the same as TemporalPropertyIterator over the store.
+    private static final class Reader implements Iterator<Pair<Timestamp, Object>> {
+        private final ByteBuffer timestamps;
+        private final ByteBuffer kinds;
+        private final ByteBuffer bits;
+        private final ByteBuffer generic;
+        private final int size;
+        private final long end;
+        private int next;
+        private Pair<Timestamp, Object> lookahead;
+
+        private Reader(ByteBuffer timestamps, ByteBuffer kinds, ByteBuffer bits, ByteBuffer generic, int size, long start, long end) {
+            this.timestamps = timestamps;
+            this.kinds = kinds;
+            this.bits = bits;
+            this.generic = generic;
+            this.size = size;
+            this.end = end;
+            // the last point <= start.
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (timestamp(mid) <= start) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            this.next = hi;
+            if (next >= 0) {
+                var value = value(next, start);
+                ++next;
+                lookahead = value == null ? advance() : Pair.of(new Timestamp(timestamp(next - 1)), value);
+            } else {
+                next = 0;
+                lookahead = advance();
+            }
+        }
+
+        private long timestamp(int i) {
+            return timestamps.getLong(i * Long.BYTES);
+        }
+
+        // the value of point i at timestamp, null if it is an interval expired before timestamp.
+        private Object value(int i, long timestamp) {
+            long v = bits.getLong(i * Long.BYTES);
+            switch (kinds.get(i)) {
+                case TemporalChunk.DOUBLE:
+                    return Double.longBitsToDouble(v);
+                case TemporalChunk.LONG:
+                    return v;
+                case TemporalChunk.INT:
+                    return (int) v;
+                default:
+                    var bytes = new byte[generic.getInt((int) v)];
+                    // a duplicate, thus readers do not share the position.
+                    generic.duplicate().position((int) v + Integer.BYTES).get(bytes);
+                    return TemporalInterval.valueAt(bytes, timestamp);
+            }
+        }
+
+        private Pair<Timestamp, Object> advance() {
+            if (next >= size || (end != Long.MAX_VALUE && timestamp(next) >= end)) {
+                return null;
+            }
+            long timestamp = timestamp(next);
+            // an interval is valid at its start, thus this unwraps it, the same as ValueCodec.decode.
+            var value = value(next, Long.MIN_VALUE);
+            ++next;
+            return Pair.of(new Timestamp(timestamp), value);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return lookahead != null;
+        }
+
+        @Override
+        public Pair<Timestamp, Object> next() {
+            if (lookahead == null) {
+                throw new NoSuchElementException();
+            }
+            var ret = lookahead;
+            lookahead = advance();
+            return ret;
+        }
+    }
+}
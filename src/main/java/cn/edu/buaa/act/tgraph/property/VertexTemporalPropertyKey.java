@@ -1,42 +1,58 @@
 package cn.edu.buaa.act.tgraph.property;
 
+import cn.edu.buaa.act.tgraph.common.Codec;
 import com.google.common.base.Preconditions;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 import java.util.Objects;
+import java.util.function.ToIntFunction;
 
+// Key layout, sorted by rocksdb native bytewise comparator:
+//      nodeId(ordered long, 8 bytes) + propertyId(int, 4 bytes) + timestamp(ordered long, 8 bytes)
+// propertyId is the token of the temporal property name, refer TemporalPropertyTokenStore.
+// Refer Codec for the order-preserving encoding.
 public class VertexTemporalPropertyKey {
+    public static final int LENGTH = VertexTemporalPropertyKeyPrefix.LENGTH + 8;
+
     private final long nodeId;
-    private final int propertyLength;
-    private final String propertyName;
+    private final int propertyId;
     private final long timestamp;
 
     private static final Log log = LogFactory.getLog(VertexTemporalPropertyKey.class);
 
-    public VertexTemporalPropertyKey(long nodeId, String propertyName, long timestamp) {
+    public VertexTemporalPropertyKey(long nodeId, int propertyId, long timestamp) {
         this.nodeId = nodeId;
-        this.propertyName = propertyName;
-        this.propertyLength = propertyName.getBytes(Charset.defaultCharset()).length;
+        this.propertyId = propertyId;
         this.timestamp = timestamp;
     }
 
-    public static VertexTemporalPropertyKey of(long nodeId, String propertyName, long timestamp) {
-        return new VertexTemporalPropertyKey(nodeId, propertyName, timestamp);
+    public static VertexTemporalPropertyKey of(long nodeId, int propertyId, long timestamp) {
+        return new VertexTemporalPropertyKey(nodeId, propertyId, timestamp);
     }
 
     public VertexTemporalPropertyKey(VertexTemporalPropertyKeyPrefix prefix, long timestamp) {
-        this(prefix.getNodeId(), prefix.getPropertyName(), timestamp);
+        this(prefix.getNodeId(), prefix.getPropertyId(), timestamp);
     }
 
     public static VertexTemporalPropertyKey fromBytes(byte[] bytes) {
-        Preconditions.checkState(bytes.length > 20);
-        var prefix = VertexTemporalPropertyKeyPrefix.fromBytes(bytes);
-        // timestamp
+        Preconditions.checkState(bytes.length >= LENGTH);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, LENGTH);
+        long id = Codec.getOrderedLong(buffer);
+        int property = buffer.getInt();
+        long time = Codec.getOrderedLong(buffer);
+        return new VertexTemporalPropertyKey(id, property, time);
+    }
+
+    // NOTE!: only used to upgrade stores written by older key formats, refer StoreUpgrader.
+    // format 0 layout: nodeId(long) + propertyLength(int) + propertyName + timestamp(long)
+    // format 1 layout: nodeId(ordered long) + propertyName(ordered string) + timestamp(ordered long)
+    public static VertexTemporalPropertyKey fromLegacyBytes(byte[] bytes, int format, ToIntFunction<String> tokens) {
+        Preconditions.checkState(bytes.length >= 18);
+        var prefix = VertexTemporalPropertyKeyPrefix.fromLegacyBytes(bytes, format, tokens);
         var buffer = ByteBuffer.wrap(bytes, bytes.length - 8, 8);
-        long time = buffer.getLong();
+        long time = format == 0 ? buffer.getLong() : Codec.getOrderedLong(buffer);
         return new VertexTemporalPropertyKey(prefix, time);
     }
 
@@ -48,21 +64,19 @@ public class VertexTemporalPropertyKey {
         return timestamp;
     }
 
-    public String getPropertyName() {
-        return propertyName;
+    public int getPropertyId() {
+        return propertyId;
     }
 
     public VertexTemporalPropertyKeyPrefix getPrefix() {
-        return new VertexTemporalPropertyKeyPrefix(this.nodeId, this.propertyName);
+        return new VertexTemporalPropertyKeyPrefix(this.nodeId, this.propertyId);
     }
 
     public byte[] toBytes() {
-        byte[] p = propertyName.getBytes(Charset.defaultCharset());
-        ByteBuffer buffer = ByteBuffer.allocate(20 + p.length);
-        buffer.putLong(nodeId);
-        buffer.putInt(propertyLength);
-        buffer.put(p);
-        buffer.putLong(timestamp);
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        Codec.putOrderedLong(buffer, nodeId);
+        buffer.putInt(propertyId);
+        Codec.putOrderedLong(buffer, timestamp);
         return buffer.array();
     }
 
@@ -71,12 +85,12 @@ public class VertexTemporalPropertyKey {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         VertexTemporalPropertyKey that = (VertexTemporalPropertyKey) o;
-        return nodeId == that.nodeId && timestamp == that.timestamp && Objects.equals(propertyName, that.propertyName);
+        return nodeId == that.nodeId && propertyId == that.propertyId && timestamp == that.timestamp;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(nodeId, propertyName, timestamp);
+        return Objects.hash(nodeId, propertyId, timestamp);
     }
 
     // for debug
@@ -84,7 +98,7 @@ public class VertexTemporalPropertyKey {
     public String toString() {
         return "VertexTemporalPropertyKey{" +
                 "nodeId=" + nodeId +
-                ", propertyName='" + propertyName + '\'' +
+                ", propertyId=" + propertyId +
                 ", timestamp=" + timestamp +
                 '}';
     }
@@ -1,48 +1,65 @@
 package cn.edu.buaa.act.tgraph.property;
 
+import cn.edu.buaa.act.tgraph.common.Codec;
 import com.google.common.base.Preconditions;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Objects;
+import java.util.function.ToIntFunction;
 
+// Key layout, sorted by rocksdb native bytewise comparator:
+//      nodeId(ordered long, 8 bytes) + propertyId(int, 4 bytes)
+// propertyId is the token of the temporal property name, refer TemporalPropertyTokenStore.
+// Refer Codec for the order-preserving encoding.
 public class VertexTemporalPropertyKeyPrefix {
+    public static final int LENGTH = 12;
+
     private final long nodeId;
-    private final int propertyLength;
-    private final String propertyName;
+    private final int propertyId;
 
-    public VertexTemporalPropertyKeyPrefix(long nodeId, String propertyName) {
+    public VertexTemporalPropertyKeyPrefix(long nodeId, int propertyId) {
         this.nodeId = nodeId;
-        this.propertyName = propertyName;
-        this.propertyLength = propertyName.getBytes(Charset.defaultCharset()).length;
+        this.propertyId = propertyId;
     }
 
-    public static VertexTemporalPropertyKeyPrefix of(long nodeId, String propertyName) {
-        return new VertexTemporalPropertyKeyPrefix(nodeId, propertyName);
+    public static VertexTemporalPropertyKeyPrefix of(long nodeId, int propertyId) {
+        return new VertexTemporalPropertyKeyPrefix(nodeId, propertyId);
     }
 
     public static VertexTemporalPropertyKeyPrefix fromBytes(byte[] bytes) {
-        Preconditions.checkState(bytes.length > 12);
-        // node id
-        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, 8);
-        long id = buffer.getLong();
-        // property length
-        buffer = ByteBuffer.wrap(bytes, 8, 4);
-        int length = buffer.getInt();
-        // property name
-        buffer = ByteBuffer.wrap(bytes, 12, length);
-        byte[] pBytes = new byte[length];
-        buffer.get(pBytes);
-        String property = new String(pBytes);
+        Preconditions.checkState(bytes.length >= LENGTH);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, LENGTH);
+        long id = Codec.getOrderedLong(buffer);
+        int property = buffer.getInt();
         return new VertexTemporalPropertyKeyPrefix(id, property);
     }
 
+    // NOTE!: only used to upgrade stores written by older key formats, refer StoreUpgrader.
+    // format 0 layout: nodeId(long) + propertyLength(int) + propertyName
+    // format 1 layout: nodeId(ordered long) + propertyName(ordered string)
+    public static VertexTemporalPropertyKeyPrefix fromLegacyBytes(byte[] bytes, int format, ToIntFunction<String> tokens) {
+        Preconditions.checkState(bytes.length >= 10);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long id;
+        String property;
+        if (format == 0) {
+            id = buffer.getLong();
+            int length = buffer.getInt();
+            property = new String(bytes, 12, length, Charset.defaultCharset());
+        } else {
+            id = Codec.getOrderedLong(buffer);
+            property = Codec.decodeOrderedString(bytes, 8);
+        }
+        return new VertexTemporalPropertyKeyPrefix(id, tokens.applyAsInt(property));
+    }
+
     public long getNodeId() {
         return nodeId;
     }
 
-    public String getPropertyName() {
-        return propertyName;
+    public int getPropertyId() {
+        return propertyId;
     }
 
     @Override
@@ -50,20 +67,18 @@ public class VertexTemporalPropertyKeyPrefix {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         VertexTemporalPropertyKeyPrefix that = (VertexTemporalPropertyKeyPrefix) o;
-        return nodeId == that.nodeId && Objects.equals(propertyName, that.propertyName);
+        return nodeId == that.nodeId && propertyId == that.propertyId;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(nodeId, propertyName);
+        return Objects.hash(nodeId, propertyId);
     }
 
     public byte[] toBytes() {
-        byte[] p = propertyName.getBytes(Charset.defaultCharset());
-        ByteBuffer buffer = ByteBuffer.allocate(12 + p.length);
-        buffer.putLong(nodeId);
-        buffer.putInt(propertyLength);
-        buffer.put(p);
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        Codec.putOrderedLong(buffer, nodeId);
+        buffer.putInt(propertyId);
         return buffer.array();
     }
 
@@ -72,7 +87,7 @@ public class VertexTemporalPropertyKeyPrefix {
     public String toString() {
         return "VertexTemporalPropertyKeyPrefix{" +
                 "nodeId=" + nodeId +
-                ", propertyName='" + propertyName + '\'' +
+                ", propertyId=" + propertyId +
                 '}';
     }
 }
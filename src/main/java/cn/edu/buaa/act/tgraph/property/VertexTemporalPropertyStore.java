@@ -1,26 +1,25 @@
 package cn.edu.buaa.act.tgraph.property;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import cn.edu.buaa.act.tgraph.common.Bytes;
 import cn.edu.buaa.act.tgraph.common.Codec;
 import cn.edu.buaa.act.tgraph.common.Pair;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
-import cn.edu.buaa.act.tgraph.kvstore.Comparator;
 import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
 import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
 import cn.edu.buaa.act.tgraph.kvstore.StoreOptions;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.rocksdb.ComparatorOptions;
 import org.rocksdb.RocksDB;
 
-import java.sql.Timestamp;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 
-// NOTE!: get everything in memory may cause OOM.
-// TODO(crusher): fix it use PropertyIter
-
 // Every write will be in memory until Commit.
 // Read will go into underlying store.
 // And for Neo4j semantic compatibility, write should not be read until commit,
@@ -31,6 +30,20 @@ public class VertexTemporalPropertyStore {
     private final GraphSpaceID graph;
     private final KVEngine store;
     private final String dataPath;
+    // chunk mode(see TemporalChunkStore), null in point mode.
+    private final TemporalChunkStore chunks;
+    // descending timestamps(see TemporalDescendingStore), null in the ascending layout.
+    private final TemporalDescendingStore descending;
+    // multi-resolution summaries(see TemporalRollupStore), null if disabled.
+    private final TemporalRollupStore rollups;
+    // points ordered by time(see TemporalChangeIndex), null if disabled.
+    private final TemporalChangeIndex changes;
+    // records of the latest point of temporal properties(see TemporalLatestStore), null if disabled.
+    private final TemporalLatestStore records;
+    // the latest point of temporal properties(see TemporalLatestCache), null if disabled.
+    private final TemporalLatestCache latest;
+    // recent points of hot temporal properties off-heap(see TemporalSeriesCache), null if disabled.
+    private final TemporalSeriesCache series;
 
     private static final Log log = LogFactory.getLog(VertexTemporalPropertyStore.class);
 
@@ -42,9 +55,77 @@ public class VertexTemporalPropertyStore {
     public VertexTemporalPropertyStore(GraphSpaceID graph, String dataPath, boolean readonly) {
         this.graph = graph;
         this.dataPath = dataPath;
-        var comparator = new VertexTemporalPropertyKeyComparator(new ComparatorOptions());
-        StoreOptions opt = StoreOptions.of(this.graph, this.dataPath, readonly, new Comparator(comparator));
+        // keys are order-preserving encoded, thus rocksdb native bytewise comparator is enough.
+        StoreOptions opt = StoreOptions.of(this.graph, this.dataPath, readonly);
+        // filters are built on the (entity, property) prefix.
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
         store = new RocksEngine(opt);
+        chunks = null;
+        descending = null;
+        rollups = null;
+        changes = null;
+        records = null;
+        latest = null;
+        series = null;
+    }
+
+    // Attach to an opened engine, e.g. a column family of the graph's RocksInstance.
+    public VertexTemporalPropertyStore(GraphSpaceID graph, KVEngine store) {
+        this(graph, store, TemporalPropertyStoreOptions.of());
+    }
+
+    // options: optional features, refer TemporalPropertyStoreOptions.
+    public VertexTemporalPropertyStore(GraphSpaceID graph, KVEngine store, TemporalPropertyStoreOptions options) {
+        Preconditions.checkArgument(!options.isDescendingTimestamps() || options.getChunkInterval() == 0, "descending timestamps are only supported in point mode.");
+        this.graph = graph;
+        this.dataPath = store.getRoot();
+        this.store = store;
+        this.chunks = options.getChunkInterval() > 0 ? new TemporalChunkStore(store, VertexTemporalPropertyKeyPrefix.LENGTH, options.getChunkInterval()) : null;
+        this.descending = options.isDescendingTimestamps() ? new TemporalDescendingStore(store, VertexTemporalPropertyKeyPrefix.LENGTH) : null;
+        this.rollups = options.getRollupStore() != null && options.getRollupLevels().length > 0
+                ? new TemporalRollupStore(options.getRollupStore(), VertexTemporalPropertyKeyPrefix.LENGTH, options.getRollupLevels(), this::aggregateRaw) : null;
+        this.changes = options.getChangeStore() != null ? new TemporalChangeIndex(options.getChangeStore(), VertexTemporalPropertyKeyPrefix.LENGTH, this::exists) : null;
+        this.records = options.getLatestStore() != null ? new TemporalLatestStore(options.getLatestStore(), VertexTemporalPropertyKeyPrefix.LENGTH, this::loadLatest) : null;
+        this.latest = options.getLatestCacheSize() > 0 ? new TemporalLatestCache(options.getLatestCacheSize(), VertexTemporalPropertyKeyPrefix.LENGTH) : null;
+        this.series = options.getSeriesCacheMemory() > 0 ? new TemporalSeriesCache(options.getSeriesCacheMemory(), VertexTemporalPropertyKeyPrefix.LENGTH,
+                options.getSeriesCacheHorizon(), this::latestPoint) : null;
+    }
+
+    // 0 means point mode.
+    public long getChunkInterval() {
+        return chunks == null ? 0 : chunks.getInterval();
+    }
+
+    public boolean hasDescendingTimestamps() {
+        return descending != null;
+    }
+
+    // empty means no summary.
+    public long[] getRollupLevels() {
+        return rollups == null ? new long[0] : rollups.getLevels();
+    }
+
+    public boolean hasChangeIndex() {
+        return changes != null;
+    }
+
+    public boolean hasLatestRecords() {
+        return records != null;
+    }
+
+    // hits, misses and evictions of the latest value cache, empty if it is disabled.
+    public CacheStats getLatestCacheStats() {
+        return latest == null ? new CacheStats(0, 0, 0, 0, 0, 0) : latest.stats();
+    }
+
+    // hits, misses and evictions of range reads served by the series cache, empty if it is disabled.
+    public CacheStats getSeriesCacheStats() {
+        return series == null ? new CacheStats(0, 0, 0, 0, 0, 0) : series.stats();
+    }
+
+    // bytes held by the series cache.
+    public long getSeriesCacheMemory() {
+        return series == null ? 0 : series.memory();
     }
 
     public String getRoot() {
@@ -53,6 +134,15 @@ public class VertexTemporalPropertyStore {
 
     public void stop() {
         store.stop();
+        if (rollups != null) {
+            rollups.stop();
+        }
+        if (changes != null) {
+            changes.stop();
+        }
+        if (records != null) {
+            records.stop();
+        }
         log.info(String.format("Stop VertexTemporalPropertyStore succeed, belongs to graph %s.", graph.getGraphName()));
     }
 
@@ -60,23 +150,109 @@ public class VertexTemporalPropertyStore {
     // In fact, write batch is held by txn.
     public VertexTemporalPropertyWriteBatch startBatchWrite() {
         var wb = store.startBatchWrite();
-        return new VertexTemporalPropertyWriteBatch(wb, store);
+        return new VertexTemporalPropertyWriteBatch(wb, store, chunks == null ? null : chunks.startBatchWrite(wb),
+                descending == null ? null : descending.startBatchWrite(wb),
+                rollups == null ? null : rollups.startBatchWrite(wb), changes == null ? null : changes.startBatchWrite(wb),
+                records == null ? null : records.startBatchWrite(wb),
+                latest == null && series == null ? null : new TemporalCacheBatch(VertexTemporalPropertyKeyPrefix.LENGTH));
     }
 
+    // summaries of buckets written by batch are removed with the data and rebuilt after commit.
     public boolean commitBatchWrite(VertexTemporalPropertyWriteBatch batch, boolean disableWAL, boolean sync, boolean wait) {
-        return store.commitBatchWrite(batch.getWb(), disableWAL, sync, wait);
+        var wb = batch.getWb();
+        if (batch.getRollups() != null && !batch.getRollups().commitBefore(wb)) {
+            return false;
+        }
+        if (batch.getChanges() != null && !batch.getChanges().commitBefore(wb)) {
+            return false;
+        }
+        if (batch.getRecords() != null && !batch.getRecords().commitBefore(wb)) {
+            return false;
+        }
+        boolean ret = store.commitBatchWrite(wb, disableWAL, sync, wait);
+        if (ret) {
+            afterCommit(batch);
+        }
+        return ret;
+    }
+
+    // rebuild summaries of buckets written by batch and update the in-memory caches by its writes,
+    // for a batch committed together with another one(see TransactionManager).
+    // NOTE!: call it before releasing locks of the writer.
+    public void afterCommit(VertexTemporalPropertyWriteBatch batch) {
+        if (batch.getRollups() != null) {
+            rollups.refresh(batch.getRollups());
+        }
+        if (batch.getRecords() != null) {
+            records.refresh(batch.getRecords());
+        }
+        if (batch.getCaches() != null) {
+            if (latest != null) {
+                latest.apply(batch.getCaches());
+            }
+            if (series != null) {
+                series.apply(batch.getCaches());
+            }
+            batch.getCaches().clear();
+        }
     }
 
     // TimePoint Get
     // Return the value of the max timestamp which <= key.timestamp
     public Object get(VertexTemporalPropertyKey key) {
-        var prefix = key.getPrefix();
-        var pr = store.getForPrev(key.toBytes(), null);
-        if (pr == null) {
-            return null;
+        if (latest != null) {
+            // at or after the latest point, e.g. the value "now".
+            var point = latest.get(key.toBytes(), this::readLatest);
+            if (point.covers(key.getTimestamp())) {
+                return point.valueAt(key.getTimestamp());
+            }
+        } else if (records != null) {
+            // one exact key, filtered by the whole key bloom filter.
+            var point = records.get(key.toBytes());
+            if (point != null && point.covers(key.getTimestamp())) {
+                return point.valueAt(key.getTimestamp());
+            }
+        }
+        if (chunks != null) {
+            return chunks.get(key.toBytes());
+        }
+        if (descending != null) {
+            return descending.get(key.toBytes());
+        }
+        // prefix is the leading bytes of the key, match it in bytes instead of decoding the found key.
+        var value = store.getForPrev(key.toBytes(), VertexTemporalPropertyKeyPrefix.LENGTH, null);
+        return TemporalInterval.valueAt(value, key.getTimestamp());
+    }
+
+    // the latest point of the prefix of key, through the latest value cache if it is enabled.
+    private TemporalLatestCache.Latest latestPoint(byte[] key) {
+        return latest != null ? latest.get(key, this::readLatest) : readLatest(key);
+    }
+
+    // the latest point of the prefix of key, from its record if there is one, refer TemporalLatestCache.
+    private TemporalLatestCache.Latest readLatest(byte[] key) {
+        if (records != null) {
+            var point = records.get(key);
+            if (point != null) {
+                return point;
+            }
         }
-        var realKey = VertexTemporalPropertyKey.fromBytes(pr.first());
-        return realKey.getPrefix().equals(prefix) ? Codec.decodeValue(pr.second()) : null;
+        return loadLatest(key);
+    }
+
+    // the latest point of the prefix of key in the data, refer TemporalLatestStore.
+    private TemporalLatestCache.Latest loadLatest(byte[] key) {
+        if (chunks != null) {
+            return chunks.latest(key);
+        }
+        if (descending != null) {
+            return descending.latest(key);
+        }
+        var found = store.getForPrev(TemporalLatestCache.lastKey(key, VertexTemporalPropertyKeyPrefix.LENGTH), null);
+        if (found == null || !Arrays.equals(found.first(), 0, VertexTemporalPropertyKeyPrefix.LENGTH, key, 0, VertexTemporalPropertyKeyPrefix.LENGTH)) {
+            return TemporalLatestCache.Latest.NONE;
+        }
+        return TemporalLatestCache.Latest.of(timestampOf(found.first()), TemporalInterval.decode(found.second()));
     }
 
     // Batch TimePoint Get
@@ -86,63 +262,257 @@ public class VertexTemporalPropertyStore {
         for (VertexTemporalPropertyKey key: keys) {
             k.add(key.toBytes());
         }
+        if (chunks != null) {
+            var ret = chunks.multiGet(k);
+            return ret.isEmpty() ? null : ret;
+        }
+        if (descending != null) {
+            var ret = descending.multiGet(k);
+            return ret.isEmpty() ? null : ret;
+        }
         var r = store.multiGetForPrev(k);
         Preconditions.checkState(keys.size() == r.size(), "MultiGet keys and return values are not consistent");
         List<Object> ret = new ArrayList<>(r.size());
-        int ind = 0;
-        for (var v : r) {
-            if (v == null) {
-                ret.add(null);
-                continue;
-            }
-            var realKey = VertexTemporalPropertyKey.fromBytes(v.first());
-            ret.add(realKey.getPrefix().equals(keys.get(ind).getPrefix()) ? Codec.decodeValue(v.second()) : null);
-            ++ind;
+        for (int i = 0; i < r.size(); ++i) {
+            var v = r.get(i);
+            // prefix is the leading bytes of the key.
+            boolean found = v != null && v.first().length >= VertexTemporalPropertyKeyPrefix.LENGTH
+                    && Arrays.equals(v.first(), 0, VertexTemporalPropertyKeyPrefix.LENGTH, k.get(i), 0, VertexTemporalPropertyKeyPrefix.LENGTH);
+            ret.add(found ? TemporalInterval.valueAt(v.second(), keys.get(i).getTimestamp()) : null);
         }
         return ret.isEmpty() ? null : ret;
     }
 
+    // Snapshot Get
+    // (nodeId, value at timestamp) of every node, the same value as get, in ascending node id order.
+    // Keys are resolved by one multiGet, whose sorted shards are swept in parallel on the multiGet executor
+    // (see KVEngine.multiGetForPrev), instead of N random seeks.
+    // NOTE!: values are read before it returns, thus under the locks held by the caller.
+    public Stream<Pair<Long, Object>> snapshot(long[] nodeIds, int propertyId, long timestamp) {
+        var ids = nodeIds.clone();
+        Arrays.sort(ids);
+        if (ids.length == 0) {
+            return Stream.empty();
+        }
+        List<VertexTemporalPropertyKey> keys = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            keys.add(new VertexTemporalPropertyKey(id, propertyId, timestamp));
+        }
+        var values = multiGet(keys);
+        List<Pair<Long, Object>> ret = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; ++i) {
+            ret.add(Pair.of(ids[i], values.get(i)));
+        }
+        return ret.stream();
+    }
+
     // TimeRange Get
-    public List<Pair<Timestamp, Object>> rangeGet(VertexTemporalPropertyKey start, VertexTemporalPropertyKey end) {
+    // Values in [start, end), the first one is the value effective at start.
+    public TemporalPropertyIterator rangeGet(VertexTemporalPropertyKey start, VertexTemporalPropertyKey end) {
         Preconditions.checkState(start.getPrefix().equals(end.getPrefix()), "start and end should have the same prefix");
-        List<Pair<Timestamp, Object>> ret = new ArrayList<>();
-        try (var iter = store.rangePrev(start.toBytes(), end.toBytes())) {
-            while (iter.valid()) {
-                var key = VertexTemporalPropertyKey.fromBytes(iter.key());
-                Timestamp timestamp = new Timestamp(key.getTimestamp());
-                ret.add(Pair.of(timestamp, Codec.decodeValue(iter.value())));
+        if (series != null) {
+            var cached = series.range(start.toBytes(), end.getTimestamp(), this::scanSeries);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (chunks != null) {
+            return chunks.range(start.getPrefix().toBytes(), start.getTimestamp(), end.getTimestamp());
+        }
+        if (descending != null) {
+            return descending.range(start.getPrefix().toBytes(), start.getTimestamp(), end.getTimestamp());
+        }
+        var iter = store.rangePrev(start.toBytes(), end.toBytes());
+        // no value of this property <= start, seekForPrev is invalid if the prefix is pushed down,
+        // otherwise(no prefix extractor) it lands on another property.
+        if (!iter.valid() || !Bytes.startsWith(iter.key(), start.getPrefix().toBytes())) {
+            iter.seek(start.toBytes());
+        }
+        return new TemporalPropertyIterator(iter, VertexTemporalPropertyKeyPrefix.LENGTH, start.getTimestamp());
+    }
+
+    // points of the prefix of key from the one effective at its timestamp, refer TemporalSeriesCache.
+    private void scanSeries(byte[] key, TemporalSeriesCache.Appender appender) {
+        if (chunks != null) {
+            chunks.scan(key, appender);
+            return;
+        }
+        if (descending != null) {
+            descending.scan(key, appender);
+            return;
+        }
+        try (var iter = store.rangePrevWithPrefix(key, Arrays.copyOf(key, VertexTemporalPropertyKeyPrefix.LENGTH))) {
+            if (!iter.valid()) {
+                iter.seek(key);
+            }
+            while (iter.valid() && appender.add(timestampOf(iter.key()), TemporalInterval.decode(iter.value()))) {
                 iter.next();
             }
         }
-        return ret.isEmpty() ? null : ret;
     }
 
-    // TimeRange with Prefix Get
-    public List<Pair<Timestamp, Object>> rangeWithPrefixGet(VertexTemporalPropertyKey start) {
-        List<Pair<Timestamp, Object>> ret = new ArrayList<>();
-        try (var iter = store.rangePrevWithPrefix(start.toBytes(), start.getPrefix().toBytes())) {
+    // TimeRange Aggregate
+    // Fold points in [start, end) while scanning, refer TemporalAggregation.
+    public Object aggregate(VertexTemporalPropertyKey start, VertexTemporalPropertyKey end, TemporalAggregation aggregation) {
+        Preconditions.checkState(start.getPrefix().equals(end.getPrefix()), "start and end should have the same prefix");
+        var aggregator = new TemporalAggregator(aggregation);
+        // FIRST/LAST need points, not summaries.
+        if (rollups != null && aggregation != TemporalAggregation.FIRST && aggregation != TemporalAggregation.LAST) {
+            rollups.aggregate(start.getPrefix().toBytes(), start.getTimestamp(), end.getTimestamp(), aggregator);
+        } else {
+            aggregateRaw(start.toBytes(), end.toBytes(), aggregator);
+        }
+        return aggregator.result();
+    }
+
+    // fold points in [startKey, endKey) of one prefix.
+    private void aggregateRaw(byte[] startKey, byte[] endKey, TemporalAggregator aggregator) {
+        if (chunks != null) {
+            chunks.aggregate(startKey, timestampOf(startKey), timestampOf(endKey), aggregator);
+            return;
+        }
+        if (descending != null) {
+            descending.aggregate(startKey, endKey, aggregator);
+            return;
+        }
+        try (var iter = store.range(startKey, endKey)) {
             while (iter.valid()) {
-                var key = VertexTemporalPropertyKey.fromBytes(iter.key());
-                Timestamp timestamp = new Timestamp(key.getTimestamp());
-                ret.add(Pair.of(timestamp, Codec.decodeValue(iter.value())));
+                aggregator.add(iter.value());
                 iter.next();
             }
         }
-        return ret.isEmpty() ? null : ret;
     }
 
-    // Prefix Get
-    public List<Pair<Timestamp, Object>> prefixGet(VertexTemporalPropertyKeyPrefix prefix) {
-        List<Pair<Timestamp, Object>> ret = new ArrayList<>();
-        try (var iter = store.prefix(prefix.toBytes(), null)) {
+    private static long timestampOf(byte[] key) {
+        return Codec.getOrderedLong(ByteBuffer.wrap(key, VertexTemporalPropertyKeyPrefix.LENGTH, Long.BYTES));
+    }
+
+    // TimeRange Resample
+    // One value per bucket [start + i * step, start + (i + 1) * step) in one scan, refer TemporalResampler.
+    public List<Object> resample(VertexTemporalPropertyKey start, VertexTemporalPropertyKey end, long step, TemporalFill fill, TemporalAggregation aggregation) {
+        Preconditions.checkState(start.getPrefix().equals(end.getPrefix()), "start and end should have the same prefix");
+        var resampler = new TemporalResampler(start.getTimestamp(), end.getTimestamp(), step, fill, aggregation);
+        var prefix = start.getPrefix().toBytes();
+        if (chunks != null) {
+            chunks.resample(prefix, start.getTimestamp(), resampler);
+            return resampler.result();
+        }
+        if (descending != null) {
+            descending.resample(prefix, start.getTimestamp(), resampler);
+            return resampler.result();
+        }
+        // from the value effective at start to the first point after end.
+        try (var iter = store.rangePrevWithPrefix(start.toBytes(), prefix)) {
+            if (!iter.valid()) {
+                iter.seek(start.toBytes());
+            }
+            while (iter.valid() && resampler.add(timestampOf(iter.key()), iter.value())) {
+                iter.next();
+            }
+        }
+        return resampler.result();
+    }
+
+    // Change Get
+    // Keys of points in [start, end) of every node and temporal property, ordered by timestamp, refer TemporalChangeIndex.
+    // Points removed are not in it, they are in removals.
+    // NOTE!: close the stream if it is not exhausted.
+    public Stream<VertexTemporalPropertyKey> changes(long start, long end) {
+        Preconditions.checkState(changes != null, "change index is disabled.");
+        return changes.changes(start, end).map(VertexTemporalPropertyKey::fromBytes);
+    }
+
+    // Keys of points in [start, end) removed by point, range and prefix removes(e.g. of a temporal property or an entity),
+    // ordered by timestamp, until they are purged, refer TemporalChangeIndex.
+    // NOTE!: close the stream if it is not exhausted.
+    public Stream<VertexTemporalPropertyKey> removals(long start, long end) {
+        Preconditions.checkState(changes != null, "change index is disabled.");
+        return changes.removals(start, end).map(VertexTemporalPropertyKey::fromBytes);
+    }
+
+    // forget removals in [start, end), e.g. once they are exported, returns their number, refer TemporalChangeIndex.purge.
+    public long purgeRemovals(long start, long end) {
+        Preconditions.checkState(changes != null, "change index is disabled.");
+        return changes.purge(start, end);
+    }
+
+    private boolean exists(byte[] key) {
+        if (chunks != null) {
+            return chunks.contains(key);
+        }
+        return descending != null ? descending.contains(key) : store.get(key, null) != null;
+    }
+
+    // index every point in the store, the index should be empty, refer StoreUpgrader.changeIndex.
+    public void rebuildChangeIndex() {
+        Preconditions.checkState(changes != null, "change index is disabled.");
+        try (var builder = changes.startBuild(); var iter = store.prefix(new byte[0], null)) {
             while (iter.valid()) {
-                var key = VertexTemporalPropertyKey.fromBytes(iter.key());
-                Timestamp timestamp = new Timestamp(key.getTimestamp());
-                ret.add(Pair.of(timestamp, Codec.decodeValue(iter.value())));
+                if (chunks != null) {
+                    chunks.points(iter.key(), iter.value(), builder::add);
+                } else if (descending != null) {
+                    builder.add(descending.flip(iter.key()));
+                } else {
+                    builder.add(iter.key());
+                }
                 iter.next();
             }
+            builder.finish();
         }
-        return ret.isEmpty() ? null : ret;
+    }
+
+    // record the latest point of every temporal property in the store, records should be empty, refer StoreUpgrader.latestRecords.
+    public void rebuildLatestRecords() {
+        Preconditions.checkState(records != null, "latest records are disabled.");
+        try (var builder = records.startBuild(); var iter = store.prefix(new byte[0], null)) {
+            while (iter.valid()) {
+                var prefix = Arrays.copyOf(iter.key(), VertexTemporalPropertyKeyPrefix.LENGTH);
+                builder.add(prefix);
+                // one record per prefix, skip the rest of its keys.
+                var next = Bytes.successor(prefix);
+                if (next == null) {
+                    break;
+                }
+                iter.seek(next);
+            }
+            builder.finish();
+        }
+    }
+
+    // TimeRange with Prefix Get
+    // Values from the one effective at start to the latest one. If there is no value <= start, it starts from the first
+    // value after start instead of returning nothing, the same in every mode(point, chunk, descending and the series cache).
+    public TemporalPropertyIterator rangeWithPrefixGet(VertexTemporalPropertyKey start) {
+        if (series != null) {
+            var cached = series.range(start.toBytes(), Long.MAX_VALUE, this::scanSeries);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (chunks != null) {
+            return chunks.range(start.getPrefix().toBytes(), start.getTimestamp(), Long.MAX_VALUE);
+        }
+        if (descending != null) {
+            return descending.range(start.getPrefix().toBytes(), start.getTimestamp(), Long.MAX_VALUE);
+        }
+        var iter = store.rangePrevWithPrefix(start.toBytes(), start.getPrefix().toBytes());
+        if (!iter.valid()) {
+            // no value <= start.
+            iter.seek(start.toBytes());
+        }
+        return new TemporalPropertyIterator(iter, VertexTemporalPropertyKeyPrefix.LENGTH, start.getTimestamp());
+    }
+
+    // Prefix Get
+    public TemporalPropertyIterator prefixGet(VertexTemporalPropertyKeyPrefix prefix) {
+        if (chunks != null) {
+            return chunks.range(prefix.toBytes(), Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        if (descending != null) {
+            return descending.prefix(prefix.toBytes());
+        }
+        var iter = store.prefix(prefix.toBytes(), null);
+        return new TemporalPropertyIterator(iter, VertexTemporalPropertyKeyPrefix.LENGTH);
     }
 
     public boolean flush() {
@@ -151,6 +521,15 @@ public class VertexTemporalPropertyStore {
 
     public void drop() {
         store.drop();
+        if (rollups != null) {
+            rollups.drop();
+        }
+        if (changes != null) {
+            changes.drop();
+        }
+        if (records != null) {
+            records.drop();
+        }
     }
 
 }
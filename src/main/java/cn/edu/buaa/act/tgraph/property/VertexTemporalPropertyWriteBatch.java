@@ -1,6 +1,6 @@
 package cn.edu.buaa.act.tgraph.property;
 
-import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.common.Bytes;
 import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
 import cn.edu.buaa.act.tgraph.kvstore.WriteBatch;
 import org.apache.commons.logging.Log;
@@ -10,30 +10,140 @@ public class VertexTemporalPropertyWriteBatch implements AutoCloseable {
 
     private final WriteBatch wb;
 
-    // We need store to implement removePrefix.
+    // We need store to implement removePrefix of a prefix without successor.
     private final KVEngine store;
 
     private static final Log log = LogFactory.getLog(VertexTemporalPropertyWriteBatch.class);
 
+    // chunk mode(see TemporalChunkStore), null in point mode.
+    private final TemporalChunkStore.Batch chunks;
+
+    // descending timestamps(see TemporalDescendingStore), null in the ascending layout.
+    private final TemporalDescendingStore.Batch descending;
+
+    // summaries(see TemporalRollupStore) of buckets written by this batch, null if rollups are disabled.
+    private final TemporalRollupStore.Batch rollups;
+
+    // entries(see TemporalChangeIndex) of points written by this batch, null if the index is disabled.
+    private final TemporalChangeIndex.Batch changes;
+
+    // records of the latest point(see TemporalLatestStore) of temporal properties written by this batch, null if disabled.
+    private final TemporalLatestStore.Batch records;
+
+    // writes applied to the in-memory caches(see TemporalCacheBatch) after commit, null if caches are disabled.
+    private final TemporalCacheBatch caches;
+
     public VertexTemporalPropertyWriteBatch(WriteBatch wb, KVEngine store) {
+        this(wb, store, null, null, null, null, null, null);
+    }
+
+    VertexTemporalPropertyWriteBatch(WriteBatch wb, KVEngine store, TemporalChunkStore.Batch chunks, TemporalDescendingStore.Batch descending,
+            TemporalRollupStore.Batch rollups, TemporalChangeIndex.Batch changes, TemporalLatestStore.Batch records, TemporalCacheBatch caches) {
         this.wb = wb;
         this.store = store;
+        this.chunks = chunks;
+        this.descending = descending;
+        this.rollups = rollups;
+        this.changes = changes;
+        this.records = records;
+        this.caches = caches;
     }
 
     public boolean put(VertexTemporalPropertyKey key, Object value) {
-        return wb.put(key.toBytes(), Codec.encodeValue(value));
+        if (rollups != null) {
+            rollups.touch(key.toBytes());
+        }
+        if (changes != null) {
+            changes.put(key.toBytes());
+        }
+        if (records != null) {
+            records.put(key.toBytes(), TemporalInterval.encode(value));
+        }
+        if (caches != null) {
+            caches.put(key.toBytes(), TemporalInterval.encode(value));
+        }
+        if (chunks != null) {
+            return chunks.put(key.toBytes(), value);
+        }
+        if (descending != null) {
+            return descending.put(key.toBytes(), TemporalInterval.encode(value));
+        }
+        return wb.put(key.toBytes(), TemporalInterval.encode(value));
+    }
+
+    // value is valid in [start, end), written as one interval record(see TemporalInterval),
+    // points in the interval are overwritten.
+    public boolean putInterval(VertexTemporalPropertyKey start, long end, Object value) {
+        removeRange(start, new VertexTemporalPropertyKey(start.getPrefix(), end));
+        return put(start, TemporalInterval.of(end, value));
     }
 
     public boolean remove(VertexTemporalPropertyKey key) {
+        if (rollups != null) {
+            rollups.touch(key.toBytes());
+        }
+        if (changes != null) {
+            changes.remove(key.toBytes());
+        }
+        if (records != null) {
+            records.remove(key.toBytes());
+        }
+        if (caches != null) {
+            caches.remove(key.toBytes());
+        }
+        if (chunks != null) {
+            return chunks.remove(key.toBytes());
+        }
+        if (descending != null) {
+            return descending.remove(key.toBytes());
+        }
         return wb.remove(key.toBytes());
     }
 
     public boolean removeRange(VertexTemporalPropertyKey start, VertexTemporalPropertyKey end) {
+        if (rollups != null) {
+            rollups.removeRange(start.toBytes(), end.toBytes());
+        }
+        // entries(see TemporalChangeIndex) of the points removed are kept, they are removals.
+        if (records != null) {
+            records.removeRange(start.toBytes(), end.toBytes());
+        }
+        if (caches != null) {
+            caches.removeRange(start.toBytes(), end.toBytes());
+        }
+        if (chunks != null) {
+            return chunks.removeRange(start.toBytes(), end.toBytes());
+        }
+        if (descending != null) {
+            return descending.removeRange(start.toBytes(), end.toBytes());
+        }
         return wb.removeRange(start.toBytes(), end.toBytes());
     }
 
+    // One range tombstone [prefix, successor of prefix) instead of one tombstone per key,
+    // thus removing a property of millions of points does not build a batch of millions of keys.
     public boolean removePrefix(VertexTemporalPropertyKeyPrefix prefix) {
-        try (var iter = store.prefix(prefix.toBytes(), null)) {
+        if (rollups != null) {
+            rollups.removePrefix(prefix.toBytes());
+        }
+        // entries(see TemporalChangeIndex) of the points removed are kept, they are removals.
+        if (records != null) {
+            records.removePrefix(prefix.toBytes());
+        }
+        if (caches != null) {
+            caches.removePrefix(prefix.toBytes());
+        }
+        if (chunks != null) {
+            return chunks.removePrefix(prefix.toBytes());
+        }
+        var from = prefix.toBytes();
+        // keys are order-preserving encoded and compared bytewise.
+        var to = Bytes.successor(from);
+        if (to != null) {
+            return wb.removeRange(from, to);
+        }
+        // prefix of all 0xff has no successor, remove keys one by one.
+        try (var iter = store.prefix(from, null)) {
             while (iter.valid()) {
                 wb.remove(iter.key());
                 iter.next();
@@ -42,12 +152,41 @@ public class VertexTemporalPropertyWriteBatch implements AutoCloseable {
         return true;
     }
 
+    // NOTE!: in chunk mode, chunks edited so far are encoded into the returned batch, get it again after more writes.
     public WriteBatch getWb() {
+        if (chunks != null) {
+            chunks.flush();
+        }
         return wb;
     }
 
+    TemporalRollupStore.Batch getRollups() {
+        return rollups;
+    }
+
+    TemporalChangeIndex.Batch getChanges() {
+        return changes;
+    }
+
+    TemporalLatestStore.Batch getRecords() {
+        return records;
+    }
+
+    TemporalCacheBatch getCaches() {
+        return caches;
+    }
+
     @Override
     public void close() {
+        if (rollups != null) {
+            rollups.close();
+        }
+        if (changes != null) {
+            changes.close();
+        }
+        if (records != null) {
+            records.close();
+        }
         wb.close();
     }
 }
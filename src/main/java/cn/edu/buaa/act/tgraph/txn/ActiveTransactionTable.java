@@ -21,6 +21,11 @@ public class ActiveTransactionTable {
         this.db = new RocksEngine(opt);
     }
 
+    // Attach to an opened engine, e.g. a column family of the graph's RocksInstance.
+    public ActiveTransactionTable(KVEngine db) {
+        this.db = db;
+    }
+
     // start
     public void put(Long transactionID) {
         db.put(Codec.longToBytes(transactionID), Codec.encodeString("_"));
@@ -22,7 +22,8 @@ public class LogApplier {
         if (entries.isEmpty()) {
             return;
         }
-        try (var vertexWb = vertex.startBatchWrite(); var edgeWb = edge.startBatchWrite()) {
+        // all redo logs are applied by one atomic write if vertex and edge stores live in the same database.
+        try (var vertexWb = vertex.startBatchWrite(); var edgeWb = edge.startBatchWrite(vertexWb.getWb())) {
             for (var entry : entries) {
                 for (var log : entry.getLogs()) {
                     if (log.entityType() == LogEntryEntityType.VERTEX) {
@@ -32,6 +33,11 @@ public class LogApplier {
                                 vertexWb.put(pr.first(), pr.second());
                                 break;
                             }
+                            case APPEND_INTERVAL: {
+                                var pr = log.toVertexInterval();
+                                vertexWb.putInterval(pr.first(), pr.second().getEnd(), pr.second().getValue());
+                                break;
+                            }
                             case DELETE_SINGLE: {
                                 var pr = log.toVertex();
                                 vertexWb.remove(pr.first());
@@ -56,6 +62,11 @@ public class LogApplier {
                                 edgeWb.put(pr.first(), pr.second());
                                 break;
                             }
+                            case APPEND_INTERVAL: {
+                                var pr = log.toEdgeInterval();
+                                edgeWb.putInterval(pr.first(), pr.second().getEnd(), pr.second().getValue());
+                                break;
+                            }
                             case DELETE_SINGLE: {
                                 var pr = log.toEdge();
                                 edgeWb.remove(pr.first());
@@ -75,8 +86,14 @@ public class LogApplier {
 
                     }
                 }
-                vertex.commitBatchWrite(vertexWb, false, true, true);
+            }
+            // edge chunks(chunk mode) are encoded into the shared batch by getWb before the vertex commit.
+            boolean shared = edgeWb.getWb().sharedWith(vertexWb.getWb());
+            vertex.commitBatchWrite(vertexWb, false, true, true);
+            if (!shared) {
                 edge.commitBatchWrite(edgeWb, false, true, true);
+            } else {
+                edge.afterCommit(edgeWb);
             }
         }
     }
@@ -7,18 +7,21 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKey;
 import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKeyPrefix;
+import cn.edu.buaa.act.tgraph.property.TemporalInterval;
 import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKey;
 import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKeyPrefix;
 
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
 
 enum LogEntryEntityType {
     VERTEX, EDGE
 }
 
 enum RedoLogType {
-    APPEND, DELETE_SINGLE, DELETE_RANGE, DELETE_ALL
+    APPEND, DELETE_SINGLE, DELETE_RANGE, DELETE_ALL, APPEND_INTERVAL
 }
 
 
@@ -35,11 +38,13 @@ public class LogEntry implements Serializable {
     // 0x01 -> delete single
     // 0x02 -> delete range
     // 0x03 -> delete all
+    // 0x04 -> append interval
     private final byte redoType;
     private final int keyLength;
     private final int valueLength;
     // in delete range redo type, key is start, value is end
     // in delete all redo type, key is prefix
+    // in append interval redo type, key is start, value is end(8 bytes) + value
     private final byte[] key;
     private final byte[] value;
     private static final byte[] placeholder = {0x00};
@@ -59,7 +64,7 @@ public class LogEntry implements Serializable {
     }
 
     public RedoLogType redoLogType() {
-        Preconditions.checkState(redoType == 0x00 || redoType == 0x01 || redoType == 0x02 || redoType == 0x03);
+        Preconditions.checkState(redoType >= 0x00 && redoType <= 0x04);
         switch (redoType) {
             case 0x00: {
                 return RedoLogType.APPEND;
@@ -73,6 +78,9 @@ public class LogEntry implements Serializable {
             case 0x03: {
                 return RedoLogType.DELETE_ALL;
             }
+            case 0x04: {
+                return RedoLogType.APPEND_INTERVAL;
+            }
         }
         log.error("unknown redo log type.");
         return null;
@@ -83,6 +91,11 @@ public class LogEntry implements Serializable {
 
     }
 
+    // one entry for value valid in [start, end), instead of two boundary points.
+    public static LogEntry putVertexInterval(VertexTemporalPropertyKey start, long end, Object value) {
+        return new LogEntry((byte) 0x00, (byte) 0x04, start.toBytes(), encodeInterval(end, value));
+    }
+
     public static LogEntry removeVertex(VertexTemporalPropertyKey key) {
         return new LogEntry((byte) 0x00, (byte) 0x01, key.toBytes(), placeholder);
     }
@@ -91,6 +104,10 @@ public class LogEntry implements Serializable {
         return new LogEntry((byte) 0x01, (byte) 0x00, key.toBytes(), Codec.encodeValue(value));
     }
 
+    public static LogEntry putEdgeInterval(EdgeTemporalPropertyKey start, long end, Object value) {
+        return new LogEntry((byte) 0x01, (byte) 0x04, start.toBytes(), encodeInterval(end, value));
+    }
+
     public static LogEntry removeEdge(EdgeTemporalPropertyKey key) {
         return new LogEntry((byte) 0x01, (byte) 0x01, key.toBytes(), placeholder);
     }
@@ -111,6 +128,19 @@ public class LogEntry implements Serializable {
         return new LogEntry((byte) 0x01, (byte) 0x03, prefix.toBytes(), placeholder);
     }
 
+    private static byte[] encodeInterval(long end, Object value) {
+        byte[] v = Codec.encodeValue(value);
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + v.length);
+        buffer.putLong(end);
+        buffer.put(v);
+        return buffer.array();
+    }
+
+    private static TemporalInterval decodeInterval(byte[] bytes) {
+        long end = ByteBuffer.wrap(bytes, 0, Long.BYTES).getLong();
+        return TemporalInterval.of(end, Codec.decodeValue(Arrays.copyOfRange(bytes, Long.BYTES, bytes.length)));
+    }
+
     private static LogEntry doFromBytes(byte[] bytes) {
         // keyLength
         var buffer = ByteBuffer.wrap(bytes, 2, 4);
@@ -134,9 +164,7 @@ public class LogEntry implements Serializable {
         if (bytes[0] != 0x00) {
             Preconditions.checkState(bytes[0] == 0x01, "LogEntry entity type should be VERTEX or EDGE.");
         }
-        if (bytes[1] != 0x00) {
-            Preconditions.checkState(bytes[1] == 0x01, "LogEntry redo log type should be APPEND or DELETE.");
-        }
+        Preconditions.checkState(bytes[1] >= 0x00 && bytes[1] <= 0x04, "LogEntry redo log type should be APPEND, DELETE or APPEND_INTERVAL.");
         return doFromBytes(bytes);
     }
 
@@ -157,6 +185,12 @@ public class LogEntry implements Serializable {
         return Pair.of(VertexTemporalPropertyKey.fromBytes(key), val);
     }
 
+    public Pair<VertexTemporalPropertyKey, TemporalInterval> toVertexInterval() {
+        Preconditions.checkState(this.entityType == 0x00, "LogEntry entity type should be VERTEX");
+        Preconditions.checkState(this.redoType == 0x04, "LogEntry redo log type should be APPEND_INTERVAL");
+        return Pair.of(VertexTemporalPropertyKey.fromBytes(key), decodeInterval(value));
+    }
+
     public Pair<VertexTemporalPropertyKey, VertexTemporalPropertyKey> toVertexRange() {
         Preconditions.checkState(this.entityType == 0x00, "LogEntry entity type should be VERTEX");
         Preconditions.checkState(this.redoType == 0x02, "LogEntry redo log type should be DELETE_RANGE");
@@ -175,6 +209,12 @@ public class LogEntry implements Serializable {
         return Pair.of(EdgeTemporalPropertyKey.fromBytes(key), val);
     }
 
+    public Pair<EdgeTemporalPropertyKey, TemporalInterval> toEdgeInterval() {
+        Preconditions.checkState(this.entityType == 0x01, "LogEntry entity type should be EDGE");
+        Preconditions.checkState(this.redoType == 0x04, "LogEntry redo log type should be APPEND_INTERVAL");
+        return Pair.of(EdgeTemporalPropertyKey.fromBytes(key), decodeInterval(value));
+    }
+
     public Pair<EdgeTemporalPropertyKey, EdgeTemporalPropertyKey> toEdgeRange() {
         Preconditions.checkState(this.entityType == 0x01, "LogEntry entity type should be EDGE");
         Preconditions.checkState(this.redoType == 0x02, "LogEntry redo log type should be DELETE_RANGE");
@@ -187,6 +227,31 @@ public class LogEntry implements Serializable {
         return EdgeTemporalPropertyKeyPrefix.fromBytes(key);
     }
 
+    private byte[] upgradeLegacyKey(byte[] legacy, int format, ToIntFunction<String> tokens) {
+        return entityType == 0x00 ? VertexTemporalPropertyKey.fromLegacyBytes(legacy, format, tokens).toBytes() : EdgeTemporalPropertyKey.fromLegacyBytes(legacy, format, tokens).toBytes();
+    }
+
+    private byte[] upgradeLegacyPrefix(byte[] legacy, int format, ToIntFunction<String> tokens) {
+        return entityType == 0x00 ? VertexTemporalPropertyKeyPrefix.fromLegacyBytes(legacy, format, tokens).toBytes() : EdgeTemporalPropertyKeyPrefix.fromLegacyBytes(legacy, format, tokens).toBytes();
+    }
+
+    // NOTE!: only used by StoreUpgrader, re-encode keys written by older key formats.
+    public LogEntry upgradeLegacyKeys(int format, ToIntFunction<String> tokens) {
+        switch (redoLogType()) {
+            case APPEND:
+            case APPEND_INTERVAL:
+            case DELETE_SINGLE: {
+                return new LogEntry(entityType, redoType, upgradeLegacyKey(key, format, tokens), value);
+            }
+            case DELETE_RANGE: {
+                return new LogEntry(entityType, redoType, upgradeLegacyKey(key, format, tokens), upgradeLegacyKey(value, format, tokens));
+            }
+            default: {
+                return new LogEntry(entityType, redoType, upgradeLegacyPrefix(key, format, tokens), value);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "LogEntry{" +
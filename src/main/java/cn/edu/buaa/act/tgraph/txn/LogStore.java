@@ -28,6 +28,13 @@ public class LogStore {
         this.store = new RocksEngine(opt);
     }
 
+    // Attach to an opened engine, e.g. a column family of the graph's RocksInstance.
+    public LogStore(GraphSpaceID graph, KVEngine store) {
+        this.graph = graph;
+        this.dataPath = store.getRoot();
+        this.store = store;
+    }
+
 
     public String getRoot() {
         return dataPath;
@@ -2,18 +2,18 @@ package cn.edu.buaa.act.tgraph.txn;
 
 import com.google.common.base.Preconditions;
 
-import java.util.Objects;
-
 // unify vertex and edge by introducing an additional variable.
-public class TemporalPropertyID {
+// propertyId is the token of the temporal property name, refer TemporalPropertyTokenStore,
+// thus lock table never hashes strings.
+public class TemporalPropertyID implements Comparable<TemporalPropertyID> {
     private final long startNodeId;
     private final long endNodeId;
-    private final String propertyName;
+    private final int propertyId;
 
-    private TemporalPropertyID(long startNodeId, long endNodeId, String propertyName) {
+    private TemporalPropertyID(long startNodeId, long endNodeId, int propertyId) {
         this.startNodeId = startNodeId;
         this.endNodeId = endNodeId;
-        this.propertyName = propertyName;
+        this.propertyId = propertyId;
     }
 
     public long getStartNodeId() {
@@ -25,16 +25,16 @@ public class TemporalPropertyID {
         return endNodeId;
     }
 
-    public String getPropertyName() {
-        return propertyName;
+    public int getPropertyId() {
+        return propertyId;
     }
 
-    public static TemporalPropertyID vertex(long vertexId, String propertyName) {
-        return new TemporalPropertyID(vertexId, -1, propertyName);
+    public static TemporalPropertyID vertex(long vertexId, int propertyId) {
+        return new TemporalPropertyID(vertexId, -1, propertyId);
     }
 
-    public static TemporalPropertyID edge(long startNodeId, long endNodeId, String propertyName) {
-        return new TemporalPropertyID(startNodeId, endNodeId, propertyName);
+    public static TemporalPropertyID edge(long startNodeId, long endNodeId, int propertyId) {
+        return new TemporalPropertyID(startNodeId, endNodeId, propertyId);
     }
 
     @Override
@@ -42,12 +42,23 @@ public class TemporalPropertyID {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         TemporalPropertyID that = (TemporalPropertyID) o;
-        return startNodeId == that.startNodeId && endNodeId == that.endNodeId && Objects.equals(propertyName, that.propertyName);
+        return startNodeId == that.startNodeId && endNodeId == that.endNodeId && propertyId == that.propertyId;
+    }
+
+    // (start node, end node, property) order, locks of a batch are acquired in it.
+    @Override
+    public int compareTo(TemporalPropertyID o) {
+        int ret = Long.compare(startNodeId, o.startNodeId);
+        if (ret == 0) {
+            ret = Long.compare(endNodeId, o.endNodeId);
+        }
+        return ret == 0 ? Integer.compare(propertyId, o.propertyId) : ret;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(startNodeId, endNodeId, propertyName);
+        // same as Objects.hash without boxing, lock table calls it on every lock request.
+        return 31 * (31 * (31 + Long.hashCode(startNodeId)) + Long.hashCode(endNodeId)) + propertyId;
     }
 
     @Override
@@ -55,7 +66,7 @@ public class TemporalPropertyID {
         return "TemporalPropertyID{" +
                 "startNodeId=" + startNodeId +
                 ", endNodeId=" + endNodeId +
-                ", propertyName='" + propertyName + '\'' +
+                ", propertyId=" + propertyId +
                 '}';
     }
 }
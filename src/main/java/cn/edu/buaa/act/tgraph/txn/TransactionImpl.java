@@ -1,6 +1,10 @@
 package cn.edu.buaa.act.tgraph.txn;
 
+import cn.edu.buaa.act.tgraph.api.tgraphdb.Entity;
 import cn.edu.buaa.act.tgraph.api.tgraphdb.Node;
+import cn.edu.buaa.act.tgraph.api.tgraphdb.TemporalPropertyNotExistsException;
+import cn.edu.buaa.act.tgraph.common.EntityUtil;
+import cn.edu.buaa.act.tgraph.common.Pair;
 import cn.edu.buaa.act.tgraph.api.tgraphdb.Relationship;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.Edge;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.TGraphConfig;
@@ -9,15 +13,24 @@ import cn.edu.buaa.act.tgraph.impl.tgraphdb.Vertex;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.neo4j.graphdb.*;
+import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKey;
 import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyStore;
 import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyWriteBatch;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyTokenStore;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKey;
 import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyStore;
 import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyWriteBatch;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
 
 
 // In fact, in Neo4j function api, entities are act as executor,
@@ -64,7 +77,8 @@ public class TransactionImpl implements Transaction {
         this.txnManager = txnManager;
 
         this.vertexWb = vertex.startBatchWrite();
-        this.edgeWb = edge.startBatchWrite();
+        // edge writes share the vertex batch if both stores live in the same database.
+        this.edgeWb = edge.startBatchWrite(this.vertexWb.getWb());
         this.logWb = this.txnManager.getLogStore().startBatchWrite();
 
         exeCtx = new EntityExecutorContext(txnID, txnManager, graphTxn, this.logWb, this.vertexWb,this.edgeWb, vertex, edge);
@@ -334,6 +348,121 @@ public class TransactionImpl implements Transaction {
         return () -> relationshipResourceIteratorWrapper(neoRels.iterator());
     }
 
+    @Override
+    public Stream<Pair<Long, Object>> getTemporalPropertySnapshot(Label label, String key, Timestamp timestamp) throws TransactionAbortException {
+        var ids = new ArrayList<Long>();
+        try (var neoNodes = graphTxn.findNodes(label)) {
+            while (neoNodes.hasNext()) {
+                ids.add(neoNodes.next().getId());
+            }
+        }
+        return getTemporalPropertySnapshot(ids.stream().mapToLong(Long::longValue).toArray(), key, timestamp);
+    }
+
+    // NOTE!: unlike Node#getTemporalPropertyValue, nodes are not checked one by one whether they have the temporal property,
+    // a node without it has no value, thus null.
+    @Override
+    public Stream<Pair<Long, Object>> getTemporalPropertySnapshot(long[] nodeIds, String key, Timestamp timestamp) throws TransactionAbortException {
+        var ids = nodeIds.clone();
+        Arrays.sort(ids);
+        int tp = txnManager.getTokenStore().getId(key);
+        if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+            // never written, nothing to read.
+            return Arrays.stream(ids).mapToObj(id -> Pair.of(id, null));
+        }
+        // S-Locks are acquired in node id order before the scan, thus values are repeatable as a point get.
+        var lm = txnManager.getLockManager();
+        try {
+            for (long id : ids) {
+                lm.acquireShared(this, TemporalPropertyID.vertex(id, tp));
+            }
+        } catch (TransactionAbortException e) {
+            log.info(e.getInfo());
+            txnManager.releaseLocks(txnID);
+            throw e;
+        }
+        return exeCtx.getVertex().snapshot(ids, tp, timestamp.getTime());
+    }
+
+    // NOTE!: the same as Entity#getTemporalPropertyValue, values are read from the stores, writes of this transaction are not seen.
+    @Override
+    public Object[] getTemporalPropertyValues(List<Pair<Entity, String>> keys, Timestamp timestamp) throws TransactionAbortException {
+        // 1. temporal properties of an entity are read once, however many keys of it are asked.
+        Map<Entity, Set<String>> schema = new HashMap<>();
+        for (var key : keys) {
+            var tps = schema.computeIfAbsent(key.first(), entity -> {
+                var ret = new HashSet<String>();
+                entity.getTemporalPropertyKeys().forEach(ret::add);
+                return ret;
+            });
+            // keys are returned as stored, refer EntityUtil.temporalPropertyKesFilter.
+            if (!tps.contains(EntityUtil.temporalPropertyWrapper(key.second()))) {
+                log.warn(String.format("temporal property %s does not exist.", key.second()));
+                throw new TemporalPropertyNotExistsException();
+            }
+        }
+        // 2. a temporal property never written has no token, and its values are null.
+        Map<String, Integer> tokens = new HashMap<>();
+        var tps = new TemporalPropertyID[keys.size()];
+        for (int i = 0; i < keys.size(); ++i) {
+            var entity = keys.get(i).first();
+            int tp = tokens.computeIfAbsent(keys.get(i).second(), txnManager.getTokenStore()::getId);
+            if (tp == TemporalPropertyTokenStore.NO_TOKEN) {
+                continue;
+            }
+            if (entity instanceof Relationship) {
+                var edge = (Relationship) entity;
+                tps[i] = TemporalPropertyID.edge(edge.getStartNodeId(), edge.getEndNodeId(), tp);
+            } else {
+                tps[i] = TemporalPropertyID.vertex(entity.getId(), tp);
+            }
+        }
+        // 3. S-Locks are acquired in one sorted pass before the reads, thus values are repeatable as a point get.
+        var lm = txnManager.getLockManager();
+        try {
+            for (var tp : Arrays.stream(tps).filter(Objects::nonNull).distinct().sorted().toArray(TemporalPropertyID[]::new)) {
+                lm.acquireShared(this, tp);
+            }
+        } catch (TransactionAbortException e) {
+            log.info(e.getInfo());
+            txnManager.releaseLocks(txnID);
+            throw e;
+        }
+        // 4. one multiGet per store, values are put back by index.
+        List<Integer> vertexIndexes = new ArrayList<>();
+        List<VertexTemporalPropertyKey> vertexKeys = new ArrayList<>();
+        List<Integer> edgeIndexes = new ArrayList<>();
+        List<EdgeTemporalPropertyKey> edgeKeys = new ArrayList<>();
+        long time = timestamp.getTime();
+        for (int i = 0; i < tps.length; ++i) {
+            var tp = tps[i];
+            if (tp == null) {
+                continue;
+            }
+            if (keys.get(i).first() instanceof Relationship) {
+                edgeIndexes.add(i);
+                edgeKeys.add(EdgeTemporalPropertyKey.of(tp.getStartNodeId(), tp.getEndNodeId(), tp.getPropertyId(), time));
+            } else {
+                vertexIndexes.add(i);
+                vertexKeys.add(VertexTemporalPropertyKey.of(tp.getStartNodeId(), tp.getPropertyId(), time));
+            }
+        }
+        var ret = new Object[keys.size()];
+        if (!vertexKeys.isEmpty()) {
+            var values = exeCtx.getVertex().multiGet(vertexKeys);
+            for (int i = 0; i < vertexIndexes.size(); ++i) {
+                ret[vertexIndexes.get(i)] = values.get(i);
+            }
+        }
+        if (!edgeKeys.isEmpty()) {
+            var values = exeCtx.getEdge().multiGet(edgeKeys);
+            for (int i = 0; i < edgeIndexes.size(); ++i) {
+                ret[edgeIndexes.get(i)] = values.get(i);
+            }
+        }
+        return ret;
+    }
+
     @Override
     public void commit() {
         txnManager.commitTransaction(this);
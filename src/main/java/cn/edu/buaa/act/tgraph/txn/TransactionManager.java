@@ -4,11 +4,13 @@ package cn.edu.buaa.act.tgraph.txn;
 import com.google.common.base.Preconditions;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.TGraphConfig;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import cn.edu.buaa.act.tgraph.impl.tgraphdb.StoreUpgrader;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyStore;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyTokenStore;
 import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyStore;
 
 import java.util.ArrayList;
@@ -31,6 +33,7 @@ public class TransactionManager implements AutoCloseable {
     private final GraphDatabaseService neo;
     private final VertexTemporalPropertyStore vertex;
     private final EdgeTemporalPropertyStore edge;
+    private final TemporalPropertyTokenStore tokens;
 
     // transaction
     private final ConcurrentHashMap<Long, TransactionImpl> txnMap;
@@ -47,15 +50,30 @@ public class TransactionManager implements AutoCloseable {
 
     private static final int SHUTDOWN_TIME = 2;
 
-    public TransactionManager(GraphSpaceID graph, GraphDatabaseService neo, VertexTemporalPropertyStore vertex, EdgeTemporalPropertyStore edge) {
+    public TransactionManager(GraphSpaceID graph, GraphDatabaseService neo, VertexTemporalPropertyStore vertex, EdgeTemporalPropertyStore edge, TemporalPropertyTokenStore tokens) {
         this.neo = neo;
         this.vertex = vertex;
         this.edge = edge;
+        this.tokens = tokens;
 
         this.txnMap = new ConcurrentHashMap<>();
         this.lockManager = new LockManager(this.txnMap);
-        this.logStore = new LogStore(graph, graph.getDatabasePath() + "/tp-redo-logs");
-        this.activeTxnTable = new ActiveTransactionTable(graph, graph.getDatabasePath() + "/active-txn-table");
+        this.logStore = new LogStore(graph, graph.getDatabasePath() + "/" + StoreUpgrader.LOG_STORE);
+        this.activeTxnTable = new ActiveTransactionTable(graph, graph.getDatabasePath() + "/" + StoreUpgrader.ACTIVE_TXN_STORE);
+    }
+
+    // log store and active transaction table are opened by caller, e.g. on column families of the graph's RocksInstance.
+    public TransactionManager(GraphDatabaseService neo, VertexTemporalPropertyStore vertex, EdgeTemporalPropertyStore edge, TemporalPropertyTokenStore tokens,
+                              LogStore logStore, ActiveTransactionTable activeTxnTable) {
+        this.neo = neo;
+        this.vertex = vertex;
+        this.edge = edge;
+        this.tokens = tokens;
+
+        this.txnMap = new ConcurrentHashMap<>();
+        this.lockManager = new LockManager(this.txnMap);
+        this.logStore = logStore;
+        this.activeTxnTable = activeTxnTable;
     }
 
     // start background task executor and purge task executor.
@@ -83,6 +101,10 @@ public class TransactionManager implements AutoCloseable {
         return logStore;
     }
 
+    public TemporalPropertyTokenStore getTokenStore() {
+        return tokens;
+    }
+
     public TransactionImpl getTransaction(long txnID) {
         return txnMap.get(txnID);
     }
@@ -111,6 +133,8 @@ public class TransactionManager implements AutoCloseable {
     private void asyncAbortTask(TransactionImpl txn) {
         // remove the active state in active table
         activeTxnTable.delete(txn.getTxnID());
+        txn.getEdgeWb().close();
+        txn.getVertexWb().close();
         // release all locks.
         releaseLocks(txn);
         // stop tracking this running transaction
@@ -137,8 +161,18 @@ public class TransactionManager implements AutoCloseable {
 
     private void asyncCommitTask(TransactionImpl txn) {
         // 3. write temporal property store
+        // vertex and edge writes share one batch if both stores live in the same database, one atomic write is enough.
+        // edge chunks(chunk mode) are encoded into the shared batch by getWb before the vertex commit.
+        boolean shared = txn.getEdgeWb().getWb().sharedWith(txn.getVertexWb().getWb());
+        // summaries of written buckets are rebuilt and caches are updated by commitBatchWrite before locks are released.
         vertex.commitBatchWrite(txn.getVertexWb(), false, true, true);
-        edge.commitBatchWrite(txn.getEdgeWb(), false, true, true);
+        if (!shared) {
+            edge.commitBatchWrite(txn.getEdgeWb(), false, true, true);
+        } else {
+            edge.afterCommit(txn.getEdgeWb());
+        }
+        txn.getEdgeWb().close();
+        txn.getVertexWb().close();
         // 4. release lock
         releaseLocks(txn);
         try {
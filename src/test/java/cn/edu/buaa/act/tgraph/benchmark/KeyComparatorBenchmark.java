@@ -0,0 +1,127 @@
+package cn.edu.buaa.act.tgraph.benchmark;
+
+import cn.edu.buaa.act.tgraph.common.ComparatorUtil;
+import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import cn.edu.buaa.act.tgraph.kvstore.Comparator;
+import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
+import cn.edu.buaa.act.tgraph.kvstore.StoreOptions;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKey;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKeyComparator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rocksdb.ComparatorOptions;
+import org.rocksdb.RocksDB;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Legacy(JNI comparator) vs order-preserving(native bytewise, tokenized property name) temporal property keys.
+// compare*: the comparison itself, insert*: memtable insert of rocksdb, where every comparison of
+// the legacy format is an upcall into java.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KeyComparatorBenchmark {
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private static final int KEY_NUM = 1 << 16;
+    private static final String[] PROPERTIES = {"speed", "status", "travel-time", "congestion-level"};
+
+    private ByteBuffer[] legacyKeys;
+    private byte[][] legacyKeyBytes;
+    private byte[][] keys;
+
+    private RocksEngine legacyEngine;
+    private RocksEngine engine;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(0);
+        legacyKeys = new ByteBuffer[KEY_NUM];
+        legacyKeyBytes = new byte[KEY_NUM][];
+        keys = new byte[KEY_NUM][];
+        for (int i = 0; i < KEY_NUM; ++i) {
+            long nodeId = random.nextInt(1024);
+            int token = random.nextInt(PROPERTIES.length);
+            String p = PROPERTIES[token];
+            long t = random.nextInt(1_000_000);
+            legacyKeyBytes[i] = legacyVertexKey(nodeId, p, t);
+            legacyKeys[i] = ByteBuffer.wrap(legacyKeyBytes[i]);
+            keys[i] = new VertexTemporalPropertyKey(nodeId, token, t).toBytes();
+        }
+        String baseDir = "/Users/crusher/test/benchmark/";
+        var legacyGraph = new GraphSpaceID(1, "key-comparator-legacy", "");
+        legacyEngine = new RocksEngine(StoreOptions.of(legacyGraph, baseDir + legacyGraph.getGraphName(), false,
+                new Comparator(new VertexTemporalPropertyKeyComparator(new ComparatorOptions()))));
+        var graph = new GraphSpaceID(2, "key-comparator-bytewise", "");
+        engine = new RocksEngine(StoreOptions.of(graph, baseDir + graph.getGraphName(), false));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        legacyEngine.stop();
+        legacyEngine.drop();
+        engine.stop();
+        engine.drop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM - 1)
+    public void compareLegacy(Blackhole bh) {
+        for (int i = 1; i < KEY_NUM; ++i) {
+            legacyKeys[i - 1].rewind();
+            legacyKeys[i].rewind();
+            bh.consume(ComparatorUtil.vertexTemporalPropertyKeyCompare(legacyKeys[i - 1], legacyKeys[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEY_NUM - 1)
+    public void compareBytewise(Blackhole bh) {
+        for (int i = 1; i < KEY_NUM; ++i) {
+            bh.consume(Arrays.compareUnsigned(keys[i - 1], keys[i]));
+        }
+    }
+
+    @Benchmark
+    public boolean insertLegacy() {
+        int i = cursor++ & (KEY_NUM - 1);
+        return legacyEngine.put(legacyKeyBytes[i], legacyKeyBytes[i]);
+    }
+
+    @Benchmark
+    public boolean insertBytewise() {
+        int i = cursor++ & (KEY_NUM - 1);
+        return engine.put(keys[i], keys[i]);
+    }
+
+    // legacy layout: nodeId(long) + propertyLength(int) + propertyName + timestamp(long)
+    private static byte[] legacyVertexKey(long nodeId, String propertyName, long timestamp) {
+        byte[] p = propertyName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(20 + p.length);
+        buffer.putLong(nodeId);
+        buffer.putInt(p.length);
+        buffer.put(p);
+        buffer.putLong(timestamp);
+        return buffer.array();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var opt = new OptionsBuilder()
+                .include(KeyComparatorBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
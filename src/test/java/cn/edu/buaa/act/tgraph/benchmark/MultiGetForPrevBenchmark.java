@@ -0,0 +1,91 @@
+package cn.edu.buaa.act.tgraph.benchmark;
+
+import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
+import cn.edu.buaa.act.tgraph.kvstore.StoreOptions;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKey;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKeyPrefix;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rocksdb.RocksDB;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Batch point-in-time reads of (vertex, time) pairs in random order.
+// perKeySeek: one seekForPrev per key in caller order, multiGetForPrev: sorted sweep with parallel shards.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MultiGetForPrevBenchmark {
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private static final int VERTEX_NUM = 10_000;
+    private static final int TIMESTAMP_NUM = 100;
+    private static final int PROPERTY = 0;
+
+    @Param({"256", "4096"})
+    private int batchSize;
+
+    private RocksEngine engine;
+    private List<byte[]> keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String baseDir = "/Users/crusher/test/benchmark/";
+        var graph = new GraphSpaceID(3, "multi-get-for-prev", "");
+        var opt = StoreOptions.of(graph, baseDir + graph.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        engine = new RocksEngine(opt);
+        byte[] value = new byte[16];
+        for (long v = 0; v < VERTEX_NUM; ++v) {
+            try (var wb = engine.startBatchWrite()) {
+                for (long t = 0; t < TIMESTAMP_NUM; ++t) {
+                    wb.put(new VertexTemporalPropertyKey(v, PROPERTY, t * 10).toBytes(), value);
+                }
+                engine.commitBatchWrite(wb, true, false, true);
+            }
+        }
+        engine.flush();
+        Random random = new Random(0);
+        keys = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; ++i) {
+            keys.add(new VertexTemporalPropertyKey(random.nextInt(VERTEX_NUM), PROPERTY, random.nextInt(TIMESTAMP_NUM * 10)).toBytes());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.stop();
+        engine.drop();
+    }
+
+    @Benchmark
+    public void perKeySeek(Blackhole bh) {
+        for (var key : keys) {
+            bh.consume(engine.getForPrev(key, null));
+        }
+    }
+
+    @Benchmark
+    public void multiGetForPrev(Blackhole bh) {
+        bh.consume(engine.multiGetForPrev(keys));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var opt = new OptionsBuilder()
+                .include(MultiGetForPrevBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,110 @@
+package cn.edu.buaa.act.tgraph.benchmark;
+
+import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
+import cn.edu.buaa.act.tgraph.kvstore.StoreOptions;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKey;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKeyPrefix;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyStoreOptions;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rocksdb.RocksDB;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Point reads of random vertices on ascending and descending timestamp layouts(see TemporalDescendingStore).
+// now: the value at the latest time, history: the value at a random time, recent: the range of the last 10 points.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimestampOrderBenchmark {
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private static final int VERTEX_NUM = 10_000;
+    private static final int TIMESTAMP_NUM = 100;
+    private static final int PROPERTY = 0;
+    private static final int READ_NUM = 1024;
+
+    @Param({"false", "true"})
+    private boolean descending;
+
+    private RocksEngine engine;
+    private VertexTemporalPropertyStore store;
+    private long[] vertices;
+    private long[] timestamps;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String baseDir = "/Users/crusher/test/benchmark/";
+        var graph = new GraphSpaceID(4, "timestamp-order-" + (descending ? "descending" : "ascending"), "");
+        var opt = StoreOptions.of(graph, baseDir + graph.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        engine = new RocksEngine(opt);
+        store = new VertexTemporalPropertyStore(graph, engine, TemporalPropertyStoreOptions.of().setDescendingTimestamps(descending));
+        for (long v = 0; v < VERTEX_NUM; ++v) {
+            try (var batch = store.startBatchWrite()) {
+                for (long t = 0; t < TIMESTAMP_NUM; ++t) {
+                    batch.put(new VertexTemporalPropertyKey(v, PROPERTY, t * 10), (double) t);
+                }
+                store.commitBatchWrite(batch, true, false, true);
+            }
+        }
+        store.flush();
+        Random random = new Random(0);
+        vertices = new long[READ_NUM];
+        timestamps = new long[READ_NUM];
+        for (int i = 0; i < READ_NUM; ++i) {
+            vertices[i] = random.nextInt(VERTEX_NUM);
+            timestamps[i] = random.nextInt(TIMESTAMP_NUM * 10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.stop();
+        engine.drop();
+    }
+
+    @Benchmark
+    public void now(Blackhole bh) {
+        for (var v : vertices) {
+            bh.consume(store.get(new VertexTemporalPropertyKey(v, PROPERTY, Long.MAX_VALUE)));
+        }
+    }
+
+    @Benchmark
+    public void history(Blackhole bh) {
+        for (int i = 0; i < READ_NUM; ++i) {
+            bh.consume(store.get(new VertexTemporalPropertyKey(vertices[i], PROPERTY, timestamps[i])));
+        }
+    }
+
+    @Benchmark
+    public void recent(Blackhole bh) {
+        long start = (TIMESTAMP_NUM - 10) * 10;
+        for (var v : vertices) {
+            try (var iter = store.rangeWithPrefixGet(new VertexTemporalPropertyKey(v, PROPERTY, start))) {
+                while (iter.hasNext()) {
+                    bh.consume(iter.next());
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var opt = new OptionsBuilder()
+                .include(TimestampOrderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
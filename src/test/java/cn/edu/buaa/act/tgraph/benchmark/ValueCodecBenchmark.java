@@ -0,0 +1,86 @@
+package cn.edu.buaa.act.tgraph.benchmark;
+
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.common.ValueCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// FST(Codec.encode/decodeValue) vs type-tagged(ValueCodec) encoding of temporal property values.
+// decodeDouble reads a number without boxing, as scans over numeric properties do.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValueCodecBenchmark {
+
+    @Param({"double", "long", "string", "datetime", "double[]"})
+    private String type;
+
+    private Object value;
+    private byte[] fst;
+    private byte[] tagged;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (type) {
+            case "double":
+                value = 36.6;
+                break;
+            case "long":
+                value = 1662000000000L;
+                break;
+            case "string":
+                value = "congestion-level-3";
+                break;
+            case "datetime":
+                value = LocalDateTime.of(2022, 9, 1, 9, 0);
+                break;
+            default:
+                value = new double[]{1.0, 2.0, 3.0, 4.0};
+        }
+        fst = Codec.encodeValue(value);
+        tagged = ValueCodec.encode(value);
+    }
+
+    @Benchmark
+    public void encodeFst(Blackhole bh) {
+        bh.consume(Codec.encodeValue(value));
+    }
+
+    @Benchmark
+    public void encodeTagged(Blackhole bh) {
+        bh.consume(ValueCodec.encode(value));
+    }
+
+    @Benchmark
+    public void decodeFst(Blackhole bh) {
+        bh.consume(Codec.decodeValue(fst));
+    }
+
+    @Benchmark
+    public void decodeTagged(Blackhole bh) {
+        bh.consume(ValueCodec.decode(tagged));
+    }
+
+    @Benchmark
+    public void decodeDouble(Blackhole bh) {
+        if (ValueCodec.isNumeric(tagged)) {
+            bh.consume(ValueCodec.getDouble(tagged));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var opt = new OptionsBuilder()
+                .include(ValueCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
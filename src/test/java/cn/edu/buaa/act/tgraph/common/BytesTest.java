@@ -0,0 +1,18 @@
+package cn.edu.buaa.act.tgraph.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class BytesTest {
+    @Test
+    void testSuccessor() {
+        assertArrayEquals(new byte[]{1, 2, 4}, Bytes.successor(new byte[]{1, 2, 3}));
+        // trailing 0xff are dropped.
+        assertArrayEquals(new byte[]{1, 3}, Bytes.successor(new byte[]{1, 2, (byte) 0xff, (byte) 0xff}));
+        assertArrayEquals(new byte[]{1, (byte) 0x80}, Bytes.successor(new byte[]{1, (byte) 0x7f}));
+        assertNull(Bytes.successor(new byte[]{(byte) 0xff, (byte) 0xff}));
+        assertNull(Bytes.successor(new byte[0]));
+    }
+}
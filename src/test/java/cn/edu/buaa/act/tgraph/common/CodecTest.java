@@ -4,6 +4,9 @@ package cn.edu.buaa.act.tgraph.common;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class CodecTest {
@@ -77,4 +80,36 @@ public class CodecTest {
         assertFalse(Bytes.startsWith(Codec.encodeValue(k0), Codec.encodeValue(prefix)));
         assertFalse(Bytes.startsWith(Codec.encodeValue(k1), Codec.encodeValue(prefix)));
     }
+
+    @Test
+    void testOrderedCodec() {
+        long[] longs = {Long.MIN_VALUE, -256, -1, 0, 1, 255, 256, Long.MAX_VALUE};
+        for (int i = 0; i < longs.length; ++i) {
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            Codec.putOrderedLong(buffer, longs[i]);
+            buffer.flip();
+            assertEquals(longs[i], Codec.getOrderedLong(buffer));
+            if (i > 0) {
+                assertTrue(Arrays.compareUnsigned(orderedLong(longs[i - 1]), orderedLong(longs[i])) < 0);
+            }
+        }
+
+        String[] strings = {"", "\0", "\0\0", "a", "a\0", "ab", "abc", "b", "\u00ff", "\u4e2d\u6587"};
+        for (int i = 0; i < strings.length; ++i) {
+            byte[] encoded = Codec.encodeOrderedString(strings[i]);
+            assertEquals(encoded.length, Codec.orderedStringLength(encoded, 0));
+            assertEquals(strings[i], Codec.decodeOrderedString(encoded, 0));
+            if (i > 0) {
+                assertTrue(Arrays.compareUnsigned(Codec.encodeOrderedString(strings[i - 1]), encoded) < 0);
+                // prefix free
+                assertFalse(Bytes.startsWith(encoded, Codec.encodeOrderedString(strings[i - 1])));
+            }
+        }
+    }
+
+    private static byte[] orderedLong(long num) {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        Codec.putOrderedLong(buffer, num);
+        return buffer.array();
+    }
 }
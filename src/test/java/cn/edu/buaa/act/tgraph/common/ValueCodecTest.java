@@ -0,0 +1,124 @@
+package cn.edu.buaa.act.tgraph.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValueCodecTest {
+    @Test
+    void testPrimitive() {
+        List<Object> values = List.of(true, false, (byte) 'a', (short) -10, 0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                16L, Long.MIN_VALUE, Long.MAX_VALUE, 1.0f, -1.2, Double.NaN, 'c', '\u4e2d');
+        for (var v : values) {
+            assertEquals(v, ValueCodec.decode(ValueCodec.encode(v)));
+        }
+        // tag + fixed width payload.
+        assertEquals(9, ValueCodec.encode(1.2).length);
+        assertEquals(5, ValueCodec.encode(1.2f).length);
+        // tag + varint.
+        assertEquals(2, ValueCodec.encode(12).length);
+        assertEquals(2, ValueCodec.encode(-12L).length);
+        assertEquals(1, ValueCodec.encode(true).length);
+        assertTrue(ValueCodec.encode(1.2).length < Codec.encodeValue(1.2).length);
+    }
+
+    @Test
+    void testPrimitiveArray() {
+        boolean[] b = {true, false, true, false};
+        assertArrayEquals(b, (boolean[]) ValueCodec.decode(ValueCodec.encode(b)));
+        byte[] bytes = {'a', 'b', 'c'};
+        assertArrayEquals(bytes, (byte[]) ValueCodec.decode(ValueCodec.encode(bytes)));
+        short[] shorts = {1, -2, 3};
+        assertArrayEquals(shorts, (short[]) ValueCodec.decode(ValueCodec.encode(shorts)));
+        int[] ints = {1, Integer.MIN_VALUE, 3};
+        assertArrayEquals(ints, (int[]) ValueCodec.decode(ValueCodec.encode(ints)));
+        long[] longs = {1, -2, Long.MAX_VALUE};
+        assertArrayEquals(longs, (long[]) ValueCodec.decode(ValueCodec.encode(longs)));
+        float[] floats = {1.0f, 2.0f, 3.0f};
+        assertArrayEquals(floats, (float[]) ValueCodec.decode(ValueCodec.encode(floats)));
+        double[] doubles = {1.0, -2.0, 3.5};
+        assertArrayEquals(doubles, (double[]) ValueCodec.decode(ValueCodec.encode(doubles)));
+        char[] chars = {'a', 'b', '\u6587'};
+        assertArrayEquals(chars, (char[]) ValueCodec.decode(ValueCodec.encode(chars)));
+        assertArrayEquals(new int[0], (int[]) ValueCodec.decode(ValueCodec.encode(new int[0])));
+    }
+
+    @Test
+    void testString() {
+        String s = "crusher";
+        assertEquals(s, ValueCodec.decode(ValueCodec.encode(s)));
+        assertEquals("", ValueCodec.decode(ValueCodec.encode("")));
+        String[] str = {"louie", "", "\u4e2d\u6587"};
+        assertArrayEquals(str, (String[]) ValueCodec.decode(ValueCodec.encode(str)));
+    }
+
+    @Test
+    void testTemporal() {
+        List<Object> values = List.of(LocalDate.of(2022, 9, 1), LocalDate.of(1900, 1, 1),
+                LocalTime.of(9, 0, 1, 123), LocalDateTime.of(2022, 9, 1, 9, 0, 1, 456),
+                OffsetTime.of(9, 0, 0, 0, ZoneOffset.ofHours(8)),
+                ZonedDateTime.of(2022, 9, 1, 9, 0, 0, 789, ZoneId.of("Asia/Shanghai")),
+                Duration.ofSeconds(-3, 5), Period.of(1, -2, 3));
+        for (var v : values) {
+            assertEquals(v, ValueCodec.decode(ValueCodec.encode(v)));
+        }
+        // OffsetDateTime is converted to ZonedDateTime.
+        var odt = OffsetDateTime.of(2022, 9, 1, 9, 0, 0, 0, ZoneOffset.ofHours(8));
+        assertEquals(odt.toZonedDateTime(), ValueCodec.decode(ValueCodec.encode(odt)));
+    }
+
+    // values of ValueCodecBenchmark are never larger than their FST bytes.
+    @Test
+    void testSize() {
+        List<Object> values = List.of(36.6, 1662000000000L, "congestion-level-3", LocalDateTime.of(2022, 9, 1, 9, 0),
+                new double[]{1.0, 2.0, 3.0, 4.0});
+        for (var v : values) {
+            assertTrue(ValueCodec.encode(v).length <= Codec.encodeValue(v).length);
+        }
+    }
+
+    @Test
+    void testFallback() {
+        LocalTime[] times = {LocalTime.of(9, 0), LocalTime.of(10, 0)};
+        assertArrayEquals(times, (LocalTime[]) ValueCodec.decode(ValueCodec.encode(times)));
+        assertEquals(ValueCodec.FST, ValueCodec.encode(times)[0]);
+    }
+
+    @Test
+    void testNumeric() {
+        assertTrue(ValueCodec.isNumeric(ValueCodec.encode(1.5)));
+        assertTrue(ValueCodec.isNumeric(ValueCodec.encode((short) 2)));
+        assertFalse(ValueCodec.isNumeric(ValueCodec.encode("1.5")));
+        assertFalse(ValueCodec.isNumeric(ValueCodec.encode('c')));
+        assertEquals(1.5, ValueCodec.getDouble(ValueCodec.encode(1.5)));
+        assertEquals(1.5, ValueCodec.getDouble(ValueCodec.encode(1.5f)));
+        assertEquals(-7.0, ValueCodec.getDouble(ValueCodec.encode(-7)));
+        assertEquals(Long.MIN_VALUE, ValueCodec.getLong(ValueCodec.encode(Long.MIN_VALUE)));
+        assertEquals(-3, ValueCodec.getLong(ValueCodec.encode((byte) -3)));
+        assertEquals(1, ValueCodec.getLong(ValueCodec.encode(1.5)));
+        assertThrows(IllegalArgumentException.class, () -> ValueCodec.getLong(ValueCodec.encode("1")));
+    }
+
+    @Test
+    void testInterval() {
+        var bytes = ValueCodec.encodeInterval(100, "open");
+        assertTrue(ValueCodec.isInterval(bytes));
+        assertFalse(ValueCodec.isInterval(ValueCodec.encode("open")));
+        assertEquals(100, ValueCodec.intervalEnd(bytes));
+        assertEquals("open", ValueCodec.decode(bytes));
+        assertEquals(Long.MIN_VALUE, ValueCodec.intervalEnd(ValueCodec.encodeInterval(Long.MIN_VALUE, 1.5)));
+        assertThrows(IllegalArgumentException.class, () -> ValueCodec.intervalEnd(ValueCodec.encode(1)));
+    }
+}
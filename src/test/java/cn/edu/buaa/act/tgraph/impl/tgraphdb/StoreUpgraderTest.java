@@ -0,0 +1,382 @@
+package cn.edu.buaa.act.tgraph.impl.tgraphdb;
+
+import cn.edu.buaa.act.tgraph.api.tgraphdb.Entity;
+import cn.edu.buaa.act.tgraph.common.Codec;
+import cn.edu.buaa.act.tgraph.common.EntityUtil;
+import cn.edu.buaa.act.tgraph.common.Pair;
+import cn.edu.buaa.act.tgraph.common.ValueCodec;
+import cn.edu.buaa.act.tgraph.kvstore.Comparator;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
+import cn.edu.buaa.act.tgraph.kvstore.RocksInstance;
+import cn.edu.buaa.act.tgraph.kvstore.StoreOptions;
+import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKey;
+import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyKeyComparator;
+import cn.edu.buaa.act.tgraph.property.TemporalAggregation;
+import cn.edu.buaa.act.tgraph.property.TemporalFill;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyTokenStore;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKey;
+import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyKeyComparator;
+import cn.edu.buaa.act.tgraph.txn.TransactionAbortException;
+import org.junit.jupiter.api.Test;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.rocksdb.ComparatorOptions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+
+// Stores of every format version are written the way an older TGraph wrote them,
+// then opened by TGraphDatabase, reads should be the same as the values written.
+public class StoreUpgraderTest {
+
+    private static final String databaseDir = "/Users/crusher/test/tgraph-upgrade-test";
+    private static final DatabaseManagementService neoDbms = new DatabaseManagementServiceBuilder(Path.of(databaseDir + "/neo")).build();
+    private static final GraphDatabaseService neo = neoDbms.database(DEFAULT_DATABASE_NAME);
+
+    private static final String SPEED = "speed";
+    private static final String ALPHA = "alpha";
+
+    private enum UpgradeRelType implements RelationshipType {
+        UPGRADE_REL
+    }
+
+    // neo4j entities whose temporal properties are written by the legacy stores.
+    private static final class Entities {
+        long node1;
+        long node2;
+        long edge;
+    }
+
+    // points of a temporal property are at 0, 10, 20..., values of different types.
+    private static Object value(long t) {
+        long i = t / 10;
+        if (i % 3 == 0) {
+            return (int) i;
+        }
+        return i % 3 == 1 ? "v" + i : i * 0.5;
+    }
+
+    private static List<Pair<Timestamp, Object>> values(long points) {
+        List<Pair<Timestamp, Object>> ret = new ArrayList<>();
+        for (long t = 0; t < points * 10; t += 10) {
+            ret.add(Pair.of(new Timestamp(t), value(t)));
+        }
+        return ret;
+    }
+
+    // temporal property values are FST encoded before format 4.
+    private static byte[] encodeValue(int version, long t) {
+        return version < 4 ? Codec.encodeValue(value(t)) : ValueCodec.encode(value(t));
+    }
+
+    // format 0: id(long)... + propertyLength(int) + propertyName + timestamp(long)
+    // format 1: id(ordered long)... + propertyName(ordered string) + timestamp(ordered long)
+    private static byte[] legacyKey(int version, long[] ids, String property, long t) {
+        byte[] name = version == 0 ? property.getBytes(StandardCharsets.UTF_8) : Codec.encodeOrderedString(property);
+        ByteBuffer buffer = ByteBuffer.allocate(ids.length * Long.BYTES + (version == 0 ? Integer.BYTES : 0) + name.length + Long.BYTES);
+        for (long id : ids) {
+            if (version == 0) {
+                buffer.putLong(id);
+            } else {
+                Codec.putOrderedLong(buffer, id);
+            }
+        }
+        if (version == 0) {
+            buffer.putInt(name.length);
+        }
+        buffer.put(name);
+        if (version == 0) {
+            buffer.putLong(t);
+        } else {
+            Codec.putOrderedLong(buffer, t);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] vertexKey(int version, long node, String property, TemporalPropertyTokenStore tokens, long t) {
+        return version < 2 ? legacyKey(version, new long[]{node}, property, t) : VertexTemporalPropertyKey.of(node, tokens.getOrCreateId(property), t).toBytes();
+    }
+
+    private static byte[] edgeKey(int version, long start, long end, String property, TemporalPropertyTokenStore tokens, long t) {
+        return version < 2 ? legacyKey(version, new long[]{start, end}, property, t) : EdgeTemporalPropertyKey.of(start, end, tokens.getOrCreateId(property), t).toBytes();
+    }
+
+    private static void write(KVEngine engine, List<Pair<byte[], byte[]>> points) {
+        try (var wb = engine.startBatchWrite()) {
+            for (var point : points) {
+                assertTrue(wb.put(point.first(), point.second()));
+            }
+            assertTrue(engine.commitBatchWrite(wb, false, true, true));
+        }
+    }
+
+    // speed of node 1 and the edge, alpha of node 2.
+    private static void writeStores(int version, Entities entities, long points, KVEngine vertex, KVEngine edge, TemporalPropertyTokenStore tokens) {
+        List<Pair<byte[], byte[]>> vertexPoints = new ArrayList<>();
+        List<Pair<byte[], byte[]>> edgePoints = new ArrayList<>();
+        for (long t = 0; t < points * 10; t += 10) {
+            vertexPoints.add(Pair.of(vertexKey(version, entities.node1, SPEED, tokens, t), encodeValue(version, t)));
+            edgePoints.add(Pair.of(edgeKey(version, entities.node1, entities.node2, SPEED, tokens, t), encodeValue(version, t)));
+        }
+        for (long t = 0; t < 100; t += 10) {
+            vertexPoints.add(Pair.of(vertexKey(version, entities.node2, ALPHA, tokens, t), encodeValue(version, t)));
+        }
+        write(vertex, vertexPoints);
+        write(edge, edgePoints);
+    }
+
+    private static void saveVersions(Path root, int version) {
+        Properties versions = new Properties();
+        versions.setProperty(StoreUpgrader.VERTEX_STORE, String.valueOf(version));
+        versions.setProperty(StoreUpgrader.EDGE_STORE, String.valueOf(version));
+        try (OutputStream out = Files.newOutputStream(root.resolve(StoreUpgrader.FORMAT_FILE))) {
+            versions.store(out, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteDirectory(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(java.util.Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // create the entities and their temporal properties by a fresh database, then drop its stores.
+    private static Entities createEntities(GraphSpaceID graph) throws TransactionAbortException {
+        var root = Paths.get(graph.getDatabasePath());
+        deleteDirectory(root);
+        var entities = new Entities();
+        var tg = new TGraphDatabase(graph, neo);
+        try (var txn = tg.beginTx()) {
+            var label = Label.label("upgrade-node");
+            var node1 = txn.createNode(label);
+            node1.createTemporalProperty(SPEED);
+            var node2 = txn.createNode(label);
+            node2.createTemporalProperty(ALPHA);
+            var edge = node1.createRelationshipTo(node2, UpgradeRelType.UPGRADE_REL);
+            edge.createTemporalProperty(SPEED);
+            entities.node1 = node1.getId();
+            entities.node2 = node2.getId();
+            entities.edge = edge.getId();
+            txn.commit();
+        }
+        tg.shutdown();
+        deleteDirectory(root);
+        return entities;
+    }
+
+    // write stores of a format version into the database path of graph.
+    private static void writeVersion(GraphSpaceID graph, int version, Entities entities, long points) throws IOException {
+        var root = Paths.get(graph.getDatabasePath());
+        Files.createDirectories(root);
+        if (version < 3) {
+            // standalone databases, only format 0 is sorted by the legacy comparators.
+            var vertexOpt = StoreOptions.of(graph, root.resolve(StoreUpgrader.VERTEX_STORE).toString(), false,
+                    version == 0 ? new Comparator(new VertexTemporalPropertyKeyComparator(new ComparatorOptions())) : null);
+            var edgeOpt = StoreOptions.of(graph, root.resolve(StoreUpgrader.EDGE_STORE).toString(), false,
+                    version == 0 ? new Comparator(new EdgeTemporalPropertyKeyComparator(new ComparatorOptions())) : null);
+            var vertex = new RocksEngine(vertexOpt);
+            var edge = new RocksEngine(edgeOpt);
+            // tokens are created by format 2.
+            var tokens = version == 2 ? new TemporalPropertyTokenStore(graph, root.resolve(StoreUpgrader.TOKEN_STORE).toString(), false) : null;
+            writeStores(version, entities, points, vertex, edge, tokens);
+            vertex.stop();
+            edge.stop();
+            if (tokens != null) {
+                tokens.stop();
+            }
+        } else {
+            var instance = new RocksInstance(graph, root.resolve(StoreUpgrader.DATA_STORE).toString(), StoreUpgrader.COLUMN_FAMILIES);
+            var tokens = new TemporalPropertyTokenStore(graph, new RocksEngine(instance, StoreUpgrader.TOKEN_STORE));
+            var vertex = new RocksEngine(instance, StoreUpgrader.VERTEX_STORE);
+            var edge = new RocksEngine(instance, StoreUpgrader.EDGE_STORE);
+            writeStores(version, entities, points, vertex, edge, tokens);
+            vertex.stop();
+            edge.stop();
+            tokens.stop();
+            instance.stop();
+        }
+        // stores of format 0 have no recorded version.
+        if (version > 0) {
+            saveVersions(root, version);
+        }
+    }
+
+    private static void checkValues(TGraphDatabase tg, Entities entities, long points) throws TransactionAbortException {
+        try (var txn = tg.beginTx()) {
+            var node1 = txn.getNodeById(entities.node1);
+            var node2 = txn.getNodeById(entities.node2);
+            var edge = txn.getRelationshipById(entities.edge);
+            assertEquals(values(points), node1.getTemporalPropertyValue(SPEED, new Timestamp(0), new Timestamp(points * 10)).toList());
+            assertEquals(values(points), edge.getTemporalPropertyValue(SPEED, new Timestamp(0), new Timestamp(points * 10)).toList());
+            assertEquals(values(10), node2.getTemporalPropertyValue(ALPHA, new Timestamp(0), new Timestamp(1000)).toList());
+            for (long t : new long[]{5, 15, 25, 95, points * 10 - 5}) {
+                assertEquals(value(t), node1.getTemporalPropertyValue(SPEED, new Timestamp(t)));
+                assertEquals(value(t), edge.getTemporalPropertyValue(SPEED, new Timestamp(t)));
+            }
+            assertNull(node1.getTemporalPropertyValue(SPEED, new Timestamp(-1)));
+            assertEquals(value(90), node2.getTemporalPropertyValue(ALPHA, new Timestamp(5000)));
+            txn.commit();
+        }
+    }
+
+    private static void checkUpgrade(int version) throws IOException, TransactionAbortException {
+        var graph = new GraphSpaceID(1, "tg-upgrade-format-" + version, databaseDir + "/format-" + version);
+        var entities = createEntities(graph);
+        writeVersion(graph, version, entities, 100);
+        var tg = new TGraphDatabase(graph, neo);
+        checkValues(tg, entities, 100);
+        tg.shutdown();
+        // standalone databases are moved into column families, all stores are current.
+        var root = Paths.get(graph.getDatabasePath());
+        assertFalse(Files.exists(root.resolve(StoreUpgrader.VERTEX_STORE)));
+        assertFalse(Files.exists(root.resolve(StoreUpgrader.EDGE_STORE)));
+        assertFalse(Files.exists(root.resolve(StoreUpgrader.TOKEN_STORE)));
+        // opened again without upgrade.
+        tg = new TGraphDatabase(graph, neo);
+        checkValues(tg, entities, 100);
+        tg.shutdown();
+    }
+
+    @Test
+    void testUpgradeFormat0() throws IOException, TransactionAbortException {
+        checkUpgrade(0);
+    }
+
+    @Test
+    void testUpgradeFormat1() throws IOException, TransactionAbortException {
+        checkUpgrade(1);
+    }
+
+    @Test
+    void testUpgradeFormat2() throws IOException, TransactionAbortException {
+        checkUpgrade(2);
+    }
+
+    @Test
+    void testUpgradeFormat3() throws IOException, TransactionAbortException {
+        checkUpgrade(3);
+    }
+
+    @Test
+    void testUpgradeFormat4() throws IOException, TransactionAbortException {
+        checkUpgrade(4);
+    }
+
+    // a temporal property created before format 2 without values has no token after the upgrade,
+    // reads of it return nothing and never create its token.
+    @Test
+    void testReadWithoutToken() throws IOException, TransactionAbortException {
+        var graph = new GraphSpaceID(1, "tg-upgrade-no-token", databaseDir + "/no-token");
+        var entities = createEntities(graph);
+        writeVersion(graph, 1, entities, 100);
+        String beta = "beta";
+        try (var txn = neo.beginTx()) {
+            txn.getNodeById(entities.node2).setProperty(EntityUtil.temporalPropertyWrapper(beta), TGraphConfig.TEMPORAL_PROPERTY_VALUE_PLACEHOLDER);
+            txn.getRelationshipById(entities.edge).setProperty(EntityUtil.temporalPropertyWrapper(beta), TGraphConfig.TEMPORAL_PROPERTY_VALUE_PLACEHOLDER);
+            txn.commit();
+        }
+        var tg = new TGraphDatabase(graph, neo);
+        checkValues(tg, entities, 100);
+        try (var txn = tg.beginTx()) {
+            for (Entity entity : List.of(txn.getNodeById(entities.node2), txn.getRelationshipById(entities.edge))) {
+                assertTrue(entity.hasTemporalProperty(beta));
+                assertNull(entity.getTemporalPropertyValue(beta, new Timestamp(10)));
+                assertFalse(entity.getTemporalPropertyValue(beta, new Timestamp(0), new Timestamp(100)).hasNext());
+                assertEquals(0L, entity.aggregateTemporalPropertyValue(beta, new Timestamp(0), new Timestamp(100), TemporalAggregation.COUNT));
+                assertNull(entity.aggregateTemporalPropertyValue(beta, new Timestamp(0), new Timestamp(100), TemporalAggregation.MAX));
+                assertEquals(Arrays.asList(null, null), entity.resampleTemporalPropertyValue(beta, new Timestamp(0), new Timestamp(100), 50, TemporalFill.LOCF, TemporalAggregation.LAST));
+            }
+            txn.commit();
+        }
+        assertEquals(TemporalPropertyTokenStore.NO_TOKEN, tg.getTokenStore().getId(beta));
+        tg.shutdown();
+    }
+
+    // commits after the first ones of engine fail, i.e. the upgrade is killed there.
+    private static KVEngine failAfter(KVEngine engine, int commits) {
+        var count = new AtomicInteger();
+        return (KVEngine) Proxy.newProxyInstance(KVEngine.class.getClassLoader(), new Class<?>[]{KVEngine.class}, (proxy, method, args) -> {
+            if (method.getName().equals("commitBatchWrite") && count.getAndIncrement() >= commits) {
+                return false;
+            }
+            try {
+                return method.invoke(engine, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    @Test
+    void testResumeUpgradeValues() throws IOException, TransactionAbortException {
+        var graph = new GraphSpaceID(1, "tg-upgrade-resume", databaseDir + "/resume");
+        var entities = createEntities(graph);
+        // more points than one upgrade batch.
+        long points = 2L * StoreUpgrader.UPGRADE_BATCH_SIZE + 500;
+        writeVersion(graph, 3, entities, points);
+
+        var instance = new RocksInstance(graph, graph.getDatabasePath() + "/" + StoreUpgrader.DATA_STORE, StoreUpgrader.COLUMN_FAMILIES);
+        var tokens = new TemporalPropertyTokenStore(graph, new RocksEngine(instance, StoreUpgrader.TOKEN_STORE));
+        var vertex = new RocksEngine(instance, StoreUpgrader.VERTEX_STORE);
+        var progress = new RocksEngine(instance, StoreUpgrader.UPGRADE_STORE);
+        assertThrows(IllegalStateException.class, () -> StoreUpgrader.upgradeValues(graph, StoreUpgrader.VERTEX_STORE, failAfter(vertex, 1), progress));
+        // the first batch is rewritten, its last key is recorded with it.
+        var marker = StoreUpgrader.VERTEX_STORE.getBytes(StandardCharsets.UTF_8);
+        long last = (StoreUpgrader.UPGRADE_BATCH_SIZE - 1) * 10L;
+        var lastKey = VertexTemporalPropertyKey.of(entities.node1, tokens.getId(SPEED), last).toBytes();
+        assertArrayEquals(lastKey, progress.get(marker, null));
+        assertEquals(value(last), ValueCodec.decode(vertex.get(lastKey, null)));
+        var next = VertexTemporalPropertyKey.of(entities.node1, tokens.getId(SPEED), last + 10).toBytes();
+        assertEquals(value(last + 10), Codec.decodeValue(vertex.get(next, null)));
+        vertex.stop();
+        progress.stop();
+        tokens.stop();
+        instance.stop();
+
+        // the database resumes after the recorded key, values rewritten before are not decoded as FST again.
+        var tg = new TGraphDatabase(graph, neo);
+        checkValues(tg, entities, points);
+        tg.shutdown();
+        instance = new RocksInstance(graph, graph.getDatabasePath() + "/" + StoreUpgrader.DATA_STORE, StoreUpgrader.COLUMN_FAMILIES);
+        // progress is removed once the version is recorded.
+        var upgraded = new RocksEngine(instance, StoreUpgrader.UPGRADE_STORE);
+        assertNull(upgraded.get(marker, null));
+        upgraded.stop();
+        instance.stop();
+    }
+}
@@ -0,0 +1,108 @@
+package cn.edu.buaa.act.tgraph.kvstore;
+
+import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import org.junit.jupiter.api.Test;
+import org.rocksdb.LiveFileMetaData;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RangeCompactorTest {
+
+    private static byte[] k(int v) {
+        return new byte[]{(byte) v};
+    }
+
+    @Test
+    void testMerge() {
+        TreeMap<byte[], byte[]> ranges = new TreeMap<>(Arrays::compareUnsigned);
+        RangeCompactor.merge(ranges, k(10), k(20));
+        RangeCompactor.merge(ranges, k(30), k(40));
+        assertEquals(2, ranges.size());
+        // adjacent.
+        RangeCompactor.merge(ranges, k(20), k(25));
+        assertEquals(2, ranges.size());
+        assertArrayEquals(k(25), ranges.get(k(10)));
+        // inside.
+        RangeCompactor.merge(ranges, k(32), k(33));
+        assertArrayEquals(k(40), ranges.get(k(30)));
+        // covers both, unsigned order.
+        RangeCompactor.merge(ranges, k(5), k(0xff));
+        assertEquals(1, ranges.size());
+        assertArrayEquals(k(0xff), ranges.get(k(5)));
+        // disjoint.
+        RangeCompactor.merge(ranges, k(0), k(1));
+        assertEquals(2, ranges.size());
+    }
+
+    @Test
+    void testCollapse() {
+        TreeMap<byte[], byte[]> ranges = new TreeMap<>(Arrays::compareUnsigned);
+        RangeCompactor.merge(ranges, k(10), k(20));
+        RangeCompactor.merge(ranges, k(30), k(40));
+        RangeCompactor.merge(ranges, k(0x80), k(0x90));
+        RangeCompactor.collapse(ranges);
+        assertEquals(1, ranges.size());
+        assertArrayEquals(k(0x90), ranges.get(k(10)));
+    }
+
+    // entries in sst files of a column family.
+    private static long entries(RocksInstance instance, String columnFamily) {
+        return instance.getDb().getLiveFilesMetaData().stream()
+                .filter(f -> Arrays.equals(columnFamily.getBytes(StandardCharsets.UTF_8), f.columnFamilyName()))
+                .mapToLong(LiveFileMetaData::numEntries).sum();
+    }
+
+    @Test
+    void testCompactRemovedRanges() {
+        GraphSpaceID graph = new GraphSpaceID(1, "test-range-compaction", "");
+        String baseDir = "/Users/crusher/test/";
+        var instance = new RocksInstance(graph, baseDir + graph.getGraphName(), List.of("cf0", "cf1", "cf2"));
+        var compactor = instance.getCompactor();
+        assertNotNull(compactor);
+        KVEngine kv0 = new RocksEngine(instance, "cf0");
+        KVEngine kv1 = new RocksEngine(instance, "cf1");
+        KVEngine kv2 = new RocksEngine(instance, "cf2");
+        for (var kv : List.of(kv0, kv1, kv2)) {
+            try (var wb = kv.startBatchWrite()) {
+                for (int i = 0; i < 100; ++i) {
+                    assertTrue(wb.put(k(i), k(i)));
+                }
+                assertTrue(kv.commitBatchWrite(wb, false, true, true));
+            }
+        }
+        assertTrue(instance.flush());
+        assertFalse(compactor.isScheduled());
+
+        // removed by a committed batch and by removeRange, cf2 is left as is.
+        try (var wb = kv0.startBatchWrite()) {
+            assertTrue(wb.removeRange(k(0), k(100)));
+            assertTrue(kv0.commitBatchWrite(wb, false, true, true));
+        }
+        assertTrue(kv1.removeRange(k(0), k(100)));
+        assertTrue(compactor.isScheduled());
+        assertArrayEquals(k(100), compactor.pending(instance.getColumnFamily("cf0")).get(k(0)));
+        assertArrayEquals(k(100), compactor.pending(instance.getColumnFamily("cf1")).get(k(0)));
+        assertTrue(compactor.pending(instance.getColumnFamily("cf2")).isEmpty());
+
+        // tombstones are flushed beside the removed keys, the compaction drops both.
+        assertTrue(instance.flush());
+        assertTrue(entries(instance, "cf0") >= 100);
+        assertTrue(entries(instance, "cf1") >= 100);
+        compactor.compactPending();
+        assertEquals(0, entries(instance, "cf0"));
+        assertEquals(0, entries(instance, "cf1"));
+        assertEquals(100, entries(instance, "cf2"));
+        assertTrue(compactor.pending(instance.getColumnFamily("cf0")).isEmpty());
+
+        kv0.stop();
+        kv1.stop();
+        kv2.stop();
+        instance.stop();
+        instance.drop();
+    }
+}
@@ -2,7 +2,9 @@ package cn.edu.buaa.act.tgraph.kvstore;
 
 import cn.edu.buaa.act.tgraph.common.Pair;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.junit.jupiter.api.Test;
+import org.rocksdb.MemoryUsageType;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -11,6 +13,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static cn.edu.buaa.act.tgraph.common.Codec.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -258,6 +261,28 @@ public class RocksEngineTest {
         for (int i = 1; i < 20; i += 2) {
             assertArrayEquals(encodeValue(v + (i - 1)), kv.getForPrev(intToBytes(i), null).second());
         }
+        // the whole key as prefix, only exact keys match.
+        for (int i = 0; i < 20; ++i) {
+            var value = kv.getForPrev(intToBytes(i), 4, null);
+            if (i % 2 == 0) {
+                assertArrayEquals(encodeValue(v + i), value);
+            } else {
+                assertNull(value);
+            }
+        }
+        // the first 3 bytes as prefix, all keys match.
+        assertArrayEquals(encodeValue(v + 18), kv.getForPrev(intToBytes(19), 3, null));
+        // value larger than the reused read buffer.
+        var large = encodeValue(v.repeat(4096));
+        assertTrue(kv.put(intToBytes(20), large));
+        assertArrayEquals(large, kv.getForPrev(intToBytes(21), 3, null));
+        assertArrayEquals(large, kv.get(intToBytes(20), null));
+        // getForNext seeks forward.
+        assertArrayEquals(encodeValue(v + 2), kv.getForNext(intToBytes(1), 3, null));
+        assertArrayEquals(encodeValue(v + 2), kv.getForNext(intToBytes(2), 4, null));
+        assertNull(kv.getForNext(intToBytes(3), 4, null));
+        assertArrayEquals(large, kv.getForNext(intToBytes(19), 3, null));
+        assertNull(kv.getForNext(intToBytes(21), 3, null));
     }
 
     @Test
@@ -288,5 +313,132 @@ public class RocksEngineTest {
             ord += 2;
         }
 
+        // a batch of several shards in reverse order, both far(seek) and close(next) keys.
+        for (int i = 20; i < 5000; i += 2) {
+            assertTrue(kv.put(intToBytes(i), encodeValue(v + i)));
+        }
+        keys.clear();
+        for (int i = 4999; i >= 0; i -= (i % 7 == 0 ? 31 : 1)) {
+            keys.add(intToBytes(i));
+        }
+        ret = kv.multiGetForPrev(keys);
+        assertEquals(keys.size(), ret.size());
+        for (int i = 0; i < keys.size(); ++i) {
+            int k = bytesToInt(keys.get(i));
+            assertArrayEquals(encodeValue(v + (k - k % 2)), ret.get(i).second());
+        }
+    }
+
+    @Test
+    void testColumnFamilyWriteBatch() {
+        GraphSpaceID graph3 = new GraphSpaceID(4, "test-graph-cf-wb", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph3.getGraphName();
+        var instance = new RocksInstance(graph3, baseDir + dataDir, List.of("cf0", "cf1"));
+        KVEngine kv0 = new RocksEngine(instance, "cf0");
+        KVEngine kv1 = new RocksEngine(instance, "cf1");
+        try (var wb0 = kv0.startBatchWrite(); var wb1 = kv1.startBatchWrite(wb0)) {
+            assertTrue(wb1.sharedWith(wb0));
+            assertTrue(wb0.put(encodeValue("k0"), encodeValue("v0")));
+            assertTrue(wb1.put(encodeValue("k1"), encodeValue("v1")));
+            // one commit writes both column families.
+            assertTrue(kv0.commitBatchWrite(wb0, false, true, true));
+        }
+        assertArrayEquals(encodeValue("v0"), kv0.get(encodeValue("k0"), null));
+        assertArrayEquals(encodeValue("v1"), kv1.get(encodeValue("k1"), null));
+        // column families do not see each other.
+        assertNull(kv0.get(encodeValue("k1"), null));
+        assertNull(kv1.get(encodeValue("k0"), null));
+        instance.stop();
+        instance.drop();
+    }
+
+    @Test
+    void testSharedResources() {
+        GraphSpaceID graph4 = new GraphSpaceID(5, "test-graph-resources", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph4.getGraphName();
+        try (var resources = new RocksResources(8, 1, 4)) {
+            KVEngine kv0 = new RocksEngine(StoreOptions.of(graph4, baseDir + dataDir + "/0", false, null, resources));
+            KVEngine kv1 = new RocksEngine(StoreOptions.of(graph4, baseDir + dataDir + "/1", false, null, resources));
+            assertTrue(kv0.put(encodeValue("k0"), encodeValue("v0")));
+            assertTrue(kv0.getMemoryUsage() > 0);
+            // both databases are accounted in the shared resources.
+            var usage = resources.getMemoryUsage();
+            assertTrue(usage.get(MemoryUsageType.kMemTableTotal) >= kv0.getMemoryUsage() + kv1.getMemoryUsage());
+            kv0.stop();
+            kv1.stop();
+            kv0.drop();
+            kv1.drop();
+        }
+    }
+
+    @Test
+    void testReuseIterator() {
+        GraphSpaceID graph5 = new GraphSpaceID(6, "test-graph-reuse-iter", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph5.getGraphName();
+        KVEngine kv = new RocksEngine(StoreOptions.of(graph5, baseDir + dataDir, false, null));
+        assertTrue(kv.put(intToBytes(0), encodeValue("v0")));
+        assertArrayEquals(encodeValue("v0"), kv.getForPrev(intToBytes(10), 3, null));
+        // the pooled iterator should see writes after it was created.
+        assertTrue(kv.put(intToBytes(5), encodeValue("v5")));
+        assertArrayEquals(encodeValue("v5"), kv.getForPrev(intToBytes(10), 3, null));
+        assertArrayEquals(encodeValue("v5"), kv.getForPrev(intToBytes(10), null).second());
+        // re-seek an opened iterator.
+        try (var iter = kv.prefix(new byte[]{0, 0, 0}, null)) {
+            iter.seekForPrev(intToBytes(4));
+            assertTrue(iter.valid());
+            assertArrayEquals(intToBytes(0), iter.key());
+            iter.seek(intToBytes(1));
+            assertTrue(iter.valid());
+            assertArrayEquals(intToBytes(5), iter.key());
+        }
+        // the kept iterator is closed once it is idle, the next read creates a new one.
+        Uninterruptibles.sleepUninterruptibly(RocksEngineConfig.rocksdb_iterator_idle_time * 2 + 1, TimeUnit.SECONDS);
+        assertArrayEquals(encodeValue("v5"), kv.getForPrev(intToBytes(10), 3, null));
+        assertArrayEquals(encodeValue("v0"), kv.getForNext(intToBytes(0), 3, null));
+        kv.stop();
+        kv.drop();
+    }
+
+    @Test
+    void testPrefixExtractor() {
+        GraphSpaceID graph6 = new GraphSpaceID(7, "test-graph-prefix-extractor", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph6.getGraphName();
+        StoreOptions opt = StoreOptions.of(graph6, baseDir + dataDir, false, null);
+        opt.setPrefixLength(4);
+        KVEngine kv = new RocksEngine(opt);
+        // key: prefix(high int) + ts(low int), prefix in {0, 2, 4}
+        for (int p = 0; p < 6; p += 2) {
+            for (int ts = 0; ts < 10; ++ts) {
+                assertTrue(kv.put(longToBytes(((long) p << 32) | ts), encodeValue("v" + p + "-" + ts)));
+            }
+        }
+        assertTrue(kv.flush());
+        assertArrayEquals(encodeValue("v2-5"), kv.getForPrev(longToBytes(((long) 2 << 32) | 5), 4, null));
+        // prefix never written.
+        assertNull(kv.getForPrev(longToBytes(((long) 3 << 32) | 5), 4, null));
+        int count = 0;
+        try (var iter = kv.prefix(intToBytes(4), null)) {
+            while (iter.valid()) {
+                ++count;
+                iter.next();
+            }
+        }
+        assertEquals(10, count);
+        // ranges across prefixes are iterated in total order.
+        count = 0;
+        try (var iter = kv.range(intToBytes(0), intToBytes(5))) {
+            while (iter.valid()) {
+                ++count;
+                iter.next();
+            }
+        }
+        assertEquals(30, count);
+        assertEquals(30, kv.scan().size());
+        kv.stop();
+        kv.drop();
     }
 }
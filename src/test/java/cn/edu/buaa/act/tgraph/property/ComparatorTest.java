@@ -11,7 +11,10 @@ import org.rocksdb.util.IntComparator;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ComparatorTest {
@@ -45,15 +48,36 @@ public class ComparatorTest {
         GraphSpaceID graph = new GraphSpaceID(1, "test-comparator-vertex", "");
         String baseDir = "/Users/crusher/test/";
         String dataDir = graph.getGraphName();
-        StoreOptions opt = StoreOptions.of(graph, baseDir + dataDir, false, new Comparator(new VertexTemporalPropertyKeyComparator(new ComparatorOptions())));
+        // temporal property keys are order-preserving, thus rocksdb native bytewise comparator is used.
+        StoreOptions opt = StoreOptions.of(graph, baseDir + dataDir, false);
         var kv = new RocksEngine(opt);
+        List<VertexTemporalPropertyKey> expected = new ArrayList<>();
+        for (long id : new long[]{0, 1, 256, Long.MAX_VALUE}) {
+            for (int name : new int[]{0, 1, 255, 256, Integer.MAX_VALUE}) {
+                for (long t : new long[]{Long.MIN_VALUE, -1, 0, 1, 255, 256, Long.MAX_VALUE}) {
+                    expected.add(new VertexTemporalPropertyKey(id, name, t));
+                }
+            }
+        }
+        expected.sort(java.util.Comparator.comparingLong(VertexTemporalPropertyKey::getNodeId)
+                .thenComparingInt(VertexTemporalPropertyKey::getPropertyId)
+                .thenComparingLong(VertexTemporalPropertyKey::getTimestamp));
         var batch = kv.startBatchWrite();
         String v = "v";
-        VertexTemporalPropertyKey k1 = new VertexTemporalPropertyKey(1, "crusher", 1);
-        VertexTemporalPropertyKey k2 = new VertexTemporalPropertyKey(1, "crusher", 2);
-        batch.put(k1.toBytes(), v.getBytes(StandardCharsets.UTF_8));
-        batch.put(k2.toBytes(), v.getBytes(StandardCharsets.UTF_8));
+        // write in reverse order, rocksdb should sort them.
+        for (int i = expected.size() - 1; i >= 0; --i) {
+            batch.put(expected.get(i).toBytes(), v.getBytes(StandardCharsets.UTF_8));
+        }
         assertTrue(kv.commitBatchWrite(batch, false, true, true));
+        List<VertexTemporalPropertyKey> actual = new ArrayList<>();
+        try (var iter = kv.prefix(new byte[0], null)) {
+            while (iter.valid()) {
+                actual.add(VertexTemporalPropertyKey.fromBytes(iter.key()));
+                iter.next();
+            }
+        }
+        assertEquals(expected, actual);
+        kv.stop();
     }
 
     @Test
@@ -61,14 +85,68 @@ public class ComparatorTest {
         GraphSpaceID graph = new GraphSpaceID(1, "test-comparator-edge", "");
         String baseDir = "/Users/crusher/test/";
         String dataDir = graph.getGraphName();
-        StoreOptions opt = StoreOptions.of(graph, baseDir + dataDir, false, new Comparator(new EdgeTemporalPropertyKeyComparator(new ComparatorOptions())));
+        // temporal property keys are order-preserving, thus rocksdb native bytewise comparator is used.
+        StoreOptions opt = StoreOptions.of(graph, baseDir + dataDir, false);
+        var kv = new RocksEngine(opt);
+        List<EdgeTemporalPropertyKey> expected = new ArrayList<>();
+        for (long start : new long[]{1, 256}) {
+            for (long end : new long[]{0, 2, Long.MAX_VALUE}) {
+                for (int name : new int[]{0, 1, 256}) {
+                    for (long t : new long[]{Long.MIN_VALUE, -1, 0, 1, 256, Long.MAX_VALUE}) {
+                        expected.add(new EdgeTemporalPropertyKey(start, end, name, t));
+                    }
+                }
+            }
+        }
+        expected.sort(java.util.Comparator.comparingLong(EdgeTemporalPropertyKey::getStartNodeId)
+                .thenComparingLong(EdgeTemporalPropertyKey::getEndNodeId)
+                .thenComparingInt(EdgeTemporalPropertyKey::getPropertyId)
+                .thenComparingLong(EdgeTemporalPropertyKey::getTimestamp));
+        var batch = kv.startBatchWrite();
+        String v = "v";
+        for (int i = expected.size() - 1; i >= 0; --i) {
+            batch.put(expected.get(i).toBytes(), v.getBytes(StandardCharsets.UTF_8));
+        }
+        assertTrue(kv.commitBatchWrite(batch, false, true, true));
+        List<EdgeTemporalPropertyKey> actual = new ArrayList<>();
+        try (var iter = kv.prefix(new byte[0], null)) {
+            while (iter.valid()) {
+                actual.add(EdgeTemporalPropertyKey.fromBytes(iter.key()));
+                iter.next();
+            }
+        }
+        assertEquals(expected, actual);
+        kv.stop();
+    }
+
+    @Test
+    void testLegacyVertex() {
+        GraphSpaceID graph = new GraphSpaceID(1, "test-comparator-legacy-vertex", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph.getGraphName();
+        // the legacy comparator is still needed to open stores written by the legacy key format.
+        StoreOptions opt = StoreOptions.of(graph, baseDir + dataDir, false, new Comparator(new VertexTemporalPropertyKeyComparator(new ComparatorOptions())));
         var kv = new RocksEngine(opt);
         var batch = kv.startBatchWrite();
         String v = "v";
-        var k1 = new EdgeTemporalPropertyKey(1, 2, "crusher", 1);
-        var k2 = new EdgeTemporalPropertyKey(1, 2, "crusher", 2);
-        batch.put(k1.toBytes(), v.getBytes(StandardCharsets.UTF_8));
-        batch.put(k2.toBytes(), v.getBytes(StandardCharsets.UTF_8));
+        batch.put(legacyVertexKey(1, "crusher", 2), v.getBytes(StandardCharsets.UTF_8));
+        batch.put(legacyVertexKey(1, "crusher", 1), v.getBytes(StandardCharsets.UTF_8));
         assertTrue(kv.commitBatchWrite(batch, false, true, true));
+        try (var iter = kv.prefix(new byte[0], null)) {
+            assertTrue(iter.valid());
+            assertEquals(new VertexTemporalPropertyKey(1, 7, 1), VertexTemporalPropertyKey.fromLegacyBytes(iter.key(), 0, name -> 7));
+        }
+        kv.stop();
+    }
+
+    // legacy layout: nodeId(long) + propertyLength(int) + propertyName + timestamp(long)
+    static byte[] legacyVertexKey(long nodeId, String propertyName, long timestamp) {
+        byte[] p = propertyName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(20 + p.length);
+        buffer.putLong(nodeId);
+        buffer.putInt(p.length);
+        buffer.put(p);
+        buffer.putLong(timestamp);
+        return buffer.array();
     }
 }
@@ -1,10 +1,17 @@
 package cn.edu.buaa.act.tgraph.property;
 
+import cn.edu.buaa.act.tgraph.common.Pair;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
+import cn.edu.buaa.act.tgraph.kvstore.StoreOptions;
 import org.junit.jupiter.api.Test;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -14,6 +21,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 // And for Neo4j semantic compatibility, write should not be read until commit,
 // even this write is from yours.
 public class EdgeTemporalPropertyStoreTest {
+    // temporal property tokens
+    private static final int CRUSHER = 0;
+    private static final int ALPHA = 1;
+    private static final int CRUSHER_ALPHA = 2;
+
     @Test
     void testBase() {
         GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-base", "");
@@ -21,9 +33,9 @@ public class EdgeTemporalPropertyStoreTest {
         String dataDir = graph0.getGraphName();
         var edge = new EdgeTemporalPropertyStore(graph0, baseDir + dataDir, false);
         try (var batch = edge.startBatchWrite()) {
-            var k1 = new EdgeTemporalPropertyKey(1, 2, "crusher", 1);
-            var k2 = new EdgeTemporalPropertyKey(1, 2, "crusher", 4);
-            var k3 = new EdgeTemporalPropertyKey(1, 2, "crusher", 9);
+            var k1 = new EdgeTemporalPropertyKey(1, 2, CRUSHER, 1);
+            var k2 = new EdgeTemporalPropertyKey(1, 2, CRUSHER, 4);
+            var k3 = new EdgeTemporalPropertyKey(1, 2, CRUSHER, 9);
             String val = "v";
             assertTrue(batch.put(k1, val + 1));
             assertTrue(batch.put(k2, val + 2));
@@ -51,21 +63,21 @@ public class EdgeTemporalPropertyStoreTest {
         try (var batch = edge.startBatchWrite()) {
             for (long idx = 1; idx < 4; ++idx) {
                 for (long t = 1; t < 20; t += 2) {
-                    batch.put(new EdgeTemporalPropertyKey(idx, idx, "crusher", t), v + (idx * t));
+                    batch.put(new EdgeTemporalPropertyKey(idx, idx, CRUSHER, t), v + (idx * t));
                 }
             }
             assertTrue(edge.commitBatchWrite(batch, false, true, true));
         }
         // normal get
-        assertEquals(v + 1, edge.get(new EdgeTemporalPropertyKey(1, 1, "crusher", 2)));
-        assertNull(edge.get(new EdgeTemporalPropertyKey(1, 1, "crusher", 0)));
-        assertNull(edge.get(new EdgeTemporalPropertyKey(4, 4, "crusher", 1)));
+        assertEquals(v + 1, edge.get(new EdgeTemporalPropertyKey(1, 1, CRUSHER, 2)));
+        assertNull(edge.get(new EdgeTemporalPropertyKey(1, 1, CRUSHER, 0)));
+        assertNull(edge.get(new EdgeTemporalPropertyKey(4, 4, CRUSHER, 1)));
 
         // multi get
         List<EdgeTemporalPropertyKey> keys = new ArrayList<>();
         List<String> expected = new ArrayList<>();
         for (int i = 2; i < 20; i += 2) {
-            keys.add(new EdgeTemporalPropertyKey(1, 1, "crusher", i));
+            keys.add(new EdgeTemporalPropertyKey(1, 1, CRUSHER, i));
             expected.add(v + (i - 1));
         }
 
@@ -85,23 +97,23 @@ public class EdgeTemporalPropertyStoreTest {
         try (var batch = edge.startBatchWrite()) {
             for (long idx = 1; idx < 3; ++idx) {
                 for (long t = 0; t < 10; ++t) {
-                    batch.put(new EdgeTemporalPropertyKey(idx, idx, "crusher", t), v);
-                    batch.put(new EdgeTemporalPropertyKey(idx, idx, "alpha", t), v);
+                    batch.put(new EdgeTemporalPropertyKey(idx, idx, CRUSHER, t), v);
+                    batch.put(new EdgeTemporalPropertyKey(idx, idx, ALPHA, t), v);
                 }
             }
             assertTrue(edge.commitBatchWrite(batch, false, true, true));
         }
-        // Prefix{1, "crusher"}
-        assertEquals(10, edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(1, 1, "crusher")).size());
-        // Prefix{1, "alpha"}
-        assertEquals(10, edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(1, 1, "alpha")).size());
-        // Prefix{2, "crusher"}
-        assertEquals(10, edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(2, 2, "crusher")).size());
-        // Prefix{2, "alpha"}
-        assertEquals(10, edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(2, 2, "alpha")).size());
+        // Prefix{1, CRUSHER}
+        assertEquals(10, edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(1, 1, CRUSHER)).toList().size());
+        // Prefix{1, ALPHA}
+        assertEquals(10, edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(1, 1, ALPHA)).toList().size());
+        // Prefix{2, CRUSHER}
+        assertEquals(10, edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(2, 2, CRUSHER)).toList().size());
+        // Prefix{2, ALPHA}
+        assertEquals(10, edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(2, 2, ALPHA)).toList().size());
         // null
-        assertNull(edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(1, 1, "crusher-alpha")));
-        assertNull(edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(3, 3, "crusher")));
+        assertFalse(edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(1, 1, CRUSHER_ALPHA)).hasNext());
+        assertFalse(edge.prefixGet(new EdgeTemporalPropertyKeyPrefix(3, 3, CRUSHER)).hasNext());
     }
 
     @Test
@@ -113,13 +125,13 @@ public class EdgeTemporalPropertyStoreTest {
         String v = "v";
         try (var batch = edge.startBatchWrite()) {
             for (long t = 0; t < 20; t += 2) {
-                batch.put(new EdgeTemporalPropertyKey(1, 1, "crusher", t), v + t);
+                batch.put(new EdgeTemporalPropertyKey(1, 1, CRUSHER, t), v + t);
             }
             assertTrue(edge.commitBatchWrite(batch, false, true, true));
         }
 
-        var start = new EdgeTemporalPropertyKey(1, 1, "crusher", 1);
-        var end = new EdgeTemporalPropertyKey(1, 1, "crusher", 10);
+        var start = new EdgeTemporalPropertyKey(1, 1, CRUSHER, 1);
+        var end = new EdgeTemporalPropertyKey(1, 1, CRUSHER, 10);
 
 
         List<String> expected = new ArrayList<>();
@@ -128,12 +140,23 @@ public class EdgeTemporalPropertyStoreTest {
         }
         List<String> actual = new ArrayList<>();
         var ret = edge.rangeGet(start, end);
-        for (var pr : ret) {
+        for (var pr : ret.toList()) {
             actual.add((String) pr.second());
         }
 
         assertEquals(expected, actual);
 
+        // no value <= start, values start from the first one after it.
+        assertEquals(expected, edge.rangeGet(new EdgeTemporalPropertyKey(1, 1, CRUSHER, -5), end).toList().stream().map(Pair::second).collect(Collectors.toList()));
+        try (var batch = edge.startBatchWrite()) {
+            // after the values of CRUSHER.
+            batch.put(new EdgeTemporalPropertyKey(1, 1, ALPHA, 5), "alpha5");
+            batch.put(new EdgeTemporalPropertyKey(1, 1, ALPHA, 15), "alpha15");
+            assertTrue(edge.commitBatchWrite(batch, false, true, true));
+        }
+        assertEquals(List.of(Pair.of(new Timestamp(5), "alpha5")), edge.rangeGet(new EdgeTemporalPropertyKey(1, 1, ALPHA, 1), new EdgeTemporalPropertyKey(1, 1, ALPHA, 10)).toList());
+        assertTrue(edge.rangeGet(new EdgeTemporalPropertyKey(1, 1, ALPHA, 1), new EdgeTemporalPropertyKey(1, 1, ALPHA, 5)).toList().isEmpty());
+        edge.stop();
     }
 
     @Test
@@ -145,15 +168,20 @@ public class EdgeTemporalPropertyStoreTest {
         String v = "v";
         try (var batch = edge.startBatchWrite()) {
             for (long t = 0; t < 20; ++t) {
-                batch.put(new EdgeTemporalPropertyKey(1, 1, "crusher", t), v + t);
+                batch.put(new EdgeTemporalPropertyKey(1, 1, CRUSHER, t), v + t);
             }
             assertTrue(edge.commitBatchWrite(batch, false, true, true));
         }
 
-        var start = new EdgeTemporalPropertyKey(1, 1, "crusher", 5);
+        var start = new EdgeTemporalPropertyKey(1, 1, CRUSHER, 5);
 
         var ret = edge.rangeWithPrefixGet(start);
-        assertEquals(15, ret.size());
+        assertEquals(15, ret.toList().size());
+        // no value <= start, values start from the first one after it.
+        ret = edge.rangeWithPrefixGet(new EdgeTemporalPropertyKey(1, 1, CRUSHER, -5));
+        assertEquals(20, ret.toList().size());
+        assertTrue(edge.rangeWithPrefixGet(new EdgeTemporalPropertyKey(1, 2, CRUSHER, 5)).toList().isEmpty());
+        edge.stop();
     }
 
     @Test
@@ -166,31 +194,409 @@ public class EdgeTemporalPropertyStoreTest {
         // put [0, 20)
         try (var batch = edge.startBatchWrite()) {
             for (long t = 0; t < 20; ++t) {
-                batch.put(new EdgeTemporalPropertyKey(1, 1, "crusher", t), v + t);
+                batch.put(new EdgeTemporalPropertyKey(1, 1, CRUSHER, t), v + t);
             }
             assertTrue(edge.commitBatchWrite(batch, false, true, true));
         }
 
-        assertEquals("v10", edge.get(new EdgeTemporalPropertyKey(1, 1, "crusher", 10)));
+        assertEquals("v10", edge.get(new EdgeTemporalPropertyKey(1, 1, CRUSHER, 10)));
 
         try (var batch = edge.startBatchWrite()) {
-            batch.remove(new EdgeTemporalPropertyKey(1, 1, "crusher", 10));
+            batch.remove(new EdgeTemporalPropertyKey(1, 1, CRUSHER, 10));
             assertTrue(edge.commitBatchWrite(batch, false, true, true));
         }
-        assertEquals("v9", edge.get(new EdgeTemporalPropertyKey(1, 1, "crusher", 10)));
+        assertEquals("v9", edge.get(new EdgeTemporalPropertyKey(1, 1, CRUSHER, 10)));
 
         for (long t = 11; t < 20; ++t) {
-            assertEquals(v + t, edge.get(new EdgeTemporalPropertyKey(1, 1, "crusher", t)));
+            assertEquals(v + t, edge.get(new EdgeTemporalPropertyKey(1, 1, CRUSHER, t)));
         }
 
         try (var batch = edge.startBatchWrite()) {
-            batch.removeRange(new EdgeTemporalPropertyKey(1, 1, "crusher", 11), new EdgeTemporalPropertyKey(1, 1, "crusher", 20));
+            batch.removeRange(new EdgeTemporalPropertyKey(1, 1, CRUSHER, 11), new EdgeTemporalPropertyKey(1, 1, CRUSHER, 20));
             assertTrue(edge.commitBatchWrite(batch, false, true, true));
         }
 
         for (long t = 11; t < 20; ++t) {
-            assertEquals("v9", edge.get(new EdgeTemporalPropertyKey(1, 1, "crusher", t)));
+            assertEquals("v9", edge.get(new EdgeTemporalPropertyKey(1, 1, CRUSHER, t)));
         }
 
     }
+
+    // the workload of mode tests in 3 steps: points, then overwrites and removes, then a removed temporal property written again.
+    private static final int STEPS = 3;
+
+    private static void writeEdges(EdgeTemporalPropertyStore edge, int step) {
+        try (var batch = edge.startBatchWrite()) {
+            switch (step) {
+                case 0:
+                    for (long n = 1; n <= 2; ++n) {
+                        for (long t = 0; t < 1000; t += 10) {
+                            batch.put(new EdgeTemporalPropertyKey(n, n + 1, CRUSHER, t), n * 1000 + t);
+                        }
+                    }
+                    for (long t = 0; t < 1000; t += 100) {
+                        batch.put(new EdgeTemporalPropertyKey(3, 4, CRUSHER, t), 3000 + t);
+                    }
+                    batch.put(new EdgeTemporalPropertyKey(3, 4, CRUSHER, 950), "crusher");
+                    batch.putInterval(new EdgeTemporalPropertyKey(3, 4, CRUSHER, 960), 980, "interval");
+                    break;
+                case 1:
+                    batch.put(new EdgeTemporalPropertyKey(1, 2, CRUSHER, 1000), -1L);
+                    batch.put(new EdgeTemporalPropertyKey(1, 2, CRUSHER, 505), 7L);
+                    batch.remove(new EdgeTemporalPropertyKey(1, 2, CRUSHER, 990));
+                    batch.removeRange(new EdgeTemporalPropertyKey(2, 3, CRUSHER, 150), new EdgeTemporalPropertyKey(2, 3, CRUSHER, 420));
+                    batch.put(new EdgeTemporalPropertyKey(2, 3, CRUSHER, 250), 0L);
+                    batch.putInterval(new EdgeTemporalPropertyKey(1, 2, CRUSHER, 1500), 1600, 5L);
+                    break;
+                default:
+                    batch.removePrefix(EdgeTemporalPropertyKeyPrefix.of(3, 4, CRUSHER));
+                    batch.removeRange(new EdgeTemporalPropertyKey(1, 2, CRUSHER, Long.MIN_VALUE), new EdgeTemporalPropertyKey(1, 2, CRUSHER, 100));
+                    // the latest point of edge 2 is removed.
+                    batch.removeRange(new EdgeTemporalPropertyKey(2, 3, CRUSHER, 900), new EdgeTemporalPropertyKey(2, 3, CRUSHER, 2000));
+                    batch.put(new EdgeTemporalPropertyKey(3, 4, CRUSHER, 100), "again");
+                    break;
+            }
+            assertTrue(edge.commitBatchWrite(batch, false, true, true));
+        }
+    }
+
+    // reads of a store in some mode are the same as the ones of a plain store with the same points.
+    private static void checkEdges(EdgeTemporalPropertyStore edge, EdgeTemporalPropertyStore plain) {
+        for (long n = 1; n <= 4; ++n) {
+            var prefix = EdgeTemporalPropertyKeyPrefix.of(n, n + 1, CRUSHER);
+            assertEquals(plain.prefixGet(prefix).toList(), edge.prefixGet(prefix).toList());
+            // edge 3 has values which are not numbers.
+            var aggregations = n == 3 ? new TemporalAggregation[]{TemporalAggregation.COUNT, TemporalAggregation.FIRST, TemporalAggregation.LAST}
+                    : TemporalAggregation.values();
+            List<EdgeTemporalPropertyKey> keys = new ArrayList<>();
+            for (long t : new long[]{Long.MIN_VALUE, -1, 0, 95, 100, 150, 250, 505, 955, 970, 990, 1000, 1550, 5000, Long.MAX_VALUE}) {
+                var key = new EdgeTemporalPropertyKey(n, n + 1, CRUSHER, t);
+                keys.add(key);
+                assertEquals(plain.get(key), edge.get(key));
+                assertEquals(plain.rangeWithPrefixGet(key).toList(), edge.rangeWithPrefixGet(key).toList());
+                for (long end : new long[]{150, 600, 1000, 2000}) {
+                    if (end <= t) {
+                        continue;
+                    }
+                    var to = new EdgeTemporalPropertyKey(n, n + 1, CRUSHER, end);
+                    assertEquals(plain.rangeGet(key, to).toList(), edge.rangeGet(key, to).toList());
+                    for (var aggregation : aggregations) {
+                        assertEquals(plain.aggregate(key, to, aggregation), edge.aggregate(key, to, aggregation));
+                    }
+                    if (t > Long.MIN_VALUE) {
+                        assertEquals(plain.resample(key, to, 50, TemporalFill.LOCF, TemporalAggregation.LAST),
+                                edge.resample(key, to, 50, TemporalFill.LOCF, TemporalAggregation.LAST));
+                    }
+                }
+            }
+            assertEquals(plain.multiGet(keys), edge.multiGet(keys));
+        }
+    }
+
+    @Test
+    void testChunk() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-edge-chunk", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + dataDir, false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        StoreOptions pointOpt = StoreOptions.of(graph0, baseDir + dataDir + "-point", false);
+        pointOpt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        var edge = new EdgeTemporalPropertyStore(graph0, new RocksEngine(opt), TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        assertEquals(100, edge.getChunkInterval());
+        var plain = new EdgeTemporalPropertyStore(graph0, new RocksEngine(pointOpt));
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(edge, step);
+            writeEdges(plain, step);
+            checkEdges(edge, plain);
+        }
+        edge.stop();
+        plain.stop();
+    }
+
+    @Test
+    void testRollup() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-edge-rollup", "");
+        String baseDir = "/Users/crusher/test/";
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        StoreOptions rollupOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-rollup", false);
+        rollupOpt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        var engine = new RocksEngine(opt);
+        var rollupEngine = new RocksEngine(rollupOpt);
+        var edge = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setRollups(rollupEngine, new long[]{10, 100, 1000}));
+        assertArrayEquals(new long[]{10, 100, 1000}, edge.getRollupLevels());
+        var plain = new EdgeTemporalPropertyStore(graph0, engine);
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(edge, step);
+            checkEdges(edge, plain);
+            try (var iter = rollupEngine.prefix(EdgeTemporalPropertyKeyPrefix.of(1, 2, CRUSHER).toBytes(), null)) {
+                assertTrue(iter.valid());
+            }
+        }
+        // summaries are removed with their points.
+        try (var batch = edge.startBatchWrite()) {
+            batch.removePrefix(EdgeTemporalPropertyKeyPrefix.of(1, 2, CRUSHER));
+            assertTrue(edge.commitBatchWrite(batch, false, true, true));
+        }
+        try (var iter = rollupEngine.prefix(EdgeTemporalPropertyKeyPrefix.of(1, 2, CRUSHER).toBytes(), null)) {
+            assertFalse(iter.valid());
+        }
+        checkEdges(edge, plain);
+        edge.stop();
+
+        graph0 = new GraphSpaceID(2, "test-graph-edge-rollup-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        rollupOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-rollup", false);
+        rollupOpt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        engine = new RocksEngine(opt);
+        edge = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setRollups(new RocksEngine(rollupOpt), new long[]{10, 100, 1000}));
+        plain = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(edge, step);
+            checkEdges(edge, plain);
+        }
+        edge.stop();
+    }
+
+    private static List<EdgeTemporalPropertyKey> changes(EdgeTemporalPropertyStore edge, long start, long end) {
+        try (var changes = edge.changes(start, end)) {
+            return changes.collect(Collectors.toList());
+        }
+    }
+
+    private static List<EdgeTemporalPropertyKey> removals(EdgeTemporalPropertyStore edge, long start, long end) {
+        try (var removals = edge.removals(start, end)) {
+            return removals.collect(Collectors.toList());
+        }
+    }
+
+    // entries of points in the data and of points removed after every step, ordered by timestamp, then edge and property.
+    private static void checkChanges(EdgeTemporalPropertyStore edge, int step) {
+        var all = changes(edge, Long.MIN_VALUE, Long.MAX_VALUE);
+        for (var key : all) {
+            assertNotNull(edge.get(key));
+        }
+        var removed = removals(edge, Long.MIN_VALUE, Long.MAX_VALUE);
+        for (var key : removed) {
+            assertFalse(all.contains(key));
+        }
+        switch (step) {
+            case 0:
+                assertEquals(212, all.size());
+                assertTrue(removed.isEmpty());
+                assertEquals(Arrays.asList(new EdgeTemporalPropertyKey(1, 2, CRUSHER, 950), new EdgeTemporalPropertyKey(2, 3, CRUSHER, 950),
+                        new EdgeTemporalPropertyKey(3, 4, CRUSHER, 950), new EdgeTemporalPropertyKey(1, 2, CRUSHER, 960),
+                        new EdgeTemporalPropertyKey(2, 3, CRUSHER, 960), new EdgeTemporalPropertyKey(3, 4, CRUSHER, 960)), changes(edge, 950, 961));
+                break;
+            case 1:
+                // entries of the range removed are skipped.
+                assertEquals(188, all.size());
+                // the point removed and the range removed but 250.
+                assertEquals(27, removed.size());
+                assertEquals(List.of(new EdgeTemporalPropertyKey(1, 2, CRUSHER, 990)), removals(edge, 985, 1000));
+                assertEquals(List.of(new EdgeTemporalPropertyKey(2, 3, CRUSHER, 240), new EdgeTemporalPropertyKey(2, 3, CRUSHER, 260)),
+                        removals(edge, 240, 261));
+                assertEquals(Arrays.asList(new EdgeTemporalPropertyKey(1, 2, CRUSHER, 250), new EdgeTemporalPropertyKey(2, 3, CRUSHER, 250)),
+                        changes(edge, 245, 256));
+                assertEquals(Arrays.asList(new EdgeTemporalPropertyKey(2, 3, CRUSHER, 990), new EdgeTemporalPropertyKey(1, 2, CRUSHER, 1000),
+                        new EdgeTemporalPropertyKey(1, 2, CRUSHER, 1500)), changes(edge, 990, 2000));
+                break;
+            default:
+                assertEquals(157, all.size());
+                assertEquals(Arrays.asList(new EdgeTemporalPropertyKey(1, 2, CRUSHER, 100), new EdgeTemporalPropertyKey(2, 3, CRUSHER, 100),
+                        new EdgeTemporalPropertyKey(3, 4, CRUSHER, 100)), changes(edge, 95, 101));
+                // the removed temporal property but 100, and the ranges removed.
+                assertEquals(58, removed.size());
+                assertEquals(Arrays.asList(new EdgeTemporalPropertyKey(2, 3, CRUSHER, 950), new EdgeTemporalPropertyKey(3, 4, CRUSHER, 950),
+                        new EdgeTemporalPropertyKey(2, 3, CRUSHER, 960), new EdgeTemporalPropertyKey(3, 4, CRUSHER, 960)), removals(edge, 950, 961));
+                // removals before 500 are forgotten, changes are kept.
+                assertEquals(40, edge.purgeRemovals(Long.MIN_VALUE, 500));
+                assertTrue(removals(edge, Long.MIN_VALUE, 500).isEmpty());
+                assertEquals(18, removals(edge, Long.MIN_VALUE, Long.MAX_VALUE).size());
+                assertEquals(all, changes(edge, Long.MIN_VALUE, Long.MAX_VALUE));
+                break;
+        }
+    }
+
+    @Test
+    void testChangeIndex() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-edge-change", "");
+        String baseDir = "/Users/crusher/test/";
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        StoreOptions changeOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-change", false);
+        var engine = new RocksEngine(opt);
+        var edge = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChangeStore(new RocksEngine(changeOpt)));
+        assertTrue(edge.hasChangeIndex());
+        var plain = new EdgeTemporalPropertyStore(graph0, engine);
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(edge, step);
+            checkEdges(edge, plain);
+            checkChanges(edge, step);
+        }
+        edge.stop();
+
+        // the index of points written without it is rebuilt from the data.
+        graph0 = new GraphSpaceID(2, "test-graph-edge-change-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        changeOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-change", false);
+        engine = new RocksEngine(opt);
+        plain = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        assertFalse(plain.hasChangeIndex());
+        writeEdges(plain, 0);
+        edge = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setChangeStore(new RocksEngine(changeOpt)));
+        edge.rebuildChangeIndex();
+        checkChanges(edge, 0);
+        for (int step = 1; step < STEPS; ++step) {
+            writeEdges(edge, step);
+            checkEdges(edge, plain);
+            checkChanges(edge, step);
+        }
+        edge.stop();
+    }
+
+    @Test
+    void testLatestCache() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-edge-latest", "");
+        String baseDir = "/Users/crusher/test/";
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        var engine = new RocksEngine(opt);
+        // 3 temporal properties in a cache of 2.
+        var cached = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setLatestCacheSize(2));
+        var plain = new EdgeTemporalPropertyStore(graph0, engine);
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(cached, step);
+            checkEdges(cached, plain);
+        }
+        assertTrue(cached.getLatestCacheStats().hitCount() > 0);
+        assertTrue(cached.getLatestCacheStats().evictionCount() > 0);
+        cached.stop();
+
+        graph0 = new GraphSpaceID(2, "test-graph-edge-latest-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        engine = new RocksEngine(opt);
+        cached = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setLatestCacheSize(2));
+        plain = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(cached, step);
+            checkEdges(cached, plain);
+        }
+        cached.stop();
+    }
+
+    @Test
+    void testSeriesCache() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-edge-series", "");
+        String baseDir = "/Users/crusher/test/";
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        var engine = new RocksEngine(opt);
+        var cached = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setSeriesCacheMemory(1 << 20));
+        var plain = new EdgeTemporalPropertyStore(graph0, engine);
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(cached, step);
+            checkEdges(cached, plain);
+        }
+        assertTrue(cached.getSeriesCacheStats().hitCount() > 0);
+        // segments of a small cache are evicted.
+        var small = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setSeriesCacheMemory(1024));
+        checkEdges(small, plain);
+        assertTrue(small.getSeriesCacheMemory() <= 1024);
+        cached.stop();
+
+        graph0 = new GraphSpaceID(2, "test-graph-edge-series-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        engine = new RocksEngine(opt);
+        cached = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setSeriesCacheMemory(1 << 20));
+        plain = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(cached, step);
+            checkEdges(cached, plain);
+        }
+        cached.stop();
+    }
+
+    @Test
+    void testDescending() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-edge-descending", "");
+        String baseDir = "/Users/crusher/test/";
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        StoreOptions descendingOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-desc", false);
+        descendingOpt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        var descendingEngine = new RocksEngine(descendingOpt);
+        var ascending = new EdgeTemporalPropertyStore(graph0, new RocksEngine(opt));
+        var descending = new EdgeTemporalPropertyStore(graph0, descendingEngine, TemporalPropertyStoreOptions.of().setDescendingTimestamps(true));
+        assertTrue(descending.hasDescendingTimestamps());
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(descending, step);
+            writeEdges(ascending, step);
+            checkEdges(descending, ascending);
+        }
+        // caches load points by the descending layout too.
+        checkEdges(new EdgeTemporalPropertyStore(graph0, descendingEngine, TemporalPropertyStoreOptions.of().setLatestCacheSize(2).setSeriesCacheMemory(1 << 20).setDescendingTimestamps(true)), ascending);
+        assertThrows(IllegalArgumentException.class,
+                () -> new EdgeTemporalPropertyStore(graph0, descendingEngine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setDescendingTimestamps(true)));
+        ascending.stop();
+        descending.stop();
+    }
+
+    // every edge with points has a record after commit.
+    private static void checkRecords(EdgeTemporalPropertyStore recorded, KVEngine records) {
+        for (long n = 1; n <= 4; ++n) {
+            var prefix = EdgeTemporalPropertyKeyPrefix.of(n, n + 1, CRUSHER);
+            if (recorded.prefixGet(prefix).toList().isEmpty()) {
+                assertNull(records.get(prefix.toBytes(), null));
+            } else {
+                assertNotNull(records.get(prefix.toBytes(), null));
+            }
+        }
+    }
+
+    @Test
+    void testLatestRecords() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-edge-records", "");
+        String baseDir = "/Users/crusher/test/";
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        var engine = new RocksEngine(opt);
+        // records are read by exact key, no prefix extractor.
+        StoreOptions latestOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-latest", false);
+        var latestEngine = new RocksEngine(latestOpt);
+        var recorded = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setLatestStore(latestEngine));
+        assertTrue(recorded.hasLatestRecords());
+        var plain = new EdgeTemporalPropertyStore(graph0, engine);
+        for (int step = 0; step < STEPS; ++step) {
+            writeEdges(recorded, step);
+            checkEdges(recorded, plain);
+            checkRecords(recorded, latestEngine);
+        }
+        recorded.stop();
+
+        // records of points written without them are rebuilt from the data.
+        graph0 = new GraphSpaceID(2, "test-graph-edge-records-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(EdgeTemporalPropertyKeyPrefix.LENGTH);
+        latestOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-latest", false);
+        engine = new RocksEngine(opt);
+        latestEngine = new RocksEngine(latestOpt);
+        plain = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        writeEdges(plain, 0);
+        recorded = new EdgeTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setLatestStore(latestEngine));
+        recorded.rebuildLatestRecords();
+        checkRecords(recorded, latestEngine);
+        checkEdges(recorded, plain);
+        for (int step = 1; step < STEPS; ++step) {
+            writeEdges(recorded, step);
+            checkEdges(recorded, plain);
+            checkRecords(recorded, latestEngine);
+        }
+        recorded.stop();
+    }
 }
@@ -0,0 +1,100 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TemporalChunkTest {
+
+    private static TemporalChunk roundTrip(TemporalChunk chunk) {
+        var ret = TemporalChunk.decode(chunk.encode());
+        assertEquals(chunk.size(), ret.size());
+        for (int i = 0; i < chunk.size(); ++i) {
+            assertEquals(chunk.timestamp(i), ret.timestamp(i));
+            assertEquals(chunk.value(i), ret.value(i));
+        }
+        return ret;
+    }
+
+    @Test
+    void testDouble() {
+        var chunk = new TemporalChunk();
+        var random = new Random(7);
+        double v = 20.0;
+        // one point per second with jitter, a random walk value.
+        for (int i = 0; i < 3600; ++i) {
+            v += random.nextGaussian();
+            chunk.put(i * 1000L + random.nextInt(5), v);
+        }
+        chunk.put(5000, Double.NaN);
+        chunk.put(6000, -0.0);
+        roundTrip(chunk);
+        // much smaller than 8 bytes timestamp + 9 bytes value per point.
+        assertTrue(chunk.encode().length < chunk.size() * 12);
+    }
+
+    @Test
+    void testLongAndInt() {
+        var longs = new TemporalChunk();
+        var ints = new TemporalChunk();
+        for (int i = 0; i < 1000; ++i) {
+            longs.put(Long.MIN_VALUE + i * 7L, i % 3 == 0 ? Long.MAX_VALUE : (long) i);
+            ints.put(i * 60_000L, i / 10);
+        }
+        roundTrip(longs);
+        roundTrip(ints);
+        // constant delta and mostly equal values.
+        assertTrue(ints.encode().length < ints.size());
+    }
+
+    @Test
+    void testGeneric() {
+        var chunk = new TemporalChunk();
+        chunk.put(1, "v1");
+        chunk.put(2, 2);
+        chunk.put(3, new int[]{1, 2, 3});
+        chunk.put(100_000, 4.0);
+        var ret = TemporalChunk.decode(chunk.encode());
+        assertEquals("v1", ret.value(0));
+        assertEquals(2, ret.value(1));
+        assertArrayEquals(new int[]{1, 2, 3}, (int[]) ret.value(2));
+        assertEquals(4.0, ret.value(3));
+    }
+
+    @Test
+    void testEdit() {
+        var chunk = new TemporalChunk();
+        for (long t = 0; t < 10; ++t) {
+            chunk.put(t * 10, t);
+        }
+        // overwrite and insert.
+        chunk.put(50, -5L);
+        chunk.put(55, 55L);
+        assertEquals(11, chunk.size());
+        assertEquals(-5L, chunk.value(chunk.floor(54)));
+        assertEquals(-1, chunk.floor(-1));
+
+        assertTrue(chunk.remove(55));
+        assertFalse(chunk.remove(55));
+        chunk.removeRange(20, 50);
+        assertEquals(7, chunk.size());
+        assertEquals(1L, chunk.value(chunk.floor(49)));
+        chunk.removeRange(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertTrue(chunk.isEmpty());
+    }
+
+    @Test
+    void testFloorValue() {
+        var chunk = new TemporalChunk();
+        for (long t = 10; t < 100; t += 10) {
+            chunk.put(t, "v" + t);
+        }
+        var bytes = chunk.encode();
+        assertNull(TemporalChunk.floorValue(bytes, 9));
+        assertEquals("v10", TemporalChunk.floorValue(bytes, 10));
+        assertEquals("v50", TemporalChunk.floorValue(bytes, 59));
+        assertEquals("v90", TemporalChunk.lastValue(bytes));
+    }
+}
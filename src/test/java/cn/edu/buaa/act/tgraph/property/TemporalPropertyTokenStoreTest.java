@@ -0,0 +1,32 @@
+package cn.edu.buaa.act.tgraph.property;
+
+import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TemporalPropertyTokenStoreTest {
+    @Test
+    void testBase() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-token-base", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        var tokens = new TemporalPropertyTokenStore(graph0, baseDir + dataDir, false);
+        assertEquals(TemporalPropertyTokenStore.NO_TOKEN, tokens.getId("crusher"));
+        int crusher = tokens.getOrCreateId("crusher");
+        int alpha = tokens.getOrCreateId("alpha");
+        assertEquals(crusher, tokens.getOrCreateId("crusher"));
+        assertEquals(crusher + 1, alpha);
+        assertEquals("alpha", tokens.getName(alpha));
+        tokens.stop();
+
+        // tokens survive restart.
+        tokens = new TemporalPropertyTokenStore(graph0, baseDir + dataDir, false);
+        assertEquals(crusher, tokens.getId("crusher"));
+        assertEquals(alpha, tokens.getId("alpha"));
+        assertEquals("crusher", tokens.getName(crusher));
+        assertEquals(alpha + 1, tokens.getOrCreateId("crusher-alpha"));
+        tokens.stop();
+        tokens.drop();
+    }
+}
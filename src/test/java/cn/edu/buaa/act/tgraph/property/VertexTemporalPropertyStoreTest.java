@@ -1,12 +1,27 @@
 package cn.edu.buaa.act.tgraph.property;
 
+import cn.edu.buaa.act.tgraph.common.Pair;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
+import cn.edu.buaa.act.tgraph.kvstore.KVEngine;
+import cn.edu.buaa.act.tgraph.kvstore.RocksEngine;
+import cn.edu.buaa.act.tgraph.kvstore.RocksInstance;
+import cn.edu.buaa.act.tgraph.kvstore.StoreOptions;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.junit.jupiter.api.Test;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -14,6 +29,11 @@ public class VertexTemporalPropertyStoreTest {
 
     private static final Log log = LogFactory.getLog(VertexTemporalPropertyStoreTest.class);
 
+    // temporal property tokens
+    private static final int CRUSHER = 0;
+    private static final int ALPHA = 1;
+    private static final int CRUSHER_ALPHA = 2;
+
     @Test
     void testBase() {
         log.info("test base.");
@@ -22,9 +42,9 @@ public class VertexTemporalPropertyStoreTest {
         String dataDir = graph0.getGraphName();
         VertexTemporalPropertyStore vertex = new VertexTemporalPropertyStore(graph0, baseDir + dataDir, false);
         try (var batch = vertex.startBatchWrite()) {
-            var k1 = new VertexTemporalPropertyKey(1, "crusher", 1);
-            var k2 = new VertexTemporalPropertyKey(1, "crusher", 4);
-            var k3 = new VertexTemporalPropertyKey(1, "crusher", 9);
+            var k1 = new VertexTemporalPropertyKey(1, CRUSHER, 1);
+            var k2 = new VertexTemporalPropertyKey(1, CRUSHER, 4);
+            var k3 = new VertexTemporalPropertyKey(1, CRUSHER, 9);
             String val = "v";
             assertTrue(batch.put(k1, val + 1));
             assertTrue(batch.put(k2, val + 2));
@@ -52,27 +72,32 @@ public class VertexTemporalPropertyStoreTest {
         try (var batch = vertex.startBatchWrite()) {
             for (long idx = 1; idx < 4; ++idx) {
                 for (long t = 1; t < 20; t += 2) {
-                    batch.put(new VertexTemporalPropertyKey(idx, "crusher", t), v + (idx * t));
+                    batch.put(new VertexTemporalPropertyKey(idx, CRUSHER, t), v + (idx * t));
                 }
             }
             assertTrue(vertex.commitBatchWrite(batch, false, true, true));
         }
         // normal get
-        assertEquals(v + 1, vertex.get(new VertexTemporalPropertyKey(1, "crusher", 2)));
-        assertNull(vertex.get(new VertexTemporalPropertyKey(1, "crusher", 0)));
-        assertNull(vertex.get(new VertexTemporalPropertyKey(4, "crusher", 1)));
+        assertEquals(v + 1, vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 2)));
+        assertNull(vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 0)));
+        assertNull(vertex.get(new VertexTemporalPropertyKey(4, CRUSHER, 1)));
 
         // multi get
         List<VertexTemporalPropertyKey> keys = new ArrayList<>();
         List<String> expected = new ArrayList<>();
         for (int i = 2; i < 20; i += 2) {
-            keys.add(new VertexTemporalPropertyKey(1, "crusher", i));
+            keys.add(new VertexTemporalPropertyKey(1, CRUSHER, i));
             expected.add(v + (i - 1));
         }
 
         var real = vertex.multiGet(keys);
 
         assertEquals(expected, real);
+
+        // misses and unsorted keys, values are still in caller order.
+        var mixed = vertex.multiGet(List.of(new VertexTemporalPropertyKey(1, CRUSHER, 0), new VertexTemporalPropertyKey(4, CRUSHER, 1),
+                new VertexTemporalPropertyKey(2, CRUSHER, 4), new VertexTemporalPropertyKey(1, CRUSHER, 2)));
+        assertEquals(Arrays.asList(null, null, v + 6, v + 1), mixed);
         vertex.stop();
     }
 
@@ -86,23 +111,23 @@ public class VertexTemporalPropertyStoreTest {
         try (var batch = vertex.startBatchWrite()) {
             for (long idx = 1; idx < 3; ++idx) {
                 for (long t = 0; t < 10; ++t) {
-                    batch.put(new VertexTemporalPropertyKey(idx, "crusher", t), v);
-                    batch.put(new VertexTemporalPropertyKey(idx, "alpha", t), v);
+                    batch.put(new VertexTemporalPropertyKey(idx, CRUSHER, t), v);
+                    batch.put(new VertexTemporalPropertyKey(idx, ALPHA, t), v);
                 }
             }
             assertTrue(vertex.commitBatchWrite(batch, false, true, true));
         }
-        // Prefix{1, "crusher"}
-        assertEquals(10, vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(1, "crusher")).size());
-        // Prefix{1, "alpha"}
-        assertEquals(10, vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(1, "alpha")).size());
-        // Prefix{2, "crusher"}
-        assertEquals(10, vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(2, "crusher")).size());
-        // Prefix{2, "alpha"}
-        assertEquals(10, vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(2, "alpha")).size());
+        // Prefix{1, CRUSHER}
+        assertEquals(10, vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(1, CRUSHER)).toList().size());
+        // Prefix{1, ALPHA}
+        assertEquals(10, vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(1, ALPHA)).toList().size());
+        // Prefix{2, CRUSHER}
+        assertEquals(10, vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(2, CRUSHER)).toList().size());
+        // Prefix{2, ALPHA}
+        assertEquals(10, vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(2, ALPHA)).toList().size());
         // null
-        assertNull(vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(1, "crusher-alpha")));
-        assertNull(vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(3, "crusher")));
+        assertFalse(vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(1, CRUSHER_ALPHA)).hasNext());
+        assertFalse(vertex.prefixGet(new VertexTemporalPropertyKeyPrefix(3, CRUSHER)).hasNext());
     }
 
     @Test
@@ -114,13 +139,13 @@ public class VertexTemporalPropertyStoreTest {
         String v = "v";
         try (var batch = vertex.startBatchWrite()) {
             for (long t = 0; t < 20; t += 2) {
-                batch.put(new VertexTemporalPropertyKey(1, "crusher", t), v + t);
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), v + t);
             }
             assertTrue(vertex.commitBatchWrite(batch, false, true, true));
         }
 
-        var start = new VertexTemporalPropertyKey(1, "crusher", 1);
-        var end = new VertexTemporalPropertyKey(1, "crusher", 10);
+        var start = new VertexTemporalPropertyKey(1, CRUSHER, 1);
+        var end = new VertexTemporalPropertyKey(1, CRUSHER, 10);
 
 
         List<String> expected = new ArrayList<>();
@@ -129,12 +154,28 @@ public class VertexTemporalPropertyStoreTest {
         }
         List<String> actual = new ArrayList<>();
         var ret = vertex.rangeGet(start, end);
-        for (var pr : ret) {
+        for (var pr : ret.toList()) {
             actual.add((String) pr.second());
         }
 
         assertEquals(expected, actual);
 
+        // values of another vertex are never returned.
+        try (var other = vertex.rangeGet(new VertexTemporalPropertyKey(2, CRUSHER, 1), new VertexTemporalPropertyKey(2, CRUSHER, 10))) {
+            assertFalse(other.hasNext());
+        }
+
+        // no value <= start, values start from the first one after it.
+        assertEquals(expected, vertex.rangeGet(new VertexTemporalPropertyKey(1, CRUSHER, -5), end).toList().stream().map(Pair::second).collect(Collectors.toList()));
+        try (var batch = vertex.startBatchWrite()) {
+            // after the values of CRUSHER.
+            batch.put(new VertexTemporalPropertyKey(1, ALPHA, 5), "alpha5");
+            batch.put(new VertexTemporalPropertyKey(1, ALPHA, 15), "alpha15");
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertEquals(List.of(Pair.of(new Timestamp(5), "alpha5")), vertex.rangeGet(new VertexTemporalPropertyKey(1, ALPHA, 1), new VertexTemporalPropertyKey(1, ALPHA, 10)).toList());
+        assertTrue(vertex.rangeGet(new VertexTemporalPropertyKey(1, ALPHA, 1), new VertexTemporalPropertyKey(1, ALPHA, 5)).toList().isEmpty());
+        vertex.stop();
     }
 
     @Test
@@ -146,15 +187,38 @@ public class VertexTemporalPropertyStoreTest {
         String v = "v";
         try (var batch = vertex.startBatchWrite()) {
             for (long t = 0; t < 20; ++t) {
-                batch.put(new VertexTemporalPropertyKey(1, "crusher", t), v + t);
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), v + t);
             }
             assertTrue(vertex.commitBatchWrite(batch, false, true, true));
         }
 
-        var start = new VertexTemporalPropertyKey(1, "crusher", 5);
+        var start = new VertexTemporalPropertyKey(1, CRUSHER, 5);
 
         var ret = vertex.rangeWithPrefixGet(start);
-        assertEquals(15, ret.size());
+        assertEquals(15, ret.toList().size());
+        checkRangeBeforeFirst(vertex);
+        vertex.stop();
+
+        graph0 = new GraphSpaceID(2, "test-graph-range-prefix-get-chunk", "");
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        vertex = new VertexTemporalPropertyStore(graph0, new RocksEngine(opt), TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        checkRangeBeforeFirst(vertex);
+        vertex.stop();
+    }
+
+    // no value <= start, values start from the first one after it.
+    private static void checkRangeBeforeFirst(VertexTemporalPropertyStore vertex) {
+        try (var batch = vertex.startBatchWrite()) {
+            // another property before it.
+            batch.put(new VertexTemporalPropertyKey(1, ALPHA, 0), "alpha");
+            batch.put(new VertexTemporalPropertyKey(2, CRUSHER, 100), "v100");
+            batch.put(new VertexTemporalPropertyKey(2, CRUSHER, 300), "v300");
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        var ret = vertex.rangeWithPrefixGet(new VertexTemporalPropertyKey(2, CRUSHER, 50)).toList();
+        assertEquals(List.of(Pair.of(new Timestamp(100), "v100"), Pair.of(new Timestamp(300), "v300")), ret);
+        assertTrue(vertex.rangeWithPrefixGet(new VertexTemporalPropertyKey(3, CRUSHER, 50)).toList().isEmpty());
     }
 
     @Test
@@ -167,30 +231,30 @@ public class VertexTemporalPropertyStoreTest {
         // put [0, 20)
         try (var batch = vertex.startBatchWrite()) {
             for (long t = 0; t < 20; ++t) {
-                batch.put(new VertexTemporalPropertyKey(1, "crusher", t), v + t);
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), v + t);
             }
             assertTrue(vertex.commitBatchWrite(batch, false, true, true));
         }
 
-        assertEquals("v10", vertex.get(new VertexTemporalPropertyKey(1, "crusher", 10)));
+        assertEquals("v10", vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 10)));
 
         try (var batch = vertex.startBatchWrite()) {
-            batch.remove(new VertexTemporalPropertyKey(1, "crusher", 10));
+            batch.remove(new VertexTemporalPropertyKey(1, CRUSHER, 10));
             assertTrue(vertex.commitBatchWrite(batch, false, true, true));
         }
-        assertEquals("v9", vertex.get(new VertexTemporalPropertyKey(1, "crusher", 10)));
+        assertEquals("v9", vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 10)));
 
         for (long t = 11; t < 20; ++t) {
-            assertEquals(v + t, vertex.get(new VertexTemporalPropertyKey(1, "crusher", t)));
+            assertEquals(v + t, vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, t)));
         }
 
         try (var batch = vertex.startBatchWrite()) {
-            batch.removeRange(new VertexTemporalPropertyKey(1, "crusher", 11), new VertexTemporalPropertyKey(1, "crusher", 20));
+            batch.removeRange(new VertexTemporalPropertyKey(1, CRUSHER, 11), new VertexTemporalPropertyKey(1, CRUSHER, 20));
             assertTrue(vertex.commitBatchWrite(batch, false, true, true));
         }
 
         for (long t = 11; t < 20; ++t) {
-            assertEquals("v9", vertex.get(new VertexTemporalPropertyKey(1, "crusher", t)));
+            assertEquals("v9", vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, t)));
         }
 
     }
@@ -205,19 +269,1075 @@ public class VertexTemporalPropertyStoreTest {
         // put [0, 20)
         try (var batch = vertex.startBatchWrite()) {
             for (long t = 0; t < 20; ++t) {
-                batch.put(new VertexTemporalPropertyKey(1, "crusher", t), v + t);
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), v + t);
+                batch.put(new VertexTemporalPropertyKey(1, ALPHA, t), v + t);
+                batch.put(new VertexTemporalPropertyKey(2, CRUSHER, t), v + t);
+            }
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+
+        assertEquals("v10", vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 10)));
+
+        try (var batch = vertex.startBatchWrite()) {
+            batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(1, CRUSHER));
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+
+        assertNull(vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 10)));
+        // the range tombstone only covers the prefix.
+        assertEquals("v10", vertex.get(new VertexTemporalPropertyKey(1, ALPHA, 10)));
+        assertEquals("v10", vertex.get(new VertexTemporalPropertyKey(2, CRUSHER, 10)));
+
+    }
+
+    @Test
+    void testInterval() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-interval", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        VertexTemporalPropertyStore vertex = new VertexTemporalPropertyStore(graph0, baseDir + dataDir, false);
+        try (var batch = vertex.startBatchWrite()) {
+            for (long t = 0; t < 20; t += 5) {
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), "v" + t);
+            }
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        // [7, 30) overwrites 10, 15 and is not valid since 30.
+        try (var batch = vertex.startBatchWrite()) {
+            assertTrue(batch.putInterval(new VertexTemporalPropertyKey(1, CRUSHER, 7), 30, "closed"));
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertEquals("v5", vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 6)));
+        assertEquals("closed", vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 7)));
+        assertEquals("closed", vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 29)));
+        assertNull(vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 30)));
+        assertEquals(Arrays.asList("closed", null), vertex.multiGet(List.of(new VertexTemporalPropertyKey(1, CRUSHER, 15),
+                new VertexTemporalPropertyKey(1, CRUSHER, 31))));
+
+        // the interval is returned once.
+        var range = vertex.rangeGet(new VertexTemporalPropertyKey(1, CRUSHER, 0), new VertexTemporalPropertyKey(1, CRUSHER, 40)).toList();
+        assertEquals(3, range.size());
+        assertEquals("closed", range.get(2).second());
+        // the interval expired at start is not effective.
+        assertFalse(vertex.rangeWithPrefixGet(new VertexTemporalPropertyKey(1, CRUSHER, 35)).hasNext());
+
+        // a later point is valid again.
+        try (var batch = vertex.startBatchWrite()) {
+            assertTrue(batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 40), "v40"));
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertEquals("v40", vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 100)));
+        vertex.stop();
+    }
+
+    @Test
+    void testChunk() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-chunk", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + dataDir, false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        // 10 points per chunk.
+        VertexTemporalPropertyStore vertex = new VertexTemporalPropertyStore(graph0, new RocksEngine(opt), TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        assertEquals(100, vertex.getChunkInterval());
+        // put [0, 1000) of vertex 1 and 2, one point per 10ms.
+        try (var batch = vertex.startBatchWrite()) {
+            for (long idx = 1; idx < 3; ++idx) {
+                for (long t = 0; t < 1000; t += 10) {
+                    batch.put(new VertexTemporalPropertyKey(idx, CRUSHER, t), (double) (idx * t));
+                }
+            }
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertEquals(0.0, vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 5)));
+        // the value is in the previous chunk.
+        assertEquals(1980.0, vertex.get(new VertexTemporalPropertyKey(2, CRUSHER, 995)));
+        assertNull(vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, -1)));
+        assertNull(vertex.get(new VertexTemporalPropertyKey(3, CRUSHER, 5)));
+        assertEquals(Arrays.asList(null, 2.0 * 120, 990.0), vertex.multiGet(List.of(new VertexTemporalPropertyKey(3, CRUSHER, 1),
+                new VertexTemporalPropertyKey(2, CRUSHER, 125), new VertexTemporalPropertyKey(1, CRUSHER, Long.MAX_VALUE))));
+
+        // the first one is the value effective at start.
+        var range = vertex.rangeGet(new VertexTemporalPropertyKey(1, CRUSHER, 105), new VertexTemporalPropertyKey(1, CRUSHER, 300)).toList();
+        assertEquals(20, range.size());
+        assertEquals(100.0, range.get(0).second());
+        assertEquals(290.0, range.get(19).second());
+        assertEquals(100, vertex.prefixGet(VertexTemporalPropertyKeyPrefix.of(1, CRUSHER)).toList().size());
+        assertEquals(50, vertex.rangeWithPrefixGet(new VertexTemporalPropertyKey(2, CRUSHER, 500)).toList().size());
+
+        // remove a point, a range across chunks, then put into the removed range in the same batch.
+        try (var batch = vertex.startBatchWrite()) {
+            batch.remove(new VertexTemporalPropertyKey(1, CRUSHER, 0));
+            batch.removeRange(new VertexTemporalPropertyKey(1, CRUSHER, 150), new VertexTemporalPropertyKey(1, CRUSHER, 420));
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 250), -1.0);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertNull(vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 5)));
+        assertEquals(140.0, vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 249)));
+        assertEquals(-1.0, vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 419)));
+        assertEquals(420.0, vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 420)));
+        assertEquals(99 - 27 + 1, vertex.prefixGet(VertexTemporalPropertyKeyPrefix.of(1, CRUSHER)).toList().size());
+
+        // an interval across chunks.
+        try (var batch = vertex.startBatchWrite()) {
+            batch.putInterval(new VertexTemporalPropertyKey(1, CRUSHER, 450), 645, "closed");
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertEquals(440.0, vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 449)));
+        assertEquals("closed", vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 644)));
+        assertNull(vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 645)));
+        assertEquals(650.0, vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 650)));
+        range = vertex.rangeGet(new VertexTemporalPropertyKey(1, CRUSHER, 500), new VertexTemporalPropertyKey(1, CRUSHER, 670)).toList();
+        assertEquals(3, range.size());
+        assertEquals("closed", range.get(0).second());
+
+        try (var batch = vertex.startBatchWrite()) {
+            batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(2, CRUSHER));
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertNull(vertex.get(new VertexTemporalPropertyKey(2, CRUSHER, 995)));
+        assertEquals(990.0, vertex.get(new VertexTemporalPropertyKey(1, CRUSHER, 995)));
+        vertex.stop();
+    }
+
+    private static void checkAggregate(VertexTemporalPropertyStore vertex) {
+        var start = new VertexTemporalPropertyKey(1, CRUSHER, 95);
+        var end = new VertexTemporalPropertyKey(1, CRUSHER, 500);
+        // points 100, 110, ..., 490, the value effective at 95 is not counted, "v490" is not numeric.
+        assertEquals(40L, vertex.aggregate(start, end, TemporalAggregation.COUNT));
+        assertEquals(100.0, vertex.aggregate(start, end, TemporalAggregation.MIN));
+        assertEquals(480.0, vertex.aggregate(start, end, TemporalAggregation.MAX));
+        assertEquals(11310.0, vertex.aggregate(start, end, TemporalAggregation.SUM));
+        assertEquals(290.0, vertex.aggregate(start, end, TemporalAggregation.AVG));
+        assertEquals(100.0, vertex.aggregate(start, end, TemporalAggregation.FIRST));
+        assertEquals("v490", vertex.aggregate(start, end, TemporalAggregation.LAST));
+        // no point.
+        assertEquals(0L, vertex.aggregate(new VertexTemporalPropertyKey(1, CRUSHER, 101), new VertexTemporalPropertyKey(1, CRUSHER, 110), TemporalAggregation.COUNT));
+        assertNull(vertex.aggregate(new VertexTemporalPropertyKey(1, CRUSHER, 101), new VertexTemporalPropertyKey(1, CRUSHER, 110), TemporalAggregation.AVG));
+        assertNull(vertex.aggregate(new VertexTemporalPropertyKey(2, CRUSHER, 0), new VertexTemporalPropertyKey(2, CRUSHER, 1000), TemporalAggregation.LAST));
+        // an interval is counted once at its start.
+        assertEquals(2L, vertex.aggregate(new VertexTemporalPropertyKey(1, CRUSHER, 500), new VertexTemporalPropertyKey(1, CRUSHER, 1000), TemporalAggregation.COUNT));
+        assertEquals(1500.0, vertex.aggregate(new VertexTemporalPropertyKey(1, CRUSHER, 500), new VertexTemporalPropertyKey(1, CRUSHER, 1000), TemporalAggregation.SUM));
+    }
+
+    private static void putAggregate(VertexTemporalPropertyStore vertex) {
+        try (var batch = vertex.startBatchWrite()) {
+            // int, long and double values are all numeric, the last one is not.
+            for (long t = 0; t < 490; t += 10) {
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), t % 20 == 0 ? (Object) (double) t : (Object) (int) t);
+            }
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 490), "v490");
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 600), 500L);
+            batch.putInterval(new VertexTemporalPropertyKey(1, CRUSHER, 700), 900, 1000.0);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+    }
+
+    // integral values are summed exactly as long.
+    private static void checkIntegralAggregate(VertexTemporalPropertyStore vertex) {
+        try (var batch = vertex.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(3, CRUSHER, 0), (1L << 53) + 1);
+            batch.put(new VertexTemporalPropertyKey(3, CRUSHER, 10), 2);
+            batch.put(new VertexTemporalPropertyKey(3, CRUSHER, 20), -5L);
+            batch.put(new VertexTemporalPropertyKey(4, CRUSHER, 0), Long.MAX_VALUE);
+            batch.put(new VertexTemporalPropertyKey(4, CRUSHER, 10), 1L);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        var start = new VertexTemporalPropertyKey(3, CRUSHER, 0);
+        var end = new VertexTemporalPropertyKey(3, CRUSHER, 1000);
+        assertEquals((1L << 53) - 2, vertex.aggregate(start, end, TemporalAggregation.SUM));
+        assertEquals(-5L, vertex.aggregate(start, end, TemporalAggregation.MIN));
+        assertEquals((1L << 53) + 1, vertex.aggregate(start, end, TemporalAggregation.MAX));
+        assertEquals(((1L << 53) - 2) / 3.0, vertex.aggregate(start, end, TemporalAggregation.AVG));
+        // the sum overflows.
+        assertEquals((double) Long.MAX_VALUE + 1, vertex.aggregate(new VertexTemporalPropertyKey(4, CRUSHER, 0), new VertexTemporalPropertyKey(4, CRUSHER, 1000), TemporalAggregation.SUM));
+
+        try (var batch = vertex.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(3, CRUSHER, 30), 4.0);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertEquals((1L << 53) - 2, vertex.aggregate(start, new VertexTemporalPropertyKey(3, CRUSHER, 30), TemporalAggregation.SUM));
+        assertEquals((double) ((1L << 53) + 2), vertex.aggregate(start, end, TemporalAggregation.SUM));
+        assertEquals(-5.0, vertex.aggregate(start, end, TemporalAggregation.MIN));
+    }
+
+    @Test
+    void testAggregate() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-aggregate", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        VertexTemporalPropertyStore vertex = new VertexTemporalPropertyStore(graph0, baseDir + dataDir, false);
+        putAggregate(vertex);
+        checkAggregate(vertex);
+        checkIntegralAggregate(vertex);
+        vertex.stop();
+
+        graph0 = new GraphSpaceID(2, "test-graph-aggregate-chunk", "");
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        vertex = new VertexTemporalPropertyStore(graph0, new RocksEngine(opt), TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        putAggregate(vertex);
+        checkAggregate(vertex);
+        checkIntegralAggregate(vertex);
+        vertex.stop();
+    }
+
+    private static void checkResample(VertexTemporalPropertyStore vertex) {
+        try (var batch = vertex.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 100), 10);
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 140), 20.0);
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 340), 40L);
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 500), "s");
+            batch.putInterval(new VertexTemporalPropertyKey(1, CRUSHER, 600), 700, 60.0);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        var start = new VertexTemporalPropertyKey(1, CRUSHER, 100);
+        var end = new VertexTemporalPropertyKey(1, CRUSHER, 400);
+        assertEquals(Arrays.asList(15.0, null, null, null, 40.0, null), vertex.resample(start, end, 50, TemporalFill.NONE, TemporalAggregation.AVG));
+        assertEquals(List.of(2L, 0L, 0L, 0L, 1L, 0L), vertex.resample(start, end, 50, TemporalFill.LOCF, TemporalAggregation.COUNT));
+        assertEquals(List.of(20.0, 20.0, 20.0, 20.0, 40L, 40L), vertex.resample(start, end, 50, TemporalFill.LOCF, TemporalAggregation.LAST));
+        // interpolated between 140 and 340, the next point of the last bucket is not numeric.
+        assertEquals(Arrays.asList(15.0, 21.0, 26.0, 31.0, 40.0, null), vertex.resample(start, end, 50, TemporalFill.LINEAR, TemporalAggregation.AVG));
+        // the last bucket is cut by end.
+        assertEquals(List.of(20.0, 20.0, 40L), vertex.resample(start, new VertexTemporalPropertyKey(1, CRUSHER, 350), 100, TemporalFill.LOCF, TemporalAggregation.LAST));
+
+        // nothing before the first point, the value effective at start is carried forward.
+        assertEquals(Arrays.asList(null, 10), vertex.resample(new VertexTemporalPropertyKey(1, CRUSHER, 0), new VertexTemporalPropertyKey(1, CRUSHER, 200), 100, TemporalFill.LOCF, TemporalAggregation.FIRST));
+        assertEquals(List.of(20.0, 20.0), vertex.resample(new VertexTemporalPropertyKey(1, CRUSHER, 160), new VertexTemporalPropertyKey(1, CRUSHER, 260), 50, TemporalFill.LOCF, TemporalAggregation.FIRST));
+        // the interval is not carried forward after its end.
+        assertEquals(Arrays.asList(60.0, 60.0, null, null), vertex.resample(new VertexTemporalPropertyKey(1, CRUSHER, 600), new VertexTemporalPropertyKey(1, CRUSHER, 800), 50, TemporalFill.LOCF, TemporalAggregation.LAST));
+        // another vertex.
+        assertEquals(Arrays.asList(null, null), vertex.resample(new VertexTemporalPropertyKey(2, CRUSHER, 0), new VertexTemporalPropertyKey(2, CRUSHER, 1000), 500, TemporalFill.LOCF, TemporalAggregation.LAST));
+
+        assertThrows(IllegalArgumentException.class, () -> vertex.resample(start, end, 0, TemporalFill.NONE, TemporalAggregation.LAST));
+        assertThrows(IllegalArgumentException.class, () -> vertex.resample(new VertexTemporalPropertyKey(1, CRUSHER, 0), new VertexTemporalPropertyKey(1, CRUSHER, Long.MAX_VALUE), 1, TemporalFill.NONE, TemporalAggregation.LAST));
+    }
+
+    @Test
+    void testResample() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-resample", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        VertexTemporalPropertyStore vertex = new VertexTemporalPropertyStore(graph0, baseDir + dataDir, false);
+        checkResample(vertex);
+        vertex.stop();
+
+        graph0 = new GraphSpaceID(2, "test-graph-resample-chunk", "");
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        vertex = new VertexTemporalPropertyStore(graph0, new RocksEngine(opt), TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        checkResample(vertex);
+        vertex.stop();
+    }
+
+    // compare aggregates of random ranges with the points written.
+    private static void checkRollup(VertexTemporalPropertyStore vertex, TreeMap<Long, Double> points) {
+        var random = new Random(7);
+        for (int i = 0; i < 200; ++i) {
+            long start = random.nextInt(6000) - 500;
+            long end = start + 1 + random.nextInt(6000);
+            var startKey = new VertexTemporalPropertyKey(1, CRUSHER, start);
+            var endKey = new VertexTemporalPropertyKey(1, CRUSHER, end);
+            var values = points.subMap(start, end).values();
+            assertEquals((long) values.size(), vertex.aggregate(startKey, endKey, TemporalAggregation.COUNT));
+            if (values.isEmpty()) {
+                assertNull(vertex.aggregate(startKey, endKey, TemporalAggregation.SUM));
+                continue;
+            }
+            assertEquals(values.stream().mapToDouble(Double::doubleValue).sum(), (double) vertex.aggregate(startKey, endKey, TemporalAggregation.SUM), 1e-6);
+            assertEquals(Collections.min(values), vertex.aggregate(startKey, endKey, TemporalAggregation.MIN));
+            assertEquals(Collections.max(values), vertex.aggregate(startKey, endKey, TemporalAggregation.MAX));
+        }
+    }
+
+    private static void writeRollup(VertexTemporalPropertyStore vertex) {
+        TreeMap<Long, Double> points = new TreeMap<>();
+        try (var batch = vertex.startBatchWrite()) {
+            for (long t = 0; t < 5000; t += 3) {
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), (double) (t % 97));
+                points.put(t, (double) (t % 97));
             }
+            batch.put(new VertexTemporalPropertyKey(2, CRUSHER, 100), 1e9);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        checkRollup(vertex, points);
+
+        // summaries of buckets written are rebuilt.
+        try (var batch = vertex.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 999), -100.0);
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 3000), 500.0);
+            batch.remove(new VertexTemporalPropertyKey(1, CRUSHER, 1200));
+            batch.removeRange(new VertexTemporalPropertyKey(1, CRUSHER, 1505), new VertexTemporalPropertyKey(1, CRUSHER, 2777));
+            batch.putInterval(new VertexTemporalPropertyKey(1, CRUSHER, 4000), 4500, 1000.0);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        points.put(999L, -100.0);
+        points.put(3000L, 500.0);
+        points.remove(1200L);
+        points.subMap(1505L, 2777L).clear();
+        points.subMap(4000L, 4500L).clear();
+        points.put(4000L, 1000.0);
+        checkRollup(vertex, points);
+        assertEquals(1e9, vertex.aggregate(new VertexTemporalPropertyKey(2, CRUSHER, 0), new VertexTemporalPropertyKey(2, CRUSHER, 5000), TemporalAggregation.MAX));
+
+        try (var batch = vertex.startBatchWrite()) {
+            batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(1, CRUSHER));
             assertTrue(vertex.commitBatchWrite(batch, false, true, true));
         }
+        checkRollup(vertex, new TreeMap<>());
+    }
+
+    @Test
+    void testRollup() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-rollup", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + dataDir, false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        StoreOptions rollupOpt = StoreOptions.of(graph0, baseDir + dataDir + "-rollup", false);
+        rollupOpt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        var rollupEngine = new RocksEngine(rollupOpt);
+        // 10ms, 100ms and 1s summaries.
+        VertexTemporalPropertyStore vertex = new VertexTemporalPropertyStore(graph0, new RocksEngine(opt), TemporalPropertyStoreOptions.of().setRollups(rollupEngine, new long[]{10, 100, 1000}));
+        assertArrayEquals(new long[]{10, 100, 1000}, vertex.getRollupLevels());
+        writeRollup(vertex);
+        // summaries of vertex 1 are removed with its points.
+        try (var iter = rollupEngine.prefix(VertexTemporalPropertyKeyPrefix.of(1, CRUSHER).toBytes(), null)) {
+            assertFalse(iter.valid());
+        }
+        try (var iter = rollupEngine.prefix(VertexTemporalPropertyKeyPrefix.of(2, CRUSHER).toBytes(), null)) {
+            assertTrue(iter.valid());
+        }
+        checkIntegralAggregate(vertex);
+        vertex.stop();
 
-        assertEquals("v10", vertex.get(new VertexTemporalPropertyKey(1, "crusher", 10)));
+        graph0 = new GraphSpaceID(2, "test-graph-rollup-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        rollupOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-rollup", false);
+        rollupOpt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        vertex = new VertexTemporalPropertyStore(graph0, new RocksEngine(opt), TemporalPropertyStoreOptions.of().setChunkInterval(100).setRollups(new RocksEngine(rollupOpt), new long[]{10, 100, 1000}));
+        writeRollup(vertex);
+        vertex.stop();
+    }
 
+    // compare snapshots with point gets, over more nodes than a partition.
+    private static void checkSnapshot(VertexTemporalPropertyStore vertex) {
+        int nodes = 3000;
         try (var batch = vertex.startBatchWrite()) {
-            batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(1, "crusher"));
+            // node n has points at n % 7, n % 7 + 100, ..., none for nodes of multiple 5.
+            for (long n = 0; n < nodes; ++n) {
+                if (n % 5 == 0) {
+                    continue;
+                }
+                for (long t = n % 7; t < 1000; t += 100) {
+                    batch.put(new VertexTemporalPropertyKey(n, CRUSHER, t), n * 1000 + t);
+                    // another property between nodes.
+                    batch.put(new VertexTemporalPropertyKey(n, ALPHA, t / 2), -1L);
+                }
+            }
+            batch.putInterval(new VertexTemporalPropertyKey(7, CRUSHER, 2000), 2500, "interval");
             assertTrue(vertex.commitBatchWrite(batch, false, true, true));
         }
+        // unsorted ids, ids without points and duplicates.
+        List<Long> ids = new ArrayList<>();
+        for (long n = nodes + 10; n >= 0; --n) {
+            ids.add(n);
+        }
+        ids.add(42L);
+        Collections.shuffle(ids, new Random(7));
+        long[] nodeIds = ids.stream().mapToLong(Long::longValue).toArray();
+        for (long t : new long[]{-1, 0, 3, 150, 999, 2000, 2499, 2500}) {
+            var snapshot = vertex.snapshot(nodeIds, CRUSHER, t).collect(Collectors.toList());
+            assertEquals(nodeIds.length, snapshot.size());
+            long prev = Long.MIN_VALUE;
+            for (var v : snapshot) {
+                assertTrue(v.first() >= prev);
+                prev = v.first();
+                assertEquals(vertex.get(new VertexTemporalPropertyKey(v.first(), CRUSHER, t)), v.second());
+            }
+        }
+        var snapshot = vertex.snapshot(new long[]{7, 8, 10}, CRUSHER, 2100).collect(Collectors.toList());
+        assertEquals(Arrays.asList(Pair.of(7L, "interval"), Pair.of(8L, 8 * 1000 + 901L), Pair.of(10L, null)), snapshot);
+        assertEquals(0, vertex.snapshot(new long[0], CRUSHER, 0).count());
+    }
+
+    @Test
+    void testSnapshot() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-snapshot", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        VertexTemporalPropertyStore vertex = new VertexTemporalPropertyStore(graph0, baseDir + dataDir, false);
+        checkSnapshot(vertex);
+        vertex.stop();
 
-        assertNull(vertex.get(new VertexTemporalPropertyKey(1, "crusher", 10)));
+        graph0 = new GraphSpaceID(2, "test-graph-snapshot-chunk", "");
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        vertex = new VertexTemporalPropertyStore(graph0, new RocksEngine(opt), TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        checkSnapshot(vertex);
+        vertex.stop();
+    }
+
+    private static List<VertexTemporalPropertyKey> changes(VertexTemporalPropertyStore vertex, long start, long end) {
+        try (var changes = vertex.changes(start, end)) {
+            return changes.collect(Collectors.toList());
+        }
+    }
 
+    private static List<VertexTemporalPropertyKey> removals(VertexTemporalPropertyStore vertex, long start, long end) {
+        try (var removals = vertex.removals(start, end)) {
+            return removals.collect(Collectors.toList());
+        }
+    }
+
+    private static void checkChanges(VertexTemporalPropertyStore vertex) {
+        try (var batch = vertex.startBatchWrite()) {
+            for (long n = 1; n <= 3; ++n) {
+                for (long t = 0; t < 1000; t += 100) {
+                    batch.put(new VertexTemporalPropertyKey(n, CRUSHER, t + n), n);
+                }
+                batch.put(new VertexTemporalPropertyKey(n, ALPHA, 250), "alpha");
+            }
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        // ordered by timestamp, then node and property.
+        assertEquals(Arrays.asList(new VertexTemporalPropertyKey(1, CRUSHER, 201), new VertexTemporalPropertyKey(2, CRUSHER, 202),
+                new VertexTemporalPropertyKey(3, CRUSHER, 203), new VertexTemporalPropertyKey(1, ALPHA, 250),
+                new VertexTemporalPropertyKey(2, ALPHA, 250), new VertexTemporalPropertyKey(3, ALPHA, 250)), changes(vertex, 201, 300));
+        assertEquals(33, changes(vertex, Long.MIN_VALUE, 1000).size());
+        assertTrue(changes(vertex, 1000, 2000).isEmpty());
+
+        // entries of removed points are skipped.
+        try (var batch = vertex.startBatchWrite()) {
+            batch.remove(new VertexTemporalPropertyKey(1, CRUSHER, 201));
+            batch.removeRange(new VertexTemporalPropertyKey(2, CRUSHER, 0), new VertexTemporalPropertyKey(2, CRUSHER, 500));
+            batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(3, ALPHA));
+            batch.putInterval(new VertexTemporalPropertyKey(3, CRUSHER, 150), 260, 0L);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertEquals(Arrays.asList(new VertexTemporalPropertyKey(3, CRUSHER, 150), new VertexTemporalPropertyKey(1, ALPHA, 250),
+                new VertexTemporalPropertyKey(2, ALPHA, 250)), changes(vertex, 150, 300));
+        // they are removals, of the point, the range, the temporal property and the interval.
+        assertEquals(Arrays.asList(new VertexTemporalPropertyKey(1, CRUSHER, 201), new VertexTemporalPropertyKey(2, CRUSHER, 202),
+                new VertexTemporalPropertyKey(3, CRUSHER, 203), new VertexTemporalPropertyKey(3, ALPHA, 250)), removals(vertex, 150, 300));
+        assertEquals(8, removals(vertex, Long.MIN_VALUE, 1000).size());
+
+        // a removed point written again is changed again.
+        try (var batch = vertex.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(2, CRUSHER, 202), 0L);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        assertEquals(Arrays.asList(new VertexTemporalPropertyKey(2, CRUSHER, 202), new VertexTemporalPropertyKey(1, ALPHA, 250),
+                new VertexTemporalPropertyKey(2, ALPHA, 250)), changes(vertex, 201, 300));
+        assertEquals(Arrays.asList(new VertexTemporalPropertyKey(1, CRUSHER, 201), new VertexTemporalPropertyKey(3, CRUSHER, 203),
+                new VertexTemporalPropertyKey(3, ALPHA, 250)), removals(vertex, 201, 300));
+
+        // removals before 250 are forgotten, changes are kept.
+        var changed = changes(vertex, Long.MIN_VALUE, 1000);
+        assertEquals(4, vertex.purgeRemovals(Long.MIN_VALUE, 250));
+        assertEquals(Arrays.asList(new VertexTemporalPropertyKey(3, ALPHA, 250), new VertexTemporalPropertyKey(2, CRUSHER, 302),
+                new VertexTemporalPropertyKey(2, CRUSHER, 402)), removals(vertex, Long.MIN_VALUE, 1000));
+        assertEquals(changed, changes(vertex, Long.MIN_VALUE, 1000));
+        assertEquals(0, vertex.purgeRemovals(Long.MIN_VALUE, 250));
+    }
+
+    @Test
+    void testChangeIndex() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-change", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + dataDir, false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        StoreOptions changeOpt = StoreOptions.of(graph0, baseDir + dataDir + "-change", false);
+        var engine = new RocksEngine(opt);
+        VertexTemporalPropertyStore vertex = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChangeStore(new RocksEngine(changeOpt)));
+        assertTrue(vertex.hasChangeIndex());
+        checkChanges(vertex);
+        vertex.stop();
+
+        // the index of points written without it is rebuilt from the data.
+        graph0 = new GraphSpaceID(2, "test-graph-change-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        changeOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-change", false);
+        engine = new RocksEngine(opt);
+        vertex = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        assertFalse(vertex.hasChangeIndex());
+        try (var batch = vertex.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(5, CRUSHER, 5010), 1L);
+            batch.put(new VertexTemporalPropertyKey(4, CRUSHER, 5150), 2L);
+            batch.put(new VertexTemporalPropertyKey(4, CRUSHER, 5010), 3L);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        vertex = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setChangeStore(new RocksEngine(changeOpt)));
+        vertex.rebuildChangeIndex();
+        assertEquals(Arrays.asList(new VertexTemporalPropertyKey(4, CRUSHER, 5010), new VertexTemporalPropertyKey(5, CRUSHER, 5010),
+                new VertexTemporalPropertyKey(4, CRUSHER, 5150)), changes(vertex, 5000, 6000));
+        checkChanges(vertex);
+        vertex.stop();
+    }
+
+    // values of a cached store are the same as the ones of a store without cache.
+    private static void checkLatest(VertexTemporalPropertyStore cached, VertexTemporalPropertyStore plain) {
+        for (long n = 1; n <= 3; ++n) {
+            for (long t : new long[]{-1, 0, 99, 100, 900, 950, 1500, 1600, 2000, 5000, Long.MAX_VALUE}) {
+                var key = new VertexTemporalPropertyKey(n, CRUSHER, t);
+                assertEquals(plain.get(key), cached.get(key));
+            }
+        }
+    }
+
+    private static void writeLatest(VertexTemporalPropertyStore cached, VertexTemporalPropertyStore plain) {
+        try (var batch = cached.startBatchWrite()) {
+            for (long n = 1; n <= 3; ++n) {
+                for (long t = 0; t < 1000; t += 100) {
+                    batch.put(new VertexTemporalPropertyKey(n, CRUSHER, t), n * 1000 + t);
+                }
+            }
+            batch.put(new VertexTemporalPropertyKey(3, CRUSHER, 950), "crusher");
+            assertTrue(cached.commitBatchWrite(batch, false, true, true));
+        }
+        checkLatest(cached, plain);
+        long hits = cached.getLatestCacheStats().hitCount();
+        assertEquals(1900L, cached.get(new VertexTemporalPropertyKey(1, CRUSHER, 5000)));
+        assertEquals(1900L, cached.get(new VertexTemporalPropertyKey(1, CRUSHER, 6000)));
+        assertTrue(cached.getLatestCacheStats().hitCount() > hits);
+
+        // cached points are updated by newer points.
+        try (var batch = cached.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 2000), "alpha");
+            batch.put(new VertexTemporalPropertyKey(2, CRUSHER, 500), -1L);
+            batch.putInterval(new VertexTemporalPropertyKey(3, CRUSHER, 1500), 1600, "interval");
+            assertTrue(cached.commitBatchWrite(batch, false, true, true));
+        }
+        checkLatest(cached, plain);
+        assertEquals("alpha", cached.get(new VertexTemporalPropertyKey(1, CRUSHER, 5000)));
+        assertNull(cached.get(new VertexTemporalPropertyKey(3, CRUSHER, 5000)));
+
+        // and invalidated by removes of the latest points.
+        try (var batch = cached.startBatchWrite()) {
+            batch.removeRange(new VertexTemporalPropertyKey(1, CRUSHER, 1500), new VertexTemporalPropertyKey(1, CRUSHER, 2500));
+            batch.remove(new VertexTemporalPropertyKey(2, CRUSHER, 900));
+            batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(3, CRUSHER));
+            assertTrue(cached.commitBatchWrite(batch, false, true, true));
+        }
+        checkLatest(cached, plain);
+        assertEquals(1900L, cached.get(new VertexTemporalPropertyKey(1, CRUSHER, 5000)));
+        assertEquals(2800L, cached.get(new VertexTemporalPropertyKey(2, CRUSHER, 5000)));
+        assertNull(cached.get(new VertexTemporalPropertyKey(3, CRUSHER, 5000)));
+        // 3 temporal properties in a cache of 2.
+        assertTrue(cached.getLatestCacheStats().evictionCount() > 0);
+        assertTrue(cached.getLatestCacheStats().missCount() > 0);
+    }
+
+    @Test
+    void testLatestCache() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-latest", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + dataDir, false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        var engine = new RocksEngine(opt);
+        VertexTemporalPropertyStore cached = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setLatestCacheSize(2));
+        writeLatest(cached, new VertexTemporalPropertyStore(graph0, engine));
+        cached.stop();
+
+        graph0 = new GraphSpaceID(2, "test-graph-latest-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        engine = new RocksEngine(opt);
+        cached = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setLatestCacheSize(2));
+        writeLatest(cached, new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100)));
+        cached.stop();
+    }
+
+    // ranges of a cached store are the same as the ones of a store without cache.
+    private static void checkSeries(VertexTemporalPropertyStore cached, VertexTemporalPropertyStore plain, long[] starts) {
+        for (long n = 1; n <= 3; ++n) {
+            for (long start : starts) {
+                var from = new VertexTemporalPropertyKey(n, CRUSHER, start);
+                assertEquals(plain.rangeWithPrefixGet(from).toList(), cached.rangeWithPrefixGet(from).toList());
+                for (long end : new long[]{start + 1, 600, 1000, 1600, Long.MAX_VALUE}) {
+                    if (end <= start) {
+                        continue;
+                    }
+                    var to = new VertexTemporalPropertyKey(n, CRUSHER, end);
+                    assertEquals(plain.rangeGet(from, to).toList(), cached.rangeGet(from, to).toList());
+                }
+            }
+        }
+    }
+
+    private static void writeSeries(VertexTemporalPropertyStore cached, VertexTemporalPropertyStore plain) {
+        long[] ascending = {-1, 0, 150, 500, 900, 950, 1550, 1650, 5000};
+        long[] descending = {5000, 1650, 1550, 950, 900, 500, 150, 0, -1};
+        try (var batch = cached.startBatchWrite()) {
+            for (long n = 1; n <= 3; ++n) {
+                for (long t = 0; t < 1000; t += 100) {
+                    batch.put(new VertexTemporalPropertyKey(n, CRUSHER, t), n * 1000 + t);
+                }
+            }
+            batch.put(new VertexTemporalPropertyKey(2, CRUSHER, 150), 0.5);
+            batch.put(new VertexTemporalPropertyKey(3, CRUSHER, 950), "crusher");
+            batch.putInterval(new VertexTemporalPropertyKey(3, CRUSHER, 960), 980, "interval");
+            assertTrue(cached.commitBatchWrite(batch, false, true, true));
+        }
+        checkSeries(cached, plain, ascending);
+        checkSeries(cached, plain, descending);
+        assertTrue(cached.getSeriesCacheStats().hitCount() > 0);
+
+        // newer points are appended, others drop segments.
+        try (var batch = cached.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 1000), "alpha");
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 1100), 1.5);
+            batch.put(new VertexTemporalPropertyKey(2, CRUSHER, 450), -1L);
+            batch.putInterval(new VertexTemporalPropertyKey(3, CRUSHER, 1500), 1600, "interval");
+            assertTrue(cached.commitBatchWrite(batch, false, true, true));
+        }
+        checkSeries(cached, plain, ascending);
+        checkSeries(cached, plain, descending);
+
+        try (var batch = cached.startBatchWrite()) {
+            batch.removeRange(new VertexTemporalPropertyKey(1, CRUSHER, 1050), new VertexTemporalPropertyKey(1, CRUSHER, 1200));
+            batch.remove(new VertexTemporalPropertyKey(2, CRUSHER, 900));
+            batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(3, CRUSHER));
+            assertTrue(cached.commitBatchWrite(batch, false, true, true));
+        }
+        checkSeries(cached, plain, descending);
+
+        // a series too long to load is read from the store.
+        checkSeries(cached, plain, new long[]{5000});
+        try (var batch = cached.startBatchWrite()) {
+            for (long t = 10000; t < 10000 + 2 * TemporalSeriesCache.MAX_SEGMENT_POINTS; ++t) {
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), t);
+            }
+            assertTrue(cached.commitBatchWrite(batch, false, true, true));
+        }
+        checkSeries(cached, plain, new long[]{15000, 5000, 0});
+        assertTrue(cached.getSeriesCacheStats().loadExceptionCount() > 0);
+        // 3 temporal properties in a cache of 2 small segments.
+        assertTrue(cached.getSeriesCacheStats().evictionCount() > 0);
+        assertTrue(cached.getSeriesCacheMemory() <= 1024);
+    }
+
+    // a segment grown by appends drops its older half and keeps serving recent windows.
+    private static void checkTrim(VertexTemporalPropertyStore cached, VertexTemporalPropertyStore plain) {
+        long latest = 10000 + 2 * TemporalSeriesCache.MAX_SEGMENT_POINTS - 1;
+        var from = new VertexTemporalPropertyKey(1, CRUSHER, latest);
+        assertEquals(plain.rangeWithPrefixGet(from).toList(), cached.rangeWithPrefixGet(from).toList());
+        try (var batch = cached.startBatchWrite()) {
+            for (long t = latest + 1; t <= latest + 2 * TemporalSeriesCache.MAX_SEGMENT_POINTS; ++t) {
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), t * 0.5);
+            }
+            assertTrue(cached.commitBatchWrite(batch, false, true, true));
+        }
+        long hits = cached.getSeriesCacheStats().hitCount();
+        for (long start : new long[]{latest + 2 * TemporalSeriesCache.MAX_SEGMENT_POINTS, latest + 2 * TemporalSeriesCache.MAX_SEGMENT_POINTS - 100}) {
+            from = new VertexTemporalPropertyKey(1, CRUSHER, start);
+            assertEquals(plain.rangeWithPrefixGet(from).toList(), cached.rangeWithPrefixGet(from).toList());
+            var to = new VertexTemporalPropertyKey(1, CRUSHER, start + 10);
+            assertEquals(plain.rangeGet(from, to).toList(), cached.rangeGet(from, to).toList());
+        }
+        assertEquals(hits + 4, cached.getSeriesCacheStats().hitCount());
+    }
+
+    // only reads of a recent window load segments, concurrent misses of one prefix load it once.
+    private static void checkHorizon(VertexTemporalPropertyStore cached, VertexTemporalPropertyStore plain) {
+        try (var batch = cached.startBatchWrite()) {
+            for (long t = 0; t < 5000; t += 10) {
+                batch.put(new VertexTemporalPropertyKey(5, CRUSHER, t), t);
+            }
+            assertTrue(cached.commitBatchWrite(batch, false, true, true));
+        }
+        // the latest point is 4990, out of the 1000ms horizon.
+        var from = new VertexTemporalPropertyKey(5, CRUSHER, 100);
+        assertEquals(plain.rangeWithPrefixGet(from).toList(), cached.rangeWithPrefixGet(from).toList());
+        assertEquals(0, cached.getSeriesCacheStats().loadSuccessCount());
+
+        var recent = new VertexTemporalPropertyKey(5, CRUSHER, 4500);
+        var expected = plain.rangeWithPrefixGet(recent).toList();
+        var start = new CountDownLatch(1);
+        var results = new ConcurrentLinkedQueue<List<Pair<Timestamp, Object>>>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            var reader = new Thread(() -> {
+                Uninterruptibles.awaitUninterruptibly(start);
+                results.add(cached.rangeWithPrefixGet(recent).toList());
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        start.countDown();
+        readers.forEach(Uninterruptibles::joinUninterruptibly);
+        assertEquals(8, results.size());
+        for (var result : results) {
+            assertEquals(expected, result);
+        }
+        assertEquals(1, cached.getSeriesCacheStats().loadSuccessCount());
+    }
+
+    @Test
+    void testSeriesCache() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-series", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + dataDir, false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        var engine = new RocksEngine(opt);
+        VertexTemporalPropertyStore cached = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setSeriesCacheMemory(1024));
+        writeSeries(cached, new VertexTemporalPropertyStore(graph0, engine));
+        checkTrim(new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setSeriesCacheMemory(1 << 20)), new VertexTemporalPropertyStore(graph0, engine));
+        checkHorizon(new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setSeriesCacheMemory(1 << 20).setSeriesCacheHorizon(1000)),
+                new VertexTemporalPropertyStore(graph0, engine));
+        cached.stop();
+
+        graph0 = new GraphSpaceID(2, "test-graph-series-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        engine = new RocksEngine(opt);
+        cached = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setSeriesCacheMemory(1024));
+        writeSeries(cached, new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100)));
+        checkTrim(new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setSeriesCacheMemory(1 << 20)),
+                new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100)));
+        cached.stop();
+    }
+
+    // reads of a store with descending timestamps are the same as the ones of an ascending store.
+    private static void checkDescending(VertexTemporalPropertyStore descending, VertexTemporalPropertyStore ascending) {
+        for (long n = 1; n <= 4; ++n) {
+            var prefix = VertexTemporalPropertyKeyPrefix.of(n, CRUSHER);
+            assertEquals(ascending.prefixGet(prefix).toList(), descending.prefixGet(prefix).toList());
+            List<VertexTemporalPropertyKey> keys = new ArrayList<>();
+            for (long t : new long[]{Long.MIN_VALUE, -1, 0, 99, 100, 150, 500, 955, 970, 990, 5000, Long.MAX_VALUE}) {
+                var key = new VertexTemporalPropertyKey(n, CRUSHER, t);
+                keys.add(key);
+                assertEquals(ascending.get(key), descending.get(key));
+                assertEquals(ascending.rangeWithPrefixGet(key).toList(), descending.rangeWithPrefixGet(key).toList());
+                for (long end : new long[]{150, 600, 1000}) {
+                    if (end <= t) {
+                        continue;
+                    }
+                    var to = new VertexTemporalPropertyKey(n, CRUSHER, end);
+                    assertEquals(ascending.rangeGet(key, to).toList(), descending.rangeGet(key, to).toList());
+                    for (var aggregation : new TemporalAggregation[]{TemporalAggregation.COUNT, TemporalAggregation.FIRST, TemporalAggregation.LAST}) {
+                        assertEquals(ascending.aggregate(key, to, aggregation), descending.aggregate(key, to, aggregation));
+                    }
+                    if (t > Long.MIN_VALUE) {
+                        assertEquals(ascending.resample(key, to, 50, TemporalFill.LOCF, TemporalAggregation.LAST),
+                                descending.resample(key, to, 50, TemporalFill.LOCF, TemporalAggregation.LAST));
+                    }
+                }
+            }
+            assertEquals(ascending.multiGet(keys), descending.multiGet(keys));
+        }
+        for (long t : new long[]{-1, 100, 955, 5000}) {
+            long[] nodeIds = {4, 1, 3, 2};
+            assertEquals(ascending.snapshot(nodeIds, CRUSHER, t).collect(Collectors.toList()), descending.snapshot(nodeIds, CRUSHER, t).collect(Collectors.toList()));
+        }
+    }
+
+    private static void writeDescending(VertexTemporalPropertyStore descending, VertexTemporalPropertyStore ascending) {
+        for (var store : List.of(descending, ascending)) {
+            try (var batch = store.startBatchWrite()) {
+                for (long n = 1; n <= 3; ++n) {
+                    for (long t = 0; t < 1000; t += 100) {
+                        batch.put(new VertexTemporalPropertyKey(n, CRUSHER, t), n * 1000 + t);
+                    }
+                }
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, Long.MIN_VALUE), "min");
+                batch.put(new VertexTemporalPropertyKey(3, CRUSHER, 950), "crusher");
+                batch.putInterval(new VertexTemporalPropertyKey(3, CRUSHER, 960), 980, "interval");
+                assertTrue(store.commitBatchWrite(batch, false, true, true));
+            }
+        }
+        checkDescending(descending, ascending);
+        for (var store : List.of(descending, ascending)) {
+            try (var batch = store.startBatchWrite()) {
+                batch.remove(new VertexTemporalPropertyKey(1, CRUSHER, 900));
+                batch.removeRange(new VertexTemporalPropertyKey(1, CRUSHER, Long.MIN_VALUE), new VertexTemporalPropertyKey(1, CRUSHER, 100));
+                batch.removeRange(new VertexTemporalPropertyKey(2, CRUSHER, 150), new VertexTemporalPropertyKey(2, CRUSHER, 500));
+                batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(3, CRUSHER));
+                batch.put(new VertexTemporalPropertyKey(4, CRUSHER, Long.MIN_VALUE), "first");
+                batch.put(new VertexTemporalPropertyKey(4, CRUSHER, Long.MAX_VALUE), "last");
+                assertTrue(store.commitBatchWrite(batch, false, true, true));
+            }
+        }
+        checkDescending(descending, ascending);
+    }
+
+    @Test
+    void testDescending() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-descending", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + dataDir, false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        var engine = new RocksEngine(opt);
+        StoreOptions descendingOpt = StoreOptions.of(graph0, baseDir + dataDir + "-desc", false);
+        descendingOpt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        var descendingEngine = new RocksEngine(descendingOpt);
+        VertexTemporalPropertyStore ascending = new VertexTemporalPropertyStore(graph0, engine);
+        VertexTemporalPropertyStore descending = new VertexTemporalPropertyStore(graph0, descendingEngine, TemporalPropertyStoreOptions.of().setDescendingTimestamps(true));
+        assertTrue(descending.hasDescendingTimestamps());
+        writeDescending(descending, ascending);
+        // caches load points by the descending layout too.
+        checkDescending(new VertexTemporalPropertyStore(graph0, descendingEngine, TemporalPropertyStoreOptions.of().setLatestCacheSize(2).setSeriesCacheMemory(1024).setDescendingTimestamps(true)), ascending);
+        assertThrows(IllegalArgumentException.class,
+                () -> new VertexTemporalPropertyStore(graph0, descendingEngine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setDescendingTimestamps(true)));
+        ascending.stop();
+        descending.stop();
+    }
+
+    private static void writeRecords(VertexTemporalPropertyStore recorded, VertexTemporalPropertyStore plain, KVEngine records) {
+        try (var batch = recorded.startBatchWrite()) {
+            for (long n = 1; n <= 3; ++n) {
+                for (long t = 0; t < 1000; t += 100) {
+                    batch.put(new VertexTemporalPropertyKey(n, CRUSHER, t), n * 1000 + t);
+                }
+            }
+            batch.put(new VertexTemporalPropertyKey(3, CRUSHER, 950), "crusher");
+            assertTrue(recorded.commitBatchWrite(batch, false, true, true));
+        }
+        checkLatest(recorded, plain);
+        for (long n = 1; n <= 3; ++n) {
+            assertNotNull(records.get(VertexTemporalPropertyKeyPrefix.of(n, CRUSHER).toBytes(), null));
+        }
+
+        // records are rewritten by newer points only.
+        try (var batch = recorded.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 2000), "alpha");
+            batch.put(new VertexTemporalPropertyKey(2, CRUSHER, 500), -1L);
+            batch.putInterval(new VertexTemporalPropertyKey(3, CRUSHER, 1500), 1600, "interval");
+            assertTrue(recorded.commitBatchWrite(batch, false, true, true));
+        }
+        checkLatest(recorded, plain);
+        assertEquals("alpha", recorded.get(new VertexTemporalPropertyKey(1, CRUSHER, 5000)));
+
+        // removes of the latest points are rebuilt from the data after commit.
+        try (var batch = recorded.startBatchWrite()) {
+            batch.removeRange(new VertexTemporalPropertyKey(1, CRUSHER, 1500), new VertexTemporalPropertyKey(1, CRUSHER, 2500));
+            batch.remove(new VertexTemporalPropertyKey(2, CRUSHER, 900));
+            batch.put(new VertexTemporalPropertyKey(2, CRUSHER, 850), 2850L);
+            batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(3, CRUSHER));
+            batch.put(new VertexTemporalPropertyKey(3, CRUSHER, 100), "again");
+            assertTrue(recorded.commitBatchWrite(batch, false, true, true));
+        }
+        checkLatest(recorded, plain);
+        assertEquals(1900L, recorded.get(new VertexTemporalPropertyKey(1, CRUSHER, 5000)));
+        assertEquals(2850L, recorded.get(new VertexTemporalPropertyKey(2, CRUSHER, 5000)));
+        assertEquals("again", recorded.get(new VertexTemporalPropertyKey(3, CRUSHER, 5000)));
+        for (long n = 1; n <= 3; ++n) {
+            assertNotNull(records.get(VertexTemporalPropertyKeyPrefix.of(n, CRUSHER).toBytes(), null));
+        }
+
+        try (var batch = recorded.startBatchWrite()) {
+            batch.removePrefix(VertexTemporalPropertyKeyPrefix.of(3, CRUSHER));
+            assertTrue(recorded.commitBatchWrite(batch, false, true, true));
+        }
+        checkLatest(recorded, plain);
+        assertNull(records.get(VertexTemporalPropertyKeyPrefix.of(3, CRUSHER).toBytes(), null));
+    }
+
+    @Test
+    void testLatestRecords() {
+        GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-records", "");
+        String baseDir = "/Users/crusher/test/";
+        String dataDir = graph0.getGraphName();
+        StoreOptions opt = StoreOptions.of(graph0, baseDir + dataDir, false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        var engine = new RocksEngine(opt);
+        // records are read by exact key, no prefix extractor.
+        StoreOptions latestOpt = StoreOptions.of(graph0, baseDir + dataDir + "-latest", false);
+        var latestEngine = new RocksEngine(latestOpt);
+        VertexTemporalPropertyStore recorded = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setLatestStore(latestEngine));
+        assertTrue(recorded.hasLatestRecords());
+        var plain = new VertexTemporalPropertyStore(graph0, engine);
+        writeRecords(recorded, plain, latestEngine);
+        // records survive the store, a cache is loaded from them.
+        checkLatest(new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setLatestCacheSize(2).setLatestStore(latestEngine)), plain);
+        recorded.stop();
+
+        // records of points written without them are rebuilt from the data.
+        graph0 = new GraphSpaceID(2, "test-graph-records-chunk", "");
+        opt = StoreOptions.of(graph0, baseDir + graph0.getGraphName(), false);
+        opt.setPrefixLength(VertexTemporalPropertyKeyPrefix.LENGTH);
+        latestOpt = StoreOptions.of(graph0, baseDir + graph0.getGraphName() + "-latest", false);
+        engine = new RocksEngine(opt);
+        latestEngine = new RocksEngine(latestOpt);
+        plain = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100));
+        try (var batch = plain.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(5, CRUSHER, 5010), 1L);
+            batch.put(new VertexTemporalPropertyKey(4, CRUSHER, 5150), 2L);
+            batch.put(new VertexTemporalPropertyKey(4, CRUSHER, 5010), 3L);
+            assertTrue(plain.commitBatchWrite(batch, false, true, true));
+        }
+        recorded = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(100).setLatestStore(latestEngine));
+        recorded.rebuildLatestRecords();
+        assertNotNull(latestEngine.get(VertexTemporalPropertyKeyPrefix.of(4, CRUSHER).toBytes(), null));
+        assertEquals(2L, recorded.get(new VertexTemporalPropertyKey(4, CRUSHER, 6000)));
+        assertEquals(3L, recorded.get(new VertexTemporalPropertyKey(4, CRUSHER, 5100)));
+        assertEquals(1L, recorded.get(new VertexTemporalPropertyKey(5, CRUSHER, Long.MAX_VALUE)));
+        writeRecords(recorded, plain, latestEngine);
+        recorded.stop();
+    }
+
+    // column families of the data, summaries, change index and latest records in one RocksInstance, thus they share batches.
+    private static RocksInstance sharedInstance(GraphSpaceID graph, String dataPath) {
+        var columnFamilies = new LinkedHashMap<String, Integer>();
+        columnFamilies.put("data", VertexTemporalPropertyKeyPrefix.LENGTH);
+        columnFamilies.put("rollup", VertexTemporalPropertyKeyPrefix.LENGTH);
+        // entries are ordered by time and records are read by exact key, no prefix extractor.
+        columnFamilies.put("change", 0);
+        columnFamilies.put("latest", 0);
+        return new RocksInstance(graph, dataPath, columnFamilies);
+    }
+
+    // commit the data batch only, i.e. crash before afterCommit, derived batches are written with it.
+    private static void commitWithoutRefresh(KVEngine engine, VertexTemporalPropertyWriteBatch batch) {
+        assertTrue(engine.commitBatchWrite(batch.getWb(), false, true, true));
+    }
+
+    private static void checkSharedRollup(GraphSpaceID graph0, String dataPath, long chunkInterval) {
+        var instance = sharedInstance(graph0, dataPath);
+        var engine = new RocksEngine(instance, "data");
+        var rollupEngine = new RocksEngine(instance, "rollup");
+        var options = TemporalPropertyStoreOptions.of().setChunkInterval(chunkInterval).setRollups(rollupEngine, new long[]{10, 100, 1000});
+        var vertex = new VertexTemporalPropertyStore(graph0, engine, options);
+        try (var batch = vertex.startBatchWrite(); var wb = rollupEngine.startBatchWrite(batch.getWb())) {
+            assertTrue(wb.sharedWith(batch.getWb()));
+        }
+        writeRollup(vertex);
+        try (var iter = rollupEngine.prefix(VertexTemporalPropertyKeyPrefix.of(1, CRUSHER).toBytes(), null)) {
+            assertFalse(iter.valid());
+        }
+
+        // summaries of the buckets written are removed with the data, the ones never rebuilt are read through.
+        TreeMap<Long, Double> points = new TreeMap<>();
+        try (var batch = vertex.startBatchWrite()) {
+            for (long t = 0; t < 5000; t += 7) {
+                batch.put(new VertexTemporalPropertyKey(1, CRUSHER, t), (double) (t % 89));
+                points.put(t, (double) (t % 89));
+            }
+            batch.remove(new VertexTemporalPropertyKey(2, CRUSHER, 100));
+            commitWithoutRefresh(engine, batch);
+        }
+        vertex.stop();
+        instance.stop();
+
+        instance = sharedInstance(graph0, dataPath);
+        engine = new RocksEngine(instance, "data");
+        rollupEngine = new RocksEngine(instance, "rollup");
+        vertex = new VertexTemporalPropertyStore(graph0, engine, options.setRollups(rollupEngine, new long[]{10, 100, 1000}));
+        try (var iter = rollupEngine.prefix(VertexTemporalPropertyKeyPrefix.of(2, CRUSHER).toBytes(), null)) {
+            assertFalse(iter.valid());
+        }
+        checkRollup(vertex, points);
+        assertNull(vertex.aggregate(new VertexTemporalPropertyKey(2, CRUSHER, 0), new VertexTemporalPropertyKey(2, CRUSHER, 5000), TemporalAggregation.MAX));
+
+        // the next write rebuilds summaries of its buckets.
+        try (var batch = vertex.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 4999), 100.0);
+            assertTrue(vertex.commitBatchWrite(batch, false, true, true));
+        }
+        points.put(4999L, 100.0);
+        try (var iter = rollupEngine.prefix(VertexTemporalPropertyKeyPrefix.of(1, CRUSHER).toBytes(), null)) {
+            assertTrue(iter.valid());
+        }
+        checkRollup(vertex, points);
+        vertex.stop();
+        instance.stop();
+        instance.drop();
+    }
+
+    private static void checkSharedChanges(GraphSpaceID graph0, String dataPath, long chunkInterval) {
+        var instance = sharedInstance(graph0, dataPath);
+        var engine = new RocksEngine(instance, "data");
+        var changeEngine = new RocksEngine(instance, "change");
+        var options = TemporalPropertyStoreOptions.of().setChunkInterval(chunkInterval).setChangeStore(changeEngine);
+        var vertex = new VertexTemporalPropertyStore(graph0, engine, options);
+        try (var batch = vertex.startBatchWrite(); var wb = changeEngine.startBatchWrite(batch.getWb())) {
+            assertTrue(wb.sharedWith(batch.getWb()));
+        }
+        checkChanges(vertex);
+
+        // entries are written with the data, nothing is left to refresh.
+        try (var batch = vertex.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(1, ALPHA, 260), "alpha");
+            batch.remove(new VertexTemporalPropertyKey(2, ALPHA, 250));
+            commitWithoutRefresh(engine, batch);
+        }
+        vertex.stop();
+        instance.stop();
+
+        instance = sharedInstance(graph0, dataPath);
+        engine = new RocksEngine(instance, "data");
+        vertex = new VertexTemporalPropertyStore(graph0, engine, options.setChangeStore(new RocksEngine(instance, "change")));
+        assertEquals(Arrays.asList(new VertexTemporalPropertyKey(2, CRUSHER, 202), new VertexTemporalPropertyKey(1, ALPHA, 250),
+                new VertexTemporalPropertyKey(1, ALPHA, 260)), changes(vertex, 201, 300));
+        for (var key : changes(vertex, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            assertNotNull(vertex.get(key));
+        }
+        vertex.stop();
+        instance.stop();
+        instance.drop();
+    }
+
+    private static void checkSharedRecords(GraphSpaceID graph0, String dataPath, long chunkInterval) {
+        var instance = sharedInstance(graph0, dataPath);
+        var engine = new RocksEngine(instance, "data");
+        var latestEngine = new RocksEngine(instance, "latest");
+        var options = TemporalPropertyStoreOptions.of().setChunkInterval(chunkInterval).setLatestStore(latestEngine);
+        var recorded = new VertexTemporalPropertyStore(graph0, engine, options);
+        try (var batch = recorded.startBatchWrite(); var wb = latestEngine.startBatchWrite(batch.getWb())) {
+            assertTrue(wb.sharedWith(batch.getWb()));
+        }
+        var plain = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(chunkInterval));
+        writeRecords(recorded, plain, latestEngine);
+
+        // a newer point rewrites its record with the data, a removed latest point removes it until the next write.
+        try (var batch = recorded.startBatchWrite()) {
+            batch.put(new VertexTemporalPropertyKey(1, CRUSHER, 3000), "lost");
+            batch.remove(new VertexTemporalPropertyKey(2, CRUSHER, 850));
+            commitWithoutRefresh(engine, batch);
+        }
+        recorded.stop();
+        instance.stop();
+
+        instance = sharedInstance(graph0, dataPath);
+        engine = new RocksEngine(instance, "data");
+        latestEngine = new RocksEngine(instance, "latest");
+        recorded = new VertexTemporalPropertyStore(graph0, engine, options.setLatestStore(latestEngine));
+        plain = new VertexTemporalPropertyStore(graph0, engine, TemporalPropertyStoreOptions.of().setChunkInterval(chunkInterval));
+        assertNotNull(latestEngine.get(VertexTemporalPropertyKeyPrefix.of(1, CRUSHER).toBytes(), null));
+        assertNull(latestEngine.get(VertexTemporalPropertyKeyPrefix.of(2, CRUSHER).toBytes(), null));
+        checkLatest(recorded, plain);
+        assertEquals("lost", recorded.get(new VertexTemporalPropertyKey(1, CRUSHER, 5000)));
+        assertEquals(2800L, recorded.get(new VertexTemporalPropertyKey(2, CRUSHER, 5000)));
+
+        try (var batch = recorded.startBatchWrite()) {
+            batch.remove(new VertexTemporalPropertyKey(2, CRUSHER, 800));
+            assertTrue(recorded.commitBatchWrite(batch, false, true, true));
+        }
+        assertNotNull(latestEngine.get(VertexTemporalPropertyKeyPrefix.of(2, CRUSHER).toBytes(), null));
+        checkLatest(recorded, plain);
+        assertEquals(2700L, recorded.get(new VertexTemporalPropertyKey(2, CRUSHER, 5000)));
+        recorded.stop();
+        instance.stop();
+        instance.drop();
+    }
+
+    @Test
+    void testSharedBatch() {
+        String baseDir = "/Users/crusher/test/";
+        for (long chunkInterval : new long[]{0, 100}) {
+            String mode = chunkInterval == 0 ? "" : "-chunk";
+            GraphSpaceID graph0 = new GraphSpaceID(1, "test-graph-shared-rollup" + mode, "");
+            checkSharedRollup(graph0, baseDir + graph0.getGraphName(), chunkInterval);
+            graph0 = new GraphSpaceID(2, "test-graph-shared-change" + mode, "");
+            checkSharedChanges(graph0, baseDir + graph0.getGraphName(), chunkInterval);
+            graph0 = new GraphSpaceID(3, "test-graph-shared-records" + mode, "");
+            checkSharedRecords(graph0, baseDir + graph0.getGraphName(), chunkInterval);
+        }
     }
 }
@@ -1,7 +1,10 @@
 package cn.edu.buaa.act.tgraph.tgraphdb;
 
+import cn.edu.buaa.act.tgraph.api.tgraphdb.Entity;
 import cn.edu.buaa.act.tgraph.api.tgraphdb.Relationship;
+import cn.edu.buaa.act.tgraph.api.tgraphdb.TemporalPropertyNotExistsException;
 import cn.edu.buaa.act.tgraph.api.tgraphdb.Transaction;
+import cn.edu.buaa.act.tgraph.common.Pair;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.GraphSpaceID;
 import cn.edu.buaa.act.tgraph.impl.tgraphdb.TGraphDatabase;
 import org.apache.commons.logging.Log;
@@ -216,6 +219,56 @@ public class TGraphDatabaseTest {
         tg.shutdown();
     }
 
+    @Test
+    void testBatchGet() {
+        String tpName = "person_numbers";
+        Label testLabel = Label.label("test-node");
+        GraphSpaceID graph = new GraphSpaceID(1, "tg-db-test-batch-get", graphDir);
+        var tg = new TGraphDatabase(graph, neo);
+
+        long node1Id = 0, node2Id = 0, edgeId = 0;
+        try (var txn = tg.beginTx()) {
+            var node1 = txn.createNode(testLabel);
+            node1.createTemporalProperty(tpName);
+            node1.setTemporalPropertyValue(tpName, new Timestamp(1000), 100);
+            node1.setTemporalPropertyValue(tpName, new Timestamp(2000), 1000);
+            node1.createTemporalProperty("empty");
+            var node2 = txn.createNode(testLabel);
+            node2.createTemporalProperty(tpName);
+            node2.setTemporalPropertyValue(tpName, new Timestamp(1500), 1500);
+            var edge = node1.createRelationshipTo(node2, TEST_REL_TYPE.TEST_REL);
+            edge.createTemporalProperty(tpName);
+            edge.setTemporalPropertyValue(tpName, new Timestamp(1000), "jack");
+            node1Id = node1.getId();
+            node2Id = node2.getId();
+            edgeId = edge.getId();
+            txn.commit();
+        } catch (TransactionAbortException e) {
+            log.info("txn rollback.");
+            e.printStackTrace();
+        }
+
+        // values are in the order of keys, the same as the ones read one by one.
+        try (var txn = tg.beginTx()) {
+            var node1 = txn.getNodeById(node1Id);
+            var node2 = txn.getNodeById(node2Id);
+            var edge = txn.getRelationshipById(edgeId);
+            List<Pair<Entity, String>> keys = List.of(Pair.of(node2, tpName), Pair.of(edge, tpName), Pair.of(node1, tpName),
+                    Pair.of(node1, "empty"), Pair.of(node2, tpName));
+            assertArrayEquals(new Object[]{1500, "jack", 1000, null, 1500}, txn.getTemporalPropertyValues(keys, new Timestamp(3000)));
+            assertArrayEquals(new Object[]{null, "jack", 100, null, null}, txn.getTemporalPropertyValues(keys, new Timestamp(1200)));
+            assertEquals(node1.getTemporalPropertyValue(tpName, new Timestamp(1200)), txn.getTemporalPropertyValues(keys, new Timestamp(1200))[2]);
+            assertEquals(0, txn.getTemporalPropertyValues(List.of(), new Timestamp(1200)).length);
+            assertThrows(TemporalPropertyNotExistsException.class,
+                    () -> txn.getTemporalPropertyValues(List.of(Pair.of(node1, tpName), Pair.of(node2, "empty")), new Timestamp(1200)));
+            txn.commit();
+        } catch (TransactionAbortException e) {
+            log.info("txn rollback.");
+            e.printStackTrace();
+        }
+        tg.shutdown();
+    }
+
     @Test
     void testConcurrentRR() {
         String tpName = "person_numbers";
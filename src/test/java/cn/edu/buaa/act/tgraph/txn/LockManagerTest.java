@@ -62,9 +62,9 @@ public class LockManagerTest {
         var txn2 = startTxn(2);
 
         long vertexID = 1;
-        String tpName = "lock-test";
+        int tpId = 0;
 
-        var tp = TemporalPropertyID.vertex(vertexID, tpName);
+        var tp = TemporalPropertyID.vertex(vertexID, tpId);
 
         var t1 = new Thread(() -> {
             try {
@@ -102,8 +102,8 @@ public class LockManagerTest {
         var txn2 = startTxn(2);
 
         long vertexID = 1;
-        String tpName = "lock-test";
-        var tp = TemporalPropertyID.vertex(vertexID, tpName);
+        int tpId = 0;
+        var tp = TemporalPropertyID.vertex(vertexID, tpId);
 
         var t1 = new Thread(() -> {
             try {
@@ -146,8 +146,8 @@ public class LockManagerTest {
         var lm = new LockManager(txnMap, false);
 
         long vertexID = 1;
-        String tpName = "lock-test";
-        var tp = TemporalPropertyID.vertex(vertexID, tpName);
+        int tpId = 0;
+        var tp = TemporalPropertyID.vertex(vertexID, tpId);
         int[] tpValue = {0};
 
         long startTxnID = 1;
@@ -220,8 +220,8 @@ public class LockManagerTest {
         var lm = new LockManager(txnMap, false);
 
         long vertexID = 1;
-        String tpName = "lock-test";
-        var tp = TemporalPropertyID.vertex(vertexID, tpName);
+        int tpId = 0;
+        var tp = TemporalPropertyID.vertex(vertexID, tpId);
         int[] tpValue = {0};
 
         List<Thread> ths = new ArrayList<>();
@@ -279,8 +279,8 @@ public class LockManagerTest {
         var txn3 = startTxn(3);
 
         long vertexID = 1;
-        String tpName = "lock-test";
-        var tp = TemporalPropertyID.vertex(vertexID, tpName);
+        int tpId = 0;
+        var tp = TemporalPropertyID.vertex(vertexID, tpId);
 
 
         // only one transaction, will succeed.
@@ -348,9 +348,9 @@ public class LockManagerTest {
         var txn2 = startTxn(2);
 
         long vertexID = 1;
-        String tpName = "lock-test";
+        int tpId = 0;
 
-        var tp = TemporalPropertyID.vertex(vertexID, tpName);
+        var tp = TemporalPropertyID.vertex(vertexID, tpId);
 
         // txn1, 2 acquire S-Lock first, then txn1 upgrade to X-Lock and txn2's upgrade will fail.
         var t1 = new Thread(() -> {
@@ -405,13 +405,13 @@ public class LockManagerTest {
 
 
         long vertexID = 1;
-        String tpName = "lock-test";
+        int tpId = 0;
 
-        var tp1 = TemporalPropertyID.vertex(vertexID, tpName);
+        var tp1 = TemporalPropertyID.vertex(vertexID, tpId);
 
-        var tp2 = TemporalPropertyID.vertex(vertexID + 1, tpName);
+        var tp2 = TemporalPropertyID.vertex(vertexID + 1, tpId);
 
-        var tp3 = TemporalPropertyID.vertex(vertexID + 2, tpName);
+        var tp3 = TemporalPropertyID.vertex(vertexID + 2, tpId);
 
         var t1 = new Thread(() -> {
             try {
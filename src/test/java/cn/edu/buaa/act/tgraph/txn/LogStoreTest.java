@@ -19,19 +19,19 @@ public class LogStoreTest {
 
 
     private VertexTemporalPropertyKey makeVertex(long nodeId, long timestamp) {
-        return new VertexTemporalPropertyKey(nodeId, "test-vp", timestamp);
+        return new VertexTemporalPropertyKey(nodeId, 0, timestamp);
     }
 
     private VertexTemporalPropertyKeyPrefix makeVertexPrefix(long nodeId) {
-        return VertexTemporalPropertyKeyPrefix.of(nodeId, "test-vp");
+        return VertexTemporalPropertyKeyPrefix.of(nodeId, 0);
     }
 
     private EdgeTemporalPropertyKey makeEdge(long startId, long endId, long timestamp) {
-        return new EdgeTemporalPropertyKey(startId, endId, "test-ep", timestamp);
+        return new EdgeTemporalPropertyKey(startId, endId, 1, timestamp);
     }
 
     private EdgeTemporalPropertyKeyPrefix makeEdgePrefix(long startId, long endId) {
-        return EdgeTemporalPropertyKeyPrefix.of(startId, endId, "test-tp");
+        return EdgeTemporalPropertyKeyPrefix.of(startId, endId, 1);
     }
 
 
@@ -9,6 +9,7 @@ import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
 import org.neo4j.graphdb.GraphDatabaseService;
 import cn.edu.buaa.act.tgraph.property.EdgeTemporalPropertyStore;
+import cn.edu.buaa.act.tgraph.property.TemporalPropertyTokenStore;
 import cn.edu.buaa.act.tgraph.property.VertexTemporalPropertyStore;
 
 import java.nio.file.Path;
@@ -35,13 +36,14 @@ public class TransactionManagerTest {
         GraphSpaceID graph0 = new GraphSpaceID(1, "txn-manager-test-recover", graphDir);
         var vs = new VertexTemporalPropertyStore(graph0, graphDir + "/vertex-tp", false);
         var es = new EdgeTemporalPropertyStore(graph0, graphDir + "/edge-tp", false);
+        var ts = new TemporalPropertyTokenStore(graph0, graphDir + "/tp-tokens", false);
 
         Instant end = Instant.now();
 
         log.info(String.format("store create elapsed time: %d millisecond(s).", Duration.between(start, end).toMillis()));
 
         start = Instant.now();
-        var txnManager = new TransactionManager(graph0, neo, vs, es);
+        var txnManager = new TransactionManager(graph0, neo, vs, es, ts);
         txnManager.start();
         end = Instant.now();
 
@@ -97,13 +99,14 @@ public class TransactionManagerTest {
         GraphSpaceID graph0 = new GraphSpaceID(1, "txn-manager-test-redo", graphDir);
         var vs = new VertexTemporalPropertyStore(graph0, graphDir + "/vertex-tp", false);
         var es = new EdgeTemporalPropertyStore(graph0, graphDir + "/edge-tp", false);
+        var ts = new TemporalPropertyTokenStore(graph0, graphDir + "/tp-tokens", false);
 
         Instant end = Instant.now();
 
         log.info(String.format("store create elapsed time: %d millisecond(s).", Duration.between(start, end).toMillis()));
 
         start = Instant.now();
-        var txnManager = new TransactionManager(graph0, neo, vs, es);
+        var txnManager = new TransactionManager(graph0, neo, vs, es, ts);
         end = Instant.now();
         log.info(String.format("txn manager create elapsed time: %d millisecond(s).", Duration.between(start, end).toMillis()));
 
@@ -165,13 +168,14 @@ public class TransactionManagerTest {
         GraphSpaceID graph0 = new GraphSpaceID(1, "txn-manager-test-recover-more", graphDir);
         var vs = new VertexTemporalPropertyStore(graph0, graphDir + "/vertex-tp", false);
         var es = new EdgeTemporalPropertyStore(graph0, graphDir + "/edge-tp", false);
+        var ts = new TemporalPropertyTokenStore(graph0, graphDir + "/tp-tokens", false);
 
         Instant end = Instant.now();
 
         log.info(String.format("store create elapsed time: %d millisecond(s).", Duration.between(start, end).toMillis()));
 
         start = Instant.now();
-        var txnManager = new TransactionManager(graph0, neo, vs, es);
+        var txnManager = new TransactionManager(graph0, neo, vs, es, ts);
         txnManager.start();
         end = Instant.now();
 
@@ -219,7 +223,7 @@ public class TransactionManagerTest {
         }
 
         // test recover, observe the state.
-        txnManager = new TransactionManager(graph0, neo, vs, es);
+        txnManager = new TransactionManager(graph0, neo, vs, es, ts);
         txnManager.recover();
 
 